@@ -1,15 +1,37 @@
 package com.catring;
 
+import com.catring.persistence.ArchivioJdbc;
+import com.catring.singleton.MenuService;
 import com.catring.viewfx.MainView;
 import javafx.application.Application;
 import javafx.stage.Stage;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 public class CatRingApp extends Application {
+
+    private boolean suArchivio;
     
     @Override
     public void start(Stage primaryStage) {
         try {
 
+            MenuService menuService = MenuService.getInstance();
+            String catalogo = System.getProperty("catring.catalogo");
+            if (catalogo != null) {
+                menuService.collegaCatalogo(Paths.get(catalogo));
+            }
+            // Con -Dcatring.archivio=<file> i dati stanno in un database H2
+            // invece che nel journal della cartella dati.
+            String archivio = System.getProperty("catring.archivio");
+            if (archivio != null) {
+                menuService.attivaArchivio(ArchivioJdbc.apriH2(Paths.get(archivio)));
+                suArchivio = true;
+            } else {
+                menuService.attivaPersistenza(cartellaDati());
+            }
+
             MainView mainView = new MainView(primaryStage);
 
             mainView.mostra();
@@ -22,6 +44,24 @@ public class CatRingApp extends Application {
         }
     }
 
+    @Override
+    public void stop() throws Exception {
+        MenuService menuService = MenuService.getInstance();
+        if (suArchivio) {
+            menuService.disattivaArchivio();
+        } else {
+            // Il prossimo avvio legge l'istantanea invece di rieseguire il journal.
+            menuService.salvaIstantanea();
+            menuService.disattivaPersistenza();
+        }
+        menuService.scollegaCatalogo();
+    }
+
+    private Path cartellaDati() {
+        return Paths.get(System.getProperty("catring.dati",
+                Paths.get(System.getProperty("user.home"), ".catring").toString()));
+    }
+
     private void stampaInformazioniAvvio() {
         System.out.println("=== CAT & RING - SISTEMA AVVIATO ===");
         System.out.println("Sistema di gestione catering pronto all'uso!");
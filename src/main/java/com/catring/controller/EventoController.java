@@ -60,6 +60,17 @@ public class EventoController {
         }
     }
     
+    public void handleFoglioProduzione(Evento evento) {
+        if (evento == null) {
+            mostraErrore("Nessun evento selezionato", "Seleziona un evento per il foglio di produzione");
+            return;
+        }
+        if (areaDettagli != null) {
+            areaDettagli.setText(menuService.getFoglioProduzione(evento));
+        }
+        aggiornaStato("Foglio di produzione per " + evento.getNumeroPersone() + " persone: " + evento.getLuogo());
+    }
+    
     private String creaDettagliEvento(Evento evento) {
         StringBuilder dettagli = new StringBuilder();
         
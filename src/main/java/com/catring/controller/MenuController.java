@@ -3,17 +3,25 @@ package com.catring.controller;
 import com.catring.model.*;
 import com.catring.model.Menu;
 import com.catring.observer.MenuObserver;
+import com.catring.persistence.EsportazioneDati;
+import com.catring.persistence.EsportazioneMenu;
 import com.catring.singleton.MenuService;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.control.*;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
 public class MenuController implements MenuObserver {
     
+    private static final int MAX_RISULTATI_RICERCA = 50;
+    
     private MenuService menuService;
     private Menu menuSelezionato;
     
@@ -137,29 +145,33 @@ public class MenuController implements MenuObserver {
     
     public void handleSelezionaMenu() {
         if (menuSelezionato != null) {
-            StringBuilder dettagli = new StringBuilder();
-            
-            dettagli.append("Menu: ").append(menuSelezionato.getNome()).append("\n");
-            dettagli.append("Descrizione: ").append(menuSelezionato.getDescrizione()).append("\n");
-            dettagli.append("Sezioni: ").append(menuSelezionato.getSezioni().size()).append("\n");
-            
-            if (menuSelezionato.getNote() != null && !menuSelezionato.getNote().trim().isEmpty()) {
-                dettagli.append("Note: ").append(menuSelezionato.getNote()).append("\n");
-            }
-            
-            if (!menuSelezionato.getSezioni().isEmpty()) {
-                dettagli.append("\nContenuto:\n");
-                for (SezioniMenu sezione : menuSelezionato.getSezioni()) {
-                    dettagli.append("- ").append(sezione.getTitolo())
-                           .append(" (").append(sezione.getVoci().size()).append(" ricette)\n");
-                }
-            }
-            
-            mostraInfo("Dettagli Menu", dettagli.toString());
+            mostraInfo("Dettagli Menu", menuService.testoMenu(menuSelezionato, "riepilogo", this::creaRiepilogoMenu));
         } else {
             mostraErrore("Nessun menu selezionato", "Seleziona un menu dalla tabella");
         }
     }
+
+    private String creaRiepilogoMenu(Menu menu) {
+        StringBuilder dettagli = new StringBuilder();
+        
+        dettagli.append("Menu: ").append(menu.getNome()).append("\n");
+        dettagli.append("Descrizione: ").append(menu.getDescrizione()).append("\n");
+        dettagli.append("Sezioni: ").append(menu.getSezioni().size()).append("\n");
+        
+        if (menu.getNote() != null && !menu.getNote().trim().isEmpty()) {
+            dettagli.append("Note: ").append(menu.getNote()).append("\n");
+        }
+        
+        if (!menu.getSezioni().isEmpty()) {
+            dettagli.append("\nContenuto:\n");
+            for (SezioniMenu sezione : menu.getSezioni()) {
+                dettagli.append("- ").append(sezione.getTitolo())
+                       .append(" (").append(sezione.getVoci().size()).append(" ricette)\n");
+            }
+        }
+        
+        return dettagli.toString();
+    }
     
     public void handleAggiungiSezione() {
         if (menuSelezionato == null) {
@@ -198,7 +210,7 @@ public class MenuController implements MenuObserver {
         }
         
         if (confermaAzione("Conferma rimozione", "Rimuovere la sezione '" + sezioneSelezionata.getTitolo() + "'?\n\nTutte le ricette in questa sezione saranno rimosse!")) {
-            menuSelezionato.getSezioni().remove(sezioneSelezionata);
+            menuService.rimuoviSezione(menuSelezionato, sezioneSelezionata);
             aggiornaSezioniMenu();
             aggiornaComboBoxSezioni();
             mostraSuccesso("Sezione rimossa", "La sezione '" + sezioneSelezionata.getTitolo() + "' e stata rimossa");
@@ -270,13 +282,7 @@ public class MenuController implements MenuObserver {
             return;
         }
         
-        boolean rimossa = false;
-        for (SezioniMenu sezione : menuSelezionato.getSezioni()) {
-            if (sezione.getVoci().remove(voceSelezionata)) {
-                rimossa = true;
-                break;
-            }
-        }
+        boolean rimossa = menuService.rimuoviVoce(menuSelezionato, voceSelezionata);
         
         if (rimossa) {
             aggiornaSezioniMenu();
@@ -333,34 +339,22 @@ public class MenuController implements MenuObserver {
             return;
         }
         
-        SezioniMenu sezioneOrig = null;
-        for (SezioniMenu sezione : menuSelezionato.getSezioni()) {
-            if (sezione.getTitolo().equals(sezioneOrigine)) {
-                sezioneOrig = sezione;
-                break;
-            }
-        }
+        SezioniMenu sezioneOrig = menuService.getSezione(menuSelezionato, sezioneOrigine);
+        PosizioneVoce posizione = menuService.getPosizioneVoce(menuSelezionato, voceSelezionata);
         
-        if (sezioneOrig == null || !sezioneOrig.getVoci().contains(voceSelezionata)) {
+        if (sezioneOrig == null || posizione == null || posizione.getSezione() != sezioneOrig) {
             mostraErrore("Ricetta non trovata", "La ricetta selezionata non si trova nella sezione di origine specificata");
             return;
         }
         
-        SezioniMenu sezioneDest = null;
-        for (SezioniMenu sezione : menuSelezionato.getSezioni()) {
-            if (sezione.getTitolo().equals(sezioneDestinazione)) {
-                sezioneDest = sezione;
-                break;
-            }
-        }
+        SezioniMenu sezioneDest = menuService.getSezione(menuSelezionato, sezioneDestinazione);
         
         if (sezioneDest == null) {
             mostraErrore("Sezione destinazione non trovata", "La sezione di destinazione non esiste");
             return;
         }
         
-        sezioneOrig.getVoci().remove(voceSelezionata);
-        sezioneDest.getVoci().add(voceSelezionata);
+        menuService.spostaVoce(menuSelezionato, voceSelezionata, sezioneOrig, sezioneDest);
         
         aggiornaSezioniMenu();
         aggiornaVociSezioneCorrente();
@@ -406,10 +400,6 @@ public class MenuController implements MenuObserver {
             return;
         }
         
-        if (ricettaCompleta.getId() == null || ricettaCompleta.getId().isEmpty()) {
-            ricettaCompleta.setId("R" + System.currentTimeMillis());
-        }
-        
         boolean aggiunta = menuService.inserisciRicettaCompleta(ricettaCompleta);
         if (aggiunta) {
             ricetteList.add(ricettaCompleta);
@@ -503,18 +493,81 @@ public class MenuController implements MenuObserver {
             return;
         }
         
+        ChoiceDialog<String> sceltaFormato = new ChoiceDialog<>("txt", menuService.getFormatiEsportazione());
+        sceltaFormato.setTitle("Esporta menu");
+        sceltaFormato.setHeaderText("Formato del file");
+        String formato = sceltaFormato.showAndWait().orElse(null);
+        if (formato == null) {
+            return;
+        }
+
         DirectoryChooser directoryChooser = new DirectoryChooser();
-        directoryChooser.setTitle("Scegli cartella per salvare il TXT");
+        directoryChooser.setTitle("Scegli cartella per salvare il file");
         
         Stage stage = new Stage();
         File selectedDirectory = directoryChooser.showDialog(stage);
         
         if (selectedDirectory != null) {
-            String percorsoFile = menuService.generaTXTFile(menuSelezionato, selectedDirectory.getAbsolutePath());
-            mostraInfo("TXT Generato!", "Il menu e stato salvato in:\n" + percorsoFile);
+            String percorsoFile = menuService.generaFile(menuSelezionato, formato, selectedDirectory.getAbsolutePath());
+            mostraInfo("File Generato!", "Il menu e stato salvato in:\n" + percorsoFile);
         }
     }
     
+    public void handleEsportaDati() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Esporta tutti i dati");
+        fileChooser.setInitialFileName("catring-export.jsonl.gz");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("JSON lines compresso", "*.jsonl.gz"),
+                new FileChooser.ExtensionFilter("JSON lines", "*.jsonl"));
+
+        File file = fileChooser.showSaveDialog(new Stage());
+        if (file == null) {
+            return;
+        }
+        aggiornaStato("Esportazione in corso...");
+        // L'esportazione tiene il lock in lettura del servizio: fuori dal
+        // thread JavaFX l'interfaccia resta reattiva.
+        Thread esportazione = new Thread(() -> {
+            try {
+                EsportazioneDati.Esito esito = menuService.esportaDati(file.toPath());
+                Platform.runLater(() -> mostraSuccesso("Esportazione completata",
+                        esito.getRighe() + " righe salvate in:\n" + file.getAbsolutePath()));
+            } catch (IOException | RuntimeException e) {
+                Platform.runLater(() -> mostraErrore("Esportazione non riuscita", e.getMessage()));
+            }
+        }, "esportazione-dati");
+        esportazione.setDaemon(true);
+        esportazione.start();
+    }
+
+    public void handleEsportaMenu() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Esporta tutti i menu");
+        fileChooser.setInitialFileName("menu.zip");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Archivio ZIP", "*.zip"));
+
+        File file = fileChooser.showSaveDialog(new Stage());
+        if (file == null) {
+            return;
+        }
+        List<Menu> daEsportare = menuService.getMenus();
+        Thread esportazione = new Thread(() -> {
+            try {
+                EsportazioneMenu.Esito esito = menuService.esportaMenu(daEsportare, file.toPath(),
+                        (completati, totale) -> Platform.runLater(() ->
+                                aggiornaStato("Esportazione menu: " + completati + "/" + totale)),
+                        () -> false);
+                Platform.runLater(() -> mostraSuccesso("Esportazione completata",
+                        esito.getEsportati() + " menu salvati in:\n" + file.getAbsolutePath()));
+            } catch (RuntimeException e) {
+                Platform.runLater(() -> mostraErrore("Esportazione non riuscita", e.getMessage()));
+            }
+        }, "esportazione-menu");
+        esportazione.setDaemon(true);
+        esportazione.start();
+    }
+
     public void handlePubblicaBacheca() {
         if (menuSelezionato == null) {
             mostraErrore("Nessun menu selezionato", "Seleziona un menu da pubblicare");
@@ -565,7 +618,7 @@ public class MenuController implements MenuObserver {
     
     public void handleSelezionaMenuBacheca(Menu menu) {
         if (menu != null && areaDettagliMenuBacheca != null) {
-            String dettagli = creaDettagliMenuBacheca(menu);
+            String dettagli = menuService.testoMenu(menu, "bacheca", this::creaDettagliMenuBacheca);
             areaDettagliMenuBacheca.setText(dettagli);
             aggiornaStato("Menu selezionato: " + menu.getNome());
         }
@@ -793,8 +846,20 @@ public class MenuController implements MenuObserver {
     }
 
     public boolean ricettaEsiste(String nomeRicetta) {
-        return tutteRicetteList.stream()
-                .anyMatch(r -> r.getNome().equalsIgnoreCase(nomeRicetta));
+        return menuService.esisteRicetta(nomeRicetta);
+    }
+
+    public Ingrediente creaIngrediente(String nome, String unitaMisura) {
+        return menuService.creaIngrediente(nome, "base", unitaMisura);
+    }
+
+    public ObservableList<Ricetta> cercaRicette(String testo) {
+        if (testo == null || testo.trim().isEmpty()) {
+            return tutteRicetteList;
+        }
+        ObservableList<Ricetta> risultati = FXCollections.observableArrayList();
+        menuService.cercaRicette(testo, MAX_RISULTATI_RICERCA).forEach(r -> risultati.add(r.getRicetta()));
+        return risultati;
     }
 
     public Menu getMenuSelezionato() {
@@ -819,6 +884,14 @@ public class MenuController implements MenuObserver {
         return tutteLeVoci;
     }
 
+    public ObservableList<VoceMenu> getVociSezioneMenuSelezionato(String titoloSezione) {
+        ObservableList<VoceMenu> voci = FXCollections.observableArrayList();
+        if (menuSelezionato != null) {
+            voci.addAll(menuService.getVociSezione(menuSelezionato, titoloSezione));
+        }
+        return voci;
+    }
+
     public ObservableList<String> getTitoliSezioniMenuSelezionato() {
         ObservableList<String> titoli = FXCollections.observableArrayList();
         if (menuSelezionato != null) {
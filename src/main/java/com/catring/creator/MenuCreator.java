@@ -33,6 +33,26 @@ public class MenuCreator {
         return new Ricetta(id, nome, descrizione, tempoPreparazione, stato, autore);
     }
     
+    public String creaIdRicetta() {
+        return idGenerator.generateRicettaId();
+    }
+    
+    public void registraIdEsistente(String id) {
+        idGenerator.registraIdEsistente(id);
+    }
+    
+    public void usaRiservaId(IdGenerator.Riserva riserva) {
+        idGenerator.usaRiserva(riserva);
+    }
+    
+    public Ingrediente creaIngrediente(String nome, String tipo, String unitaMisura) {
+        return new Ingrediente(idGenerator.generateIngredienteId(), nome, tipo, unitaMisura);
+    }
+    
+    public Ingrediente creaIngredienteBase(String nome, String tipo, String unitaMisura) {
+        return new Ingrediente(idGenerator.generateIngredienteBaseId(), nome, tipo, unitaMisura);
+    }
+    
     public Cliente creaCliente(String nome, String tipo, String contatti) {
         String id = idGenerator.generateClienteId();
         return new Cliente(id, nome, tipo, contatti);
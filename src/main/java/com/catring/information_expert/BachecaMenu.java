@@ -0,0 +1,145 @@
+package com.catring.information_expert;
+
+import com.catring.model.Menu;
+import com.catring.model.PubblicazioneBacheca;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Menu pubblicati indicizzati per id e ordinati per sequenza di
+ * pubblicazione. Il cursore di una pagina e' la sequenza dell'ultima
+ * pubblicazione restituita, quindi resta valido anche se nel frattempo
+ * altri menu vengono pubblicati o rimossi.
+ */
+public class BachecaMenu {
+
+    private final Map<String, PubblicazioneBacheca> pubblicazioniPerMenu;
+    private final NavigableMap<Long, PubblicazioneBacheca> pubblicazioniInOrdine;
+    private long prossimaSequenza;
+    private volatile List<Menu> istantanea;
+
+    public BachecaMenu() {
+        this.pubblicazioniPerMenu = new HashMap<>();
+        this.pubblicazioniInOrdine = new TreeMap<>();
+        this.prossimaSequenza = 1;
+        this.istantanea = Collections.emptyList();
+    }
+
+    public boolean pubblica(Menu menu, LocalDateTime dataPubblicazione) {
+        if (pubblicazioniPerMenu.containsKey(menu.getId())) {
+            return false;
+        }
+        PubblicazioneBacheca pubblicazione = new PubblicazioneBacheca(menu, dataPubblicazione, prossimaSequenza++);
+        pubblicazioniPerMenu.put(menu.getId(), pubblicazione);
+        pubblicazioniInOrdine.put(pubblicazione.getSequenza(), pubblicazione);
+        istantanea = null;
+        return true;
+    }
+
+    public boolean rimuovi(Menu menu) {
+        PubblicazioneBacheca pubblicazione = pubblicazioniPerMenu.remove(menu.getId());
+        if (pubblicazione == null) {
+            return false;
+        }
+        pubblicazioniInOrdine.remove(pubblicazione.getSequenza());
+        istantanea = null;
+        return true;
+    }
+
+    public boolean contiene(Menu menu) {
+        return pubblicazioniPerMenu.containsKey(menu.getId());
+    }
+
+    public PubblicazioneBacheca getPubblicazione(String menuId) {
+        return pubblicazioniPerMenu.get(menuId);
+    }
+
+    public List<PubblicazioneBacheca> getPubblicazioni() {
+        return new ArrayList<>(pubblicazioniInOrdine.values());
+    }
+
+    public int size() {
+        return pubblicazioniPerMenu.size();
+    }
+
+    public void svuota() {
+        pubblicazioniPerMenu.clear();
+        pubblicazioniInOrdine.clear();
+        istantanea = null;
+    }
+
+    public Pagina getPagina(String cursore, int dimensione) {
+        if (dimensione <= 0) {
+            throw new IllegalArgumentException("La dimensione della pagina deve essere positiva");
+        }
+        NavigableMap<Long, PubblicazioneBacheca> successive = cursore == null
+                ? pubblicazioniInOrdine
+                : pubblicazioniInOrdine.tailMap(decodificaCursore(cursore), false);
+
+        // size() della mappa intera e' costante; quello della vista tailMap scorrerebbe tutte le successive.
+        List<PubblicazioneBacheca> elementi = new ArrayList<>(Math.min(dimensione, pubblicazioniInOrdine.size()));
+        for (PubblicazioneBacheca pubblicazione : successive.values()) {
+            if (elementi.size() == dimensione) {
+                break;
+            }
+            elementi.add(pubblicazione);
+        }
+
+        String cursoreSuccessivo = null;
+        if (!elementi.isEmpty()) {
+            long ultima = elementi.get(elementi.size() - 1).getSequenza();
+            if (pubblicazioniInOrdine.higherKey(ultima) != null) {
+                cursoreSuccessivo = Long.toString(ultima);
+            }
+        }
+        return new Pagina(elementi, cursoreSuccessivo);
+    }
+
+    public List<Menu> istantaneaPronta() {
+        return istantanea;
+    }
+
+    public List<Menu> istantanea() {
+        List<Menu> corrente = istantanea;
+        if (corrente == null) {
+            List<Menu> menu = new ArrayList<>(pubblicazioniInOrdine.size());
+            for (PubblicazioneBacheca pubblicazione : pubblicazioniInOrdine.values()) {
+                menu.add(pubblicazione.getMenu());
+            }
+            corrente = Collections.unmodifiableList(menu);
+            istantanea = corrente;
+        }
+        return corrente;
+    }
+
+    private static long decodificaCursore(String cursore) {
+        try {
+            return Long.parseLong(cursore);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursore bacheca non valido: " + cursore);
+        }
+    }
+
+    public static class Pagina {
+        private final List<PubblicazioneBacheca> elementi;
+        private final String cursoreSuccessivo;
+
+        public Pagina(List<PubblicazioneBacheca> elementi, String cursoreSuccessivo) {
+            this.elementi = Collections.unmodifiableList(elementi);
+            this.cursoreSuccessivo = cursoreSuccessivo;
+        }
+
+        public List<PubblicazioneBacheca> getElementi() { return elementi; }
+
+        public String getCursoreSuccessivo() { return cursoreSuccessivo; }
+
+        public boolean haAltre() { return cursoreSuccessivo != null; }
+    }
+}
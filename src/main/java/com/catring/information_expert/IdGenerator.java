@@ -1,46 +1,191 @@
 package com.catring.information_expert;
 
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Genera gli id delle entita': un prefisso per tipo seguito da un numero.
+ * I contatori sono condivisi da tutte le istanze.
+ *
+ * Ogni thread prende dal contatore un sottoblocco di id consecutivi e li
+ * distribuisce senza sincronizzazione, cosi' le importazioni parallele non
+ * si contendono lo stesso AtomicLong. Con una {@link Riserva} (hi/lo) gli
+ * id si usano solo dopo averne reso durevole il limite superiore, a blocchi
+ * di {@link #BLOCCO}: si scrive su disco una volta ogni BLOCCO id, e al
+ * riavvio si riparte oltre l'ultimo limite salvato anche se gli id
+ * distribuiti non erano ancora stati salvati altrove.
+ */
 public class IdGenerator {
 
-    private static final AtomicLong menuCounter = new AtomicLong(1000);
-    private static final AtomicLong sezioneCounter = new AtomicLong(1000);
-    private static final AtomicLong voceCounter = new AtomicLong(1000);
-    private static final AtomicLong ricettaCounter = new AtomicLong(1000);
-    private static final AtomicLong eventoCounter = new AtomicLong(1000);
-    private static final AtomicLong clienteCounter = new AtomicLong(1000);
+    public static final long INIZIO = 1000;
+    public static final int BLOCCO = 1000;
+    static final int SOTTOBLOCCO = 32;
+
+    /**
+     * Memoria durevole dei limiti: gli id di un prefisso fino al suo limite
+     * possono essere gia' stati distribuiti.
+     */
+    public interface Riserva {
+
+        Map<String, Long> limiti();
+
+        /** Deve rendere durevole il limite prima di tornare. */
+        void salvaLimite(String prefisso, long limite);
+    }
+
+    private static final Sequenza menu = new Sequenza("M");
+    private static final Sequenza sezioni = new Sequenza("S");
+    private static final Sequenza voci = new Sequenza("V");
+    private static final Sequenza ricette = new Sequenza("R");
+    private static final Sequenza eventi = new Sequenza("E");
+    private static final Sequenza clienti = new Sequenza("C");
+    private static final Sequenza ingredienti = new Sequenza("I");
+    private static final Sequenza ingredientiBase = new Sequenza("IB");
+    private static final Sequenza[] SEQUENZE = {menu, sezioni, voci, ricette, eventi, clienti, ingredienti,
+            ingredientiBase};
 
     public String generateMenuId() {
-        return "M" + menuCounter.incrementAndGet();
+        return menu.genera();
     }
 
     public String generateSezioneId() {
-        return "S" + sezioneCounter.incrementAndGet();
+        return sezioni.genera();
     }
 
     public String generateVoceId() {
-        return "V" + voceCounter.incrementAndGet();
+        return voci.genera();
     }
 
     public String generateRicettaId() {
-        return "R" + ricettaCounter.incrementAndGet();
+        return ricette.genera();
     }
 
     public String generateEventoId() {
-        return "E" + eventoCounter.incrementAndGet();
+        return eventi.genera();
     }
 
     public String generateClienteId() {
-        return "C" + clienteCounter.incrementAndGet();
+        return clienti.genera();
+    }
+
+    public String generateIngredienteId() {
+        return ingredienti.genera();
+    }
+
+    public String generateIngredienteBaseId() {
+        return ingredientiBase.genera();
+    }
+
+    // Dopo un ripristino da disco i contatori devono ripartire oltre gli id gia' usati.
+    public void registraIdEsistente(String id) {
+        if (id == null || id.length() < 2) {
+            return;
+        }
+        Sequenza sequenza;
+        switch (id.charAt(0)) {
+            case 'M': sequenza = menu; break;
+            case 'S': sequenza = sezioni; break;
+            case 'V': sequenza = voci; break;
+            case 'R': sequenza = ricette; break;
+            case 'E': sequenza = eventi; break;
+            case 'C': sequenza = clienti; break;
+            case 'I': sequenza = id.charAt(1) == 'B' ? ingredientiBase : ingredienti; break;
+            default: return;
+        }
+        try {
+            sequenza.registra(Long.parseLong(id.substring(sequenza.prefisso.length())));
+        } catch (NumberFormatException e) {
+            // Id non generato da questa classe: nessun contatore da aggiornare.
+        }
+    }
+
+    /**
+     * Collega i contatori a una riserva durevole (null per scollegarli): si
+     * riparte oltre i limiti che vi sono salvati.
+     */
+    public void usaRiserva(Riserva riserva) {
+        Map<String, Long> limiti = riserva != null ? riserva.limiti() : Map.of();
+        for (Sequenza sequenza : SEQUENZE) {
+            sequenza.collega(riserva, limiti.getOrDefault(sequenza.prefisso, 0L));
+        }
     }
 
     public void resetCounters() {
-        menuCounter.set(1000);
-        sezioneCounter.set(1000);
-        voceCounter.set(1000);
-        ricettaCounter.set(1000);
-        eventoCounter.set(1000);
-        clienteCounter.set(1000);
+        for (Sequenza sequenza : SEQUENZE) {
+            sequenza.azzera();
+        }
+    }
+
+    private static final class Sequenza {
+
+        private final String prefisso;
+        // Ultimo id assegnato a un sottoblocco, o registrato se maggiore.
+        private final AtomicLong ultimo = new AtomicLong(INIZIO);
+        // Massimo id registrato: nei sottoblocchi si riparte oltre.
+        private final AtomicLong registrato = new AtomicLong();
+        // Cambia a ogni azzeramento, che invalida tutti i sottoblocchi.
+        private volatile long epoca;
+        private volatile long limite = Long.MAX_VALUE;
+        private Riserva riserva;
+        // {prossimo, fine, epoca}
+        private final ThreadLocal<long[]> sottoblocco = ThreadLocal.withInitial(() -> new long[] {1, 0, -1});
+
+        Sequenza(String prefisso) {
+            this.prefisso = prefisso;
+        }
+
+        String genera() {
+            long[] blocco = sottoblocco.get();
+            long massimoRegistrato = registrato.get();
+            if (blocco[0] <= massimoRegistrato) {
+                // Si salta la parte del sottoblocco gia' usata da id registrati.
+                blocco[0] = massimoRegistrato + 1;
+            }
+            if (blocco[0] > blocco[1] || blocco[2] != epoca) {
+                long epocaCorrente = epoca;
+                long fine = ultimo.addAndGet(SOTTOBLOCCO);
+                if (fine > limite) {
+                    riservaFino(fine);
+                }
+                blocco[0] = fine - SOTTOBLOCCO + 1;
+                blocco[1] = fine;
+                blocco[2] = epocaCorrente;
+            }
+            return prefisso + blocco[0]++;
+        }
+
+        void registra(long id) {
+            ultimo.accumulateAndGet(id, Math::max);
+            registrato.accumulateAndGet(id, Math::max);
+        }
+
+        // Si scrive un nuovo limite solo quando gli id riservati finiscono.
+        private synchronized void riservaFino(long fine) {
+            if (fine <= limite || riserva == null) {
+                return;
+            }
+            long nuovo = fine + BLOCCO;
+            riserva.salvaLimite(prefisso, nuovo);
+            limite = nuovo;
+        }
+
+        synchronized void collega(Riserva nuova, long limiteSalvato) {
+            riserva = nuova;
+            if (nuova == null) {
+                limite = Long.MAX_VALUE;
+                return;
+            }
+            // Gli id fino al limite salvato possono essere gia' stati usati.
+            registra(limiteSalvato);
+            limite = ultimo.get();
+            epoca++;
+        }
+
+        synchronized void azzera() {
+            ultimo.set(INIZIO);
+            registrato.set(0);
+            limite = riserva != null ? INIZIO : Long.MAX_VALUE;
+            epoca++;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.catring.information_expert;
+
+import com.catring.model.Dose;
+import com.catring.model.Ricetta;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Le dosi di una ricetta riportate a un numero di porzioni: la quantita'
+ * i-esima corrisponde alla dose i-esima, moltiplicata per porzioni /
+ * numeroPorte. Il vettore si calcola una volta per (ricetta, porzioni);
+ * gli eventi con lo stesso numero di persone lo riusano. Si tengono le
+ * ricette usate piu' di recente, fino a {@link #MASSIMO_RICETTE}.
+ *
+ * Chi modifica una ricetta chiama {@link #invalida}. Thread-safe, perche'
+ * i fogli di produzione si compongono sotto il lock in lettura.
+ */
+public class IndiceDosiScalate {
+
+    public static final int MASSIMO_RICETTE = 4096;
+
+    private final LinkedHashMap<String, Map<Integer, double[]>> perRicetta =
+            new LinkedHashMap<String, Map<Integer, double[]>>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<Integer, double[]>> piuVecchia) {
+                    return size() > MASSIMO_RICETTE;
+                }
+            };
+    private long calcolati;
+
+    /**
+     * Le quantita' per le porzioni indicate, una per dose. Con numeroPorte
+     * non positivo le dosi valgono per una porzione. Il vettore e'
+     * condiviso e non va modificato.
+     */
+    public synchronized double[] quantita(Ricetta ricetta, int porzioni) {
+        Map<Integer, double[]> vettori = perRicetta.computeIfAbsent(ricetta.getId(), id -> new HashMap<>(4));
+        double[] quantita = vettori.get(porzioni);
+        if (quantita == null) {
+            quantita = calcola(ricetta, porzioni);
+            vettori.put(porzioni, quantita);
+            calcolati++;
+        }
+        return quantita;
+    }
+
+    private static double[] calcola(Ricetta ricetta, int porzioni) {
+        List<Dose> dosi = ricetta.isSenzaDettagli() ? List.of() : ricetta.getDosi();
+        double fattore = (double) porzioni / Math.max(1, ricetta.getNumeroPorte());
+        double[] quantita = new double[dosi.size()];
+        for (int i = 0; i < quantita.length; i++) {
+            quantita[i] = dosi.get(i).getQuantitativo() * fattore;
+        }
+        return quantita;
+    }
+
+    public synchronized void invalida(String ricettaId) {
+        perRicetta.remove(ricettaId);
+    }
+
+    public synchronized void svuota() {
+        perRicetta.clear();
+    }
+
+    /** Vettori calcolati da capo dalla creazione, per verificare il riuso. */
+    public synchronized long getCalcolati() {
+        return calcolati;
+    }
+}
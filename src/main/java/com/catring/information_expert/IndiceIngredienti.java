@@ -0,0 +1,166 @@
+package com.catring.information_expert;
+
+import com.catring.model.Ingrediente;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indice invertito a trigrammi sui nomi degli ingredienti. Il nome in
+ * minuscolo viene calcolato una sola volta all'inserimento; una ricerca per
+ * sottostringa interseca le liste dei trigrammi della query e verifica solo
+ * i candidati rimasti. Le query piu' corte di un trigramma scorrono i nomi
+ * gia' in minuscolo. I risultati seguono l'ordine di inserimento.
+ * Non e' thread-safe: va usato sotto il lock del proprietario.
+ */
+public class IndiceIngredienti {
+
+    private static final int LUNGHEZZA_GRAMMA = 3;
+
+    private final List<Ingrediente> ingredienti;
+    private final List<String> nomiMinuscoli;
+    private final Map<Long, ListaPosizioni> posizioniPerTrigramma;
+
+    public IndiceIngredienti() {
+        this.ingredienti = new ArrayList<>();
+        this.nomiMinuscoli = new ArrayList<>();
+        this.posizioniPerTrigramma = new HashMap<>();
+    }
+
+    public void aggiungi(Ingrediente ingrediente) {
+        int posizione = ingredienti.size();
+        String nome = minuscolo(ingrediente.getNome());
+        ingredienti.add(ingrediente);
+        nomiMinuscoli.add(nome);
+        for (int i = 0; i + LUNGHEZZA_GRAMMA <= nome.length(); i++) {
+            posizioniPerTrigramma.computeIfAbsent(trigramma(nome, i), t -> new ListaPosizioni()).aggiungi(posizione);
+        }
+    }
+
+    public List<Ingrediente> cerca(String testo) {
+        String query = minuscolo(testo);
+        if (query.length() < LUNGHEZZA_GRAMMA) {
+            return scorriNomi(query);
+        }
+
+        Set<Long> trigrammi = new LinkedHashSet<>();
+        for (int i = 0; i + LUNGHEZZA_GRAMMA <= query.length(); i++) {
+            trigrammi.add(trigramma(query, i));
+        }
+        ListaPosizioni[] liste = new ListaPosizioni[trigrammi.size()];
+        int k = 0;
+        for (Long chiave : trigrammi) {
+            ListaPosizioni lista = posizioniPerTrigramma.get(chiave);
+            if (lista == null) {
+                return new ArrayList<>();
+            }
+            liste[k++] = lista;
+        }
+        Arrays.sort(liste, Comparator.comparingInt(ListaPosizioni::size));
+
+        List<Ingrediente> risultati = new ArrayList<>();
+        ListaPosizioni piuCorta = liste[0];
+        int[] cursori = new int[liste.length];
+        candidati:
+        for (int i = 0; i < piuCorta.size(); i++) {
+            int posizione = piuCorta.get(i);
+            for (int j = 1; j < liste.length; j++) {
+                cursori[j] = liste[j].cerca(posizione, cursori[j]);
+                if (cursori[j] >= liste[j].size()) {
+                    break candidati;
+                }
+                if (liste[j].get(cursori[j]) != posizione) {
+                    continue candidati;
+                }
+            }
+            if ((liste.length == 1 && query.length() == LUNGHEZZA_GRAMMA) || nomiMinuscoli.get(posizione).contains(query)) {
+                risultati.add(ingredienti.get(posizione));
+            }
+        }
+        return risultati;
+    }
+
+    public int size() {
+        return ingredienti.size();
+    }
+
+    public void svuota() {
+        ingredienti.clear();
+        nomiMinuscoli.clear();
+        posizioniPerTrigramma.clear();
+    }
+
+    private List<Ingrediente> scorriNomi(String query) {
+        List<Ingrediente> risultati = new ArrayList<>();
+        for (int i = 0; i < nomiMinuscoli.size(); i++) {
+            if (nomiMinuscoli.get(i).contains(query)) {
+                risultati.add(ingredienti.get(i));
+            }
+        }
+        return risultati;
+    }
+
+    private static String minuscolo(String testo) {
+        return testo != null ? testo.toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static long trigramma(String testo, int inizio) {
+        return ((long) testo.charAt(inizio) << 32)
+                | ((long) testo.charAt(inizio + 1) << 16)
+                | testo.charAt(inizio + 2);
+    }
+
+    /** Posizioni crescenti degli ingredienti che contengono un trigramma. */
+    private static class ListaPosizioni {
+        private int[] posizioni = new int[4];
+        private int size;
+
+        void aggiungi(int posizione) {
+            // Un trigramma ripetuto nello stesso nome va registrato una volta sola.
+            if (size > 0 && posizioni[size - 1] == posizione) {
+                return;
+            }
+            if (size == posizioni.length) {
+                posizioni = Arrays.copyOf(posizioni, size * 2);
+            }
+            posizioni[size++] = posizione;
+        }
+
+        int get(int indice) {
+            return posizioni[indice];
+        }
+
+        int size() {
+            return size;
+        }
+
+        /** Primo indice da {@code da} in poi con posizione >= {@code cercata}. */
+        int cerca(int cercata, int da) {
+            int passo = 1;
+            int basso = da;
+            int alto = da;
+            while (alto < size && posizioni[alto] < cercata) {
+                basso = alto + 1;
+                alto = da + passo;
+                passo <<= 1;
+            }
+            alto = Math.min(alto, size);
+            while (basso < alto) {
+                int medio = (basso + alto) >>> 1;
+                if (posizioni[medio] < cercata) {
+                    basso = medio + 1;
+                } else {
+                    alto = medio;
+                }
+            }
+            return basso;
+        }
+    }
+}
@@ -0,0 +1,729 @@
+package com.catring.information_expert;
+
+import com.catring.model.Ingrediente;
+import com.catring.model.Ricetta;
+import com.catring.model.Tag;
+import com.catring.utils.ValidationUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Indice invertito per la ricerca testuale nel ricettario. Indicizza nome,
+ * descrizione, autore, tag e ingredienti con pesi diversi per campo, e
+ * ordina i risultati con BM25. Ogni parola della query corrisponde anche ai
+ * termini che la estendono (ricerca per prefisso), con un peso ridotto.
+ *
+ * Le parole della query vengono valutate dalla piu' selettiva; quando i
+ * migliori risultati trovati superano il punteggio massimo ottenibile con le
+ * parole rimanenti, queste vengono solo cercate nei candidati gia' trovati
+ * (MaxScore), senza scorrere le loro liste intere.
+ *
+ * I termini e le frequenze di ogni ricetta vengono salvati all'inserimento,
+ * quindi rimozioni e aggiornamenti non dipendono dallo stato attuale
+ * dell'oggetto. Le ricette rimosse restano nelle liste come buchi finche'
+ * non diventano la maggioranza, poi l'indice viene compattato.
+ *
+ * Le liste si trovano per termine in una HashMap; l'insieme ordinato dei
+ * termini serve solo ai prefissi e riceve i termini nuovi in blocco e gia'
+ * ordinati alla fine di ogni modifica, cosi' il caricamento di tutto il
+ * ricettario con {@link #aggiungiTutte} non paga un inserimento sparso
+ * nell'albero per ogni termine.
+ * Non e' thread-safe: va usato sotto il lock del proprietario.
+ */
+public class IndiceRicercaRicette {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PESO_PREFISSO = 0.5;
+    private static final int MAX_ESPANSIONI = 64;
+    private static final int MIN_LUNGHEZZA_PREFISSO = 2;
+    private static final int MIN_RIMOSSI_COMPATTAZIONE = 1024;
+    private static final int FRAZIONE_PUNTEGGI_DENSI = 32;
+
+    private static final int PESO_NOME = 3;
+    private static final int PESO_TAG = 2;
+    private static final int PESO_INGREDIENTE = 2;
+    private static final int PESO_AUTORE = 1;
+    private static final int PESO_DESCRIZIONE = 1;
+
+    private final Map<String, ListaOccorrenze> occorrenzePerTermine;
+    private final NavigableSet<String> terminiOrdinati;
+    private final List<String> terminiNuovi;
+    private final Map<String, Integer> documentoPerRicetta;
+    private final List<Documento> documenti;
+    private int[] lunghezze;
+    private int documentiAttivi;
+    private long lunghezzaTotale;
+
+    public IndiceRicercaRicette() {
+        this.occorrenzePerTermine = new HashMap<>();
+        this.terminiOrdinati = new TreeSet<>();
+        this.terminiNuovi = new ArrayList<>();
+        this.documentoPerRicetta = new HashMap<>();
+        this.documenti = new ArrayList<>();
+        this.lunghezze = new int[16];
+    }
+
+    public void aggiungi(Ricetta ricetta) {
+        rimuoviDocumento(ricetta.getId());
+        registra(creaDocumento(ricetta));
+        ordinaTerminiNuovi();
+    }
+
+    /**
+     * Come {@link #aggiungi} per ogni ricetta; i documenti si preparano in
+     * parallelo. Se l'indice era vuoto le liste vengono poi ridotte alla
+     * dimensione esatta: farlo a ogni blocco di un'importazione costringerebbe
+     * a ricopiare le liste dei termini comuni al blocco successivo.
+     */
+    public void aggiungiTutte(Collection<Ricetta> ricette) {
+        boolean caricamentoCompleto = documentiAttivi == 0;
+        List<Documento> nuovi = ricette.parallelStream()
+                .map(IndiceRicercaRicette::creaDocumento)
+                .collect(Collectors.toList());
+        for (Documento documento : nuovi) {
+            rimuoviDocumento(documento.ricetta.getId());
+            registra(documento);
+        }
+        ordinaTerminiNuovi();
+        if (caricamentoCompleto) {
+            for (ListaOccorrenze occorrenze : occorrenzePerTermine.values()) {
+                occorrenze.riduci();
+            }
+        }
+    }
+
+    private static Documento creaDocumento(Ricetta ricetta) {
+        Map<String, Integer> frequenze = new LinkedHashMap<>();
+        conta(frequenze, ricetta.getNome(), PESO_NOME);
+        conta(frequenze, ricetta.getDescrizione(), PESO_DESCRIZIONE);
+        conta(frequenze, ricetta.getAutore(), PESO_AUTORE);
+        if (!ricetta.isSenzaDettagli()) {
+            for (Tag tag : ricetta.getTags()) {
+                conta(frequenze, tag.getNome(), PESO_TAG);
+            }
+            for (Ingrediente ingrediente : ricetta.getIngredienti()) {
+                conta(frequenze, ingrediente.getNome(), PESO_INGREDIENTE);
+            }
+        }
+
+        String[] termini = new String[frequenze.size()];
+        int[] tf = new int[frequenze.size()];
+        int lunghezza = 0;
+        int i = 0;
+        for (Map.Entry<String, Integer> voce : frequenze.entrySet()) {
+            termini[i] = voce.getKey();
+            tf[i] = voce.getValue();
+            lunghezza += tf[i];
+            i++;
+        }
+        return new Documento(ricetta, termini, tf, lunghezza);
+    }
+
+    public void rimuovi(String ricettaId) {
+        rimuoviDocumento(ricettaId);
+        ordinaTerminiNuovi();
+    }
+
+    private void rimuoviDocumento(String ricettaId) {
+        Integer numero = documentoPerRicetta.remove(ricettaId);
+        if (numero == null) {
+            return;
+        }
+        Documento documento = documenti.set(numero, null);
+        lunghezze[numero] = -1;
+        for (String termine : documento.termini) {
+            ListaOccorrenze occorrenze = occorrenzePerTermine.get(termine);
+            if (--occorrenze.attivi == 0) {
+                occorrenzePerTermine.remove(termine);
+                terminiOrdinati.remove(termine);
+            }
+        }
+        documentiAttivi--;
+        lunghezzaTotale -= documento.lunghezza;
+
+        int rimossi = documenti.size() - documentiAttivi;
+        if (rimossi >= MIN_RIMOSSI_COMPATTAZIONE && rimossi > documentiAttivi) {
+            compatta();
+        }
+    }
+
+    public List<Risultato> cerca(String testo, int massimo) {
+        if (massimo <= 0 || documentiAttivi == 0) {
+            return Collections.emptyList();
+        }
+        List<ParolaQuery> parole = new ArrayList<>();
+        long occorrenzeTotali = 0;
+        for (String parola : new LinkedHashSet<>(tokenizza(testo))) {
+            ParolaQuery parolaQuery = preparaParola(parola);
+            if (parolaQuery != null) {
+                parole.add(parolaQuery);
+                occorrenzeTotali += parolaQuery.occorrenze;
+            }
+        }
+        if (parole.isEmpty()) {
+            return Collections.emptyList();
+        }
+        parole.sort((a, b) -> Double.compare(b.limite, a.limite));
+
+        double[] limitiResidui = new double[parole.size() + 1];
+        for (int i = parole.size() - 1; i >= 0; i--) {
+            limitiResidui[i] = limitiResidui[i + 1] + parole.get(i).limite;
+        }
+
+        double lunghezzaMedia = (double) lunghezzaTotale / documentiAttivi;
+        Punteggi punteggi = creaPunteggi(occorrenzeTotali);
+        Punteggi perParola = null;
+        for (int i = 0; i < parole.size(); i++) {
+            if (punteggi.size() >= massimo && soglia(punteggi, massimo) > limitiResidui[i]) {
+                completaCandidati(parole.subList(i, parole.size()), punteggi, lunghezzaMedia);
+                break;
+            }
+            ParolaQuery parola = parole.get(i);
+            if (parola.termini.size() == 1) {
+                punteggia(parola.termini.get(0), parola.idf.get(0), lunghezzaMedia, punteggi, false);
+                continue;
+            }
+            // Con piu' termini per la stessa parola conta solo il migliore,
+            // cosi' le estensioni di un prefisso non si sommano tra loro.
+            if (perParola == null) {
+                perParola = creaPunteggi(occorrenzeTotali);
+            }
+            for (int t = 0; t < parola.termini.size(); t++) {
+                punteggia(parola.termini.get(t), parola.idf.get(t), lunghezzaMedia, perParola, true);
+            }
+            for (int c = 0; c < perParola.size(); c++) {
+                punteggi.somma(perParola.documento(c), perParola.valore(c));
+            }
+            perParola.svuota();
+        }
+        return migliori(punteggi, massimo);
+    }
+
+    public boolean contiene(String ricettaId) {
+        return documentoPerRicetta.containsKey(ricettaId);
+    }
+
+    public int size() {
+        return documentiAttivi;
+    }
+
+    public void svuota() {
+        occorrenzePerTermine.clear();
+        terminiOrdinati.clear();
+        terminiNuovi.clear();
+        documentoPerRicetta.clear();
+        documenti.clear();
+        documentiAttivi = 0;
+        lunghezzaTotale = 0;
+    }
+
+    static List<String> tokenizza(String testo) {
+        List<String> parole = new ArrayList<>();
+        String normalizzato = ValidationUtils.normalizeKey(testo);
+        int inizio = -1;
+        for (int i = 0; i <= normalizzato.length(); i++) {
+            boolean lettera = i < normalizzato.length() && Character.isLetterOrDigit(normalizzato.charAt(i));
+            if (lettera && inizio < 0) {
+                inizio = i;
+            } else if (!lettera && inizio >= 0) {
+                parole.add(normalizzato.substring(inizio, i));
+                inizio = -1;
+            }
+        }
+        return parole;
+    }
+
+    private static void conta(Map<String, Integer> frequenze, String testo, int peso) {
+        for (String parola : tokenizza(testo)) {
+            frequenze.merge(parola, peso, Integer::sum);
+        }
+    }
+
+    private void registra(Documento documento) {
+        int numero = documenti.size();
+        documenti.add(documento);
+        if (numero == lunghezze.length) {
+            lunghezze = Arrays.copyOf(lunghezze, numero * 2);
+        }
+        lunghezze[numero] = documento.lunghezza;
+        documentoPerRicetta.put(documento.ricetta.getId(), numero);
+        for (int i = 0; i < documento.termini.length; i++) {
+            ListaOccorrenze occorrenze = occorrenzePerTermine.get(documento.termini[i]);
+            if (occorrenze == null) {
+                occorrenze = new ListaOccorrenze(documento.termini[i]);
+                occorrenzePerTermine.put(occorrenze.termine, occorrenze);
+                terminiNuovi.add(occorrenze.termine);
+            }
+            // Tutti i documenti condividono la stessa istanza del termine.
+            documento.termini[i] = occorrenze.termine;
+            occorrenze.aggiungi(numero, documento.frequenze[i]);
+        }
+        documentiAttivi++;
+        lunghezzaTotale += documento.lunghezza;
+    }
+
+    // Inseriti in ordine, i termini nuovi finiscono tutti lungo lo stesso
+    // percorso dell'albero invece che in punti sparsi.
+    private void ordinaTerminiNuovi() {
+        if (terminiNuovi.isEmpty()) {
+            return;
+        }
+        String[] ordinati = terminiNuovi.toArray(new String[0]);
+        terminiNuovi.clear();
+        Arrays.sort(ordinati);
+        for (String termine : ordinati) {
+            // Nel frattempo il termine puo' essere gia' sparito dall'indice.
+            if (occorrenzePerTermine.containsKey(termine)) {
+                terminiOrdinati.add(termine);
+            }
+        }
+    }
+
+    private void compatta() {
+        List<Documento> attivi = new ArrayList<>(documentiAttivi);
+        for (Documento documento : documenti) {
+            if (documento != null) {
+                attivi.add(documento);
+            }
+        }
+        svuota();
+        for (Documento documento : attivi) {
+            registra(documento);
+        }
+    }
+
+    private ParolaQuery preparaParola(String parola) {
+        ListaOccorrenze esatta = occorrenzePerTermine.get(parola);
+        int documentiPrefisso = esatta != null ? esatta.attivi : 0;
+        // Oltre MAX_ESPANSIONI si tengono le estensioni presenti in piu'
+        // documenti (a pari frequenza la prima in ordine alfabetico): in
+        // testa al heap c'e' quella da scartare.
+        PriorityQueue<ListaOccorrenze> estensioni = new PriorityQueue<>(
+                Comparator.<ListaOccorrenze>comparingInt(occorrenze -> occorrenze.attivi)
+                        .thenComparing(occorrenze -> occorrenze.termine, Comparator.reverseOrder()));
+        if (parola.length() >= MIN_LUNGHEZZA_PREFISSO) {
+            for (String termine : terminiOrdinati.tailSet(parola, false)) {
+                if (!termine.startsWith(parola)) {
+                    break;
+                }
+                ListaOccorrenze occorrenze = occorrenzePerTermine.get(termine);
+                if (occorrenze.attivi == 0) {
+                    continue;
+                }
+                documentiPrefisso += occorrenze.attivi;
+                estensioni.add(occorrenze);
+                if (estensioni.size() > MAX_ESPANSIONI) {
+                    estensioni.poll();
+                }
+            }
+        }
+        if (esatta == null && estensioni.isEmpty()) {
+            return null;
+        }
+
+        // Le estensioni usano l'idf dell'intero prefisso, contando anche
+        // quelle scartate: un termine raro che inizia con la parola non deve
+        // superare la corrispondenza esatta.
+        double idfPrefisso = PESO_PREFISSO * idf(Math.min(documentiPrefisso, documentiAttivi));
+
+        ParolaQuery risultato = new ParolaQuery();
+        if (esatta != null) {
+            risultato.aggiungi(esatta, idf(esatta.attivi));
+        }
+        for (ListaOccorrenze occorrenze : estensioni) {
+            risultato.aggiungi(occorrenze, idfPrefisso);
+        }
+        return risultato;
+    }
+
+    private double idf(int documentiConTermine) {
+        return Math.log(1 + (documentiAttivi - documentiConTermine + 0.5) / (documentiConTermine + 0.5));
+    }
+
+    private double bm25(int frequenza, int documento, double idf, double lunghezzaMedia) {
+        double normalizzazione = K1 * (1 - B + B * lunghezze[documento] / lunghezzaMedia);
+        return idf * frequenza * (K1 + 1) / (frequenza + normalizzazione);
+    }
+
+    private void punteggia(ListaOccorrenze occorrenze, double idf, double lunghezzaMedia,
+                           Punteggi punteggi, boolean soloMassimo) {
+        int[] documentiTermine = occorrenze.documenti;
+        int[] frequenze = occorrenze.frequenze;
+        for (int i = 0; i < occorrenze.size; i++) {
+            int documento = documentiTermine[i];
+            if (lunghezze[documento] < 0) {
+                continue;
+            }
+            double punteggio = bm25(frequenze[i], documento, idf, lunghezzaMedia);
+            if (soloMassimo) {
+                punteggi.massimo(documento, punteggio);
+            } else {
+                punteggi.somma(documento, punteggio);
+            }
+        }
+    }
+
+    private void completaCandidati(List<ParolaQuery> parole, Punteggi punteggi, double lunghezzaMedia) {
+        for (int c = 0; c < punteggi.size(); c++) {
+            int documento = punteggi.documento(c);
+            for (ParolaQuery parola : parole) {
+                double migliore = 0;
+                for (int t = 0; t < parola.termini.size(); t++) {
+                    ListaOccorrenze occorrenze = parola.termini.get(t);
+                    int indice = Arrays.binarySearch(occorrenze.documenti, 0, occorrenze.size, documento);
+                    if (indice >= 0) {
+                        migliore = Math.max(migliore,
+                                bm25(occorrenze.frequenze[indice], documento, parola.idf.get(t), lunghezzaMedia));
+                    }
+                }
+                if (migliore > 0) {
+                    punteggi.somma(documento, migliore);
+                }
+            }
+        }
+    }
+
+    private Punteggi creaPunteggi(long occorrenzeStimate) {
+        if (occorrenzeStimate * FRAZIONE_PUNTEGGI_DENSI >= documenti.size()) {
+            return new PunteggiDensi(documenti.size());
+        }
+        return new PunteggiSparsi();
+    }
+
+    private static MiglioriK selezionaMigliori(Punteggi punteggi, int massimo) {
+        MiglioriK migliori = new MiglioriK(massimo);
+        for (int c = 0; c < punteggi.size(); c++) {
+            migliori.offri(punteggi.documento(c), punteggi.valore(c));
+        }
+        return migliori;
+    }
+
+    private static double soglia(Punteggi punteggi, int massimo) {
+        return selezionaMigliori(punteggi, massimo).minimo();
+    }
+
+    private List<Risultato> migliori(Punteggi punteggi, int massimo) {
+        MiglioriK migliori = selezionaMigliori(punteggi, massimo);
+        Risultato[] risultati = new Risultato[migliori.size];
+        for (int i = risultati.length - 1; i >= 0; i--) {
+            double punteggio = migliori.punteggi[0];
+            int documento = migliori.estraiPeggiore();
+            risultati[i] = new Risultato(documenti.get(documento).ricetta, punteggio);
+        }
+        return Arrays.asList(risultati);
+    }
+
+    public static class Risultato {
+        private final Ricetta ricetta;
+        private final double punteggio;
+
+        public Risultato(Ricetta ricetta, double punteggio) {
+            this.ricetta = ricetta;
+            this.punteggio = punteggio;
+        }
+
+        public Ricetta getRicetta() { return ricetta; }
+
+        public double getPunteggio() { return punteggio; }
+    }
+
+    private static class Documento {
+        final Ricetta ricetta;
+        final String[] termini;
+        final int[] frequenze;
+        final int lunghezza;
+
+        Documento(Ricetta ricetta, String[] termini, int[] frequenze, int lunghezza) {
+            this.ricetta = ricetta;
+            this.termini = termini;
+            this.frequenze = frequenze;
+            this.lunghezza = lunghezza;
+        }
+    }
+
+    /** Documenti (in ordine crescente) e frequenze pesate di un termine. */
+    private static class ListaOccorrenze {
+        final String termine;
+        int[] documenti = new int[2];
+        int[] frequenze = new int[2];
+        int size;
+        int attivi;
+
+        ListaOccorrenze(String termine) {
+            this.termine = termine;
+        }
+
+        void aggiungi(int documento, int frequenza) {
+            if (size == documenti.length) {
+                documenti = Arrays.copyOf(documenti, Math.max(2, size * 2));
+                frequenze = Arrays.copyOf(frequenze, Math.max(2, size * 2));
+            }
+            documenti[size] = documento;
+            frequenze[size] = frequenza;
+            size++;
+            attivi++;
+        }
+
+        // Toglie lo spazio lasciato dalla crescita per raddoppio.
+        void riduci() {
+            if (size < documenti.length) {
+                documenti = Arrays.copyOf(documenti, size);
+                frequenze = Arrays.copyOf(frequenze, size);
+            }
+        }
+    }
+
+    /** Termini di una parola della query, con idf e punteggio massimo ottenibile. */
+    private static class ParolaQuery {
+        final List<ListaOccorrenze> termini = new ArrayList<>();
+        final List<Double> idf = new ArrayList<>();
+        double limite;
+        long occorrenze;
+
+        void aggiungi(ListaOccorrenze lista, double idfTermine) {
+            termini.add(lista);
+            idf.add(idfTermine);
+            // Il fattore di saturazione di BM25 resta sempre sotto K1 + 1.
+            limite = Math.max(limite, idfTermine * (K1 + 1));
+            occorrenze += lista.size;
+        }
+    }
+
+    /** Punteggi per documento, con l'elenco dei documenti toccati. */
+    private abstract static class Punteggi {
+        int[] toccati = new int[16];
+        int size;
+
+        abstract void somma(int documento, double valore);
+
+        abstract void massimo(int documento, double valore);
+
+        abstract double valoreDi(int documento);
+
+        abstract void svuota();
+
+        int size() {
+            return size;
+        }
+
+        int documento(int indice) {
+            return toccati[indice];
+        }
+
+        double valore(int indice) {
+            return valoreDi(toccati[indice]);
+        }
+
+        void tocca(int documento) {
+            if (size == toccati.length) {
+                toccati = Arrays.copyOf(toccati, size * 2);
+            }
+            toccati[size++] = documento;
+        }
+    }
+
+    /** Un punteggio per ogni documento: conveniente quando le occorrenze sono tante. */
+    private static class PunteggiDensi extends Punteggi {
+        private final double[] valori;
+
+        PunteggiDensi(int documenti) {
+            valori = new double[documenti];
+        }
+
+        @Override
+        void somma(int documento, double valore) {
+            if (valori[documento] == 0) {
+                tocca(documento);
+            }
+            valori[documento] += valore;
+        }
+
+        @Override
+        void massimo(int documento, double valore) {
+            if (valori[documento] == 0) {
+                tocca(documento);
+            }
+            valori[documento] = Math.max(valori[documento], valore);
+        }
+
+        @Override
+        double valoreDi(int documento) {
+            return valori[documento];
+        }
+
+        @Override
+        void svuota() {
+            for (int i = 0; i < size; i++) {
+                valori[toccati[i]] = 0;
+            }
+            size = 0;
+        }
+    }
+
+    /** Tabella ad indirizzamento aperto documento -> punteggio. */
+    private static class PunteggiSparsi extends Punteggi {
+        private int[] chiavi = nuoveChiavi(16);
+        private double[] valori = new double[16];
+
+        @Override
+        void somma(int documento, double valore) {
+            valori[posizione(documento)] += valore;
+        }
+
+        @Override
+        void massimo(int documento, double valore) {
+            int indice = posizione(documento);
+            valori[indice] = Math.max(valori[indice], valore);
+        }
+
+        @Override
+        double valoreDi(int documento) {
+            int indice = cerca(documento);
+            return chiavi[indice] == documento ? valori[indice] : 0;
+        }
+
+        @Override
+        void svuota() {
+            size = 0;
+            chiavi = nuoveChiavi(16);
+            valori = new double[16];
+        }
+
+        private int posizione(int documento) {
+            int indice = cerca(documento);
+            if (chiavi[indice] == documento) {
+                return indice;
+            }
+            if (size + 1 > chiavi.length / 2) {
+                ingrandisci();
+                indice = cerca(documento);
+            }
+            chiavi[indice] = documento;
+            tocca(documento);
+            return indice;
+        }
+
+        private int cerca(int documento) {
+            int maschera = chiavi.length - 1;
+            int indice = (documento * 0x9E3779B9) >>> 1 & maschera;
+            while (chiavi[indice] >= 0 && chiavi[indice] != documento) {
+                indice = (indice + 1) & maschera;
+            }
+            return indice;
+        }
+
+        private void ingrandisci() {
+            int[] vecchieChiavi = chiavi;
+            double[] vecchiValori = valori;
+            chiavi = nuoveChiavi(vecchieChiavi.length * 2);
+            valori = new double[vecchieChiavi.length * 2];
+            for (int i = 0; i < vecchieChiavi.length; i++) {
+                if (vecchieChiavi[i] >= 0) {
+                    int indice = cerca(vecchieChiavi[i]);
+                    chiavi[indice] = vecchieChiavi[i];
+                    valori[indice] = vecchiValori[i];
+                }
+            }
+        }
+
+        private static int[] nuoveChiavi(int dimensione) {
+            int[] chiavi = new int[dimensione];
+            Arrays.fill(chiavi, -1);
+            return chiavi;
+        }
+    }
+
+    /**
+     * Min-heap dei migliori k documenti, con il peggiore in cima. A parita'
+     * di punteggio vince il documento inserito prima nell'indice.
+     */
+    private static class MiglioriK {
+        final int[] documenti;
+        final double[] punteggi;
+        int size;
+
+        MiglioriK(int k) {
+            documenti = new int[k];
+            punteggi = new double[k];
+        }
+
+        void offri(int documento, double punteggio) {
+            if (size < documenti.length) {
+                documenti[size] = documento;
+                punteggi[size] = punteggio;
+                risali(size++);
+            } else if (peggiore(0, documento, punteggio)) {
+                documenti[0] = documento;
+                punteggi[0] = punteggio;
+                scendi(0);
+            }
+        }
+
+        double minimo() {
+            return size < documenti.length ? 0 : punteggi[0];
+        }
+
+        int estraiPeggiore() {
+            int documento = documenti[0];
+            size--;
+            documenti[0] = documenti[size];
+            punteggi[0] = punteggi[size];
+            scendi(0);
+            return documento;
+        }
+
+        private boolean peggiore(int i, int documento, double punteggio) {
+            return punteggi[i] < punteggio || (punteggi[i] == punteggio && documenti[i] > documento);
+        }
+
+        private void risali(int i) {
+            while (i > 0) {
+                int padre = (i - 1) / 2;
+                if (!peggiore(i, documenti[padre], punteggi[padre])) {
+                    return;
+                }
+                scambia(i, padre);
+                i = padre;
+            }
+        }
+
+        private void scendi(int i) {
+            while (true) {
+                int minore = i;
+                for (int figlio = 2 * i + 1; figlio <= 2 * i + 2 && figlio < size; figlio++) {
+                    if (peggiore(figlio, documenti[minore], punteggi[minore])) {
+                        minore = figlio;
+                    }
+                }
+                if (minore == i) {
+                    return;
+                }
+                scambia(i, minore);
+                i = minore;
+            }
+        }
+
+        private void scambia(int a, int b) {
+            int documento = documenti[a];
+            documenti[a] = documenti[b];
+            documenti[b] = documento;
+            double punteggio = punteggi[a];
+            punteggi[a] = punteggi[b];
+            punteggi[b] = punteggio;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.catring.information_expert;
+
+import com.catring.model.Ricetta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ricette raggruppate per stato (bozza, pubblicata, ...). Lo stato con cui
+ * ogni ricetta e' stata indicizzata viene ricordato, cosi' un cambio di
+ * stato fatto direttamente sull'oggetto viene riconosciuto in
+ * {@link #aggiorna(Ricetta, Ricetta)}. Come ListaVersionata, le istantanee
+ * per stato si leggono senza lock e si ricostruiscono sotto il lock del
+ * proprietario.
+ */
+public class IndiceStatiRicette {
+
+    private final Map<String, Map<String, Ricetta>> ricettePerStato;
+    private final Map<String, String> statoPerRicetta;
+    private final Map<String, List<Ricetta>> istantanee;
+
+    public IndiceStatiRicette() {
+        this.ricettePerStato = new HashMap<>();
+        this.statoPerRicetta = new HashMap<>();
+        this.istantanee = new ConcurrentHashMap<>();
+    }
+
+    public void aggiungi(Ricetta ricetta) {
+        String stato = chiaveStato(ricetta.getStato());
+        ricettePerStato.computeIfAbsent(stato, s -> new LinkedHashMap<>()).put(ricetta.getId(), ricetta);
+        statoPerRicetta.put(ricetta.getId(), stato);
+        istantanee.remove(stato);
+    }
+
+    public void rimuovi(Ricetta ricetta) {
+        String stato = statoPerRicetta.remove(ricetta.getId());
+        if (stato == null) {
+            return;
+        }
+        Map<String, Ricetta> bucket = ricettePerStato.get(stato);
+        if (bucket != null) {
+            bucket.remove(ricetta.getId());
+            if (bucket.isEmpty()) {
+                ricettePerStato.remove(stato);
+            }
+        }
+        istantanee.remove(stato);
+    }
+
+    public void aggiorna(Ricetta ricettaAttuale, Ricetta ricettaAggiornata) {
+        String statoPrecedente = statoPerRicetta.get(ricettaAttuale.getId());
+        String statoNuovo = chiaveStato(ricettaAggiornata.getStato());
+        if (statoNuovo.equals(statoPrecedente)) {
+            // Stesso stato: la posizione nel bucket resta invariata.
+            ricettePerStato.get(statoNuovo).put(ricettaAggiornata.getId(), ricettaAggiornata);
+            istantanee.remove(statoNuovo);
+        } else {
+            rimuovi(ricettaAttuale);
+            aggiungi(ricettaAggiornata);
+        }
+    }
+
+    public void svuota() {
+        ricettePerStato.clear();
+        statoPerRicetta.clear();
+        istantanee.clear();
+    }
+
+    public String getStatoIndicizzato(String ricettaId) {
+        return statoPerRicetta.get(ricettaId);
+    }
+
+    public int conta(String stato) {
+        Map<String, Ricetta> bucket = ricettePerStato.get(chiaveStato(stato));
+        return bucket != null ? bucket.size() : 0;
+    }
+
+    public List<Ricetta> istantaneaPronta(String stato) {
+        return istantanee.get(chiaveStato(stato));
+    }
+
+    public List<Ricetta> istantanea(String stato) {
+        String chiave = chiaveStato(stato);
+        return istantanee.computeIfAbsent(chiave, s -> {
+            Map<String, Ricetta> bucket = ricettePerStato.get(s);
+            if (bucket == null) {
+                return Collections.emptyList();
+            }
+            return Collections.unmodifiableList(new ArrayList<>(bucket.values()));
+        });
+    }
+
+    private static String chiaveStato(String stato) {
+        return stato != null ? stato : "";
+    }
+}
@@ -0,0 +1,148 @@
+package com.catring.information_expert;
+
+import com.catring.model.Menu;
+import com.catring.model.SezioniMenu;
+import com.catring.model.VoceMenu;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class IndiceUtilizziRicette {
+
+    private final Map<String, Map<VoceMenu, UtilizzoRicetta>> utilizziPerRicetta;
+    private final Map<VoceMenu, UtilizzoRicetta> utilizziPerVoce;
+
+    public IndiceUtilizziRicette() {
+        this.utilizziPerRicetta = new HashMap<>();
+        this.utilizziPerVoce = new IdentityHashMap<>();
+    }
+
+    public void registra(Menu menu, SezioniMenu sezione, VoceMenu voce) {
+        String ricettaId = idRicetta(voce);
+        if (ricettaId == null) {
+            return;
+        }
+        UtilizzoRicetta utilizzo = new UtilizzoRicetta(menu, sezione, voce);
+        UtilizzoRicetta precedente = utilizziPerVoce.put(voce, utilizzo);
+        if (precedente != null) {
+            rimuoviDaRicetta(precedente);
+        }
+        utilizziPerRicetta.computeIfAbsent(ricettaId, id -> new LinkedHashMap<>()).put(voce, utilizzo);
+    }
+
+    public void registraMenu(Menu menu) {
+        for (SezioniMenu sezione : menu.getSezioni()) {
+            registraSezione(menu, sezione);
+        }
+    }
+
+    public void registraSezione(Menu menu, SezioniMenu sezione) {
+        for (VoceMenu voce : sezione.getVoci()) {
+            registra(menu, sezione, voce);
+        }
+    }
+
+    public void sposta(VoceMenu voce, SezioniMenu nuovaSezione) {
+        UtilizzoRicetta utilizzo = utilizziPerVoce.get(voce);
+        if (utilizzo != null) {
+            registra(utilizzo.getMenu(), nuovaSezione, voce);
+        }
+    }
+
+    public void rimuovi(VoceMenu voce) {
+        UtilizzoRicetta utilizzo = utilizziPerVoce.remove(voce);
+        if (utilizzo != null) {
+            rimuoviDaRicetta(utilizzo);
+        }
+    }
+
+    public void rimuoviSezione(SezioniMenu sezione) {
+        for (VoceMenu voce : sezione.getVoci()) {
+            rimuovi(voce);
+        }
+    }
+
+    public void rimuoviMenu(Menu menu) {
+        for (SezioniMenu sezione : menu.getSezioni()) {
+            rimuoviSezione(sezione);
+        }
+    }
+
+    public boolean isUsata(String ricettaId) {
+        return utilizziPerRicetta.containsKey(ricettaId);
+    }
+
+    public List<UtilizzoRicetta> getUtilizzi(String ricettaId) {
+        Map<VoceMenu, UtilizzoRicetta> utilizzi = utilizziPerRicetta.get(ricettaId);
+        if (utilizzi == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(utilizzi.values());
+    }
+
+    public List<UtilizzoRicetta> getUtilizzi(String ricettaId, Menu menu) {
+        Map<VoceMenu, UtilizzoRicetta> utilizzi = utilizziPerRicetta.get(ricettaId);
+        if (utilizzi == null) {
+            return Collections.emptyList();
+        }
+        List<UtilizzoRicetta> risultato = new ArrayList<>();
+        for (UtilizzoRicetta utilizzo : utilizzi.values()) {
+            if (utilizzo.getMenu() == menu) {
+                risultato.add(utilizzo);
+            }
+        }
+        return risultato;
+    }
+
+    public int contaUtilizzi(String ricettaId) {
+        Map<VoceMenu, UtilizzoRicetta> utilizzi = utilizziPerRicetta.get(ricettaId);
+        return utilizzi != null ? utilizzi.size() : 0;
+    }
+
+    public void svuota() {
+        utilizziPerRicetta.clear();
+        utilizziPerVoce.clear();
+    }
+
+    private void rimuoviDaRicetta(UtilizzoRicetta utilizzo) {
+        String ricettaId = utilizzo.getRicettaId();
+        Map<VoceMenu, UtilizzoRicetta> utilizzi = utilizziPerRicetta.get(ricettaId);
+        if (utilizzi != null) {
+            utilizzi.remove(utilizzo.getVoce());
+            if (utilizzi.isEmpty()) {
+                utilizziPerRicetta.remove(ricettaId);
+            }
+        }
+    }
+
+    private static String idRicetta(VoceMenu voce) {
+        return voce.getRicetta() != null ? voce.getRicetta().getId() : null;
+    }
+
+    public static class UtilizzoRicetta {
+        private final Menu menu;
+        private final SezioniMenu sezione;
+        private final VoceMenu voce;
+        private final String ricettaId;
+
+        public UtilizzoRicetta(Menu menu, SezioniMenu sezione, VoceMenu voce) {
+            this.menu = menu;
+            this.sezione = sezione;
+            this.voce = voce;
+            this.ricettaId = idRicetta(voce);
+        }
+
+        public Menu getMenu() { return menu; }
+
+        public SezioniMenu getSezione() { return sezione; }
+
+        public VoceMenu getVoce() { return voce; }
+
+        public String getRicettaId() { return ricettaId; }
+    }
+}
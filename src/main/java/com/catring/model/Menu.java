@@ -1,19 +1,57 @@
 package com.catring.model;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
+/**
+ * Oltre alle sezioni, il menu tiene due indici per le operazioni di modifica:
+ * titolo -> sezioni e voce -> (sezione, posizione). I metodi di modifica del
+ * menu li aggiornano direttamente. Le ricerche non scrivono mai negli
+ * indici: un'assenza dall'indice vale come risposta, mentre un risultato che
+ * non corrisponde piu' alle liste si ricerca scorrendo le liste.
+ * Come le liste, gli indici non sono thread-safe: piu' ricerche possono
+ * procedere insieme, ma non insieme a una modifica.
+ *
+ * La versione cambia a ogni modifica fatta con i metodi del menu; chi
+ * modifica sezioni, voci o ricette citate dall'esterno chiama
+ * {@link #nuovaVersione()}. Da li' le ricerche scorrono le liste, finche' il
+ * metodo di modifica successivo non ricostruisce gli indici. Le versioni
+ * vengono da un contatore unico, quindi due stati diversi di menu con lo
+ * stesso id non hanno mai la stessa versione.
+ */
 public class Menu {
+    private static final AtomicLong VERSIONI = new AtomicLong();
+
     private String id;
     private String nome;
     private String descrizione;
     private String note;
     private List<SezioniMenu> sezioni;
-    
+
+    // Titoli, id e ricette possono ripetersi: ogni chiave porta tutti gli elementi che la hanno.
+    private final Map<String, List<SezioniMenu>> sezioniPerTitolo;
+    private final Map<SezioniMenu, Integer> indiciSezioni;
+    private final Map<VoceMenu, PosizioneVoce> posizioniVoci;
+    private final Map<String, List<VoceMenu>> vociPerId;
+    private final Map<String, List<VoceMenu>> vociPerRicetta;
+    private volatile long versione = VERSIONI.incrementAndGet();
+    // La versione a cui corrispondono gli indici.
+    private long versioneIndici = versione;
+
     public Menu() {
         this.sezioni = new ArrayList<>();
+        this.sezioniPerTitolo = new HashMap<>();
+        this.indiciSezioni = new IdentityHashMap<>();
+        this.posizioniVoci = new IdentityHashMap<>();
+        this.vociPerId = new HashMap<>();
+        this.vociPerRicetta = new HashMap<>();
     }
-    
+
     public Menu(String id, String nome, String descrizione, String note) {
         this();
         this.id = id;
@@ -24,16 +62,317 @@ public class Menu {
 
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
-    
+
     public String getNome() { return nome; }
-    public void setNome(String nome) { this.nome = nome; }
-    
+    public void setNome(String nome) { this.nome = nome; modificato(); }
+
     public String getDescrizione() { return descrizione; }
-    public void setDescrizione(String descrizione) { this.descrizione = descrizione; }
-    
+    public void setDescrizione(String descrizione) { this.descrizione = descrizione; modificato(); }
+
     public String getNote() { return note; }
-    public void setNote(String note) { this.note = note; }
-    
+    public void setNote(String note) { this.note = note; modificato(); }
+
+    public long getVersione() { return versione; }
+
+    /** Segnala una modifica fatta dall'esterno: gli indici non valgono piu'. */
+    public void nuovaVersione() {
+        versione = VERSIONI.incrementAndGet();
+    }
+
+    // Modifica fatta con i metodi del menu, che hanno gia' aggiornato gli indici.
+    private void modificato() {
+        boolean allineati = indiciAllineati();
+        versione = VERSIONI.incrementAndGet();
+        if (allineati) {
+            versioneIndici = versione;
+        }
+    }
+
     public List<SezioniMenu> getSezioni() { return sezioni; }
-    public void setSezioni(List<SezioniMenu> sezioni) { this.sezioni = sezioni; }
+    public void setSezioni(List<SezioniMenu> sezioni) {
+        this.sezioni = sezioni;
+        nuovaVersione();
+    }
+
+    public SezioniMenu getSezione(String titolo) {
+        if (titolo == null) {
+            return null;
+        }
+        if (indiciAllineati()) {
+            List<SezioniMenu> conTitolo = sezioniPerTitolo.get(titolo);
+            if (conTitolo == null) {
+                return null;
+            }
+            // La prima nell'ordine del menu, se nessuna e' cambiata da quando e' stata indicizzata.
+            SezioniMenu prima = null;
+            boolean valide = true;
+            for (SezioniMenu sezione : conTitolo) {
+                if (!titolo.equals(sezione.getTitolo()) || !sezioneIndicizzata(sezione)) {
+                    valide = false;
+                    break;
+                }
+                if (prima == null || indiciSezioni.get(sezione) < indiciSezioni.get(prima)) {
+                    prima = sezione;
+                }
+            }
+            if (valide) {
+                return prima;
+            }
+        }
+        for (SezioniMenu sezione : sezioni) {
+            if (titolo.equals(sezione.getTitolo())) {
+                return sezione;
+            }
+        }
+        return null;
+    }
+
+    public boolean contieneSezione(SezioniMenu sezione) {
+        return indiceSezione(sezione) >= 0;
+    }
+
+    public PosizioneVoce getPosizioneVoce(VoceMenu voce) {
+        if (voce == null) {
+            return null;
+        }
+        if (indiciAllineati()) {
+            PosizioneVoce posizione = posizioniVoci.get(voce);
+            if (posizione == null || posizioneValida(posizione)) {
+                return posizione;
+            }
+        }
+        return cercaVoce(candidata -> candidata == voce);
+    }
+
+    public PosizioneVoce trovaVoce(String voceId) {
+        if (indiciAllineati()) {
+            List<VoceMenu> conId = vociPerId.get(voceId);
+            if (conId == null) {
+                return null;
+            }
+            PosizioneVoce posizione = primaPosizione(conId, voce -> voceId.equals(voce.getId()));
+            if (posizione != null) {
+                return posizione;
+            }
+        }
+        return cercaVoce(voce -> voceId.equals(voce.getId()));
+    }
+
+    public PosizioneVoce trovaVocePerRicetta(String ricettaId) {
+        if (indiciAllineati()) {
+            List<VoceMenu> conRicetta = vociPerRicetta.get(ricettaId);
+            if (conRicetta == null) {
+                return null;
+            }
+            PosizioneVoce posizione = primaPosizione(conRicetta, voce -> ricettaId.equals(idRicetta(voce)));
+            if (posizione != null) {
+                return posizione;
+            }
+        }
+        return cercaVoce(voce -> ricettaId.equals(idRicetta(voce)));
+    }
+
+    public void aggiungiSezione(SezioniMenu sezione) {
+        allineaIndici();
+        sezioni.add(sezione);
+        indicizzaSezione(sezione, sezioni.size() - 1);
+        modificato();
+    }
+
+    public boolean rimuoviSezione(SezioniMenu sezione) {
+        allineaIndici();
+        int indice = indiceSezione(sezione);
+        if (indice < 0) {
+            return false;
+        }
+        sezioni.remove(indice);
+        indiciSezioni.remove(sezione);
+        if (sezione.getTitolo() != null) {
+            togli(sezioniPerTitolo, sezione.getTitolo(), sezione);
+        }
+        for (VoceMenu voce : sezione.getVoci()) {
+            deindicizzaVoce(voce);
+        }
+        for (int i = indice; i < sezioni.size(); i++) {
+            indiciSezioni.put(sezioni.get(i), i);
+        }
+        modificato();
+        return true;
+    }
+
+    public boolean aggiungiVoce(SezioniMenu sezione, VoceMenu voce) {
+        allineaIndici();
+        if (!contieneSezione(sezione)) {
+            return false;
+        }
+        List<VoceMenu> voci = sezione.getVoci();
+        voci.add(voce);
+        indicizzaVoce(sezione, voci.size() - 1, voce);
+        modificato();
+        return true;
+    }
+
+    public boolean rimuoviVoce(VoceMenu voce) {
+        allineaIndici();
+        PosizioneVoce posizione = getPosizioneVoce(voce);
+        if (posizione == null) {
+            return false;
+        }
+        List<VoceMenu> voci = posizione.getSezione().getVoci();
+        voci.remove(posizione.getIndice());
+        deindicizzaVoce(voce);
+        for (int i = posizione.getIndice(); i < voci.size(); i++) {
+            posizioniVoci.put(voci.get(i), new PosizioneVoce(posizione.getSezione(), i, voci.get(i)));
+        }
+        modificato();
+        return true;
+    }
+
+    public boolean spostaVoce(VoceMenu voce, SezioniMenu sezioneDestinazione) {
+        if (!contieneSezione(sezioneDestinazione) || !rimuoviVoce(voce)) {
+            return false;
+        }
+        return aggiungiVoce(sezioneDestinazione, voce);
+    }
+
+    private int indiceSezione(SezioniMenu sezione) {
+        if (sezione == null) {
+            return -1;
+        }
+        if (indiciAllineati()) {
+            if (sezioneIndicizzata(sezione)) {
+                return indiciSezioni.get(sezione);
+            }
+            if (!indiciSezioni.containsKey(sezione)) {
+                return -1;
+            }
+        }
+        for (int i = 0; i < sezioni.size(); i++) {
+            if (sezioni.get(i) == sezione) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // La prima nell'ordine del menu fra le voci indicizzate con una chiave;
+    // null se una di loro non corrisponde piu' alle liste.
+    private PosizioneVoce primaPosizione(List<VoceMenu> voci, Predicate<VoceMenu> corrisponde) {
+        PosizioneVoce prima = null;
+        for (VoceMenu voce : voci) {
+            PosizioneVoce posizione = posizioniVoci.get(voce);
+            if (!corrisponde.test(voce) || !posizioneValida(posizione)) {
+                return null;
+            }
+            if (prima == null || precede(posizione, prima)) {
+                prima = posizione;
+            }
+        }
+        return prima;
+    }
+
+    private boolean precede(PosizioneVoce a, PosizioneVoce b) {
+        int sezioneA = indiciSezioni.get(a.getSezione());
+        int sezioneB = indiciSezioni.get(b.getSezione());
+        return sezioneA < sezioneB || sezioneA == sezioneB && a.getIndice() < b.getIndice();
+    }
+
+    // Per le ricerche che l'indice non sa risolvere: scorre le liste senza toccare gli indici.
+    private PosizioneVoce cercaVoce(Predicate<VoceMenu> cercata) {
+        for (SezioniMenu sezione : sezioni) {
+            List<VoceMenu> voci = sezione.getVoci();
+            for (int i = 0; i < voci.size(); i++) {
+                if (cercata.test(voci.get(i))) {
+                    return new PosizioneVoce(sezione, i, voci.get(i));
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean sezioneIndicizzata(SezioniMenu sezione) {
+        Integer indice = indiciSezioni.get(sezione);
+        return indice != null && indice < sezioni.size() && sezioni.get(indice) == sezione;
+    }
+
+    private boolean posizioneValida(PosizioneVoce posizione) {
+        if (posizione == null || !sezioneIndicizzata(posizione.getSezione())) {
+            return false;
+        }
+        List<VoceMenu> voci = posizione.getSezione().getVoci();
+        return posizione.getIndice() < voci.size() && voci.get(posizione.getIndice()) == posizione.getVoce();
+    }
+
+    private void indicizzaSezione(SezioniMenu sezione, int indice) {
+        indiciSezioni.put(sezione, indice);
+        if (sezione.getTitolo() != null) {
+            aggiungi(sezioniPerTitolo, sezione.getTitolo(), sezione);
+        }
+        List<VoceMenu> voci = sezione.getVoci();
+        for (int i = 0; i < voci.size(); i++) {
+            indicizzaVoce(sezione, i, voci.get(i));
+        }
+    }
+
+    private void indicizzaVoce(SezioniMenu sezione, int indice, VoceMenu voce) {
+        posizioniVoci.put(voce, new PosizioneVoce(sezione, indice, voce));
+        if (voce.getId() != null) {
+            aggiungi(vociPerId, voce.getId(), voce);
+        }
+        String ricettaId = idRicetta(voce);
+        if (ricettaId != null) {
+            aggiungi(vociPerRicetta, ricettaId, voce);
+        }
+    }
+
+    private void deindicizzaVoce(VoceMenu voce) {
+        posizioniVoci.remove(voce);
+        if (voce.getId() != null) {
+            togli(vociPerId, voce.getId(), voce);
+        }
+        String ricettaId = idRicetta(voce);
+        if (ricettaId != null) {
+            togli(vociPerRicetta, ricettaId, voce);
+        }
+    }
+
+    private static <T> void aggiungi(Map<String, List<T>> indice, String chiave, T elemento) {
+        indice.computeIfAbsent(chiave, k -> new ArrayList<>(1)).add(elemento);
+    }
+
+    // Per identita', come gli altri indici; la chiave sparisce con l'ultimo elemento.
+    private static <T> void togli(Map<String, List<T>> indice, String chiave, T elemento) {
+        List<T> elementi = indice.get(chiave);
+        if (elementi != null && elementi.removeIf(e -> e == elemento) && elementi.isEmpty()) {
+            indice.remove(chiave);
+        }
+    }
+
+    private boolean indiciAllineati() {
+        return versioneIndici == versione;
+    }
+
+    // Chiamato dai metodi di modifica, prima di aggiornare gli indici.
+    private void allineaIndici() {
+        if (indiciAllineati()) {
+            return;
+        }
+        svuotaIndici();
+        for (int i = 0; i < sezioni.size(); i++) {
+            indicizzaSezione(sezioni.get(i), i);
+        }
+        versioneIndici = versione;
+    }
+
+    private void svuotaIndici() {
+        sezioniPerTitolo.clear();
+        indiciSezioni.clear();
+        posizioniVoci.clear();
+        vociPerId.clear();
+        vociPerRicetta.clear();
+    }
+
+    private static String idRicetta(VoceMenu voce) {
+        return voce.getRicetta() != null ? voce.getRicetta().getId() : null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.catring.model;
+
+public class PosizioneVoce {
+    private final SezioniMenu sezione;
+    private final int indice;
+    private final VoceMenu voce;
+
+    public PosizioneVoce(SezioniMenu sezione, int indice, VoceMenu voce) {
+        this.sezione = sezione;
+        this.indice = indice;
+        this.voce = voce;
+    }
+
+    public SezioniMenu getSezione() { return sezione; }
+
+    public int getIndice() { return indice; }
+
+    public VoceMenu getVoce() { return voce; }
+}
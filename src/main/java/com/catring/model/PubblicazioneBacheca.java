@@ -0,0 +1,26 @@
+package com.catring.model;
+
+import java.time.LocalDateTime;
+
+public class PubblicazioneBacheca {
+    private Menu menu;
+    private LocalDateTime dataPubblicazione;
+    private long sequenza;
+    
+    public PubblicazioneBacheca() {}
+    
+    public PubblicazioneBacheca(Menu menu, LocalDateTime dataPubblicazione, long sequenza) {
+        this.menu = menu;
+        this.dataPubblicazione = dataPubblicazione;
+        this.sequenza = sequenza;
+    }
+
+    public Menu getMenu() { return menu; }
+    public void setMenu(Menu menu) { this.menu = menu; }
+    
+    public LocalDateTime getDataPubblicazione() { return dataPubblicazione; }
+    public void setDataPubblicazione(LocalDateTime dataPubblicazione) { this.dataPubblicazione = dataPubblicazione; }
+    
+    public long getSequenza() { return sequenza; }
+    public void setSequenza(long sequenza) { this.sequenza = sequenza; }
+}
@@ -4,23 +4,28 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class Ricetta {
+    public static final String STATO_BOZZA = "bozza";
+    public static final String STATO_PUBBLICATA = "pubblicata";
+
     private String id;
     private String nome;
     private String descrizione;
     private int tempoPreparazione;
     private String stato;
     private String autore;
-    private List<Ingrediente> ingredienti;
-    private List<Dose> dosi;
-    private List<Preparazione> preparazioni;
-    private List<Tag> tags;
     private int numeroPorte;
+
+    // Ingredienti, dosi, preparazioni e tag si creano al primo accesso a una
+    // delle quattro liste: elencare molte ricette non alloca liste che
+    // nessuno legge. Le sottoclassi legate a un archivio le leggono da li'
+    // in caricaDettagli().
+    private volatile List<Ingrediente> ingredienti;
+    private volatile List<Dose> dosi;
+    private volatile List<Preparazione> preparazioni;
+    private volatile List<Tag> tags;
+    private volatile boolean dettagliPronti;
     
     public Ricetta() {
-        this.ingredienti = new ArrayList<>();
-        this.dosi = new ArrayList<>();
-        this.preparazioni = new ArrayList<>();
-        this.tags = new ArrayList<>();
         this.numeroPorte = 4;
     }
     
@@ -34,25 +39,37 @@ public class Ricetta {
         this.autore = autore;
     }
 
+    // Per le sottoclassi che impostano tutti i campi semplici in una volta.
+    protected Ricetta(String id, String nome, String descrizione, int tempoPreparazione, String stato, String autore,
+                      int numeroPorte) {
+        this.id = id;
+        this.nome = nome;
+        this.descrizione = descrizione;
+        this.tempoPreparazione = tempoPreparazione;
+        this.stato = stato;
+        this.autore = autore;
+        this.numeroPorte = numeroPorte;
+    }
+
     public void aggiungiIngrediente(Ingrediente ingrediente, Dose dose) {
-        this.ingredienti.add(ingrediente);
-        this.dosi.add(dose);
+        getIngredienti().add(ingrediente);
+        getDosi().add(dose);
     }
 
     public void rimuoviIngrediente(Ingrediente ingrediente) {
-        int index = this.ingredienti.indexOf(ingrediente);
+        int index = getIngredienti().indexOf(ingrediente);
         if (index != -1) {
-            this.ingredienti.remove(index);
-            if (index < this.dosi.size()) {
-                this.dosi.remove(index);
+            getIngredienti().remove(index);
+            if (index < getDosi().size()) {
+                getDosi().remove(index);
             }
         }
     }
 
     public Dose getDosePerIngrediente(Ingrediente ingrediente) {
-        int index = this.ingredienti.indexOf(ingrediente);
-        if (index != -1 && index < this.dosi.size()) {
-            return this.dosi.get(index);
+        int index = getIngredienti().indexOf(ingrediente);
+        if (index != -1 && index < getDosi().size()) {
+            return getDosi().get(index);
         }
         return null;
     }
@@ -75,18 +92,72 @@ public class Ricetta {
     public String getAutore() { return autore; }
     public void setAutore(String autore) { this.autore = autore; }
     
-    public List<Ingrediente> getIngredienti() { return ingredienti; }
-    public void setIngredienti(List<Ingrediente> ingredienti) { this.ingredienti = ingredienti; }
+    public List<Ingrediente> getIngredienti() { preparaDettagli(); return ingredienti; }
+    public void setIngredienti(List<Ingrediente> ingredienti) { preparaDettagli(); this.ingredienti = ingredienti; }
     
-    public List<Dose> getDosi() { return dosi; }
-    public void setDosi(List<Dose> dosi) { this.dosi = dosi; }
+    public List<Dose> getDosi() { preparaDettagli(); return dosi; }
+    public void setDosi(List<Dose> dosi) { preparaDettagli(); this.dosi = dosi; }
     
-    public List<Preparazione> getPreparazioni() { return preparazioni; }
-    public void setPreparazioni(List<Preparazione> preparazioni) { this.preparazioni = preparazioni; }
+    public List<Preparazione> getPreparazioni() { preparaDettagli(); return preparazioni; }
+    public void setPreparazioni(List<Preparazione> preparazioni) { preparaDettagli(); this.preparazioni = preparazioni; }
     
-    public List<Tag> getTags() { return tags; }
-    public void setTags(List<Tag> tags) { this.tags = tags; }
+    public List<Tag> getTags() { preparaDettagli(); return tags; }
+    public void setTags(List<Tag> tags) { preparaDettagli(); this.tags = tags; }
     
     public int getNumeroPorte() { return numeroPorte; }
     public void setNumeroPorte(int numeroPorte) { this.numeroPorte = numeroPorte; }
+
+    /**
+     * Imposta le quattro liste in una volta, senza prima crearle o caricarle;
+     * una lista null diventa una lista vuota.
+     */
+    public void setDettagli(List<Ingrediente> ingredienti, List<Dose> dosi, List<Preparazione> preparazioni,
+                            List<Tag> tags) {
+        impostaDettagli(ingredienti, dosi, preparazioni, tags);
+    }
+
+    /** true se le quattro liste sono gia' in memoria. */
+    public boolean isDettagliCaricati() {
+        return dettagliPronti;
+    }
+
+    /**
+     * true se la ricetta non ha certamente ne' ingredienti ne' dosi ne'
+     * preparazioni ne' tag. Chi legge soltanto puo' controllarlo prima dei
+     * getter, che creerebbero o caricherebbero le liste.
+     */
+    public boolean isSenzaDettagli() {
+        return !dettagliPronti && !haDettagliDaCaricare();
+    }
+
+    /** Le sottoclassi legate a un archivio leggono qui le liste e le passano a setDettagli. */
+    protected void caricaDettagli() {
+    }
+
+    protected boolean haDettagliDaCaricare() {
+        return false;
+    }
+
+    private void preparaDettagli() {
+        if (dettagliPronti) {
+            return;
+        }
+        synchronized (this) {
+            if (!dettagliPronti) {
+                caricaDettagli();
+                if (!dettagliPronti) {
+                    impostaDettagli(null, null, null, null);
+                }
+            }
+        }
+    }
+
+    private synchronized void impostaDettagli(List<Ingrediente> ingredienti, List<Dose> dosi,
+                                              List<Preparazione> preparazioni, List<Tag> tags) {
+        this.ingredienti = ingredienti != null ? ingredienti : new ArrayList<>();
+        this.dosi = dosi != null ? dosi : new ArrayList<>();
+        this.preparazioni = preparazioni != null ? preparazioni : new ArrayList<>();
+        this.tags = tags != null ? tags : new ArrayList<>();
+        dettagliPronti = true;
+    }
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package com.catring.observer;
 
 import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+
+import java.util.List;
 
 public interface MenuObserver {
 
@@ -9,4 +12,8 @@ public interface MenuObserver {
     void onMenuUpdated(Menu menu);
 
     void onMenuDeleted(Menu menu);
+
+    // Una sola notifica per ogni blocco inserito, ad esempio da un'importazione.
+    default void onRicetteAggiunte(List<Ricetta> ricette) {
+    }
 }
\ No newline at end of file
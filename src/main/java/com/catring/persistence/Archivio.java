@@ -0,0 +1,44 @@
+package com.catring.persistence;
+
+import com.catring.information_expert.IdGenerator;
+import com.catring.model.Evento;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.PubblicazioneBacheca;
+
+import java.io.Closeable;
+
+/**
+ * Dove MenuService conserva i suoi aggregati: un repository per menu,
+ * ricette, eventi, ingredienti di base e bacheca. Le voci dei menu e i servizi degli
+ * eventi sono salvati con l'id della ricetta o del menu a cui puntano, che
+ * l'archivio risolve in lettura.
+ *
+ * I metodi non dichiarano eccezioni controllate: gli errori dell'archivio
+ * arrivano come {@link ErroreArchivio}.
+ */
+public interface Archivio extends Closeable {
+
+    Repository<Menu> getMenus();
+
+    RepositoryRicette getRicette();
+
+    Repository<Evento> getEventi();
+
+    Repository<Ingrediente> getIngredienti();
+
+    /**
+     * Le pubblicazioni in bacheca, per id del menu, nell'ordine in cui sono
+     * state salvate: e' l'ordine in cui vanno ripubblicate.
+     */
+    Repository<PubblicazioneBacheca> getBacheca();
+
+    /** Byte scritti dall'apertura, per misurare il costo dei salvataggi. */
+    long getByteScritti();
+
+    /** Dove si conservano i limiti degli id riservati per ogni tipo. */
+    IdGenerator.Riserva getRiservaId();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,174 @@
+package com.catring.persistence;
+
+import com.catring.information_expert.IdGenerator;
+import com.catring.model.Evento;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.PubblicazioneBacheca;
+import com.catring.model.Ricetta;
+import com.catring.utils.ValidationUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Archivio che tiene gli oggetti sul heap, senza copiarli: utile nei test
+ * e come riferimento per il comportamento degli altri archivi.
+ */
+public class ArchivioInMemoria implements Archivio {
+
+    private final Repository<Menu> menus = new RepositoryInMemoria<>(Menu::getId);
+    private final RepositoryRicette ricette = new RicetteInMemoria();
+    private final Repository<Evento> eventi = new RepositoryInMemoria<>(Evento::getId);
+    private final Repository<Ingrediente> ingredienti = new RepositoryInMemoria<>(Ingrediente::getId);
+    private final Repository<PubblicazioneBacheca> bacheca =
+            new RepositoryInMemoria<>(pubblicazione -> pubblicazione.getMenu().getId());
+    private final Map<String, Long> limitiId = new LinkedHashMap<>();
+
+    @Override
+    public Repository<Menu> getMenus() { return menus; }
+
+    @Override
+    public RepositoryRicette getRicette() { return ricette; }
+
+    @Override
+    public Repository<Evento> getEventi() { return eventi; }
+
+    @Override
+    public Repository<Ingrediente> getIngredienti() { return ingredienti; }
+
+    @Override
+    public Repository<PubblicazioneBacheca> getBacheca() { return bacheca; }
+
+    // Gli oggetti non vengono copiati: non si scrive niente.
+    @Override
+    public long getByteScritti() {
+        return 0;
+    }
+
+    @Override
+    public IdGenerator.Riserva getRiservaId() {
+        return new IdGenerator.Riserva() {
+            @Override
+            public Map<String, Long> limiti() {
+                synchronized (limitiId) {
+                    return new LinkedHashMap<>(limitiId);
+                }
+            }
+
+            @Override
+            public void salvaLimite(String prefisso, long limite) {
+                synchronized (limitiId) {
+                    limitiId.merge(prefisso, limite, Math::max);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        // Niente da rilasciare.
+    }
+
+    private static class RepositoryInMemoria<T> implements Repository<T> {
+
+        protected final Map<String, T> elementi = new LinkedHashMap<>();
+        private final Function<T, String> id;
+
+        RepositoryInMemoria(Function<T, String> id) {
+            this.id = id;
+        }
+
+        @Override
+        public synchronized T trova(String id) {
+            return elementi.get(id);
+        }
+
+        @Override
+        public synchronized List<T> tutti() {
+            return new ArrayList<>(elementi.values());
+        }
+
+        @Override
+        public synchronized List<T> elenca(int inizio, int quanti) {
+            List<T> pagina = new ArrayList<>(Math.max(0, Math.min(quanti, elementi.size() - inizio)));
+            int posizione = 0;
+            for (T elemento : elementi.values()) {
+                if (posizione >= inizio + quanti) {
+                    break;
+                }
+                if (posizione >= inizio) {
+                    pagina.add(elemento);
+                }
+                posizione++;
+            }
+            return pagina;
+        }
+
+        @Override
+        public synchronized int conta() {
+            return elementi.size();
+        }
+
+        @Override
+        public synchronized void scorriId(Consumer<String> azione) {
+            elementi.keySet().forEach(azione);
+        }
+
+        @Override
+        public synchronized void salva(T elemento) {
+            elementi.put(id.apply(elemento), elemento);
+        }
+
+        @Override
+        public synchronized void salvaTutti(Collection<? extends T> daSalvare) {
+            for (T elemento : daSalvare) {
+                salva(elemento);
+            }
+        }
+
+        @Override
+        public synchronized boolean elimina(String id) {
+            return elementi.remove(id) != null;
+        }
+    }
+
+    private static final class RicetteInMemoria extends RepositoryInMemoria<Ricetta> implements RepositoryRicette {
+
+        RicetteInMemoria() {
+            super(Ricetta::getId);
+        }
+
+        @Override
+        public synchronized Ricetta trovaPerNome(String nome) {
+            String chiave = ValidationUtils.normalizeKey(nome);
+            for (Ricetta ricetta : elementi.values()) {
+                if (ValidationUtils.normalizeKey(ricetta.getNome()).equals(chiave)) {
+                    return ricetta;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public synchronized List<Ricetta> trovaPerStato(String stato) {
+            List<Ricetta> trovate = new ArrayList<>();
+            for (Ricetta ricetta : elementi.values()) {
+                if (stato.equals(ricetta.getStato())) {
+                    trovate.add(ricetta);
+                }
+            }
+            return trovate;
+        }
+
+        @Override
+        public synchronized int contaPerStato(String stato) {
+            return trovaPerStato(stato).size();
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package com.catring.persistence;
+
+import com.catring.information_expert.IdGenerator;
+import com.catring.model.Evento;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.PubblicazioneBacheca;
+import com.catring.model.Ricetta;
+import com.catring.utils.ValidationUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Archivio su un database embedded (H2). Ogni aggregato e' una riga: le
+ * colonne indicizzate servono alle ricerche (id, nome, e per le ricette
+ * nome normalizzato e stato), il resto sta in una colonna binaria
+ * codificata con {@link CodificaModello}, come nel journal.
+ *
+ * I salvataggi multipli usano il batching dei PreparedStatement in
+ * un'unica transazione. Le righe lette vengono decodificate dopo aver
+ * restituito la connessione al pool, perche' risolvere le ricette di un
+ * menu richiede altre query.
+ */
+public class ArchivioJdbc implements Archivio {
+
+    public static final int CONNESSIONI_PREDEFINITE = 4;
+
+    private static final int LOTTO = 1000;
+
+    private final PoolConnessioni pool;
+    private final RicetteJdbc ricette;
+    private final RepositoryJdbc<Menu> menus;
+    private final RepositoryJdbc<Evento> eventi;
+    private final RepositoryJdbc<Ingrediente> ingredienti;
+    private final RepositoryJdbc<PubblicazioneBacheca> bacheca;
+    private final LongAdder byteScritti = new LongAdder();
+
+    public ArchivioJdbc(String url, int connessioni) {
+        this.pool = new PoolConnessioni(url, connessioni);
+        this.ricette = new RicetteJdbc();
+        this.menus = new RepositoryJdbc<>("menu", Menu::getId, Menu::getNome,
+                CodificaModello.DIRETTA::scriviMenu, in -> CodificaModello.DIRETTA.leggiMenu(in, ricette::trova));
+        this.eventi = new RepositoryJdbc<>("evento", Evento::getId, Evento::getTipo,
+                CodificaModello.DIRETTA::scriviEvento, in -> CodificaModello.DIRETTA.leggiEvento(in, menus::trova));
+        this.ingredienti = new RepositoryJdbc<>("ingrediente", Ingrediente::getId, Ingrediente::getNome,
+                CodificaModello.DIRETTA::scriviIngrediente, CodificaModello.DIRETTA::leggiIngrediente);
+        this.bacheca = new RepositoryJdbc<>("bacheca", pubblicazione -> pubblicazione.getMenu().getId(),
+                pubblicazione -> pubblicazione.getMenu().getNome(), CodificaModello.DIRETTA::scriviPubblicazione,
+                in -> CodificaModello.DIRETTA.leggiPubblicazione(in, menus::trova));
+        try {
+            creaTabelle();
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /** Apre (o crea) il database H2 nel file indicato, senza estensione. */
+    public static ArchivioJdbc apriH2(Path file) {
+        return new ArchivioJdbc("jdbc:h2:file:" + file.toAbsolutePath(), CONNESSIONI_PREDEFINITE);
+    }
+
+    @Override
+    public Repository<Menu> getMenus() { return menus; }
+
+    @Override
+    public RepositoryRicette getRicette() { return ricette; }
+
+    @Override
+    public Repository<Evento> getEventi() { return eventi; }
+
+    @Override
+    public Repository<Ingrediente> getIngredienti() { return ingredienti; }
+
+    @Override
+    public Repository<PubblicazioneBacheca> getBacheca() { return bacheca; }
+
+    /** Byte dei record codificati scritti nel database dall'apertura. */
+    @Override
+    public long getByteScritti() {
+        return byteScritti.sum();
+    }
+
+    @Override
+    public IdGenerator.Riserva getRiservaId() {
+        return new IdGenerator.Riserva() {
+            @Override
+            public Map<String, Long> limiti() {
+                return esegui(connessione -> {
+                    Map<String, Long> limiti = new LinkedHashMap<>();
+                    try (Statement statement = connessione.createStatement();
+                         ResultSet righe = statement.executeQuery("SELECT prefisso, limite FROM limite_id")) {
+                        while (righe.next()) {
+                            limiti.put(righe.getString(1), righe.getLong(2));
+                        }
+                    }
+                    return limiti;
+                });
+            }
+
+            @Override
+            public void salvaLimite(String prefisso, long limite) {
+                esegui(connessione -> {
+                    try (PreparedStatement statement = connessione.prepareStatement(
+                            "MERGE INTO limite_id (prefisso, limite) KEY (prefisso) VALUES (?, ?)")) {
+                        statement.setString(1, prefisso);
+                        statement.setLong(2, limite);
+                        statement.executeUpdate();
+                    }
+                    return null;
+                });
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        try {
+            pool.close();
+        } catch (SQLException e) {
+            throw new ErroreArchivio("Chiusura dell'archivio fallita", e);
+        }
+    }
+
+    private void creaTabelle() {
+        esegui(connessione -> {
+            try (Statement statement = connessione.createStatement()) {
+                for (RepositoryJdbc<?> repository : List.of(ricette, menus, eventi, ingredienti, bacheca)) {
+                    statement.execute("CREATE TABLE IF NOT EXISTS " + repository.tabella
+                            + " (ordine BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                            + " id VARCHAR NOT NULL UNIQUE, nome VARCHAR"
+                            + repository.definizioniAggiuntive() + ", dati VARBINARY NOT NULL)");
+                    statement.execute("CREATE INDEX IF NOT EXISTS " + repository.tabella + "_nome ON "
+                            + repository.tabella + " (nome)");
+                }
+                statement.execute("CREATE INDEX IF NOT EXISTS ricetta_chiave_nome ON ricetta (chiave_nome)");
+                statement.execute("CREATE INDEX IF NOT EXISTS ricetta_stato ON ricetta (stato, ordine)");
+                statement.execute("CREATE TABLE IF NOT EXISTS limite_id (prefisso VARCHAR PRIMARY KEY, limite BIGINT NOT NULL)");
+            }
+            return null;
+        });
+    }
+
+    private <R> R esegui(OperazioneJdbc<R> operazione) {
+        Connection connessione = null;
+        try {
+            connessione = pool.prendi();
+            return operazione.esegui(connessione);
+        } catch (SQLException e) {
+            throw new ErroreArchivio("Operazione sull'archivio fallita: " + e.getMessage(), e);
+        } finally {
+            if (connessione != null) {
+                pool.restituisci(connessione);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface OperazioneJdbc<R> {
+        R esegui(Connection connessione) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface Scrittura<T> {
+        void scrivi(DataOutput out, T elemento) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Lettura<T> {
+        T leggi(DataInput in) throws IOException;
+    }
+
+    private class RepositoryJdbc<T> implements Repository<T> {
+
+        final String tabella;
+        private final Function<T, String> id;
+        private final Function<T, String> nome;
+        private final Scrittura<T> scrittura;
+        private final Lettura<T> lettura;
+
+        RepositoryJdbc(String tabella, Function<T, String> id, Function<T, String> nome,
+                       Scrittura<T> scrittura, Lettura<T> lettura) {
+            this.tabella = tabella;
+            this.id = id;
+            this.nome = nome;
+            this.scrittura = scrittura;
+            this.lettura = lettura;
+        }
+
+        String definizioniAggiuntive() {
+            return "";
+        }
+
+        String colonneAggiuntive() {
+            return "";
+        }
+
+        String segnapostoAggiuntivi() {
+            return "";
+        }
+
+        int impostaAggiuntive(PreparedStatement statement, int indice, T elemento) throws SQLException {
+            return indice;
+        }
+
+        @Override
+        public T trova(String idCercato) {
+            List<T> trovati = leggi("SELECT dati FROM " + tabella + " WHERE id = ?", idCercato);
+            return trovati.isEmpty() ? null : trovati.get(0);
+        }
+
+        @Override
+        public List<T> tutti() {
+            return leggi("SELECT dati FROM " + tabella + " ORDER BY ordine");
+        }
+
+        @Override
+        public List<T> elenca(int inizio, int quanti) {
+            return leggi("SELECT dati FROM " + tabella + " ORDER BY ordine LIMIT ? OFFSET ?", quanti, inizio);
+        }
+
+        @Override
+        public int conta() {
+            return contaDove("", new Object[0]);
+        }
+
+        @Override
+        public void scorriId(Consumer<String> azione) {
+            esegui(connessione -> {
+                try (PreparedStatement statement = connessione.prepareStatement("SELECT id FROM " + tabella)) {
+                    statement.setFetchSize(LOTTO);
+                    try (ResultSet risultato = statement.executeQuery()) {
+                        while (risultato.next()) {
+                            azione.accept(risultato.getString(1));
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+
+        int contaDove(String condizione, Object[] parametri) {
+            return esegui(connessione -> {
+                try (PreparedStatement statement = connessione.prepareStatement(
+                        "SELECT COUNT(*) FROM " + tabella + condizione)) {
+                    imposta(statement, parametri);
+                    try (ResultSet risultato = statement.executeQuery()) {
+                        risultato.next();
+                        return risultato.getInt(1);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void salva(T elemento) {
+            byte[] dati = codifica(elemento);
+            esegui(connessione -> {
+                try (PreparedStatement statement = connessione.prepareStatement(sqlMerge())) {
+                    imposta(statement, elemento, dati);
+                    statement.executeUpdate();
+                }
+                byteScritti.add(dati.length);
+                return null;
+            });
+        }
+
+        @Override
+        public void salvaTutti(Collection<? extends T> elementi) {
+            esegui(connessione -> {
+                connessione.setAutoCommit(false);
+                try (PreparedStatement statement = connessione.prepareStatement(sqlMerge())) {
+                    int inLotto = 0;
+                    long byteNelSalvataggio = 0;
+                    for (T elemento : elementi) {
+                        byte[] dati = codifica(elemento);
+                        byteNelSalvataggio += dati.length;
+                        imposta(statement, elemento, dati);
+                        statement.addBatch();
+                        if (++inLotto == LOTTO) {
+                            statement.executeBatch();
+                            inLotto = 0;
+                        }
+                    }
+                    if (inLotto > 0) {
+                        statement.executeBatch();
+                    }
+                    connessione.commit();
+                    byteScritti.add(byteNelSalvataggio);
+                } catch (SQLException | RuntimeException e) {
+                    connessione.rollback();
+                    throw e;
+                } finally {
+                    connessione.setAutoCommit(true);
+                }
+                return null;
+            });
+        }
+
+        @Override
+        public boolean elimina(String idDaEliminare) {
+            return esegui(connessione -> {
+                try (PreparedStatement statement = connessione.prepareStatement(
+                        "DELETE FROM " + tabella + " WHERE id = ?")) {
+                    statement.setString(1, idDaEliminare);
+                    return statement.executeUpdate() > 0;
+                }
+            });
+        }
+
+        private String sqlMerge() {
+            return "MERGE INTO " + tabella + " (id, nome" + colonneAggiuntive() + ", dati) KEY (id) VALUES (?, ?"
+                    + segnapostoAggiuntivi() + ", ?)";
+        }
+
+        private void imposta(PreparedStatement statement, T elemento, byte[] dati) throws SQLException {
+            statement.setString(1, id.apply(elemento));
+            statement.setString(2, nome.apply(elemento));
+            int indice = impostaAggiuntive(statement, 3, elemento);
+            statement.setBytes(indice, dati);
+        }
+
+        List<T> leggi(String sql, Object... parametri) {
+            List<byte[]> righe = esegui(connessione -> {
+                try (PreparedStatement statement = connessione.prepareStatement(sql)) {
+                    imposta(statement, parametri);
+                    List<byte[]> lette = new ArrayList<>();
+                    try (ResultSet risultato = statement.executeQuery()) {
+                        while (risultato.next()) {
+                            lette.add(risultato.getBytes(1));
+                        }
+                    }
+                    return lette;
+                }
+            });
+            List<T> elementi = new ArrayList<>(righe.size());
+            for (byte[] riga : righe) {
+                elementi.add(decodifica(riga));
+            }
+            return elementi;
+        }
+
+        private void imposta(PreparedStatement statement, Object[] parametri) throws SQLException {
+            for (int i = 0; i < parametri.length; i++) {
+                statement.setObject(i + 1, parametri[i]);
+            }
+        }
+
+        private byte[] codifica(T elemento) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+            try {
+                scrittura.scrivi(new DataOutputStream(buffer), elemento);
+            } catch (IOException e) {
+                // Si scrive in memoria: non puo' succedere.
+                throw new ErroreArchivio("Codifica fallita su " + tabella, e);
+            }
+            return buffer.toByteArray();
+        }
+
+        T decodifica(byte[] dati) {
+            try {
+                return lettura.leggi(new IngressoBuffer(ByteBuffer.wrap(dati)));
+            } catch (IOException e) {
+                throw new ErroreArchivio("Riga non valida in " + tabella, e);
+            }
+        }
+    }
+
+    private final class RicetteJdbc extends RepositoryJdbc<Ricetta> implements RepositoryRicette {
+
+        RicetteJdbc() {
+            super("ricetta", Ricetta::getId, Ricetta::getNome,
+                    CodificaModello.DIRETTA::scriviRicetta, CodificaModello.DIRETTA::leggiRicetta);
+        }
+
+        // Le liste della ricetta si decodificano solo se qualcuno le legge.
+        @Override
+        Ricetta decodifica(byte[] dati) {
+            try {
+                return RicettaArchiviata.leggi(dati);
+            } catch (IOException e) {
+                throw new ErroreArchivio("Riga non valida in ricetta", e);
+            }
+        }
+
+        @Override
+        String definizioniAggiuntive() {
+            return ", chiave_nome VARCHAR, stato VARCHAR";
+        }
+
+        @Override
+        String colonneAggiuntive() {
+            return ", chiave_nome, stato";
+        }
+
+        @Override
+        String segnapostoAggiuntivi() {
+            return ", ?, ?";
+        }
+
+        @Override
+        int impostaAggiuntive(PreparedStatement statement, int indice, Ricetta ricetta) throws SQLException {
+            statement.setString(indice, ValidationUtils.normalizeKey(ricetta.getNome()));
+            statement.setString(indice + 1, ricetta.getStato());
+            return indice + 2;
+        }
+
+        @Override
+        public Ricetta trovaPerNome(String nomeCercato) {
+            List<Ricetta> trovate = leggi("SELECT dati FROM ricetta WHERE chiave_nome = ? ORDER BY ordine LIMIT 1",
+                    ValidationUtils.normalizeKey(nomeCercato));
+            return trovate.isEmpty() ? null : trovate.get(0);
+        }
+
+        @Override
+        public List<Ricetta> trovaPerStato(String stato) {
+            return leggi("SELECT dati FROM ricetta WHERE stato = ? ORDER BY ordine", stato);
+        }
+
+        @Override
+        public int contaPerStato(String stato) {
+            return contaDove(" WHERE stato = ?", new Object[] {stato});
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.catring.persistence;
+
+import com.catring.model.Ricetta;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Ricettario condiviso in sola lettura su un file mappato in memoria. Sul
+ * heap restano la tabella delle etichette e una cache LRU delle ricette
+ * usate di recente; ogni ricetta e' una {@link RicettaMappata}, che legge
+ * ingredienti, dosi, preparazioni e tag dal file solo quando servono.
+ *
+ * Formato: intestazione, i record delle ricette codificati con
+ * {@link CodificaModello}, l'indice (posizione di ogni record in ordine di
+ * catalogo, poi i numeri d'ordine ordinati per id per la ricerca binaria)
+ * e la tabella delle etichette. Il file e' mappato per intero, quindi non
+ * puo' superare i 2 GB.
+ */
+public final class CatalogoRicette implements Closeable {
+
+    public static final int CAPACITA_CACHE_PREDEFINITA = 10_000;
+
+    private static final int MAGIA = 0x43524354;
+    private static final int VERSIONE = 1;
+    private static final int INTESTAZIONE = 4 + 4 + 4 + 8 + 8;
+    private static final int BUFFER = 1 << 16;
+
+    private final Path file;
+    private final FileChannel canale;
+    private final ByteBuffer dati;
+    private final int numeroRicette;
+    private final int posizioneOrdine;
+    private final int posizionePerId;
+    private final LetturaConTabella codifica;
+    private final Map<Integer, RicettaMappata> cache;
+
+    private CatalogoRicette(Path file, FileChannel canale, ByteBuffer dati, int numeroRicette, int posizioneIndice,
+                            String[] tabella, int capacitaCache) {
+        this.file = file;
+        this.canale = canale;
+        this.dati = dati;
+        this.numeroRicette = numeroRicette;
+        this.posizioneOrdine = posizioneIndice;
+        this.posizionePerId = posizioneIndice + numeroRicette * 4;
+        this.codifica = new LetturaConTabella(tabella);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, RicettaMappata> piuVecchia) {
+                return size() > capacitaCache;
+            }
+        };
+    }
+
+    public static void scrivi(Path file, Collection<Ricetta> ricette) throws IOException {
+        Path temporaneo = file.resolveSibling(file.getFileName() + ".tmp");
+        ScritturaConTabella codifica = new ScritturaConTabella();
+        int numero = ricette.size();
+        int[] posizioni = new int[numero];
+        String[] ids = new String[numero];
+        Set<String> idVisti = new HashSet<>(numero * 4 / 3 + 1);
+        try (FileChannel canale = FileChannel.open(temporaneo, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(canale), BUFFER));
+            out.writeInt(MAGIA);
+            out.writeInt(VERSIONE);
+            out.writeInt(numero);
+            out.writeLong(0L);
+            out.writeLong(0L);
+
+            int i = 0;
+            for (Ricetta ricetta : ricette) {
+                if (ricetta.getId() == null || !idVisti.add(ricetta.getId())) {
+                    throw new IllegalArgumentException("Id di ricetta mancante o duplicato: " + ricetta.getId());
+                }
+                posizioni[i] = posizioneCorrente(out);
+                ids[i] = ricetta.getId();
+                codifica.scriviRicetta(out, ricetta);
+                i++;
+            }
+
+            long posizioneIndice = posizioneCorrente(out);
+            for (int posizione : posizioni) {
+                out.writeInt(posizione);
+            }
+            Integer[] perId = new Integer[numero];
+            for (int j = 0; j < numero; j++) {
+                perId[j] = j;
+            }
+            Arrays.sort(perId, Comparator.comparing(j -> ids[j]));
+            for (Integer ordine : perId) {
+                out.writeInt(ordine);
+            }
+
+            long posizioneTabella = posizioneCorrente(out);
+            codifica.scriviTabella(out);
+            out.flush();
+            if (canale.size() > Integer.MAX_VALUE) {
+                throw new IOException("Catalogo oltre i 2 GB non supportato: " + file);
+            }
+            ByteBuffer posizioniIndice = ByteBuffer.allocate(16).putLong(posizioneIndice).putLong(posizioneTabella);
+            posizioniIndice.flip();
+            canale.write(posizioniIndice, 12);
+            canale.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporaneo);
+            throw e;
+        }
+        Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileIstantanea.forzaCartella(file.toAbsolutePath().getParent());
+    }
+
+    // DataOutputStream conta fino a Integer.MAX_VALUE: oltre il catalogo non e' comunque mappabile.
+    private static int posizioneCorrente(DataOutputStream out) throws IOException {
+        if (out.size() == Integer.MAX_VALUE) {
+            throw new IOException("Catalogo oltre i 2 GB non supportato");
+        }
+        return out.size();
+    }
+
+    public static CatalogoRicette apri(Path file) throws IOException {
+        return apri(file, CAPACITA_CACHE_PREDEFINITA);
+    }
+
+    public static CatalogoRicette apri(Path file, int capacitaCache) throws IOException {
+        FileChannel canale = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long dimensione = canale.size();
+            if (dimensione < INTESTAZIONE || dimensione > Integer.MAX_VALUE) {
+                throw new IOException("File di catalogo non valido: " + file);
+            }
+            ByteBuffer dati = canale.map(FileChannel.MapMode.READ_ONLY, 0, dimensione);
+            if (dati.getInt(0) != MAGIA) {
+                throw new IOException("File di catalogo non valido: " + file);
+            }
+            int versione = dati.getInt(4);
+            if (versione != VERSIONE) {
+                throw new IOException("Versione di catalogo non supportata: " + versione);
+            }
+            int numero = dati.getInt(8);
+            long posizioneIndice = dati.getLong(12);
+            long posizioneTabella = dati.getLong(20);
+            if (numero < 0 || posizioneIndice < INTESTAZIONE
+                    || posizioneIndice + numero * 8L != posizioneTabella || posizioneTabella >= dimensione) {
+                throw new IOException("Catalogo incompleto: " + file);
+            }
+            ByteBuffer tabella = dati.duplicate();
+            tabella.position((int) posizioneTabella);
+            return new CatalogoRicette(file, canale, dati, numero, (int) posizioneIndice,
+                    LetturaConTabella.leggiTabella(new IngressoBuffer(tabella)), capacitaCache);
+        } catch (IOException | RuntimeException e) {
+            canale.close();
+            throw e;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int size() {
+        return numeroRicette;
+    }
+
+    /** La ricetta in questa posizione del catalogo. */
+    public Ricetta get(int posizione) {
+        if (posizione < 0 || posizione >= numeroRicette) {
+            throw new IndexOutOfBoundsException("Posizione " + posizione + " su " + numeroRicette);
+        }
+        synchronized (cache) {
+            RicettaMappata ricetta = cache.get(posizione);
+            if (ricetta != null) {
+                return ricetta;
+            }
+        }
+        RicettaMappata letta = leggiIntestazione(posizione);
+        synchronized (cache) {
+            RicettaMappata giaInCache = cache.putIfAbsent(posizione, letta);
+            return giaInCache != null ? giaInCache : letta;
+        }
+    }
+
+    /** La ricetta con questo id, o null se il catalogo non la contiene. */
+    public Ricetta trova(String id) {
+        if (id == null) {
+            return null;
+        }
+        int basso = 0;
+        int alto = numeroRicette - 1;
+        while (basso <= alto) {
+            int medio = (basso + alto) >>> 1;
+            int posizione = dati.getInt(posizionePerId + medio * 4);
+            int confronto = leggiId(posizione).compareTo(id);
+            if (confronto == 0) {
+                return get(posizione);
+            }
+            if (confronto < 0) {
+                basso = medio + 1;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        return null;
+    }
+
+    /** Vista del catalogo come lista non modificabile, in ordine di catalogo. */
+    public List<Ricetta> comeLista() {
+        return new VistaCatalogo();
+    }
+
+    public int getRicetteInCache() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    // La mappatura resta valida finche' il buffer non viene raccolto dal GC:
+    // le ricette gia' consegnate continuano a caricare i dettagli.
+    @Override
+    public void close() throws IOException {
+        synchronized (cache) {
+            cache.clear();
+        }
+        canale.close();
+    }
+
+    private IngressoBuffer ingresso(int posizioneRecord) {
+        ByteBuffer vista = dati.duplicate();
+        vista.position(posizioneRecord);
+        return new IngressoBuffer(vista);
+    }
+
+    private String leggiId(int posizione) {
+        try {
+            return codifica.leggiStringa(ingresso(dati.getInt(posizioneOrdine + posizione * 4)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Catalogo danneggiato: " + file, e);
+        }
+    }
+
+    private RicettaMappata leggiIntestazione(int posizione) {
+        IngressoBuffer in = ingresso(dati.getInt(posizioneOrdine + posizione * 4));
+        try {
+            return new RicettaMappata(this, codifica.leggiStringa(in), codifica.leggiStringa(in),
+                    codifica.leggiStringa(in), CodificaModello.leggiVarint(in), codifica.leggiEtichetta(in),
+                    codifica.leggiEtichetta(in), CodificaModello.leggiVarint(in), in.posizione());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Catalogo danneggiato: " + file, e);
+        }
+    }
+
+    Ricetta leggiDettagli(int posizioneDettagli) {
+        Ricetta dettagli = new Ricetta();
+        try {
+            codifica.leggiDettagliRicetta(ingresso(posizioneDettagli), dettagli);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Catalogo danneggiato: " + file, e);
+        }
+        return dettagli;
+    }
+
+    private final class VistaCatalogo extends AbstractList<Ricetta> implements RandomAccess {
+
+        @Override
+        public Ricetta get(int indice) {
+            return CatalogoRicette.this.get(indice);
+        }
+
+        @Override
+        public int size() {
+            return numeroRicette;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.catring.persistence;
+
+import com.catring.model.Cliente;
+import com.catring.model.Dose;
+import com.catring.model.Evento;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.Preparazione;
+import com.catring.model.PubblicazioneBacheca;
+import com.catring.model.Ricetta;
+import com.catring.model.Servizio;
+import com.catring.model.SezioniMenu;
+import com.catring.model.Tag;
+import com.catring.model.VoceMenu;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Codifica binaria compatta degli oggetti del modello. Interi e lunghezze
+ * sono varint, i testi UTF-8 preceduti dalla lunghezza (0 indica null).
+ * Le voci dei menu salvano solo l'id della ricetta, che in lettura viene
+ * risolto con la funzione passata dal chiamante.
+ *
+ * I testi che si ripetono molto (stati, autori, unita', nomi degli
+ * ingredienti, tag...) passano da {@link #scriviEtichetta}: qui sono scritti
+ * come gli altri, le sottoclassi possono metterli in una tabella di stringhe.
+ */
+public class CodificaModello {
+
+    public static final CodificaModello DIRETTA = new CodificaModello();
+
+    protected CodificaModello() {}
+
+    public static void scriviVarint(DataOutput out, int valore) throws IOException {
+        while ((valore & ~0x7F) != 0) {
+            out.writeByte((valore & 0x7F) | 0x80);
+            valore >>>= 7;
+        }
+        out.writeByte(valore);
+    }
+
+    public static int leggiVarint(DataInput in) throws IOException {
+        int valore = 0;
+        for (int spostamento = 0; spostamento < 32; spostamento += 7) {
+            byte b = in.readByte();
+            valore |= (b & 0x7F) << spostamento;
+            if ((b & 0x80) == 0) {
+                return valore;
+            }
+        }
+        throw new IOException("Varint non valido");
+    }
+
+    public static void scriviTesto(DataOutput out, String testo) throws IOException {
+        if (testo == null) {
+            scriviVarint(out, 0);
+            return;
+        }
+        byte[] byteTesto = testo.getBytes(StandardCharsets.UTF_8);
+        scriviVarint(out, byteTesto.length + 1);
+        out.write(byteTesto);
+    }
+
+    public static String leggiTesto(DataInput in) throws IOException {
+        int lunghezza = leggiVarint(in);
+        if (lunghezza == 0) {
+            return null;
+        }
+        byte[] byteTesto = new byte[lunghezza - 1];
+        in.readFully(byteTesto);
+        return new String(byteTesto, StandardCharsets.UTF_8);
+    }
+
+    protected void scriviStringa(DataOutput out, String testo) throws IOException {
+        scriviTesto(out, testo);
+    }
+
+    protected String leggiStringa(DataInput in) throws IOException {
+        return leggiTesto(in);
+    }
+
+    protected void scriviEtichetta(DataOutput out, String testo) throws IOException {
+        scriviStringa(out, testo);
+    }
+
+    protected String leggiEtichetta(DataInput in) throws IOException {
+        return leggiStringa(in);
+    }
+
+    public void scriviIngrediente(DataOutput out, Ingrediente ingrediente) throws IOException {
+        scriviEtichetta(out, ingrediente.getId());
+        scriviEtichetta(out, ingrediente.getNome());
+        scriviEtichetta(out, ingrediente.getTipo());
+        scriviEtichetta(out, ingrediente.getUnitaMisura());
+    }
+
+    public Ingrediente leggiIngrediente(DataInput in) throws IOException {
+        return new Ingrediente(leggiEtichetta(in), leggiEtichetta(in), leggiEtichetta(in), leggiEtichetta(in));
+    }
+
+    public void scriviRicetta(DataOutput out, Ricetta ricetta) throws IOException {
+        scriviStringa(out, ricetta.getId());
+        scriviStringa(out, ricetta.getNome());
+        scriviStringa(out, ricetta.getDescrizione());
+        scriviVarint(out, ricetta.getTempoPreparazione());
+        scriviEtichetta(out, ricetta.getStato());
+        scriviEtichetta(out, ricetta.getAutore());
+        scriviVarint(out, ricetta.getNumeroPorte());
+
+        if (ricetta.isSenzaDettagli()) {
+            // Liste mai create: zero ingredienti, tag e preparazioni.
+            for (int i = 0; i < 3; i++) {
+                scriviVarint(out, 0);
+            }
+            return;
+        }
+        scriviVarint(out, ricetta.getIngredienti().size());
+        for (int i = 0; i < ricetta.getIngredienti().size(); i++) {
+            scriviIngrediente(out, ricetta.getIngredienti().get(i));
+            Dose dose = i < ricetta.getDosi().size() ? ricetta.getDosi().get(i) : null;
+            out.writeBoolean(dose != null);
+            if (dose != null) {
+                out.writeDouble(dose.getQuantitativo());
+                scriviEtichetta(out, dose.getUnitaMisura());
+            }
+        }
+
+        scriviVarint(out, ricetta.getTags().size());
+        for (Tag tag : ricetta.getTags()) {
+            scriviEtichetta(out, tag.getNome());
+        }
+
+        scriviVarint(out, ricetta.getPreparazioni().size());
+        for (Preparazione preparazione : ricetta.getPreparazioni()) {
+            scriviStringa(out, preparazione.getId());
+            scriviStringa(out, preparazione.getNome());
+            scriviStringa(out, preparazione.getDescrizione());
+            scriviVarint(out, preparazione.getTempoEsecuzione());
+            scriviStringa(out, preparazione.getNote());
+            scriviEtichetta(out, preparazione.getStato());
+            scriviEtichetta(out, preparazione.getAutore());
+        }
+    }
+
+    public Ricetta leggiRicetta(DataInput in) throws IOException {
+        Ricetta ricetta = new Ricetta(leggiStringa(in), leggiStringa(in), leggiStringa(in),
+                leggiVarint(in), leggiEtichetta(in), leggiEtichetta(in));
+        ricetta.setNumeroPorte(leggiVarint(in));
+        leggiDettagliRicetta(in, ricetta);
+        return ricetta;
+    }
+
+    /**
+     * Ingredienti con le dosi, tag e preparazioni: nel record seguono i campi
+     * semplici della ricetta. Se sono tutti vuoti la ricetta resta senza liste.
+     */
+    public void leggiDettagliRicetta(DataInput in, Ricetta ricetta) throws IOException {
+        // Liste dimensionate esattamente: con molte ricette la capacita'
+        // predefinita di ArrayList pesa piu' dei dati.
+        int numeroIngredienti = leggiVarint(in);
+        List<Ingrediente> ingredienti = numeroIngredienti > 0 ? new ArrayList<>(numeroIngredienti) : null;
+        List<Dose> dosi = numeroIngredienti > 0 ? new ArrayList<>(numeroIngredienti) : null;
+        for (int i = 0; i < numeroIngredienti; i++) {
+            ingredienti.add(leggiIngrediente(in));
+            dosi.add(in.readBoolean() ? new Dose(in.readDouble(), leggiEtichetta(in)) : null);
+        }
+
+        int numeroTag = leggiVarint(in);
+        List<Tag> tags = numeroTag > 0 ? new ArrayList<>(numeroTag) : null;
+        for (int i = 0; i < numeroTag; i++) {
+            tags.add(new Tag(leggiEtichetta(in)));
+        }
+
+        int numeroPreparazioni = leggiVarint(in);
+        List<Preparazione> preparazioni = numeroPreparazioni > 0 ? new ArrayList<>(numeroPreparazioni) : null;
+        for (int i = 0; i < numeroPreparazioni; i++) {
+            preparazioni.add(new Preparazione(leggiStringa(in), leggiStringa(in), leggiStringa(in),
+                    leggiVarint(in), leggiStringa(in), leggiEtichetta(in), leggiEtichetta(in)));
+        }
+
+        if (ingredienti != null || tags != null || preparazioni != null) {
+            ricetta.setDettagli(ingredienti, dosi, preparazioni, tags);
+        }
+    }
+
+    /** Copia i dati di una ricetta letta in quella gia' presente, che le voci dei menu referenziano. */
+    public static void copiaRicetta(Ricetta sorgente, Ricetta destinazione) {
+        destinazione.setNome(sorgente.getNome());
+        destinazione.setDescrizione(sorgente.getDescrizione());
+        destinazione.setTempoPreparazione(sorgente.getTempoPreparazione());
+        destinazione.setStato(sorgente.getStato());
+        destinazione.setAutore(sorgente.getAutore());
+        destinazione.setNumeroPorte(sorgente.getNumeroPorte());
+        destinazione.setDettagli(sorgente.getIngredienti(), sorgente.getDosi(), sorgente.getPreparazioni(),
+                sorgente.getTags());
+    }
+
+    public void scriviVoce(DataOutput out, VoceMenu voce) throws IOException {
+        scriviStringa(out, voce.getId());
+        scriviStringa(out, voce.getNomeVisuale());
+        scriviStringa(out, voce.getRiferimento());
+        scriviStringa(out, voce.getModificheTesto());
+        scriviStringa(out, voce.getRicetta() != null ? voce.getRicetta().getId() : null);
+    }
+
+    public VoceMenu leggiVoce(DataInput in, Function<String, Ricetta> ricettePerId) throws IOException {
+        VoceMenu voce = new VoceMenu(leggiStringa(in), leggiStringa(in), leggiStringa(in), leggiStringa(in));
+        String ricettaId = leggiStringa(in);
+        if (ricettaId != null) {
+            voce.setRicetta(ricettePerId.apply(ricettaId));
+        }
+        return voce;
+    }
+
+    public void scriviSezione(DataOutput out, SezioniMenu sezione) throws IOException {
+        scriviStringa(out, sezione.getId());
+        scriviStringa(out, sezione.getTitolo());
+        scriviVarint(out, sezione.getOrdine());
+        scriviVarint(out, sezione.getVoci().size());
+        for (VoceMenu voce : sezione.getVoci()) {
+            scriviVoce(out, voce);
+        }
+    }
+
+    public SezioniMenu leggiSezione(DataInput in, Function<String, Ricetta> ricettePerId) throws IOException {
+        SezioniMenu sezione = new SezioniMenu(leggiStringa(in), leggiStringa(in), leggiVarint(in));
+        int voci = leggiVarint(in);
+        for (int i = 0; i < voci; i++) {
+            sezione.getVoci().add(leggiVoce(in, ricettePerId));
+        }
+        return sezione;
+    }
+
+    public void scriviMenu(DataOutput out, Menu menu) throws IOException {
+        scriviStringa(out, menu.getId());
+        scriviStringa(out, menu.getNome());
+        scriviStringa(out, menu.getDescrizione());
+        scriviStringa(out, menu.getNote());
+        scriviVarint(out, menu.getSezioni().size());
+        for (SezioniMenu sezione : menu.getSezioni()) {
+            scriviSezione(out, sezione);
+        }
+    }
+
+    public Menu leggiMenu(DataInput in, Function<String, Ricetta> ricettePerId) throws IOException {
+        Menu menu = new Menu(leggiStringa(in), leggiStringa(in), leggiStringa(in), leggiStringa(in));
+        int sezioni = leggiVarint(in);
+        for (int i = 0; i < sezioni; i++) {
+            menu.aggiungiSezione(leggiSezione(in, ricettePerId));
+        }
+        return menu;
+    }
+
+    public void scriviEvento(DataOutput out, Evento evento) throws IOException {
+        scriviStringa(out, evento.getId());
+        scriviData(out, evento.getDataInizio());
+        scriviData(out, evento.getDataFine());
+        scriviEtichetta(out, evento.getLuogo());
+        scriviEtichetta(out, evento.getTipo());
+        scriviStringa(out, evento.getNote());
+        scriviVarint(out, evento.getNumeroPersone());
+
+        Cliente cliente = evento.getCliente();
+        out.writeBoolean(cliente != null);
+        if (cliente != null) {
+            scriviStringa(out, cliente.getId());
+            scriviStringa(out, cliente.getNome());
+            scriviEtichetta(out, cliente.getTipo());
+            scriviStringa(out, cliente.getContatti());
+        }
+
+        scriviVarint(out, evento.getServizi().size());
+        for (Servizio servizio : evento.getServizi()) {
+            scriviStringa(out, servizio.getId());
+            scriviEtichetta(out, servizio.getFasciaOraria());
+            scriviEtichetta(out, servizio.getTipo());
+            scriviStringa(out, servizio.getNote());
+            scriviStringa(out, servizio.getMenu() != null ? servizio.getMenu().getId() : null);
+        }
+    }
+
+    public Evento leggiEvento(DataInput in, Function<String, Menu> menuPerId) throws IOException {
+        Evento evento = new Evento(leggiStringa(in), leggiData(in), leggiData(in),
+                leggiEtichetta(in), leggiEtichetta(in), leggiStringa(in));
+        evento.setNumeroPersone(leggiVarint(in));
+
+        if (in.readBoolean()) {
+            evento.setCliente(new Cliente(leggiStringa(in), leggiStringa(in), leggiEtichetta(in), leggiStringa(in)));
+        }
+
+        int servizi = leggiVarint(in);
+        for (int i = 0; i < servizi; i++) {
+            Servizio servizio = new Servizio(leggiStringa(in), leggiEtichetta(in), leggiEtichetta(in), leggiStringa(in));
+            String menuId = leggiStringa(in);
+            if (menuId != null) {
+                servizio.setMenu(menuPerId.apply(menuId));
+            }
+            evento.getServizi().add(servizio);
+        }
+        return evento;
+    }
+
+    // La sequenza non si salva: la bacheca la riassegna ripubblicando in ordine.
+    public void scriviPubblicazione(DataOutput out, PubblicazioneBacheca pubblicazione) throws IOException {
+        scriviStringa(out, pubblicazione.getMenu().getId());
+        LocalDateTime data = pubblicazione.getDataPubblicazione();
+        out.writeLong(data.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(data.getNano());
+    }
+
+    public PubblicazioneBacheca leggiPubblicazione(DataInput in, Function<String, Menu> menuPerId) throws IOException {
+        Menu menu = menuPerId.apply(leggiStringa(in));
+        LocalDateTime data = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+        return new PubblicazioneBacheca(menu, data, 0);
+    }
+
+    private static void scriviData(DataOutput out, LocalDate data) throws IOException {
+        out.writeBoolean(data != null);
+        if (data != null) {
+            out.writeLong(data.toEpochDay());
+        }
+    }
+
+    private static LocalDate leggiData(DataInput in) throws IOException {
+        return in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.catring.persistence;
+
+import com.catring.model.Evento;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.PubblicazioneBacheca;
+import com.catring.model.Ricetta;
+
+import java.util.List;
+
+/**
+ * Stato completo di MenuService salvato in un'istantanea. La generazione
+ * indica quale journal contiene le modifiche successive all'istantanea.
+ */
+public final class ContenutoIstantanea {
+
+    private final long generazioneJournal;
+    private final List<Ingrediente> ingredientiBase;
+    private final List<Ricetta> ricette;
+    private final List<Menu> menus;
+    private final List<Evento> eventi;
+    private final List<PubblicazioneBacheca> bacheca;
+
+    public ContenutoIstantanea(long generazioneJournal, List<Ingrediente> ingredientiBase, List<Ricetta> ricette,
+                               List<Menu> menus, List<Evento> eventi, List<PubblicazioneBacheca> bacheca) {
+        this.generazioneJournal = generazioneJournal;
+        this.ingredientiBase = ingredientiBase;
+        this.ricette = ricette;
+        this.menus = menus;
+        this.eventi = eventi;
+        this.bacheca = bacheca;
+    }
+
+    public long getGenerazioneJournal() { return generazioneJournal; }
+
+    public List<Ingrediente> getIngredientiBase() { return ingredientiBase; }
+
+    public List<Ricetta> getRicette() { return ricette; }
+
+    public List<Menu> getMenus() { return menus; }
+
+    public List<Evento> getEventi() { return eventi; }
+
+    public List<PubblicazioneBacheca> getBacheca() { return bacheca; }
+}
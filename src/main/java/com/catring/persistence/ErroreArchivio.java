@@ -0,0 +1,9 @@
+package com.catring.persistence;
+
+/** Errore di lettura o scrittura di un {@link Archivio}. */
+public class ErroreArchivio extends RuntimeException {
+
+    public ErroreArchivio(String messaggio, Throwable causa) {
+        super(messaggio, causa);
+    }
+}
@@ -0,0 +1,315 @@
+package com.catring.persistence;
+
+import com.catring.model.Cliente;
+import com.catring.model.Dose;
+import com.catring.model.Evento;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.Preparazione;
+import com.catring.model.Ricetta;
+import com.catring.model.Servizio;
+import com.catring.model.SezioniMenu;
+import com.catring.model.Tag;
+import com.catring.model.VoceMenu;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Esporta il modello in JSON lines: un oggetto per riga, con il campo
+ * "record" (ingrediente, ricetta, menu, evento). Le ricette portano
+ * ingredienti con le dosi, preparazioni e tag; i menu le sezioni con le
+ * voci, che citano la ricetta per id; gli eventi il cliente e i servizi,
+ * che citano il menu per id. Le chiavi delle ricette sono quelle lette da
+ * {@link ImportazioneRicette}.
+ *
+ * Ogni riga si compone in un buffer riusato e passa subito al canale,
+ * compresso con gzip se il file finisce con .gz: il documento intero non
+ * sta mai in memoria. Il file e' scritto con {@link ScritturaAtomica}:
+ * prende il posto di quello richiesto solo in {@link #completa()}, e
+ * chiudere senza completare non lascia niente.
+ */
+public final class EsportazioneDati implements Closeable {
+
+    private static final int BUFFER = 1 << 16;
+
+    private final ScritturaAtomica scrittura;
+    private final GzipVeloce compresso;
+    private final Writer uscita;
+    private final StringBuilder riga = new StringBuilder(512);
+    private final long inizio = System.nanoTime();
+    private long righe;
+    private boolean completata;
+
+    private EsportazioneDati(ScritturaAtomica scrittura, GzipVeloce compresso) {
+        this.scrittura = scrittura;
+        this.compresso = compresso;
+        this.uscita = compresso != null ? new OutputStreamWriter(compresso, StandardCharsets.UTF_8)
+                : scrittura.getScrittore();
+    }
+
+    public static EsportazioneDati apri(Path file) throws IOException {
+        ScritturaAtomica scrittura = ScritturaAtomica.apri(file);
+        try {
+            GzipVeloce compresso = null;
+            if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz")) {
+                compresso = new GzipVeloce(scrittura.getFlusso());
+            }
+            return new EsportazioneDati(scrittura, compresso);
+        } catch (IOException | RuntimeException e) {
+            scrittura.close();
+            throw e;
+        }
+    }
+
+    public void scriviIngrediente(Ingrediente ingrediente) throws IOException {
+        inizia("ingrediente");
+        ingrediente(ingrediente);
+        termina();
+    }
+
+    public void scriviRicetta(Ricetta ricetta) throws IOException {
+        inizia("ricetta");
+        testo("id", ricetta.getId());
+        testo("nome", ricetta.getNome());
+        testo("descrizione", ricetta.getDescrizione());
+        numero("tempoPreparazione", ricetta.getTempoPreparazione());
+        testo("stato", ricetta.getStato());
+        testo("autore", ricetta.getAutore());
+        numero("numeroPorte", ricetta.getNumeroPorte());
+
+        if (ricetta.isSenzaDettagli()) {
+            // Nessuna lista da leggere: non vale la pena crearle.
+            chiave("ingredienti").append("[]");
+            chiave("preparazioni").append("[]");
+            chiave("tag").append("[]");
+            termina();
+            return;
+        }
+        List<Ingrediente> ingredienti = ricetta.getIngredienti();
+        List<Dose> dosi = ricetta.getDosi();
+        chiave("ingredienti").append('[');
+        for (int i = 0; i < ingredienti.size(); i++) {
+            separa(i).append('{');
+            ingrediente(ingredienti.get(i));
+            Dose dose = i < dosi.size() ? dosi.get(i) : null;
+            if (dose != null) {
+                double quantitativo = dose.getQuantitativo();
+                if (Double.isFinite(quantitativo)) {
+                    chiave("quantitativo").append(quantitativo);
+                }
+                testo("unitaDose", dose.getUnitaMisura());
+            }
+            riga.append('}');
+        }
+        riga.append(']');
+
+        chiave("preparazioni").append('[');
+        List<Preparazione> preparazioni = ricetta.getPreparazioni();
+        for (int i = 0; i < preparazioni.size(); i++) {
+            Preparazione preparazione = preparazioni.get(i);
+            separa(i).append('{');
+            testo("id", preparazione.getId());
+            testo("nome", preparazione.getNome());
+            testo("descrizione", preparazione.getDescrizione());
+            numero("tempoEsecuzione", preparazione.getTempoEsecuzione());
+            testo("note", preparazione.getNote());
+            testo("stato", preparazione.getStato());
+            testo("autore", preparazione.getAutore());
+            riga.append('}');
+        }
+        riga.append(']');
+
+        chiave("tag").append('[');
+        List<Tag> tags = ricetta.getTags();
+        for (int i = 0; i < tags.size(); i++) {
+            TestoJson.scriviStringa(separa(i), tags.get(i).getNome());
+        }
+        riga.append(']');
+        termina();
+    }
+
+    public void scriviMenu(Menu menu) throws IOException {
+        inizia("menu");
+        testo("id", menu.getId());
+        testo("nome", menu.getNome());
+        testo("descrizione", menu.getDescrizione());
+        testo("note", menu.getNote());
+        chiave("sezioni").append('[');
+        List<SezioniMenu> sezioni = menu.getSezioni();
+        for (int i = 0; i < sezioni.size(); i++) {
+            SezioniMenu sezione = sezioni.get(i);
+            separa(i).append('{');
+            testo("id", sezione.getId());
+            testo("titolo", sezione.getTitolo());
+            numero("ordine", sezione.getOrdine());
+            chiave("voci").append('[');
+            List<VoceMenu> voci = sezione.getVoci();
+            for (int j = 0; j < voci.size(); j++) {
+                VoceMenu voce = voci.get(j);
+                separa(j).append('{');
+                testo("id", voce.getId());
+                testo("nomeVisuale", voce.getNomeVisuale());
+                testo("ricetta", voce.getRicetta() != null ? voce.getRicetta().getId() : voce.getRiferimento());
+                testo("modificheTesto", voce.getModificheTesto());
+                riga.append('}');
+            }
+            riga.append("]}");
+        }
+        riga.append(']');
+        termina();
+    }
+
+    public void scriviEvento(Evento evento) throws IOException {
+        inizia("evento");
+        testo("id", evento.getId());
+        testo("dataInizio", evento.getDataInizio() != null ? evento.getDataInizio().toString() : null);
+        testo("dataFine", evento.getDataFine() != null ? evento.getDataFine().toString() : null);
+        testo("luogo", evento.getLuogo());
+        testo("tipo", evento.getTipo());
+        testo("note", evento.getNote());
+        numero("numeroPersone", evento.getNumeroPersone());
+        Cliente cliente = evento.getCliente();
+        chiave("cliente");
+        if (cliente == null) {
+            riga.append("null");
+        } else {
+            riga.append('{');
+            testo("id", cliente.getId());
+            testo("nome", cliente.getNome());
+            testo("tipo", cliente.getTipo());
+            testo("contatti", cliente.getContatti());
+            riga.append('}');
+        }
+        chiave("servizi").append('[');
+        List<Servizio> servizi = evento.getServizi();
+        for (int i = 0; i < servizi.size(); i++) {
+            Servizio servizio = servizi.get(i);
+            separa(i).append('{');
+            testo("id", servizio.getId());
+            testo("fasciaOraria", servizio.getFasciaOraria());
+            testo("tipo", servizio.getTipo());
+            testo("note", servizio.getNote());
+            testo("menu", servizio.getMenu() != null ? servizio.getMenu().getId() : null);
+            riga.append('}');
+        }
+        riga.append(']');
+        termina();
+    }
+
+    /** Porta su disco il file e lo rende visibile al suo nome definitivo. */
+    public Esito completa() throws IOException {
+        uscita.flush();
+        if (compresso != null) {
+            compresso.finish();
+        }
+        long byteScritti = scrittura.completa();
+        rilasciaCompressore();
+        completata = true;
+        return new Esito(righe, byteScritti, System.nanoTime() - inizio);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (completata) {
+            return;
+        }
+        try {
+            scrittura.close();
+        } finally {
+            rilasciaCompressore();
+        }
+    }
+
+    private void rilasciaCompressore() {
+        if (compresso != null) {
+            compresso.rilascia();
+        }
+    }
+
+    private void inizia(String tipo) {
+        riga.setLength(0);
+        riga.append("{\"record\":\"").append(tipo).append('"');
+    }
+
+    private void termina() throws IOException {
+        riga.append("}\n");
+        uscita.append(riga);
+        righe++;
+    }
+
+    private void ingrediente(Ingrediente ingrediente) {
+        testo("id", ingrediente.getId());
+        testo("nome", ingrediente.getNome());
+        testo("tipo", ingrediente.getTipo());
+        testo("unitaMisura", ingrediente.getUnitaMisura());
+    }
+
+    // Le chiavi sono costanti senza caratteri da proteggere.
+    private StringBuilder chiave(String nome) {
+        if (riga.charAt(riga.length() - 1) != '{') {
+            riga.append(',');
+        }
+        return riga.append('"').append(nome).append("\":");
+    }
+
+    private void testo(String nome, String valore) {
+        TestoJson.scriviStringa(chiave(nome), valore);
+    }
+
+    private void numero(String nome, long valore) {
+        chiave(nome).append(valore);
+    }
+
+    private StringBuilder separa(int indice) {
+        return indice > 0 ? riga.append(',') : riga;
+    }
+
+    // La compressione e' il passo piu' lento: il livello veloce costa poco
+    // in dimensione e accorcia l'esportazione.
+    private static final class GzipVeloce extends GZIPOutputStream {
+
+        GzipVeloce(OutputStream destinazione) throws IOException {
+            super(destinazione, BUFFER);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+
+        // Il Deflater tiene memoria nativa; close() lo libererebbe ma non si chiude mai lo stream.
+        void rilascia() {
+            def.end();
+        }
+    }
+
+    public static final class Esito {
+        private final long righe;
+        private final long byteScritti;
+        private final long durata;
+
+        Esito(long righe, long byteScritti, long durata) {
+            this.righe = righe;
+            this.byteScritti = byteScritti;
+            this.durata = durata;
+        }
+
+        public long getRighe() { return righe; }
+
+        /** Dimensione del file prodotto, dopo l'eventuale compressione. */
+        public long getByteScritti() { return byteScritti; }
+
+        public long getDurataMillis() { return durata / 1_000_000; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d righe, %d byte in %d ms", righe, byteScritti, getDurataMillis());
+        }
+    }
+}
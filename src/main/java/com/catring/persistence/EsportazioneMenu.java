@@ -0,0 +1,235 @@
+package com.catring.persistence;
+
+import com.catring.model.Menu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Esporta molti menu in una volta, un file per menu, in una cartella o in
+ * un unico ZIP. I menu si scrivono su un pool di thread limitato, con al
+ * piu' due menu in volo per thread; il thread chiamante raccoglie i
+ * risultati nell'ordine dei menu, aggiorna l'avanzamento e controlla
+ * l'annullamento fra un menu e l'altro.
+ *
+ * Nella cartella ogni thread scrive il suo file con {@link ScritturaAtomica}.
+ * Nello ZIP i thread preparano il testo in memoria, un menu alla volta, e
+ * il thread chiamante lo comprime nell'archivio, che compare solo se
+ * l'esportazione arriva in fondo.
+ */
+public class EsportazioneMenu {
+
+    /** Scrive un menu; ad esempio il metodo scrivi di un FormatoEsportazione. */
+    @FunctionalInterface
+    public interface Scrittura {
+        void scrivi(Menu menu, Writer destinazione) throws IOException;
+    }
+
+    /** Chiamato dal thread che ha avviato l'esportazione dopo ogni menu. */
+    @FunctionalInterface
+    public interface Avanzamento {
+        void aggiorna(int completati, int totale);
+    }
+
+    private final Scrittura scrittura;
+    private final String estensione;
+    private final int thread;
+
+    public EsportazioneMenu(Scrittura scrittura) {
+        this(scrittura, Runtime.getRuntime().availableProcessors());
+    }
+
+    public EsportazioneMenu(Scrittura scrittura, int thread) {
+        this(scrittura, "txt", thread);
+    }
+
+    /** L'estensione, senza punto, da dare ai file dei menu. */
+    public EsportazioneMenu(Scrittura scrittura, String estensione, int thread) {
+        if (thread < 1) {
+            throw new IllegalArgumentException("Serve almeno un thread");
+        }
+        this.scrittura = scrittura;
+        this.estensione = estensione;
+        this.thread = thread;
+    }
+
+    /** Nome del file di testo di un menu: il nome senza caratteri speciali e l'id, che lo rende univoco. */
+    public static String nomeFile(Menu menu) {
+        return nomeFile(menu, "txt");
+    }
+
+    public static String nomeFile(Menu menu, String estensione) {
+        return menu.getNome().replaceAll("[^a-zA-Z0-9]", "_") + "_" + menu.getId() + "." + estensione;
+    }
+
+    /**
+     * Un file per menu nella cartella. Se l'esportazione viene annullata i
+     * file gia' completati restano.
+     */
+    public Esito inCartella(Collection<Menu> menu, Path cartella, Avanzamento avanzamento, BooleanSupplier annullata)
+            throws IOException {
+        Files.createDirectories(cartella);
+        return esegui(menu, avanzamento, annullata, m -> () -> {
+            try (ScritturaAtomica file = ScritturaAtomica.apri(cartella.resolve(nomeFile(m, estensione)), false)) {
+                scrittura.scrivi(m, file.getScrittore());
+                return file.completa();
+            }
+        }, null);
+    }
+
+    /** Tutti i menu in un file ZIP; se l'esportazione viene annullata il file non viene creato. */
+    public Esito inZip(Collection<Menu> menu, Path fileZip, Avanzamento avanzamento, BooleanSupplier annullata)
+            throws IOException {
+        try (ScritturaAtomica file = ScritturaAtomica.apri(fileZip, false)) {
+            ZipOutputStream zip = new ZipOutputStream(file.getFlusso(), StandardCharsets.UTF_8);
+            zip.setLevel(Deflater.BEST_SPEED);
+            Esito esito;
+            try {
+                esito = esegui(menu, avanzamento, annullata, m -> () -> {
+                    ByteArrayOutputStream testo = new ByteArrayOutputStream(4096);
+                    try (Writer scrittore = new OutputStreamWriter(testo, StandardCharsets.UTF_8)) {
+                        scrittura.scrivi(m, scrittore);
+                    }
+                    return testo;
+                }, (m, testo) -> {
+                    zip.putNextEntry(new ZipEntry(nomeFile(m, estensione)));
+                    ((ByteArrayOutputStream) testo).writeTo(zip);
+                    zip.closeEntry();
+                });
+            } finally {
+                // Chiude solo lo ZIP e il suo Deflater: il flusso del file resta aperto.
+                zip.close();
+            }
+            if (!esito.annullata) {
+                esito.byteScritti = file.completa();
+            }
+            return esito;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Lavoro {
+        Callable<Object> per(Menu menu);
+    }
+
+    @FunctionalInterface
+    private interface Raccolta {
+        void raccogli(Menu menu, Object risultato) throws IOException;
+    }
+
+    private Esito esegui(Collection<Menu> menu, Avanzamento avanzamento, BooleanSupplier annullata, Lavoro lavoro,
+                         Raccolta raccolta) throws IOException {
+        long inizio = System.nanoTime();
+        Esito esito = new Esito(menu.size());
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(thread, Math.max(1, menu.size())), azione -> {
+            Thread t = new Thread(azione, "esportazione-menu");
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Menu> menuInVolo = new ArrayDeque<>();
+        Deque<Future<Object>> inVolo = new ArrayDeque<>();
+        try {
+            for (Menu daScrivere : menu) {
+                if (annullata.getAsBoolean()) {
+                    esito.annullata = true;
+                    break;
+                }
+                menuInVolo.add(daScrivere);
+                inVolo.add(pool.submit(lavoro.per(daScrivere)));
+                if (inVolo.size() >= 2 * thread) {
+                    raccogli(menuInVolo.poll(), inVolo.poll(), raccolta, esito, avanzamento);
+                }
+            }
+            while (!inVolo.isEmpty() && !esito.annullata) {
+                raccogli(menuInVolo.poll(), inVolo.poll(), raccolta, esito, avanzamento);
+                esito.annullata = annullata.getAsBoolean() && !inVolo.isEmpty();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        esito.durata = System.nanoTime() - inizio;
+        return esito;
+    }
+
+    private static void raccogli(Menu menu, Future<Object> futuro, Raccolta raccolta, Esito esito,
+                                 Avanzamento avanzamento) throws IOException {
+        Object risultato = attendi(futuro);
+        if (raccolta != null) {
+            raccolta.raccogli(menu, risultato);
+        } else {
+            esito.byteScritti += (Long) risultato;
+        }
+        esito.esportati++;
+        avanzamento.aggiorna(esito.esportati, esito.totale);
+    }
+
+    private static Object attendi(Future<Object> futuro) throws IOException {
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Esportazione interrotta");
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof IOException) {
+                throw (IOException) causa;
+            }
+            if (causa instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) causa).getCause();
+            }
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            throw new IllegalStateException(causa);
+        }
+    }
+
+    public static final class Esito {
+        private final int totale;
+        private int esportati;
+        private long byteScritti;
+        private boolean annullata;
+        private long durata;
+
+        Esito(int totale) {
+            this.totale = totale;
+        }
+
+        public int getTotale() { return totale; }
+
+        public int getEsportati() { return esportati; }
+
+        /** Byte dei file scritti, o dello ZIP; zero se lo ZIP e' stato annullato. */
+        public long getByteScritti() { return byteScritti; }
+
+        public boolean isAnnullata() { return annullata; }
+
+        public long getDurataMillis() { return durata / 1_000_000; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d/%d menu, %d byte in %d ms%s", esportati, totale, byteScritti,
+                    getDurataMillis(), annullata ? " (annullata)" : "");
+        }
+    }
+}
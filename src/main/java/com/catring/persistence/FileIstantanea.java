@@ -0,0 +1,200 @@
+package com.catring.persistence;
+
+import com.catring.model.Evento;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.PubblicazioneBacheca;
+import com.catring.model.Ricetta;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Istantanea binaria dello stato: intestazione, corpo codificato con
+ * {@link CodificaModello} e in coda la tabella delle etichette, che il
+ * corpo referenzia per indice. La tabella si riempie mentre si scrive il
+ * corpo, per questo sta in fondo e l'intestazione ne riporta la posizione.
+ *
+ * Il file viene scritto accanto con estensione .tmp, forzato su disco e
+ * poi rinominato in modo atomico: chi legge trova sempre un'istantanea
+ * completa, quella nuova o quella precedente.
+ */
+public final class FileIstantanea {
+
+    private static final int MAGIA = 0x43524953;
+    private static final int VERSIONE = 1;
+    private static final int INTESTAZIONE = 4 + 4 + 8 + 8;
+    private static final int POSIZIONE_TABELLA = 16;
+    private static final int BUFFER = 1 << 16;
+
+    private FileIstantanea() {}
+
+    public static void scrivi(Path file, ContenutoIstantanea contenuto) throws IOException {
+        Path temporaneo = file.resolveSibling(file.getFileName() + ".tmp");
+        ScritturaConTabella codifica = new ScritturaConTabella();
+        try (FileChannel canale = FileChannel.open(temporaneo, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(canale), BUFFER));
+            out.writeInt(MAGIA);
+            out.writeInt(VERSIONE);
+            out.writeLong(contenuto.getGenerazioneJournal());
+            out.writeLong(0L);
+
+            CodificaModello.scriviVarint(out, contenuto.getIngredientiBase().size());
+            for (Ingrediente ingrediente : contenuto.getIngredientiBase()) {
+                codifica.scriviIngrediente(out, ingrediente);
+            }
+            CodificaModello.scriviVarint(out, contenuto.getRicette().size());
+            for (Ricetta ricetta : contenuto.getRicette()) {
+                codifica.scriviRicetta(out, ricetta);
+            }
+            CodificaModello.scriviVarint(out, contenuto.getMenus().size());
+            for (Menu menu : contenuto.getMenus()) {
+                codifica.scriviMenu(out, menu);
+            }
+            CodificaModello.scriviVarint(out, contenuto.getEventi().size());
+            for (Evento evento : contenuto.getEventi()) {
+                codifica.scriviEvento(out, evento);
+            }
+            CodificaModello.scriviVarint(out, contenuto.getBacheca().size());
+            for (PubblicazioneBacheca pubblicazione : contenuto.getBacheca()) {
+                codifica.scriviStringa(out, pubblicazione.getMenu().getId());
+                LocalDateTime data = pubblicazione.getDataPubblicazione();
+                out.writeLong(data.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(data.getNano());
+            }
+            out.flush();
+
+            long posizioneTabella = canale.position();
+            codifica.scriviTabella(out);
+            out.flush();
+            canale.write(ByteBuffer.allocate(8).putLong(0, posizioneTabella), POSIZIONE_TABELLA);
+            canale.force(true);
+        }
+        Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forzaCartella(file.toAbsolutePath().getParent());
+    }
+
+    public static ContenutoIstantanea leggi(Path file) throws IOException {
+        return leggi(file, id -> null);
+    }
+
+    /**
+     * Le voci che citano ricette non contenute nell'istantanea (ad esempio
+     * quelle del catalogo condiviso) le cercano in ricetteEsterne.
+     */
+    public static ContenutoIstantanea leggi(Path file, Function<String, Ricetta> ricetteEsterne) throws IOException {
+        try (FileChannel canale = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer intestazione = ByteBuffer.allocate(INTESTAZIONE);
+            while (intestazione.hasRemaining() && canale.read(intestazione) >= 0) {
+                // lettura completa dell'intestazione
+            }
+            intestazione.flip();
+            if (intestazione.remaining() < INTESTAZIONE || intestazione.getInt() != MAGIA) {
+                throw new IOException("File di istantanea non valido: " + file);
+            }
+            int versione = intestazione.getInt();
+            if (versione != VERSIONE) {
+                throw new IOException("Versione di istantanea non supportata: " + versione);
+            }
+            long generazione = intestazione.getLong();
+            long posizioneTabella = intestazione.getLong();
+            if (posizioneTabella < INTESTAZIONE || posizioneTabella >= canale.size()) {
+                throw new IOException("Istantanea incompleta: " + file);
+            }
+
+            LetturaConTabella codifica = new LetturaIstantanea(
+                    LetturaConTabella.leggiTabella(new IngressoBuffer(canale, posizioneTabella)));
+            DataInput in = new IngressoBuffer(canale, INTESTAZIONE);
+
+            List<Ingrediente> ingredienti = new ArrayList<>();
+            for (int i = CodificaModello.leggiVarint(in); i > 0; i--) {
+                ingredienti.add(codifica.leggiIngrediente(in));
+            }
+            int numeroRicette = CodificaModello.leggiVarint(in);
+            List<Ricetta> ricette = new ArrayList<>(numeroRicette);
+            Map<String, Ricetta> ricettePerId = new HashMap<>(numeroRicette * 4 / 3 + 1);
+            for (int i = 0; i < numeroRicette; i++) {
+                Ricetta ricetta = codifica.leggiRicetta(in);
+                ricette.add(ricetta);
+                ricettePerId.put(ricetta.getId(), ricetta);
+            }
+            Function<String, Ricetta> risolviRicetta = id -> {
+                Ricetta ricetta = ricettePerId.get(id);
+                return ricetta != null ? ricetta : ricetteEsterne.apply(id);
+            };
+            List<Menu> menus = new ArrayList<>();
+            Map<String, Menu> menuPerId = new HashMap<>();
+            for (int i = CodificaModello.leggiVarint(in); i > 0; i--) {
+                Menu menu = codifica.leggiMenu(in, risolviRicetta);
+                menus.add(menu);
+                menuPerId.put(menu.getId(), menu);
+            }
+            List<Evento> eventi = new ArrayList<>();
+            for (int i = CodificaModello.leggiVarint(in); i > 0; i--) {
+                eventi.add(codifica.leggiEvento(in, menuPerId::get));
+            }
+            List<PubblicazioneBacheca> bacheca = new ArrayList<>();
+            for (int i = CodificaModello.leggiVarint(in); i > 0; i--) {
+                Menu menu = menuPerId.get(codifica.leggiStringa(in));
+                LocalDateTime data = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                if (menu != null) {
+                    bacheca.add(new PubblicazioneBacheca(menu, data, bacheca.size() + 1));
+                }
+            }
+            return new ContenutoIstantanea(generazione, ingredienti, ricette, menus, eventi, bacheca);
+        }
+    }
+
+    // Senza questo il rename potrebbe non sopravvivere a un crash su alcuni filesystem.
+    static void forzaCartella(Path cartella) {
+        try (FileChannel canale = FileChannel.open(cartella, StandardOpenOption.READ)) {
+            canale.force(true);
+        } catch (IOException e) {
+            // Non supportato su tutte le piattaforme (es. Windows).
+        }
+    }
+
+    private static final class LetturaIstantanea extends LetturaConTabella {
+
+        private final Map<String, Ingrediente> ingredientiLetti = new HashMap<>();
+
+        LetturaIstantanea(String[] tabella) {
+            super(tabella);
+        }
+
+        // Lo stesso ingrediente usato da piu' ricette torna a essere un solo
+        // oggetto: i campi arrivano dalla tabella, quindi basta confrontare
+        // i riferimenti.
+        @Override
+        public Ingrediente leggiIngrediente(DataInput in) throws IOException {
+            Ingrediente letto = super.leggiIngrediente(in);
+            if (letto.getId() == null) {
+                return letto;
+            }
+            Ingrediente noto = ingredientiLetti.putIfAbsent(letto.getId(), letto);
+            if (noto != null && noto.getNome() == letto.getNome() && noto.getTipo() == letto.getTipo()
+                    && noto.getUnitaMisura() == letto.getUnitaMisura()) {
+                return noto;
+            }
+            return letto;
+        }
+    }
+}
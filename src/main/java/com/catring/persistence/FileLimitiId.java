@@ -0,0 +1,76 @@
+package com.catring.persistence;
+
+import com.catring.information_expert.IdGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Limiti degli id riservati da {@link IdGenerator}, in un file di testo
+ * con una riga "prefisso=limite" per tipo. Ogni salvataggio riscrive il
+ * file accanto e lo sostituisce in modo atomico, come le istantanee:
+ * dopo un crash si trova il file vecchio o quello nuovo, mai uno a meta'.
+ */
+public final class FileLimitiId implements IdGenerator.Riserva {
+
+    private final Path file;
+    private final Map<String, Long> limiti = new LinkedHashMap<>();
+
+    private FileLimitiId(Path file) {
+        this.file = file;
+    }
+
+    public static FileLimitiId apri(Path file) throws IOException {
+        FileLimitiId riserva = new FileLimitiId(file);
+        if (Files.exists(file)) {
+            for (String riga : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                int uguale = riga.indexOf('=');
+                if (uguale <= 0) {
+                    continue;
+                }
+                try {
+                    riserva.limiti.put(riga.substring(0, uguale), Long.parseLong(riga.substring(uguale + 1).trim()));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Limite non valido in " + file + ": " + riga, e);
+                }
+            }
+        }
+        return riserva;
+    }
+
+    @Override
+    public synchronized Map<String, Long> limiti() {
+        return new LinkedHashMap<>(limiti);
+    }
+
+    @Override
+    public synchronized void salvaLimite(String prefisso, long limite) {
+        limiti.merge(prefisso, limite, Math::max);
+        StringBuilder testo = new StringBuilder();
+        limiti.forEach((chiave, valore) -> testo.append(chiave).append('=').append(valore).append('\n'));
+        Path temporaneo = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel canale = FileChannel.open(temporaneo, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer dati = StandardCharsets.UTF_8.encode(testo.toString());
+                while (dati.hasRemaining()) {
+                    canale.write(dati);
+                }
+                canale.force(true);
+            }
+            Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            FileIstantanea.forzaCartella(file.toAbsolutePath().getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Salvataggio dei limiti degli id fallito: " + file, e);
+        }
+    }
+}
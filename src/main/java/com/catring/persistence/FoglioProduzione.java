@@ -0,0 +1,181 @@
+package com.catring.persistence;
+
+import com.catring.information_expert.IndiceDosiScalate;
+import com.catring.model.Evento;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import com.catring.model.Servizio;
+import com.catring.model.SezioniMenu;
+import com.catring.model.VoceMenu;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Foglio di produzione della cucina per un evento: le voci dei menu di
+ * tutti i servizi, raggruppate per postazione, con le dosi di ogni ricetta
+ * riportate al numero di persone dell'evento e il totale degli ingredienti
+ * di ogni postazione. La postazione e' la sezione del menu (Antipasti,
+ * Primi, ...): sezioni con lo stesso titolo in servizi diversi finiscono
+ * insieme. Il foglio si scrive mentre si percorre l'evento; le quantita'
+ * vengono da {@link IndiceDosiScalate}, che le calcola una volta per
+ * ricetta e numero di persone.
+ *
+ * Va chiamato mentre evento e menu non vengono modificati.
+ */
+public final class FoglioProduzione {
+
+    private static final String SENZA_POSTAZIONE = "Altro";
+
+    private final IndiceDosiScalate dosi;
+
+    public FoglioProduzione(IndiceDosiScalate dosi) {
+        this.dosi = dosi;
+    }
+
+    public String componi(Evento evento) {
+        StringWriter testo = new StringWriter();
+        try {
+            scrivi(evento, testo);
+        } catch (IOException e) {
+            // Si scrive in memoria: non puo' succedere.
+            throw new UncheckedIOException(e);
+        }
+        return testo.toString();
+    }
+
+    public void scrivi(Evento evento, Writer out) throws IOException {
+        int persone = evento.getNumeroPersone();
+        out.write("=== FOGLIO DI PRODUZIONE: " + evento.getTipo() + " - " + evento.getLuogo() + " ===\n");
+        out.write("Evento " + evento.getId() + ", dal " + evento.getDataInizio() + " al " + evento.getDataFine() + "\n");
+        out.write("Persone: " + persone + "\n\n");
+
+        Map<String, Postazione> postazioni = raggruppa(evento);
+        if (postazioni.isEmpty()) {
+            out.write("Nessun menu assegnato ai servizi dell'evento.\n");
+            out.flush();
+            return;
+        }
+        for (Postazione postazione : postazioni.values()) {
+            scriviPostazione(postazione, persone, out);
+        }
+        out.write("=== Fine foglio ===\n");
+        out.flush();
+    }
+
+    private static Map<String, Postazione> raggruppa(Evento evento) {
+        Map<String, Postazione> postazioni = new LinkedHashMap<>();
+        for (Servizio servizio : evento.getServizi()) {
+            Menu menu = servizio.getMenu();
+            if (menu == null) {
+                continue;
+            }
+            for (SezioniMenu sezione : menu.getSezioni()) {
+                String titolo = sezione.getTitolo() != null && !sezione.getTitolo().trim().isEmpty()
+                        ? sezione.getTitolo().trim() : SENZA_POSTAZIONE;
+                Postazione postazione = postazioni.computeIfAbsent(titolo.toLowerCase(Locale.ROOT),
+                        chiave -> new Postazione(titolo));
+                for (VoceMenu voce : sezione.getVoci()) {
+                    postazione.voci.add(new VoceServizio(servizio, menu, voce));
+                }
+            }
+        }
+        return postazioni;
+    }
+
+    private void scriviPostazione(Postazione postazione, int persone, Writer out) throws IOException {
+        out.write("POSTAZIONE: " + postazione.titolo.toUpperCase(Locale.ROOT) + "\n");
+        out.write("-".repeat(postazione.titolo.length() + 12) + "\n");
+        // nome e unita' -> quantita' totale della postazione
+        Map<String, Totale> totali = new LinkedHashMap<>();
+
+        for (VoceServizio riga : postazione.voci) {
+            out.write("• " + riga.voce.getNomeVisuale() + "  [" + riga.servizio.getTipo() + " "
+                    + riga.servizio.getFasciaOraria() + ", " + riga.menu.getNome() + "]\n");
+            Ricetta ricetta = riga.voce.getRicetta();
+            if (ricetta == null) {
+                out.write("  Nessuna ricetta collegata\n");
+                continue;
+            }
+            out.write("  " + ricetta.getNome() + ": " + persone + " porzioni (ricetta per "
+                    + ricetta.getNumeroPorte() + ")\n");
+            if (ricetta.isSenzaDettagli()) {
+                continue;
+            }
+            double[] quantita = dosi.quantita(ricetta, persone);
+            List<Ingrediente> ingredienti = ricetta.getIngredienti();
+            for (int i = 0; i < ingredienti.size(); i++) {
+                String nome = ingredienti.get(i).getNome();
+                if (i >= quantita.length) {
+                    out.write("    - " + nome + "\n");
+                    continue;
+                }
+                String unita = ricetta.getDosi().get(i).getUnitaMisura();
+                out.write("    - " + nome + ": " + formatta(quantita[i]) + " " + unita + "\n");
+                totali.computeIfAbsent(nome + '\u0000' + unita, chiave -> new Totale(nome, unita)).quantita
+                        += quantita[i];
+            }
+            if (riga.voce.getModificheTesto() != null && !riga.voce.getModificheTesto().trim().isEmpty()) {
+                out.write("  Note: " + riga.voce.getModificheTesto() + "\n");
+            }
+        }
+
+        if (!totali.isEmpty()) {
+            out.write("\n  Totale postazione:\n");
+            for (Totale totale : totali.values()) {
+                out.write("    - " + totale.nome + ": " + formatta(totale.quantita) + " " + totale.unita + "\n");
+            }
+        }
+        out.write("\n");
+    }
+
+    /** Al piu' due decimali, senza zeri finali. */
+    static String formatta(double quantita) {
+        if (Double.isNaN(quantita) || Double.isInfinite(quantita)) {
+            return Double.toString(quantita);
+        }
+        return BigDecimal.valueOf(quantita).setScale(2, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+    }
+
+    private static final class Postazione {
+        final String titolo;
+        final List<VoceServizio> voci = new ArrayList<>();
+
+        Postazione(String titolo) {
+            this.titolo = titolo;
+        }
+    }
+
+    private static final class VoceServizio {
+        final Servizio servizio;
+        final Menu menu;
+        final VoceMenu voce;
+
+        VoceServizio(Servizio servizio, Menu menu, VoceMenu voce) {
+            this.servizio = servizio;
+            this.menu = menu;
+            this.voce = voce;
+        }
+    }
+
+    private static final class Totale {
+        final String nome;
+        final String unita;
+        double quantita;
+
+        Totale(String nome, String unita) {
+            this.nome = nome;
+            this.unita = unita;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.catring.persistence;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * I formati di esportazione disponibili, per nome: TXT, HTML, Markdown, CSV
+ * e JSON, piu' i modelli personali caricati da una cartella. Ogni modello
+ * viene compilato una volta, quando si registra; chi esporta riceve il
+ * formato gia' pronto. Le letture non prendono lock: la mappa viene
+ * sostituita intera a ogni registrazione.
+ */
+public final class FormatiEsportazione {
+
+    static final String HTML = "<!DOCTYPE html>\n"
+            + "<html lang=\"it\">\n<head>\n<meta charset=\"UTF-8\">\n<title>{{menu.nome}}</title>\n</head>\n<body>\n"
+            + "<h1>{{menu.nome}}</h1>\n"
+            + "<p>{{menu.descrizione}}</p>\n"
+            + "{{#menu.note}}<p><em>{{menu.note}}</em></p>\n{{/menu.note}}"
+            + "{{#sezioni}}<h2>{{sezione.titolo}}</h2>\n<ul>\n"
+            + "{{#voci}}<li><strong>{{voce.nome}}</strong>"
+            + "{{#ricetta.nome}} <small>({{ricetta.tempo}} minuti, {{ricetta.porzioni}} porzioni)</small>{{/ricetta.nome}}"
+            + "{{#ricetta.descrizione}}<br>{{ricetta.descrizione}}{{/ricetta.descrizione}}"
+            + "{{#voce.note}}<br><em>{{voce.note}}</em>{{/voce.note}}</li>\n{{/voci}}"
+            + "</ul>\n{{/sezioni}}"
+            + "</body>\n</html>\n";
+
+    static final String MARKDOWN = "# {{menu.nome}}\n\n"
+            + "{{menu.descrizione}}\n\n"
+            + "{{#menu.note}}_{{menu.note}}_\n\n{{/menu.note}}"
+            + "{{#sezioni}}## {{sezione.titolo}}\n\n"
+            + "{{#voci}}- **{{voce.nome}}**"
+            + "{{#ricetta.nome}} ({{ricetta.tempo}} minuti, {{ricetta.porzioni}} porzioni){{/ricetta.nome}}"
+            + "{{#ingredienti}}{{#primo}}\n  Ingredienti: {{/primo}}{{^primo}}, {{/primo}}"
+            + "{{ingrediente.nome}}{{#ingrediente.quantita}} {{ingrediente.quantita}} {{ingrediente.unita}}"
+            + "{{/ingrediente.quantita}}{{/ingredienti}}"
+            + "{{#voce.note}}\n  _{{voce.note}}_{{/voce.note}}\n{{/voci}}\n{{/sezioni}}";
+
+    static final String CSV = "menu,sezione,voce,ricetta,tempo,porzioni,note\n"
+            + "{{#sezioni}}{{#voci}}{{menu.nome}},{{sezione.titolo}},{{voce.nome}},{{ricetta.nome}},"
+            + "{{ricetta.tempo}},{{ricetta.porzioni}},{{voce.note}}\n{{/voci}}{{/sezioni}}";
+
+    static final String JSON = "{\"id\":\"{{menu.id}}\",\"nome\":\"{{menu.nome}}\","
+            + "\"descrizione\":\"{{menu.descrizione}}\",\"note\":\"{{menu.note}}\",\"sezioni\":["
+            + "{{#sezioni}}{\"titolo\":\"{{sezione.titolo}}\",\"voci\":["
+            + "{{#voci}}{\"nome\":\"{{voce.nome}}\",\"note\":\"{{voce.note}}\""
+            + "{{#ricetta.nome}},\"ricetta\":{\"nome\":\"{{ricetta.nome}}\",\"tempo\":{{ricetta.tempo}},"
+            + "\"porzioni\":{{ricetta.porzioni}},\"ingredienti\":["
+            + "{{#ingredienti}}{\"nome\":\"{{ingrediente.nome}}\""
+            + "{{#ingrediente.quantita}},\"quantita\":{{ingrediente.quantita}},"
+            + "\"unita\":\"{{ingrediente.unita}}\"{{/ingrediente.quantita}}}{{^ultimo}},{{/ultimo}}{{/ingredienti}}"
+            + "],\"tag\":[{{#tag}}\"{{tag.nome}}\"{{^ultimo}},{{/ultimo}}{{/tag}}]}{{/ricetta.nome}}"
+            + "}{{^ultimo}},{{/ultimo}}{{/voci}}]}{{^ultimo}},{{/ultimo}}{{/sezioni}}]}\n";
+
+    private volatile Map<String, FormatoEsportazione> formati = Collections.emptyMap();
+
+    public FormatiEsportazione() {
+        registra(new FormatoTXT());
+        registra(ModelloEsportazione.compila("html", "html", HTML));
+        registra(ModelloEsportazione.compila("md", "md", MARKDOWN));
+        registra(ModelloEsportazione.compila("csv", "csv", CSV));
+        registra(ModelloEsportazione.compila("json", "json", JSON));
+    }
+
+    /** Aggiunge il formato, o sostituisce quello con lo stesso nome. */
+    public synchronized void registra(FormatoEsportazione formato) {
+        Map<String, FormatoEsportazione> nuovi = new LinkedHashMap<>(formati);
+        nuovi.put(formato.getNome().toLowerCase(Locale.ROOT), formato);
+        formati = Collections.unmodifiableMap(nuovi);
+    }
+
+    public FormatoEsportazione get(String nome) {
+        FormatoEsportazione formato = formati.get(nome.toLowerCase(Locale.ROOT));
+        if (formato == null) {
+            throw new IllegalArgumentException("Formato di esportazione sconosciuto: " + nome);
+        }
+        return formato;
+    }
+
+    public List<String> getNomi() {
+        return new ArrayList<>(formati.keySet());
+    }
+
+    /**
+     * Compila e registra ogni file della cartella come modello: il file
+     * "stampa.html" diventa il formato "stampa", con estensione ed escape
+     * HTML. I file nascosti e quelli senza estensione si ignorano. Se un
+     * modello contiene errori non si registra nessun file della cartella.
+     *
+     * @return i nomi dei formati registrati
+     */
+    public List<String> caricaCartella(Path cartella) throws IOException {
+        List<ModelloEsportazione> modelli = new ArrayList<>();
+        try (DirectoryStream<Path> file = Files.newDirectoryStream(cartella, Files::isRegularFile)) {
+            for (Path modello : file) {
+                String nomeFile = modello.getFileName().toString();
+                int punto = nomeFile.lastIndexOf('.');
+                if (nomeFile.startsWith(".") || punto <= 0 || punto == nomeFile.length() - 1) {
+                    continue;
+                }
+                String testo = new String(Files.readAllBytes(modello), StandardCharsets.UTF_8);
+                try {
+                    modelli.add(ModelloEsportazione.compila(nomeFile.substring(0, punto),
+                            nomeFile.substring(punto + 1), testo));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(nomeFile + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        List<String> nomi = new ArrayList<>();
+        for (ModelloEsportazione modello : modelli) {
+            registra(modello);
+            nomi.add(modello.getNome());
+        }
+        return nomi;
+    }
+}
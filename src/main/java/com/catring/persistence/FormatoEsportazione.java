@@ -0,0 +1,22 @@
+package com.catring.persistence;
+
+import com.catring.model.Menu;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Un formato in cui si puo' esportare un menu. Le implementazioni non hanno
+ * stato fra una scrittura e l'altra e si possono usare da piu' thread; il
+ * menu non deve essere modificato durante la scrittura.
+ */
+public interface FormatoEsportazione {
+
+    /** Nome con cui si sceglie il formato, ad esempio "html". */
+    String getNome();
+
+    /** Estensione dei file, senza punto. */
+    String getEstensione();
+
+    void scrivi(Menu menu, Writer destinazione) throws IOException;
+}
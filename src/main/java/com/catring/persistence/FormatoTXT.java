@@ -0,0 +1,251 @@
+package com.catring.persistence;
+
+import com.catring.model.Dose;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import com.catring.model.SezioniMenu;
+import com.catring.model.Tag;
+import com.catring.model.VoceMenu;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Il menu come documento di testo: sezioni, voci e per ogni ricetta tempo,
+ * porzioni, descrizione, ingredienti con le dosi e tag. Il documento si
+ * scrive percorrendo il menu, attraverso un buffer di caratteri riusato
+ * dal thread, direttamente in un Writer o in un canale (UTF-8): la memoria
+ * usata non dipende dalla dimensione del menu. Lo stesso testo serve per
+ * i file, le anteprime ({@link #componi}) e le connessioni di rete.
+ *
+ * Va chiamato mentre il menu non viene modificato.
+ */
+public final class FormatoTXT implements FormatoEsportazione {
+
+    private static final int CARATTERI = 1 << 13;
+    private static final ThreadLocal<char[]> BUFFER_CARATTERI = ThreadLocal.withInitial(() -> new char[CARATTERI]);
+    private static final ThreadLocal<ByteBuffer> BUFFER_BYTE =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(CARATTERI * 3));
+
+    @Override
+    public String getNome() {
+        return "txt";
+    }
+
+    @Override
+    public String getEstensione() {
+        return "txt";
+    }
+
+    @Override
+    public void scrivi(Menu menu, Writer destinazione) throws IOException {
+        Uscita uscita = new Uscita(BUFFER_CARATTERI.get()) {
+            @Override
+            int svuota(char[] caratteri, int lunghezza, boolean ultimo) throws IOException {
+                destinazione.write(caratteri, 0, lunghezza);
+                return 0;
+            }
+        };
+        scrivi(menu, uscita);
+        destinazione.flush();
+    }
+
+    public void scrivi(Menu menu, WritableByteChannel destinazione) throws IOException {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer byteBuffer = BUFFER_BYTE.get();
+        byteBuffer.clear();
+        Uscita uscita = new Uscita(BUFFER_CARATTERI.get()) {
+            @Override
+            int svuota(char[] caratteri, int lunghezza, boolean ultimo) throws IOException {
+                CharBuffer daCodificare = CharBuffer.wrap(caratteri, 0, lunghezza);
+                while (true) {
+                    CoderResult esito = encoder.encode(daCodificare, byteBuffer, ultimo);
+                    if (esito.isOverflow()) {
+                        scriviByte(byteBuffer, destinazione);
+                    } else {
+                        break;
+                    }
+                }
+                if (ultimo) {
+                    while (encoder.flush(byteBuffer).isOverflow()) {
+                        scriviByte(byteBuffer, destinazione);
+                    }
+                }
+                scriviByte(byteBuffer, destinazione);
+                // Un surrogato alto in fondo al buffer aspetta il suo compagno.
+                int rimasti = daCodificare.remaining();
+                System.arraycopy(caratteri, daCodificare.position(), caratteri, 0, rimasti);
+                return rimasti;
+            }
+        };
+        scrivi(menu, uscita);
+    }
+
+    /** Il documento in una stringa, per le anteprime. */
+    public String componi(Menu menu) {
+        StringWriter testo = new StringWriter();
+        try {
+            scrivi(menu, testo);
+        } catch (IOException e) {
+            // Si scrive in memoria: non puo' succedere.
+            throw new UncheckedIOException(e);
+        }
+        return testo.toString();
+    }
+
+    private static void scriviByte(ByteBuffer byteBuffer, WritableByteChannel destinazione) throws IOException {
+        byteBuffer.flip();
+        while (byteBuffer.hasRemaining()) {
+            destinazione.write(byteBuffer);
+        }
+        byteBuffer.clear();
+    }
+
+    private void scrivi(Menu menu, Uscita out) throws IOException {
+        out.testo("=== MENU: ").testo(menu.getNome()).testo(" ===\n\n");
+        out.testo("Descrizione: ").testo(menu.getDescrizione()).testo("\n\n");
+        if (pieno(menu.getNote())) {
+            out.testo("Note: ").testo(menu.getNote()).testo("\n\n");
+        }
+        out.testo("CONTENUTO DEL MENU:\n");
+        out.testo("==================\n\n");
+
+        for (SezioniMenu sezione : menu.getSezioni()) {
+            String titolo = sezione.getTitolo() != null ? sezione.getTitolo() : "";
+            out.maiuscolo(titolo).carattere('\n');
+            out.ripeti('-', titolo.length()).carattere('\n');
+
+            for (VoceMenu voce : sezione.getVoci()) {
+                out.testo("• ").testo(voce.getNomeVisuale()).carattere('\n');
+                if (voce.getRicetta() != null) {
+                    scriviRicetta(voce.getRicetta(), out);
+                }
+                if (pieno(voce.getModificheTesto())) {
+                    out.testo("  Note: ").testo(voce.getModificheTesto()).carattere('\n');
+                }
+                out.carattere('\n');
+            }
+            out.carattere('\n');
+        }
+
+        out.testo("\n=== Fine Menu ===\n");
+        out.testo("Generato dal sistema Cat & Ring\n");
+        out.fine();
+    }
+
+    private void scriviRicetta(Ricetta ricetta, Uscita out) throws IOException {
+        out.testo("  Tempo preparazione: ").numero(ricetta.getTempoPreparazione())
+                .testo(" minuti (").numero(ricetta.getNumeroPorte()).testo(")\n");
+        if (pieno(ricetta.getDescrizione())) {
+            out.testo("  ").testo(ricetta.getDescrizione()).carattere('\n');
+        }
+        if (ricetta.isSenzaDettagli()) {
+            return;
+        }
+
+        List<Ingrediente> ingredienti = ricetta.getIngredienti();
+        List<Dose> dosi = ricetta.getDosi();
+        if (!ingredienti.isEmpty()) {
+            out.testo("  Ingredienti:\n");
+            for (int i = 0; i < ingredienti.size(); i++) {
+                out.testo("    - ").testo(ingredienti.get(i).getNome());
+                if (i < dosi.size()) {
+                    Dose dose = dosi.get(i);
+                    out.testo(": ").testo(Double.toString(dose.getQuantitativo()))
+                            .carattere(' ').testo(dose.getUnitaMisura());
+                }
+                out.carattere('\n');
+            }
+        }
+
+        List<Tag> tags = ricetta.getTags();
+        if (!tags.isEmpty()) {
+            out.testo("  Tag: ");
+            for (int i = 0; i < tags.size(); i++) {
+                if (i > 0) {
+                    out.testo(", ");
+                }
+                out.testo(tags.get(i).getNome());
+            }
+            out.carattere('\n');
+        }
+    }
+
+    private static boolean pieno(String testo) {
+        return testo != null && !testo.trim().isEmpty();
+    }
+
+    /** Accumula i caratteri nel buffer e lo passa alla destinazione quando e' pieno. */
+    private abstract static class Uscita {
+
+        private final char[] buffer;
+        private int usati;
+
+        Uscita(char[] buffer) {
+            this.buffer = buffer;
+        }
+
+        /** Consegna i primi caratteri del buffer; restituisce quanti ne restano in testa. */
+        abstract int svuota(char[] caratteri, int lunghezza, boolean ultimo) throws IOException;
+
+        Uscita testo(String testo) throws IOException {
+            if (testo == null) {
+                testo = "null";
+            }
+            int copiati = 0;
+            while (copiati < testo.length()) {
+                if (usati == buffer.length) {
+                    usati = svuota(buffer, usati, false);
+                }
+                int quanti = Math.min(testo.length() - copiati, buffer.length - usati);
+                testo.getChars(copiati, copiati + quanti, buffer, usati);
+                usati += quanti;
+                copiati += quanti;
+            }
+            return this;
+        }
+
+        Uscita carattere(char c) throws IOException {
+            if (usati == buffer.length) {
+                usati = svuota(buffer, usati, false);
+            }
+            buffer[usati++] = c;
+            return this;
+        }
+
+        Uscita numero(int valore) throws IOException {
+            return testo(Integer.toString(valore));
+        }
+
+        Uscita maiuscolo(String testo) throws IOException {
+            for (int i = 0; i < testo.length(); i++) {
+                carattere(Character.toUpperCase(testo.charAt(i)));
+            }
+            return this;
+        }
+
+        Uscita ripeti(char c, int volte) throws IOException {
+            for (int i = 0; i < volte; i++) {
+                carattere(c);
+            }
+            return this;
+        }
+
+        void fine() throws IOException {
+            usati = svuota(buffer, usati, true);
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package com.catring.persistence;
+
+import com.catring.information_expert.MenuValidator;
+import com.catring.model.Ricetta;
+import com.catring.model.Tag;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Importa ricette in blocco da un file CSV con intestazione o JSON-lines,
+ * eventualmente compresso con gzip. Il file si legge in streaming: il
+ * thread chiamante lo divide in blocchi di righe, un pool le interpreta e
+ * le valida con {@link MenuValidator#isValidRicetta}, e i blocchi passano
+ * alla destinazione nell'ordine del file. In volo ci sono al piu' due
+ * blocchi per thread e delle righe scartate si tiene solo un campione,
+ * cosi' la memoria non dipende dalla lunghezza del file.
+ *
+ * Colonne (o chiavi JSON) riconosciute: id, nome, descrizione,
+ * tempoPreparazione, stato, autore, numeroPorte e tag (nel CSV separati da
+ * '|'). Solo nome e' obbligatoria; senza stato la ricetta e' una bozza.
+ */
+public class ImportazioneRicette {
+
+    public static final int DIMENSIONE_BLOCCO = 1000;
+    public static final int SCARTATE_RIPORTATE = 1000;
+
+    /**
+     * Un record CSV con un campo tra virgolette puo' occupare al piu' tante
+     * righe e tanti caratteri: oltre, la sua prima riga si scarta e la
+     * lettura riprende dalla riga seguente.
+     */
+    public static final int MASSIMO_RIGHE_RECORD = 100;
+    public static final int MASSIMO_CARATTERI_RECORD = 1 << 16;
+
+    public enum Formato {
+        CSV, JSONL;
+
+        /** Dall'estensione del file, ignorando un eventuale .gz finale. */
+        public static Formato daFile(Path file) {
+            String nome = nomeSenzaGz(file).toLowerCase(Locale.ROOT);
+            if (nome.endsWith(".csv")) {
+                return CSV;
+            }
+            if (nome.endsWith(".jsonl") || nome.endsWith(".ndjson")) {
+                return JSONL;
+            }
+            throw new IllegalArgumentException("Formato non riconosciuto: " + file.getFileName());
+        }
+    }
+
+    private final Function<List<Ricetta>, List<Ricetta>> destinazione;
+    private final MenuValidator validatore = new MenuValidator();
+    private final int thread;
+    private final int dimensioneBlocco;
+
+    /**
+     * destinazione riceve ogni blocco di ricette valide e restituisce quelle
+     * effettivamente inserite (ad esempio MenuService::inserisciRicette).
+     */
+    public ImportazioneRicette(Function<List<Ricetta>, List<Ricetta>> destinazione) {
+        this(destinazione, Runtime.getRuntime().availableProcessors(), DIMENSIONE_BLOCCO);
+    }
+
+    public ImportazioneRicette(Function<List<Ricetta>, List<Ricetta>> destinazione, int thread, int dimensioneBlocco) {
+        if (thread < 1 || dimensioneBlocco < 1) {
+            throw new IllegalArgumentException("Servono almeno un thread e blocchi di almeno una riga");
+        }
+        this.destinazione = destinazione;
+        this.thread = thread;
+        this.dimensioneBlocco = dimensioneBlocco;
+    }
+
+    public Esito importa(Path file) throws IOException {
+        return importa(file, Formato.daFile(file));
+    }
+
+    public Esito importa(Path file, Formato formato) throws IOException {
+        InputStream ingresso = Files.newInputStream(file);
+        try {
+            if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz")) {
+                ingresso = new GZIPInputStream(ingresso, 1 << 16);
+            }
+        } catch (IOException e) {
+            ingresso.close();
+            throw e;
+        }
+        try (Reader sorgente = new InputStreamReader(ingresso, StandardCharsets.UTF_8)) {
+            return importa(sorgente, formato);
+        }
+    }
+
+    public Esito importa(Reader sorgente, Formato formato) throws IOException {
+        long inizio = System.nanoTime();
+        BufferedReader righe = sorgente instanceof BufferedReader
+                ? (BufferedReader) sorgente : new BufferedReader(sorgente, 1 << 16);
+        Esito esito = new Esito();
+        Function<RigaLetta, Ricetta> interpreta;
+        if (formato == Formato.CSV) {
+            interpreta = intestazioneCsv(righe, esito);
+            if (interpreta == null) {
+                esito.durata = System.nanoTime() - inizio;
+                return esito;
+            }
+        } else {
+            interpreta = riga -> daJson(TestoJson.leggiOggetto(riga.testo));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(thread, azione -> {
+            Thread t = new Thread(azione, "importazione-ricette");
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<BloccoAnalizzato>> inVolo = new ArrayDeque<>();
+        try {
+            List<RigaLetta> blocco;
+            while (!(blocco = leggiBlocco(righe, formato, esito)).isEmpty()) {
+                List<RigaLetta> daAnalizzare = blocco;
+                inVolo.add(pool.submit(() -> analizza(daAnalizzare, interpreta)));
+                if (inVolo.size() >= 2 * thread) {
+                    applica(attendi(inVolo.poll()), esito);
+                }
+            }
+            while (!inVolo.isEmpty()) {
+                applica(attendi(inVolo.poll()), esito);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        esito.durata = System.nanoTime() - inizio;
+        return esito;
+    }
+
+    private List<RigaLetta> leggiBlocco(BufferedReader righe, Formato formato, Esito esito) throws IOException {
+        List<RigaLetta> blocco = new ArrayList<>(dimensioneBlocco);
+        String riga;
+        while (blocco.size() < dimensioneBlocco && (riga = righe.readLine()) != null) {
+            long numero = ++esito.righeFile;
+            if (formato == Formato.CSV && virgolette(riga) % 2 != 0) {
+                riga = recordCsv(righe, riga, esito);
+                if (riga == null) {
+                    blocco.add(new RigaLetta(numero, null, "Virgolette non chiuse entro "
+                            + MASSIMO_RIGHE_RECORD + " righe o " + MASSIMO_CARATTERI_RECORD + " caratteri"));
+                    continue;
+                }
+            }
+            if (!riga.trim().isEmpty()) {
+                blocco.add(new RigaLetta(numero, riga));
+            }
+        }
+        return blocco;
+    }
+
+    // Un campo tra virgolette puo' contenere a capo: il record finisce quando
+    // le virgolette sono bilanciate. Se non lo sono entro i limiti si torna
+    // alla riga dopo la prima, che il buffer conserva, e si restituisce null.
+    private static String recordCsv(BufferedReader righe, String prima, Esito esito) throws IOException {
+        righe.mark(MASSIMO_CARATTERI_RECORD);
+        StringBuilder record = new StringBuilder(prima);
+        int aperte = virgolette(prima);
+        int seguite = 0;
+        String seguito;
+        while (aperte % 2 != 0 && seguite < MASSIMO_RIGHE_RECORD - 1 && record.length() <= MASSIMO_CARATTERI_RECORD
+                && (seguito = righe.readLine()) != null) {
+            seguite++;
+            record.append('\n').append(seguito);
+            aperte += virgolette(seguito);
+        }
+        if (aperte % 2 == 0 && record.length() <= MASSIMO_CARATTERI_RECORD) {
+            esito.righeFile += seguite;
+            return record.toString();
+        }
+        try {
+            righe.reset();
+        } catch (IOException e) {
+            // Righe piu' lunghe del buffer: quelle lette si perdono con il record.
+            esito.righeFile += seguite;
+        }
+        return null;
+    }
+
+    private BloccoAnalizzato analizza(List<RigaLetta> blocco, Function<RigaLetta, Ricetta> interpreta) {
+        BloccoAnalizzato analizzato = new BloccoAnalizzato(blocco.size());
+        for (RigaLetta riga : blocco) {
+            if (riga.errore != null) {
+                analizzato.scartate.add(new RigaScartata(riga.numero, riga.errore));
+                continue;
+            }
+            Ricetta ricetta;
+            try {
+                ricetta = interpreta.apply(riga);
+            } catch (IllegalArgumentException e) {
+                analizzato.scartate.add(new RigaScartata(riga.numero, e.getMessage()));
+                continue;
+            }
+            String motivo = motivoScarto(ricetta);
+            if (motivo != null) {
+                analizzato.scartate.add(new RigaScartata(riga.numero, motivo));
+            } else {
+                analizzato.valide.add(ricetta);
+                analizzato.righeValide.add(riga.numero);
+            }
+        }
+        return analizzato;
+    }
+
+    private String motivoScarto(Ricetta ricetta) {
+        if (validatore.isValidRicetta(ricetta)) {
+            return null;
+        }
+        if (!validatore.isValidRicettaName(ricetta.getNome())) {
+            return "Nome mancante o troppo corto";
+        }
+        if (!validatore.isValidRicettaDescription(ricetta.getDescrizione())) {
+            return "Descrizione mancante";
+        }
+        if (!validatore.isValidTempoPreparazione(ricetta.getTempoPreparazione())) {
+            return "Tempo di preparazione fuori intervallo: " + ricetta.getTempoPreparazione();
+        }
+        return "Stato non valido: " + ricetta.getStato();
+    }
+
+    private void applica(BloccoAnalizzato analizzato, Esito esito) {
+        esito.righe += analizzato.valide.size() + analizzato.scartate.size();
+        Set<Ricetta> inserite = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (!analizzato.valide.isEmpty()) {
+            inserite.addAll(destinazione.apply(analizzato.valide));
+        }
+        esito.importate += inserite.size();
+
+        // Le righe scartate si riportano in ordine di file, comprese quelle
+        // che la destinazione ha rifiutato come duplicate.
+        List<RigaScartata> scartate = new ArrayList<>(analizzato.scartate);
+        for (int i = 0; i < analizzato.valide.size(); i++) {
+            if (!inserite.contains(analizzato.valide.get(i))) {
+                scartate.add(new RigaScartata(analizzato.righeValide.get(i), "Ricetta gia' presente (stesso nome o id)"));
+            }
+        }
+        scartate.sort((a, b) -> Long.compare(a.riga, b.riga));
+        for (RigaScartata scartata : scartate) {
+            esito.scartate++;
+            if (esito.campioneScartate.size() < SCARTATE_RIPORTATE) {
+                esito.campioneScartate.add(scartata);
+            }
+        }
+    }
+
+    private static BloccoAnalizzato attendi(Future<BloccoAnalizzato> blocco) throws IOException {
+        try {
+            return blocco.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Importazione interrotta");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // CSV
+
+    private Function<RigaLetta, Ricetta> intestazioneCsv(BufferedReader righe, Esito esito) throws IOException {
+        String intestazione;
+        do {
+            intestazione = righe.readLine();
+            if (intestazione == null) {
+                return null;
+            }
+            esito.righeFile++;
+        } while (intestazione.trim().isEmpty());
+        if (intestazione.startsWith("\uFEFF")) {
+            intestazione = intestazione.substring(1);
+        }
+        // I fogli di calcolo con localizzazione italiana separano con ';'.
+        char separatore = intestazione.indexOf(';') >= 0 && intestazione.indexOf(',') < 0 ? ';' : ',';
+        List<String> nomi = campiCsv(intestazione, separatore);
+        Map<String, Integer> colonne = new HashMap<>();
+        for (int i = 0; i < nomi.size(); i++) {
+            colonne.putIfAbsent(nomi.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!colonne.containsKey("nome")) {
+            throw new IOException("Intestazione CSV senza la colonna nome: " + intestazione);
+        }
+        return riga -> {
+            List<String> campi = campiCsv(riga.testo, separatore);
+            if (campi.size() > nomi.size()) {
+                throw new IllegalArgumentException("Attese " + nomi.size() + " colonne, trovate " + campi.size());
+            }
+            Map<String, Object> valori = new HashMap<>();
+            for (Map.Entry<String, Integer> colonna : colonne.entrySet()) {
+                if (colonna.getValue() < campi.size()) {
+                    valori.put(colonna.getKey(), campi.get(colonna.getValue()));
+                }
+            }
+            Object tag = valori.get("tag");
+            if (tag != null) {
+                List<Object> nomiTag = new ArrayList<>();
+                for (String nome : ((String) tag).split("\\|")) {
+                    nomiTag.add(nome);
+                }
+                valori.put("tag", nomiTag);
+            }
+            return daValori(valori);
+        };
+    }
+
+    private static List<String> campiCsv(String record, char separatore) {
+        List<String> campi = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean traVirgolette = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (traVirgolette) {
+                if (c != '"') {
+                    campo.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else {
+                    traVirgolette = false;
+                }
+            } else if (c == '"') {
+                traVirgolette = true;
+            } else if (c == separatore) {
+                campi.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campi.add(campo.toString());
+        return campi;
+    }
+
+    private static int virgolette(String riga) {
+        int conteggio = 0;
+        for (int i = 0; i < riga.length(); i++) {
+            if (riga.charAt(i) == '"') {
+                conteggio++;
+            }
+        }
+        return conteggio;
+    }
+
+    // Valori comuni ai due formati
+
+    private static Ricetta daJson(Map<String, Object> oggetto) {
+        Map<String, Object> valori = new HashMap<>();
+        for (Map.Entry<String, Object> voce : oggetto.entrySet()) {
+            valori.put(voce.getKey().toLowerCase(Locale.ROOT), voce.getValue());
+        }
+        return daValori(valori);
+    }
+
+    private static Ricetta daValori(Map<String, Object> valori) {
+        String id = testo(valori, "id");
+        String stato = testo(valori, "stato");
+        Ricetta ricetta = new Ricetta(id, testo(valori, "nome"), testo(valori, "descrizione"),
+                intero(valori, "tempopreparazione", 0),
+                stato != null ? stato.toLowerCase(Locale.ROOT) : Ricetta.STATO_BOZZA, testo(valori, "autore"));
+        ricetta.setNumeroPorte(intero(valori, "numeroporte", ricetta.getNumeroPorte()));
+        Object tag = valori.get("tag");
+        if (tag instanceof List) {
+            for (Object nome : (List<?>) tag) {
+                if (nome != null && !nome.toString().trim().isEmpty()) {
+                    ricetta.getTags().add(new Tag(nome.toString().trim()));
+                }
+            }
+        } else if (tag != null) {
+            throw new IllegalArgumentException("tag deve essere un elenco");
+        }
+        return ricetta;
+    }
+
+    private static String testo(Map<String, Object> valori, String chiave) {
+        Object valore = valori.get(chiave);
+        if (valore == null) {
+            return null;
+        }
+        String testo = valore.toString().trim();
+        return testo.isEmpty() ? null : testo;
+    }
+
+    private static int intero(Map<String, Object> valori, String chiave, int predefinito) {
+        String testo = testo(valori, chiave);
+        if (testo == null) {
+            return predefinito;
+        }
+        try {
+            return Integer.parseInt(testo);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(chiave.equals("tempopreparazione")
+                    ? "tempoPreparazione non numerico: " + testo : "numeroPorte non numerico: " + testo);
+        }
+    }
+
+    private static String nomeSenzaGz(Path file) {
+        String nome = file.getFileName().toString();
+        return nome.toLowerCase(Locale.ROOT).endsWith(".gz") ? nome.substring(0, nome.length() - 3) : nome;
+    }
+
+    private static final class RigaLetta {
+        final long numero;
+        final String testo;
+        final String errore;
+
+        RigaLetta(long numero, String testo) {
+            this(numero, testo, null);
+        }
+
+        RigaLetta(long numero, String testo, String errore) {
+            this.numero = numero;
+            this.testo = testo;
+            this.errore = errore;
+        }
+    }
+
+    private static final class BloccoAnalizzato {
+        final List<Ricetta> valide;
+        final List<Long> righeValide;
+        final List<RigaScartata> scartate = new ArrayList<>();
+
+        BloccoAnalizzato(int dimensione) {
+            this.valide = new ArrayList<>(dimensione);
+            this.righeValide = new ArrayList<>(dimensione);
+        }
+    }
+
+    public static final class RigaScartata {
+        private final long riga;
+        private final String motivo;
+
+        RigaScartata(long riga, String motivo) {
+            this.riga = riga;
+            this.motivo = motivo;
+        }
+
+        /** Numero della riga nel file, contando da 1 e compresa l'intestazione. */
+        public long getRiga() { return riga; }
+
+        public String getMotivo() { return motivo; }
+
+        @Override
+        public String toString() {
+            return "riga " + riga + ": " + motivo;
+        }
+    }
+
+    public static final class Esito {
+        private long righeFile;
+        private long righe;
+        private long importate;
+        private long scartate;
+        private long durata;
+        private final List<RigaScartata> campioneScartate = new ArrayList<>();
+
+        /** Record letti, esclusi intestazione e righe vuote. */
+        public long getRighe() { return righe; }
+
+        public long getImportate() { return importate; }
+
+        public long getScartate() { return scartate; }
+
+        /** Le prime {@value ImportazioneRicette#SCARTATE_RIPORTATE} righe scartate, in ordine di file. */
+        public List<RigaScartata> getRigheScartate() { return Collections.unmodifiableList(campioneScartate); }
+
+        public long getDurataMillis() { return durata / 1_000_000; }
+
+        public double getRigheAlSecondo() {
+            return durata == 0 ? 0 : righe * 1e9 / durata;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d righe, %d importate, %d scartate in %d ms (%.0f righe/s)",
+                    righe, importate, scartate, getDurataMillis(), getRigheAlSecondo());
+        }
+    }
+}
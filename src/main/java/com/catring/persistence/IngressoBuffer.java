@@ -0,0 +1,146 @@
+package com.catring.persistence;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * DataInput su un ByteBuffer: a differenza di DataInputStream su
+ * BufferedInputStream non sincronizza ogni byte letto. Se costruito su un
+ * FileChannel il buffer viene riempito dal canale quando si svuota,
+ * altrimenti si legge solo il buffer passato (ad esempio un file mappato).
+ */
+final class IngressoBuffer implements DataInput {
+
+    private static final int BUFFER = 1 << 16;
+
+    private final FileChannel canale;
+    private final ByteBuffer buffer;
+
+    IngressoBuffer(FileChannel canale, long posizione) throws IOException {
+        this.canale = canale;
+        this.buffer = ByteBuffer.allocate(BUFFER);
+        canale.position(posizione);
+        buffer.limit(0);
+    }
+
+    IngressoBuffer(ByteBuffer buffer) {
+        this.canale = null;
+        this.buffer = buffer;
+    }
+
+    /** Posizione corrente nel buffer; ha senso solo se non si legge da un canale. */
+    int posizione() {
+        return buffer.position();
+    }
+
+    private void richiedi(int necessari) throws IOException {
+        if (buffer.remaining() >= necessari) {
+            return;
+        }
+        if (canale == null) {
+            throw new EOFException("Dati troncati");
+        }
+        buffer.compact();
+        while (buffer.position() < necessari) {
+            if (canale.read(buffer) < 0) {
+                throw new EOFException("Dati troncati");
+            }
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void readFully(byte[] destinazione) throws IOException {
+        readFully(destinazione, 0, destinazione.length);
+    }
+
+    @Override
+    public void readFully(byte[] destinazione, int inizio, int lunghezza) throws IOException {
+        while (lunghezza > 0) {
+            richiedi(1);
+            int copiati = Math.min(lunghezza, buffer.remaining());
+            buffer.get(destinazione, inizio, copiati);
+            inizio += copiati;
+            lunghezza -= copiati;
+        }
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        for (int saltati = 0; saltati < n; saltati++) {
+            readByte();
+        }
+        return n;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        richiedi(1);
+        return buffer.get();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        richiedi(2);
+        return buffer.getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        richiedi(2);
+        return buffer.getChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        richiedi(4);
+        return buffer.getInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        richiedi(8);
+        return buffer.getLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        richiedi(4);
+        return buffer.getFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        richiedi(8);
+        return buffer.getDouble();
+    }
+
+    @Override
+    public String readLine() {
+        throw new UnsupportedOperationException("readLine non supportato");
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+}
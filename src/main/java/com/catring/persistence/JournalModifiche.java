@@ -0,0 +1,270 @@
+package com.catring.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Journal append-only delle modifiche. Ogni record e' scritto come
+ * [lunghezza][crc32][tipo][dati]; in lettura ci si ferma al primo record
+ * incompleto o corrotto (scrittura interrotta da un crash) e il file viene
+ * troncato li'.
+ *
+ * Group commit: {@link #accoda(RecordJournal)} mette il record in coda
+ * senza bloccare e restituisce il suo numero di sequenza; un thread
+ * dedicato scrive tutti i record in coda con una sola write e un solo
+ * force, poi sveglia chi aspetta in {@link #attendi(long)}. Con molte
+ * modifiche concorrenti, piu' record condividono lo stesso fsync.
+ */
+public class JournalModifiche implements Closeable {
+
+    private static final int INTESTAZIONE_RECORD = 4 + 4 + 1;
+    private static final int BUFFER_LETTURA = 1 << 16;
+
+    /** Riceve i record letti dal journal, uno alla volta. */
+    @FunctionalInterface
+    public interface Riesecuzione {
+        void applica(RecordJournal record) throws IOException;
+    }
+
+    private final Path file;
+    private final FileChannel canale;
+    private final Thread scrittore;
+    private final Object monitor = new Object();
+
+    private List<ByteBuffer> inCoda = new ArrayList<>();
+    private long sequenzaAccodata;
+    private long sequenzaDurevole;
+    private long commit;
+    private IOException errore;
+    private boolean chiuso;
+
+    public JournalModifiche(Path file) throws IOException {
+        this.file = file;
+        this.canale = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.scrittore = new Thread(this::scriviInCiclo, "journal-" + file.getFileName());
+        this.scrittore.setDaemon(true);
+        this.scrittore.start();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long accoda(RecordJournal record) {
+        ByteBuffer buffer = codifica(record);
+        synchronized (monitor) {
+            verifica();
+            inCoda.add(buffer);
+            sequenzaAccodata++;
+            monitor.notifyAll();
+            return sequenzaAccodata;
+        }
+    }
+
+    /**
+     * Lancia l'errore se il journal e' chiuso o una scrittura e' fallita:
+     * da quel momento non accetta piu' record, e chi lo usa puo' chiederlo
+     * prima di modificare lo stato che il record descriverebbe.
+     */
+    public void verifica() {
+        synchronized (monitor) {
+            if (chiuso) {
+                throw new IllegalStateException("Journal chiuso: " + file);
+            }
+            if (errore != null) {
+                throw new UncheckedIOException("Scrittura del journal fallita: " + file, errore);
+            }
+        }
+    }
+
+    /** Blocca finche' il record con questa sequenza (e tutti i precedenti) e' su disco. */
+    public void attendi(long sequenza) {
+        synchronized (monitor) {
+            while (sequenzaDurevole < sequenza && errore == null) {
+                try {
+                    monitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new InterruptedIOException("Attesa del journal interrotta"));
+                }
+            }
+            if (sequenzaDurevole < sequenza) {
+                throw new UncheckedIOException("Scrittura del journal fallita: " + file, errore);
+            }
+        }
+    }
+
+    public long getNumeroCommit() {
+        synchronized (monitor) {
+            return commit;
+        }
+    }
+
+    public long getNumeroRecord() {
+        synchronized (monitor) {
+            return sequenzaAccodata;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (monitor) {
+            chiuso = true;
+            monitor.notifyAll();
+        }
+        try {
+            scrittore.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        canale.close();
+        synchronized (monitor) {
+            if (errore != null) {
+                throw errore;
+            }
+        }
+    }
+
+    public static List<RecordJournal> leggi(Path file) throws IOException {
+        List<RecordJournal> records = new ArrayList<>();
+        leggi(file, records::add);
+        return records;
+    }
+
+    /**
+     * Passa a riesecuzione i record del file, in ordine, leggendolo a pezzi
+     * attraverso un buffer di dimensione fissa: in memoria c'e' al piu' un
+     * record alla volta. Restituisce il numero di record letti.
+     */
+    public static long leggi(Path file, Riesecuzione riesecuzione) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long letti = 0;
+        try (FileChannel canale = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long dimensione = canale.size();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_LETTURA);
+            buffer.flip();
+
+            long fineValida = 0;
+            while (riempi(canale, buffer, INTESTAZIONE_RECORD)) {
+                int lunghezza = buffer.getInt();
+                int crcAtteso = buffer.getInt();
+                if (lunghezza < 1 || lunghezza > dimensione - fineValida - 8) {
+                    break;
+                }
+                byte[] corpo = new byte[lunghezza];
+                int dalBuffer = Math.min(buffer.remaining(), lunghezza);
+                buffer.get(corpo, 0, dalBuffer);
+                if (dalBuffer < lunghezza) {
+                    // Record piu' grande del buffer: il resto si legge direttamente.
+                    ByteBuffer resto = ByteBuffer.wrap(corpo, dalBuffer, lunghezza - dalBuffer);
+                    while (resto.hasRemaining() && canale.read(resto) >= 0) {
+                        // lettura del resto del record
+                    }
+                    if (resto.hasRemaining()) {
+                        break;
+                    }
+                }
+                CRC32 crc = new CRC32();
+                crc.update(corpo);
+                if ((int) crc.getValue() != crcAtteso) {
+                    break;
+                }
+                riesecuzione.applica(new RecordJournal(corpo[0], Arrays.copyOfRange(corpo, 1, lunghezza)));
+                letti++;
+                fineValida += 8 + lunghezza;
+            }
+            if (fineValida < dimensione) {
+                canale.truncate(fineValida);
+                canale.force(true);
+            }
+        }
+        return letti;
+    }
+
+    // Porta nel buffer, pronto per la lettura, almeno minimo byte; false a fine file.
+    private static boolean riempi(FileChannel canale, ByteBuffer buffer, int minimo) throws IOException {
+        if (buffer.remaining() >= minimo) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < minimo && canale.read(buffer) >= 0) {
+            // lettura fino al minimo richiesto
+        }
+        buffer.flip();
+        return buffer.remaining() >= minimo;
+    }
+
+    static ByteBuffer codifica(RecordJournal record) {
+        byte[] dati = record.getDati();
+        CRC32 crc = new CRC32();
+        crc.update(record.getTipo());
+        crc.update(dati);
+        ByteBuffer buffer = ByteBuffer.allocate(INTESTAZIONE_RECORD + dati.length);
+        buffer.putInt(dati.length + 1);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(record.getTipo());
+        buffer.put(dati);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void scriviInCiclo() {
+        while (true) {
+            List<ByteBuffer> lotto;
+            long ultimaSequenza;
+            synchronized (monitor) {
+                while (inCoda.isEmpty() && !chiuso) {
+                    try {
+                        monitor.wait();
+                    } catch (InterruptedException e) {
+                        // Il thread termina solo con close(), dopo aver svuotato la coda.
+                    }
+                }
+                if (inCoda.isEmpty()) {
+                    return;
+                }
+                lotto = inCoda;
+                inCoda = new ArrayList<>();
+                ultimaSequenza = sequenzaAccodata;
+            }
+
+            try {
+                ByteBuffer[] buffers = lotto.toArray(new ByteBuffer[0]);
+                long daScrivere = 0;
+                for (ByteBuffer buffer : buffers) {
+                    daScrivere += buffer.remaining();
+                }
+                while (daScrivere > 0) {
+                    daScrivere -= canale.write(buffers);
+                }
+                canale.force(false);
+            } catch (IOException e) {
+                synchronized (monitor) {
+                    errore = e;
+                    monitor.notifyAll();
+                }
+                return;
+            }
+
+            synchronized (monitor) {
+                sequenzaDurevole = ultimaSequenza;
+                commit++;
+                monitor.notifyAll();
+            }
+        }
+    }
+}
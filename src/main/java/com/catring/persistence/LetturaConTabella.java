@@ -0,0 +1,34 @@
+package com.catring.persistence;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/** Controparte di {@link ScritturaConTabella}: risolve gli indici nella tabella letta. */
+class LetturaConTabella extends CodificaModello {
+
+    private final String[] tabella;
+
+    LetturaConTabella(String[] tabella) {
+        this.tabella = tabella;
+    }
+
+    static String[] leggiTabella(DataInput in) throws IOException {
+        String[] tabella = new String[leggiVarint(in)];
+        for (int i = 0; i < tabella.length; i++) {
+            tabella[i] = leggiTesto(in);
+        }
+        return tabella;
+    }
+
+    @Override
+    protected String leggiEtichetta(DataInput in) throws IOException {
+        int indice = leggiVarint(in);
+        if (indice == 0) {
+            return null;
+        }
+        if (indice > tabella.length) {
+            throw new IOException("Indice di etichetta non valido: " + indice);
+        }
+        return tabella[indice - 1];
+    }
+}
@@ -0,0 +1,501 @@
+package com.catring.persistence;
+
+import com.catring.model.Dose;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import com.catring.model.SezioniMenu;
+import com.catring.model.Tag;
+import com.catring.model.VoceMenu;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Un formato di esportazione descritto da un modello di testo, compilato una
+ * volta sola in una sequenza di passi: scrivere un menu percorre i passi
+ * senza rileggere il modello e senza cercare i campi per nome.
+ *
+ * Sintassi:
+ * <ul>
+ *   <li>{@code {{campo}}} scrive il valore del campo con gli escape del
+ *       formato (HTML, JSON, CSV o Markdown secondo l'estensione);</li>
+ *   <li>{@code {{#lista}}...{{/lista}}} ripete il blocco per ogni elemento
+ *       di sezioni, voci, ingredienti o tag;</li>
+ *   <li>{@code {{#campo}}...{{/campo}}} scrive il blocco se il campo non e'
+ *       vuoto, {@code {{^campo}}...{{/campo}}} se e' vuoto;</li>
+ *   <li>{@code {{! commento}}} non scrive niente.</li>
+ * </ul>
+ * Campi: menu.id, menu.nome, menu.descrizione, menu.note; sezione.titolo;
+ * voce.nome, voce.note; ricetta.nome, ricetta.descrizione, ricetta.autore,
+ * ricetta.tempo, ricetta.porzioni; ingrediente.nome, ingrediente.quantita,
+ * ingrediente.unita; tag.nome; e per la lista piu' interna numero, primo,
+ * ultimo. Un campo si puo' usare solo dentro la sua lista: sezione dentro
+ * sezioni, voce e ricetta dentro voci, e cosi' via. Gli errori nel modello
+ * lanciano IllegalArgumentException con la riga del problema.
+ */
+public final class ModelloEsportazione implements FormatoEsportazione {
+
+    private enum Lista {
+        SEZIONI("sezioni", null),
+        VOCI("voci", SEZIONI),
+        INGREDIENTI("ingredienti", VOCI),
+        TAG("tag", VOCI);
+
+        final String nome;
+        final Lista interna;
+
+        Lista(String nome, Lista interna) {
+            this.nome = nome;
+            this.interna = interna;
+        }
+    }
+
+    private enum Escape { NESSUNO, HTML, JSON, CSV, MARKDOWN }
+
+    /** Un campo e la lista dentro cui e' definito (null se vale ovunque). */
+    private static final class Campo {
+        final Lista lista;
+        final Function<Contesto, String> valore;
+
+        Campo(Lista lista, Function<Contesto, String> valore) {
+            this.lista = lista;
+            this.valore = valore;
+        }
+    }
+
+    private static final Map<String, Campo> CAMPI = new HashMap<>();
+    private static final Map<String, Lista> LISTE = new HashMap<>();
+
+    static {
+        campo("menu.id", null, c -> c.menu.getId());
+        campo("menu.nome", null, c -> c.menu.getNome());
+        campo("menu.descrizione", null, c -> c.menu.getDescrizione());
+        campo("menu.note", null, c -> c.menu.getNote());
+        campo("sezione.titolo", Lista.SEZIONI, c -> c.sezione.getTitolo());
+        campo("voce.nome", Lista.VOCI, c -> c.voce.getNomeVisuale());
+        campo("voce.note", Lista.VOCI, c -> c.voce.getModificheTesto());
+        campo("ricetta.nome", Lista.VOCI, c -> c.ricetta != null ? c.ricetta.getNome() : null);
+        campo("ricetta.descrizione", Lista.VOCI, c -> c.ricetta != null ? c.ricetta.getDescrizione() : null);
+        campo("ricetta.autore", Lista.VOCI, c -> c.ricetta != null ? c.ricetta.getAutore() : null);
+        campo("ricetta.tempo", Lista.VOCI,
+                c -> c.ricetta != null ? Integer.toString(c.ricetta.getTempoPreparazione()) : null);
+        campo("ricetta.porzioni", Lista.VOCI,
+                c -> c.ricetta != null ? Integer.toString(c.ricetta.getNumeroPorte()) : null);
+        campo("ingrediente.nome", Lista.INGREDIENTI, c -> c.ingrediente.getNome());
+        campo("ingrediente.quantita", Lista.INGREDIENTI,
+                c -> c.dose != null ? Double.toString(c.dose.getQuantitativo()) : null);
+        campo("ingrediente.unita", Lista.INGREDIENTI, c -> c.dose != null ? c.dose.getUnitaMisura() : null);
+        campo("tag.nome", Lista.TAG, c -> c.tag.getNome());
+        for (Lista lista : Lista.values()) {
+            LISTE.put(lista.nome, lista);
+        }
+    }
+
+    private static void campo(String nome, Lista lista, Function<Contesto, String> valore) {
+        CAMPI.put(nome, new Campo(lista, valore));
+    }
+
+    private final String nome;
+    private final String estensione;
+    private final Passo[] passi;
+
+    private ModelloEsportazione(String nome, String estensione, Passo[] passi) {
+        this.nome = nome;
+        this.estensione = estensione;
+        this.passi = passi;
+    }
+
+    /** Compila il modello; l'estensione sceglie gli escape dei valori. */
+    public static ModelloEsportazione compila(String nome, String estensione, String modello) {
+        Compilatore compilatore = new Compilatore(modello, escapePer(estensione));
+        return new ModelloEsportazione(nome, estensione, compilatore.compila());
+    }
+
+    private static Escape escapePer(String estensione) {
+        switch (estensione.toLowerCase(Locale.ROOT)) {
+            case "html":
+            case "htm":
+            case "xml":
+                return Escape.HTML;
+            case "json":
+                return Escape.JSON;
+            case "csv":
+                return Escape.CSV;
+            case "md":
+                return Escape.MARKDOWN;
+            default:
+                return Escape.NESSUNO;
+        }
+    }
+
+    @Override
+    public String getNome() {
+        return nome;
+    }
+
+    @Override
+    public String getEstensione() {
+        return estensione;
+    }
+
+    @Override
+    public void scrivi(Menu menu, Writer destinazione) throws IOException {
+        Contesto contesto = new Contesto(menu);
+        esegui(passi, contesto, destinazione);
+        destinazione.flush();
+    }
+
+    private static void esegui(Passo[] passi, Contesto contesto, Writer out) throws IOException {
+        for (Passo passo : passi) {
+            passo.esegui(contesto, out);
+        }
+    }
+
+    /** Il menu e gli elementi correnti delle liste aperte. */
+    private static final class Contesto {
+        final Menu menu;
+        SezioniMenu sezione;
+        VoceMenu voce;
+        Ricetta ricetta;
+        Ingrediente ingrediente;
+        Dose dose;
+        Tag tag;
+        int indice;
+        int dimensione;
+
+        Contesto(Menu menu) {
+            this.menu = menu;
+        }
+    }
+
+    private interface Passo {
+        void esegui(Contesto contesto, Writer out) throws IOException;
+    }
+
+    private static final class Testo implements Passo {
+        private final String testo;
+
+        Testo(String testo) {
+            this.testo = testo;
+        }
+
+        @Override
+        public void esegui(Contesto contesto, Writer out) throws IOException {
+            out.write(testo);
+        }
+    }
+
+    private static final class Valore implements Passo {
+        private final Function<Contesto, String> valore;
+        private final Escape escape;
+
+        Valore(Function<Contesto, String> valore, Escape escape) {
+            this.valore = valore;
+            this.escape = escape;
+        }
+
+        @Override
+        public void esegui(Contesto contesto, Writer out) throws IOException {
+            String testo = valore.apply(contesto);
+            if (testo != null) {
+                scriviConEscape(testo, escape, out);
+            }
+        }
+    }
+
+    private static final class Condizione implements Passo {
+        private final Function<Contesto, String> valore;
+        private final boolean seVuoto;
+        private final Passo[] blocco;
+
+        Condizione(Function<Contesto, String> valore, boolean seVuoto, Passo[] blocco) {
+            this.valore = valore;
+            this.seVuoto = seVuoto;
+            this.blocco = blocco;
+        }
+
+        @Override
+        public void esegui(Contesto contesto, Writer out) throws IOException {
+            String testo = valore.apply(contesto);
+            boolean vuoto = testo == null || testo.trim().isEmpty();
+            if (vuoto == seVuoto) {
+                ModelloEsportazione.esegui(blocco, contesto, out);
+            }
+        }
+    }
+
+    private static final class Ciclo implements Passo {
+        private final Lista lista;
+        private final Passo[] blocco;
+
+        Ciclo(Lista lista, Passo[] blocco) {
+            this.lista = lista;
+            this.blocco = blocco;
+        }
+
+        @Override
+        public void esegui(Contesto c, Writer out) throws IOException {
+            int indice = c.indice;
+            int dimensione = c.dimensione;
+            switch (lista) {
+                case SEZIONI:
+                    List<SezioniMenu> sezioni = c.menu.getSezioni();
+                    c.dimensione = sezioni.size();
+                    for (c.indice = 0; c.indice < c.dimensione; c.indice++) {
+                        c.sezione = sezioni.get(c.indice);
+                        ModelloEsportazione.esegui(blocco, c, out);
+                    }
+                    break;
+                case VOCI:
+                    List<VoceMenu> voci = c.sezione.getVoci();
+                    c.dimensione = voci.size();
+                    for (c.indice = 0; c.indice < c.dimensione; c.indice++) {
+                        c.voce = voci.get(c.indice);
+                        c.ricetta = c.voce.getRicetta();
+                        ModelloEsportazione.esegui(blocco, c, out);
+                    }
+                    break;
+                case INGREDIENTI:
+                    List<Ingrediente> ingredienti = dettagli(c.ricetta) ? c.ricetta.getIngredienti()
+                            : Collections.emptyList();
+                    List<Dose> dosi = dettagli(c.ricetta) ? c.ricetta.getDosi() : Collections.emptyList();
+                    c.dimensione = ingredienti.size();
+                    for (c.indice = 0; c.indice < c.dimensione; c.indice++) {
+                        c.ingrediente = ingredienti.get(c.indice);
+                        c.dose = c.indice < dosi.size() ? dosi.get(c.indice) : null;
+                        ModelloEsportazione.esegui(blocco, c, out);
+                    }
+                    break;
+                default:
+                    List<Tag> tags = dettagli(c.ricetta) ? c.ricetta.getTags() : Collections.emptyList();
+                    c.dimensione = tags.size();
+                    for (c.indice = 0; c.indice < c.dimensione; c.indice++) {
+                        c.tag = tags.get(c.indice);
+                        ModelloEsportazione.esegui(blocco, c, out);
+                    }
+            }
+            // La lista esterna riprende il suo numero, primo e ultimo.
+            c.indice = indice;
+            c.dimensione = dimensione;
+        }
+
+        private static boolean dettagli(Ricetta ricetta) {
+            return ricetta != null && !ricetta.isSenzaDettagli();
+        }
+    }
+
+    private static void scriviConEscape(String testo, Escape escape, Writer out) throws IOException {
+        if (escape == Escape.NESSUNO) {
+            out.write(testo);
+            return;
+        }
+        if (escape == Escape.CSV) {
+            if (testo.indexOf(',') < 0 && testo.indexOf('"') < 0 && testo.indexOf('\n') < 0
+                    && testo.indexOf('\r') < 0) {
+                out.write(testo);
+                return;
+            }
+            out.write('"');
+            out.write(testo.replace("\"", "\"\""));
+            out.write('"');
+            return;
+        }
+        int inizio = 0;
+        for (int i = 0; i < testo.length(); i++) {
+            String sostituto = sostituto(testo.charAt(i), escape);
+            if (sostituto != null) {
+                out.write(testo, inizio, i - inizio);
+                out.write(sostituto);
+                inizio = i + 1;
+            }
+        }
+        out.write(testo, inizio, testo.length() - inizio);
+    }
+
+    private static String sostituto(char c, Escape escape) {
+        switch (escape) {
+            case HTML:
+                switch (c) {
+                    case '&': return "&amp;";
+                    case '<': return "&lt;";
+                    case '>': return "&gt;";
+                    case '"': return "&quot;";
+                    case '\'': return "&#39;";
+                    default: return null;
+                }
+            case JSON:
+                switch (c) {
+                    case '"': return "\\\"";
+                    case '\\': return "\\\\";
+                    case '\n': return "\\n";
+                    case '\r': return "\\r";
+                    case '\t': return "\\t";
+                    default:
+                        return c < 0x20 || c == '\u2028' || c == '\u2029'
+                                ? String.format("\\u%04x", (int) c) : null;
+                }
+            default:
+                return "\\`*_[]#<>|".indexOf(c) >= 0 ? "\\" + c : null;
+        }
+    }
+
+    /** Trasforma il testo del modello in passi, controllando campi e liste. */
+    private static final class Compilatore {
+
+        private final String modello;
+        private final Escape escape;
+        private int posizione;
+        // Blocchi aperti: nome del tag e lista, se il blocco e' una lista.
+        private final Deque<String> aperti = new ArrayDeque<>();
+        private final Deque<Lista> listeAperte = new ArrayDeque<>();
+        // L'ultimo blocco letto e' finito con il suo {{/...}}.
+        private boolean chiuso;
+
+        Compilatore(String modello, Escape escape) {
+            this.modello = modello;
+            this.escape = escape;
+        }
+
+        Passo[] compila() {
+            return blocco();
+        }
+
+        // Legge fino alla chiusura del blocco corrente o alla fine del modello.
+        private Passo[] blocco() {
+            List<Passo> passi = new ArrayList<>();
+            while (posizione < modello.length()) {
+                int apertura = modello.indexOf("{{", posizione);
+                if (apertura < 0) {
+                    passi.add(new Testo(modello.substring(posizione)));
+                    posizione = modello.length();
+                    break;
+                }
+                if (apertura > posizione) {
+                    passi.add(new Testo(modello.substring(posizione, apertura)));
+                }
+                posizione = apertura;
+                int chiusura = modello.indexOf("}}", apertura + 2);
+                if (chiusura < 0) {
+                    throw errore("{{ senza }}");
+                }
+                String tag = modello.substring(apertura + 2, chiusura).trim();
+                posizione = chiusura + 2;
+                if (tag.isEmpty()) {
+                    throw errore("tag vuoto");
+                }
+                char tipo = tag.charAt(0);
+                String nomeTag = tag.substring(1).trim();
+                if (tipo == '!') {
+                    continue;
+                }
+                if (tipo == '/') {
+                    if (!nomeTag.equals(aperti.peek())) {
+                        throw errore("{{/" + nomeTag + "}} non chiude nessun blocco aperto");
+                    }
+                    chiuso = true;
+                    break;
+                }
+                if (tipo == '#' || tipo == '^') {
+                    passi.add(sezione(nomeTag, tipo == '^'));
+                } else {
+                    passi.add(new Valore(campo(tag), escape));
+                }
+            }
+            Passo[] compilati = passi.toArray(new Passo[0]);
+            return unisciTesti(compilati);
+        }
+
+        private Passo sezione(String nomeTag, boolean seVuoto) {
+            Lista lista = LISTE.get(nomeTag);
+            aperti.push(nomeTag);
+            Passo passo;
+            if (lista != null && !seVuoto) {
+                Lista esterna = listeAperte.peek();
+                if (lista.interna != null && !listeAperte.contains(lista.interna)) {
+                    throw errore("{{#" + nomeTag + "}} si usa dentro {{#" + lista.interna.nome + "}}");
+                }
+                if (esterna == lista) {
+                    throw errore("{{#" + nomeTag + "}} dentro se stesso");
+                }
+                listeAperte.push(lista);
+                Passo[] blocco = blocco();
+                listeAperte.pop();
+                passo = new Ciclo(lista, blocco);
+            } else {
+                Function<Contesto, String> valore = campo(nomeTag);
+                passo = new Condizione(valore, seVuoto, blocco());
+            }
+            if (!chiuso) {
+                throw errore("blocco {{#" + nomeTag + "}} non chiuso");
+            }
+            chiuso = false;
+            aperti.pop();
+            return passo;
+        }
+
+        private Function<Contesto, String> campo(String nomeCampo) {
+            switch (nomeCampo) {
+                case "numero":
+                case "primo":
+                case "ultimo":
+                    if (listeAperte.isEmpty()) {
+                        throw errore("{{" + nomeCampo + "}} si usa dentro una lista");
+                    }
+                    if (nomeCampo.equals("numero")) {
+                        return c -> Integer.toString(c.indice + 1);
+                    }
+                    return nomeCampo.equals("primo") ? c -> c.indice == 0 ? "si" : null
+                            : c -> c.indice == c.dimensione - 1 ? "si" : null;
+                default:
+                    Campo campo = CAMPI.get(nomeCampo);
+                    if (campo == null) {
+                        throw errore("campo sconosciuto '" + nomeCampo + "'");
+                    }
+                    if (campo.lista != null && !listeAperte.contains(campo.lista)) {
+                        throw errore("{{" + nomeCampo + "}} si usa dentro {{#" + campo.lista.nome + "}}");
+                    }
+                    return campo.valore;
+            }
+        }
+
+        private static Passo[] unisciTesti(Passo[] passi) {
+            List<Passo> uniti = new ArrayList<>(passi.length);
+            StringBuilder testo = new StringBuilder();
+            for (Passo passo : passi) {
+                if (passo instanceof Testo) {
+                    testo.append(((Testo) passo).testo);
+                    continue;
+                }
+                if (testo.length() > 0) {
+                    uniti.add(new Testo(testo.toString()));
+                    testo.setLength(0);
+                }
+                uniti.add(passo);
+            }
+            if (testo.length() > 0) {
+                uniti.add(new Testo(testo.toString()));
+            }
+            return uniti.toArray(new Passo[0]);
+        }
+
+        private IllegalArgumentException errore(String messaggio) {
+            int riga = 1;
+            for (int i = 0; i < Math.min(posizione, modello.length()); i++) {
+                if (modello.charAt(i) == '\n') {
+                    riga++;
+                }
+            }
+            return new IllegalArgumentException("Modello, riga " + riga + ": " + messaggio);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.catring.persistence;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool di connessioni JDBC a dimensione fissa: le connessioni si aprono
+ * alla prima richiesta che non ne trova una libera, fino al massimo; oltre,
+ * {@link #prendi()} aspetta che qualcuno ne restituisca una.
+ */
+final class PoolConnessioni implements AutoCloseable {
+
+    private final String url;
+    private final int massimo;
+    private final BlockingQueue<Connection> libere;
+    private final List<Connection> aperte = new ArrayList<>();
+    private boolean chiuso;
+
+    PoolConnessioni(String url, int massimo) {
+        if (massimo < 1) {
+            throw new IllegalArgumentException("Il pool deve avere almeno una connessione");
+        }
+        this.url = url;
+        this.massimo = massimo;
+        this.libere = new ArrayBlockingQueue<>(massimo);
+    }
+
+    Connection prendi() throws SQLException {
+        Connection connessione = libere.poll();
+        if (connessione != null) {
+            return connessione;
+        }
+        synchronized (this) {
+            if (chiuso) {
+                throw new SQLException("Pool di connessioni chiuso");
+            }
+            if (aperte.size() < massimo) {
+                connessione = DriverManager.getConnection(url);
+                aperte.add(connessione);
+                return connessione;
+            }
+        }
+        try {
+            return libere.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Attesa di una connessione interrotta", e);
+        }
+    }
+
+    void restituisci(Connection connessione) {
+        try {
+            if (!connessione.isClosed()) {
+                libere.add(connessione);
+                return;
+            }
+        } catch (SQLException e) {
+            // Connessione inutilizzabile: si scarta.
+        }
+        synchronized (this) {
+            aperte.remove(connessione);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        chiuso = true;
+        SQLException errore = null;
+        for (Connection connessione : aperte) {
+            try {
+                connessione.close();
+            } catch (SQLException e) {
+                errore = e;
+            }
+        }
+        aperte.clear();
+        libere.clear();
+        if (errore != null) {
+            throw errore;
+        }
+    }
+}
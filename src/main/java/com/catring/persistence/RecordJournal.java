@@ -0,0 +1,155 @@
+package com.catring.persistence;
+
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import com.catring.model.VoceMenu;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+
+/**
+ * Una modifica di MenuService registrata nel journal: un tipo e i dati
+ * codificati con {@link CodificaModello}. I record contengono gli id gia'
+ * generati, cosi' la riesecuzione ricostruisce esattamente lo stesso stato.
+ */
+public final class RecordJournal {
+
+    public static final byte MENU_CREATO = 1;
+    public static final byte MENU_ELIMINATO = 2;
+    public static final byte MENU_TITOLO = 3;
+    public static final byte MENU_NOTE = 4;
+    public static final byte SEZIONE_AGGIUNTA = 5;
+    public static final byte SEZIONE_RIMOSSA = 6;
+    public static final byte VOCE_AGGIUNTA = 7;
+    public static final byte VOCE_RIMOSSA = 8;
+    public static final byte VOCE_SPOSTATA = 9;
+    public static final byte RICETTA_SALVATA = 10;
+    public static final byte RICETTA_ELIMINATA = 11;
+    public static final byte BACHECA_PUBBLICATO = 12;
+    public static final byte BACHECA_RIMOSSO = 13;
+    public static final byte INGREDIENTE_AGGIUNTO = 14;
+
+    private final byte tipo;
+    private final byte[] dati;
+
+    public RecordJournal(byte tipo, byte[] dati) {
+        this.tipo = tipo;
+        this.dati = dati;
+    }
+
+    public byte getTipo() { return tipo; }
+
+    public byte[] getDati() { return dati; }
+
+    public DataInput leggiDati() {
+        return new DataInputStream(new ByteArrayInputStream(dati));
+    }
+
+    public static RecordJournal menuCreato(Menu menu) {
+        return crea(MENU_CREATO, out -> CodificaModello.DIRETTA.scriviMenu(out, menu));
+    }
+
+    public static RecordJournal menuEliminato(String menuId) {
+        return crea(MENU_ELIMINATO, out -> CodificaModello.scriviTesto(out, menuId));
+    }
+
+    public static RecordJournal menuTitolo(String menuId, String titolo) {
+        return crea(MENU_TITOLO, out -> {
+            CodificaModello.scriviTesto(out, menuId);
+            CodificaModello.scriviTesto(out, titolo);
+        });
+    }
+
+    public static RecordJournal menuNote(String menuId, String note) {
+        return crea(MENU_NOTE, out -> {
+            CodificaModello.scriviTesto(out, menuId);
+            CodificaModello.scriviTesto(out, note);
+        });
+    }
+
+    public static RecordJournal sezioneAggiunta(String menuId, String sezioneId, String titolo, int ordine) {
+        return crea(SEZIONE_AGGIUNTA, out -> {
+            CodificaModello.scriviTesto(out, menuId);
+            CodificaModello.scriviTesto(out, sezioneId);
+            CodificaModello.scriviTesto(out, titolo);
+            CodificaModello.scriviVarint(out, ordine);
+        });
+    }
+
+    public static RecordJournal sezioneRimossa(String menuId, String sezioneId) {
+        return crea(SEZIONE_RIMOSSA, out -> {
+            CodificaModello.scriviTesto(out, menuId);
+            CodificaModello.scriviTesto(out, sezioneId);
+        });
+    }
+
+    public static RecordJournal voceAggiunta(String menuId, String sezioneId, VoceMenu voce) {
+        return crea(VOCE_AGGIUNTA, out -> {
+            CodificaModello.scriviTesto(out, menuId);
+            CodificaModello.scriviTesto(out, sezioneId);
+            CodificaModello.DIRETTA.scriviVoce(out, voce);
+        });
+    }
+
+    public static RecordJournal voceRimossa(String menuId, String voceId) {
+        return crea(VOCE_RIMOSSA, out -> {
+            CodificaModello.scriviTesto(out, menuId);
+            CodificaModello.scriviTesto(out, voceId);
+        });
+    }
+
+    public static RecordJournal voceSpostata(String menuId, String voceId, String sezioneDestinazioneId) {
+        return crea(VOCE_SPOSTATA, out -> {
+            CodificaModello.scriviTesto(out, menuId);
+            CodificaModello.scriviTesto(out, voceId);
+            CodificaModello.scriviTesto(out, sezioneDestinazioneId);
+        });
+    }
+
+    public static RecordJournal ricettaSalvata(Ricetta ricetta) {
+        return crea(RICETTA_SALVATA, out -> CodificaModello.DIRETTA.scriviRicetta(out, ricetta));
+    }
+
+    public static RecordJournal ricettaEliminata(String ricettaId) {
+        return crea(RICETTA_ELIMINATA, out -> CodificaModello.scriviTesto(out, ricettaId));
+    }
+
+    public static RecordJournal bachecaPubblicato(String menuId, LocalDateTime data) {
+        return crea(BACHECA_PUBBLICATO, out -> {
+            CodificaModello.scriviTesto(out, menuId);
+            CodificaModello.scriviTesto(out, data.toString());
+        });
+    }
+
+    public static RecordJournal bachecaRimosso(String menuId) {
+        return crea(BACHECA_RIMOSSO, out -> CodificaModello.scriviTesto(out, menuId));
+    }
+
+    public static RecordJournal ingredienteAggiunto(Ingrediente ingrediente) {
+        return crea(INGREDIENTE_AGGIUNTO, out -> CodificaModello.DIRETTA.scriviIngrediente(out, ingrediente));
+    }
+
+    private static RecordJournal crea(byte tipo, Scrittura scrittura) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        try {
+            scrittura.scrivi(new DataOutputStream(buffer));
+        } catch (IOException e) {
+            // Si scrive in memoria: non puo' succedere.
+            throw new UncheckedIOException(e);
+        }
+        return new RecordJournal(tipo, buffer.toByteArray());
+    }
+
+    @FunctionalInterface
+    private interface Scrittura {
+        void scrivi(DataOutput out) throws IOException;
+    }
+}
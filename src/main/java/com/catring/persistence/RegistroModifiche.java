@@ -0,0 +1,154 @@
+package com.catring.persistence;
+
+import com.catring.model.Ingrediente;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aggregati modificati dall'ultimo salvataggio, segnati da MenuService a
+ * ogni modifica o ricavati dai record del journal in riesecuzione: per
+ * ogni menu e ricetta basta sapere se va riscritto o eliminato, qualunque
+ * sia il numero di modifiche che ha ricevuto. Gli ingredienti di base si
+ * possono solo aggiungere; della bacheca si tiene quali menu sono stati
+ * pubblicati o tolti. Non e' thread-safe: MenuService lo usa sotto il suo
+ * lock.
+ */
+public final class RegistroModifiche {
+
+    private final Set<String> menuModificati = new LinkedHashSet<>();
+    private final Set<String> menuEliminati = new LinkedHashSet<>();
+    private final Set<String> ricetteModificate = new LinkedHashSet<>();
+    private final Set<String> ricetteEliminate = new LinkedHashSet<>();
+    private final Map<String, Ingrediente> ingredientiAggiunti = new LinkedHashMap<>();
+    private final Set<String> bachecaPubblicati = new LinkedHashSet<>();
+    private final Set<String> bachecaRimossi = new LinkedHashSet<>();
+
+    public RegistroModifiche() {
+    }
+
+    private RegistroModifiche(RegistroModifiche originale) {
+        menuModificati.addAll(originale.menuModificati);
+        menuEliminati.addAll(originale.menuEliminati);
+        ricetteModificate.addAll(originale.ricetteModificate);
+        ricetteEliminate.addAll(originale.ricetteEliminate);
+        ingredientiAggiunti.putAll(originale.ingredientiAggiunti);
+        bachecaPubblicati.addAll(originale.bachecaPubblicati);
+        bachecaRimossi.addAll(originale.bachecaRimossi);
+    }
+
+    /** Segna l'aggregato toccato da un record letto dal journal. */
+    public void segna(RecordJournal record) {
+        try {
+            switch (record.getTipo()) {
+                case RecordJournal.MENU_ELIMINATO:
+                    segnaMenuEliminato(CodificaModello.leggiTesto(record.leggiDati()));
+                    break;
+                case RecordJournal.RICETTA_SALVATA:
+                    segnaRicetta(CodificaModello.leggiTesto(record.leggiDati()));
+                    break;
+                case RecordJournal.RICETTA_ELIMINATA:
+                    segnaRicettaEliminata(CodificaModello.leggiTesto(record.leggiDati()));
+                    break;
+                case RecordJournal.INGREDIENTE_AGGIUNTO:
+                    segnaIngrediente(CodificaModello.DIRETTA.leggiIngrediente(record.leggiDati()));
+                    break;
+                case RecordJournal.BACHECA_PUBBLICATO:
+                    segnaPubblicazione(CodificaModello.leggiTesto(record.leggiDati()));
+                    break;
+                case RecordJournal.BACHECA_RIMOSSO:
+                    segnaRimozioneDaBacheca(CodificaModello.leggiTesto(record.leggiDati()));
+                    break;
+                default:
+                    // Tutti gli altri record modificano il menu con questo id.
+                    segnaMenu(CodificaModello.leggiTesto(record.leggiDati()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void segnaMenu(String menuId) {
+        segna(menuId, menuModificati, menuEliminati);
+    }
+
+    public void segnaMenuEliminato(String menuId) {
+        segna(menuId, menuEliminati, menuModificati);
+    }
+
+    public void segnaRicetta(String ricettaId) {
+        segna(ricettaId, ricetteModificate, ricetteEliminate);
+    }
+
+    public void segnaRicettaEliminata(String ricettaId) {
+        segna(ricettaId, ricetteEliminate, ricetteModificate);
+    }
+
+    public void segnaIngrediente(Ingrediente ingrediente) {
+        ingredientiAggiunti.put(ingrediente.getId(), ingrediente);
+    }
+
+    public void segnaPubblicazione(String menuId) {
+        segna(menuId, bachecaPubblicati, bachecaRimossi);
+    }
+
+    public void segnaRimozioneDaBacheca(String menuId) {
+        segna(menuId, bachecaRimossi, bachecaPubblicati);
+    }
+
+    // Vale l'ultima operazione: un aggregato eliminato e ricreato va riscritto.
+    private static void segna(String id, Set<String> aggiungi, Set<String> togli) {
+        togli.remove(id);
+        aggiungi.add(id);
+    }
+
+    public Set<String> getMenuModificati() { return Collections.unmodifiableSet(menuModificati); }
+
+    public Set<String> getMenuEliminati() { return Collections.unmodifiableSet(menuEliminati); }
+
+    public Set<String> getRicetteModificate() { return Collections.unmodifiableSet(ricetteModificate); }
+
+    public Set<String> getRicetteEliminate() { return Collections.unmodifiableSet(ricetteEliminate); }
+
+    public Map<String, Ingrediente> getIngredientiAggiunti() { return Collections.unmodifiableMap(ingredientiAggiunti); }
+
+    public Set<String> getBachecaPubblicati() { return Collections.unmodifiableSet(bachecaPubblicati); }
+
+    public Set<String> getBachecaRimossi() { return Collections.unmodifiableSet(bachecaRimossi); }
+
+    public boolean isVuoto() {
+        return dimensione() == 0;
+    }
+
+    /** Numero di aggregati da scrivere o eliminare. */
+    public int dimensione() {
+        return menuModificati.size() + menuEliminati.size() + ricetteModificate.size() + ricetteEliminate.size()
+                + ingredientiAggiunti.size() + bachecaPubblicati.size() + bachecaRimossi.size();
+    }
+
+    public RegistroModifiche copia() {
+        return new RegistroModifiche(this);
+    }
+
+    public void svuota() {
+        menuModificati.clear();
+        menuEliminati.clear();
+        ricetteModificate.clear();
+        ricetteEliminate.clear();
+        ingredientiAggiunti.clear();
+        bachecaPubblicati.clear();
+        bachecaRimossi.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "menu " + menuModificati + " eliminati " + menuEliminati + ", ricette " + ricetteModificate
+                + " eliminate " + ricetteEliminate + ", ingredienti " + ingredientiAggiunti.keySet()
+                + ", bacheca " + bachecaPubblicati + " tolti " + bachecaRimossi;
+    }
+}
@@ -0,0 +1,31 @@
+package com.catring.persistence;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Archivio di un tipo di aggregato, per id. L'ordine di {@link #tutti()} e
+ * {@link #elenca(int, int)} e' quello del primo salvataggio; salvare di
+ * nuovo un id esistente lo aggiorna senza spostarlo.
+ */
+public interface Repository<T> {
+
+    T trova(String id);
+
+    List<T> tutti();
+
+    List<T> elenca(int inizio, int quanti);
+
+    int conta();
+
+    /** Passa ogni id all'azione senza caricare gli elementi. */
+    void scorriId(Consumer<String> azione);
+
+    void salva(T elemento);
+
+    /** Come {@link #salva} per ogni elemento, ma in un'unica transazione dove l'archivio lo permette. */
+    void salvaTutti(Collection<? extends T> elementi);
+
+    boolean elimina(String id);
+}
@@ -0,0 +1,15 @@
+package com.catring.persistence;
+
+import com.catring.model.Ricetta;
+
+import java.util.List;
+
+/** Le ricette si cercano anche per nome (normalizzato come in ValidationUtils) e per stato. */
+public interface RepositoryRicette extends Repository<Ricetta> {
+
+    Ricetta trovaPerNome(String nome);
+
+    List<Ricetta> trovaPerStato(String stato);
+
+    int contaPerStato(String stato);
+}
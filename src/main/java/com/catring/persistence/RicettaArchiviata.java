@@ -0,0 +1,64 @@
+package com.catring.persistence;
+
+import com.catring.model.Dose;
+import com.catring.model.Ingrediente;
+import com.catring.model.Preparazione;
+import com.catring.model.Ricetta;
+import com.catring.model.Tag;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Ricetta letta da un {@link ArchivioJdbc}. Alla lettura si decodificano
+ * solo i campi semplici; il record resta in memoria e ingredienti, dosi,
+ * preparazioni e tag si decodificano al primo accesso a una delle liste,
+ * dopo di che il record viene rilasciato. A differenza di
+ * {@link RicettaMappata} e' modificabile come una ricetta qualsiasi.
+ */
+final class RicettaArchiviata extends Ricetta {
+
+    private volatile byte[] record;
+    private int posizioneDettagli;
+
+    private RicettaArchiviata(String id, String nome, String descrizione, int tempoPreparazione, String stato,
+                              String autore, int numeroPorte) {
+        super(id, nome, descrizione, tempoPreparazione, stato, autore, numeroPorte);
+    }
+
+    static RicettaArchiviata leggi(byte[] record) throws IOException {
+        CodificaModello codifica = CodificaModello.DIRETTA;
+        IngressoBuffer in = new IngressoBuffer(ByteBuffer.wrap(record));
+        RicettaArchiviata ricetta = new RicettaArchiviata(codifica.leggiStringa(in), codifica.leggiStringa(in),
+                codifica.leggiStringa(in), CodificaModello.leggiVarint(in), codifica.leggiEtichetta(in),
+                codifica.leggiEtichetta(in), CodificaModello.leggiVarint(in));
+        ricetta.record = record;
+        ricetta.posizioneDettagli = in.posizione();
+        return ricetta;
+    }
+
+    @Override
+    protected void caricaDettagli() {
+        try {
+            CodificaModello.DIRETTA.leggiDettagliRicetta(
+                    new IngressoBuffer(ByteBuffer.wrap(record).position(posizioneDettagli)), this);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Record non valido per la ricetta " + getId(), e);
+        }
+        record = null;
+    }
+
+    @Override
+    protected boolean haDettagliDaCaricare() {
+        return record != null;
+    }
+
+    @Override
+    public void setDettagli(List<Ingrediente> ingredienti, List<Dose> dosi, List<Preparazione> preparazioni,
+                            List<Tag> tags) {
+        super.setDettagli(ingredienti, dosi, preparazioni, tags);
+        record = null;
+    }
+}
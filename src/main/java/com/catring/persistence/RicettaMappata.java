@@ -0,0 +1,86 @@
+package com.catring.persistence;
+
+import com.catring.model.Dose;
+import com.catring.model.Ingrediente;
+import com.catring.model.Preparazione;
+import com.catring.model.Ricetta;
+import com.catring.model.Tag;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ricetta di un {@link CatalogoRicette}. I campi semplici sono letti alla
+ * creazione, ingredienti, dosi, preparazioni e tag al primo accesso a una
+ * delle quattro liste. E' in sola lettura: le liste non sono modificabili
+ * e i setter lanciano UnsupportedOperationException.
+ */
+public final class RicettaMappata extends Ricetta {
+
+    private final CatalogoRicette catalogo;
+    private final int posizioneDettagli;
+
+    RicettaMappata(CatalogoRicette catalogo, String id, String nome, String descrizione, int tempoPreparazione,
+                   String stato, String autore, int numeroPorte, int posizioneDettagli) {
+        super(id, nome, descrizione, tempoPreparazione, stato, autore, numeroPorte);
+        this.catalogo = catalogo;
+        this.posizioneDettagli = posizioneDettagli;
+    }
+
+    @Override
+    protected void caricaDettagli() {
+        Ricetta letta = catalogo.leggiDettagli(posizioneDettagli);
+        super.setDettagli(Collections.unmodifiableList(letta.getIngredienti()),
+                Collections.unmodifiableList(letta.getDosi()),
+                Collections.unmodifiableList(letta.getPreparazioni()),
+                Collections.unmodifiableList(letta.getTags()));
+    }
+
+    @Override
+    protected boolean haDettagliDaCaricare() {
+        return true;
+    }
+
+    @Override
+    public void setId(String id) { throw solaLettura(); }
+
+    @Override
+    public void setNome(String nome) { throw solaLettura(); }
+
+    @Override
+    public void setDescrizione(String descrizione) { throw solaLettura(); }
+
+    @Override
+    public void setTempoPreparazione(int tempoPreparazione) { throw solaLettura(); }
+
+    @Override
+    public void setStato(String stato) { throw solaLettura(); }
+
+    @Override
+    public void setAutore(String autore) { throw solaLettura(); }
+
+    @Override
+    public void setIngredienti(List<Ingrediente> ingredienti) { throw solaLettura(); }
+
+    @Override
+    public void setDosi(List<Dose> dosi) { throw solaLettura(); }
+
+    @Override
+    public void setPreparazioni(List<Preparazione> preparazioni) { throw solaLettura(); }
+
+    @Override
+    public void setTags(List<Tag> tags) { throw solaLettura(); }
+
+    @Override
+    public void setNumeroPorte(int numeroPorte) { throw solaLettura(); }
+
+    @Override
+    public void setDettagli(List<Ingrediente> ingredienti, List<Dose> dosi, List<Preparazione> preparazioni,
+                            List<Tag> tags) {
+        throw solaLettura();
+    }
+
+    private UnsupportedOperationException solaLettura() {
+        return new UnsupportedOperationException("Ricetta del catalogo in sola lettura: " + getId());
+    }
+}
@@ -0,0 +1,145 @@
+package com.catring.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Scrittura di un file di esportazione che compare al suo nome solo se
+ * completa. Si scrive in un file temporaneo dal nome univoco nella stessa
+ * cartella, attraverso un buffer su FileChannel; {@link #completa()} lo
+ * porta su disco se richiesto e lo rinomina in modo atomico sul file
+ * finale. Chiudere senza completare elimina il temporaneo.
+ *
+ * Piu' esportazioni verso la stessa cartella, anche verso lo stesso file,
+ * non si disturbano: ognuna ha il suo temporaneo e vince l'ultima
+ * rinomina, ma il file finale e' sempre uno di quelli interi.
+ */
+public final class ScritturaAtomica implements Closeable {
+
+    private static final int BUFFER = 1 << 16;
+
+    private final Path file;
+    private final Path temporaneo;
+    private final FileChannel canale;
+    private final boolean forza;
+    private final BufferedOutputStream flusso;
+    private Writer scrittore;
+    private boolean completata;
+
+    private ScritturaAtomica(Path file, Path temporaneo, FileChannel canale, boolean forza) {
+        this.file = file;
+        this.temporaneo = temporaneo;
+        this.canale = canale;
+        this.forza = forza;
+        // Chiudere gli stream non deve chiudere il canale, che serve ancora in completa().
+        this.flusso = new BufferedOutputStream(new FilterOutputStream(Channels.newOutputStream(canale)) {
+            @Override
+            public void write(byte[] dati, int inizio, int lunghezza) throws IOException {
+                out.write(dati, inizio, lunghezza);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        }, BUFFER);
+    }
+
+    /** Come {@link #apri(Path, boolean)} con il file forzato su disco. */
+    public static ScritturaAtomica apri(Path file) throws IOException {
+        return apri(file, true);
+    }
+
+    /**
+     * Con forza a false il file non viene forzato su disco: dopo un crash
+     * del sistema potrebbe mancare, ma non sara' mai troncato.
+     */
+    public static ScritturaAtomica apri(Path file, boolean forza) throws IOException {
+        Path cartella = file.toAbsolutePath().getParent();
+        // Non Files.createTempFile, che crea il file con permessi 0600: il
+        // file esportato deve avere i permessi di un file normale (umask).
+        while (true) {
+            Path temporaneo = cartella.resolve("." + file.getFileName() + "-"
+                    + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp");
+            FileChannel canale;
+            try {
+                canale = FileChannel.open(temporaneo, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                continue;
+            }
+            try {
+                return new ScritturaAtomica(file, temporaneo, canale, forza);
+            } catch (RuntimeException e) {
+                canale.close();
+                Files.deleteIfExists(temporaneo);
+                throw e;
+            }
+        }
+    }
+
+    public OutputStream getFlusso() {
+        return flusso;
+    }
+
+    /** Writer UTF-8 sul file, creato alla prima richiesta; chiuderlo equivale a flush(). */
+    public Writer getScrittore() {
+        if (scrittore == null) {
+            scrittore = new OutputStreamWriter(flusso, StandardCharsets.UTF_8) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+        return scrittore;
+    }
+
+    /** Rende visibile il file al suo nome definitivo e ne restituisce la dimensione. */
+    public long completa() throws IOException {
+        if (scrittore != null) {
+            scrittore.flush();
+        }
+        flusso.flush();
+        long dimensione = canale.size();
+        if (forza) {
+            canale.force(true);
+        }
+        canale.close();
+        Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (forza) {
+            FileIstantanea.forzaCartella(file.toAbsolutePath().getParent());
+        }
+        completata = true;
+        return dimensione;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (completata) {
+            return;
+        }
+        try {
+            canale.close();
+        } finally {
+            Files.deleteIfExists(temporaneo);
+        }
+    }
+}
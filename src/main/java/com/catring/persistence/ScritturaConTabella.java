@@ -0,0 +1,40 @@
+package com.catring.persistence;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codifica che scrive ogni etichetta una sola volta in una tabella di
+ * stringhe e nel corpo solo il suo indice (0 per null).
+ */
+class ScritturaConTabella extends CodificaModello {
+
+    private final Map<String, Integer> indici = new HashMap<>();
+    private final List<String> tabella = new ArrayList<>();
+
+    @Override
+    protected void scriviEtichetta(DataOutput out, String testo) throws IOException {
+        if (testo == null) {
+            scriviVarint(out, 0);
+            return;
+        }
+        Integer indice = indici.get(testo);
+        if (indice == null) {
+            indice = tabella.size();
+            indici.put(testo, indice);
+            tabella.add(testo);
+        }
+        scriviVarint(out, indice + 1);
+    }
+
+    void scriviTabella(DataOutput out) throws IOException {
+        scriviVarint(out, tabella.size());
+        for (String testo : tabella) {
+            scriviTesto(out, testo);
+        }
+    }
+}
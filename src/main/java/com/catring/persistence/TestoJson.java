@@ -0,0 +1,229 @@
+package com.catring.persistence;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lettura di un singolo valore JSON da una stringa, come serve per i file
+ * JSON-lines: gli oggetti diventano Map, gli array List, i numeri Long o
+ * Double. Gli errori di sintassi lanciano IllegalArgumentException con la
+ * posizione del problema. Per la scrittura basta {@link #scriviStringa}.
+ */
+final class TestoJson {
+
+    private final String testo;
+    private int posizione;
+
+    private TestoJson(String testo) {
+        this.testo = testo;
+    }
+
+    static Map<String, Object> leggiOggetto(String testo) {
+        TestoJson lettore = new TestoJson(testo);
+        lettore.spazi();
+        if (lettore.corrente() != '{') {
+            throw lettore.errore("atteso un oggetto");
+        }
+        Map<String, Object> oggetto = lettore.oggetto();
+        lettore.spazi();
+        if (lettore.posizione < testo.length()) {
+            throw lettore.errore("testo dopo la fine dell'oggetto");
+        }
+        return oggetto;
+    }
+
+    /** Accoda la stringa tra virgolette con gli escape necessari, oppure null. */
+    static void scriviStringa(StringBuilder destinazione, String valore) {
+        if (valore == null) {
+            destinazione.append("null");
+            return;
+        }
+        destinazione.append('"');
+        int inizio = 0;
+        for (int i = 0; i < valore.length(); i++) {
+            char c = valore.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            destinazione.append(valore, inizio, i);
+            inizio = i + 1;
+            switch (c) {
+                case '"': destinazione.append("\\\""); break;
+                case '\\': destinazione.append("\\\\"); break;
+                case '\n': destinazione.append("\\n"); break;
+                case '\r': destinazione.append("\\r"); break;
+                case '\t': destinazione.append("\\t"); break;
+                default: destinazione.append(String.format("\\u%04x", (int) c));
+            }
+        }
+        destinazione.append(valore, inizio, valore.length()).append('"');
+    }
+
+    private Object valore() {
+        spazi();
+        char c = corrente();
+        switch (c) {
+            case '{': return oggetto();
+            case '[': return array();
+            case '"': return stringa();
+            case 't': return parola("true", Boolean.TRUE);
+            case 'f': return parola("false", Boolean.FALSE);
+            case 'n': return parola("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return numero();
+                }
+                throw errore("valore non riconosciuto");
+        }
+    }
+
+    private Map<String, Object> oggetto() {
+        Map<String, Object> oggetto = new LinkedHashMap<>();
+        posizione++;
+        spazi();
+        if (corrente() == '}') {
+            posizione++;
+            return oggetto;
+        }
+        while (true) {
+            spazi();
+            if (corrente() != '"') {
+                throw errore("attesa una chiave");
+            }
+            String chiave = stringa();
+            spazi();
+            atteso(':');
+            oggetto.put(chiave, valore());
+            spazi();
+            if (corrente() == ',') {
+                posizione++;
+            } else {
+                atteso('}');
+                return oggetto;
+            }
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> array = new ArrayList<>();
+        posizione++;
+        spazi();
+        if (corrente() == ']') {
+            posizione++;
+            return array;
+        }
+        while (true) {
+            array.add(valore());
+            spazi();
+            if (corrente() == ',') {
+                posizione++;
+            } else {
+                atteso(']');
+                return array;
+            }
+        }
+    }
+
+    private String stringa() {
+        posizione++;
+        StringBuilder risultato = null;
+        int inizio = posizione;
+        while (true) {
+            if (posizione >= testo.length()) {
+                throw errore("stringa non chiusa");
+            }
+            char c = testo.charAt(posizione);
+            if (c == '"') {
+                String fine = testo.substring(inizio, posizione++);
+                return risultato == null ? fine : risultato.append(fine).toString();
+            }
+            if (c != '\\') {
+                posizione++;
+                continue;
+            }
+            if (risultato == null) {
+                risultato = new StringBuilder();
+            }
+            risultato.append(testo, inizio, posizione);
+            posizione++;
+            char escape = corrente();
+            posizione++;
+            switch (escape) {
+                case '"': case '\\': case '/': risultato.append(escape); break;
+                case 'b': risultato.append('\b'); break;
+                case 'f': risultato.append('\f'); break;
+                case 'n': risultato.append('\n'); break;
+                case 'r': risultato.append('\r'); break;
+                case 't': risultato.append('\t'); break;
+                case 'u':
+                    if (posizione + 4 > testo.length()) {
+                        throw errore("escape unicode incompleto");
+                    }
+                    try {
+                        risultato.append((char) Integer.parseInt(testo.substring(posizione, posizione + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw errore("escape unicode non valido");
+                    }
+                    posizione += 4;
+                    break;
+                default:
+                    throw errore("escape non valido");
+            }
+            inizio = posizione;
+        }
+    }
+
+    private Object numero() {
+        int inizio = posizione;
+        boolean decimale = false;
+        while (posizione < testo.length()) {
+            char c = testo.charAt(posizione);
+            if (c == '.' || c == 'e' || c == 'E') {
+                decimale = true;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            posizione++;
+        }
+        String cifre = testo.substring(inizio, posizione);
+        try {
+            return decimale ? (Object) Double.valueOf(cifre) : (Object) Long.valueOf(cifre);
+        } catch (NumberFormatException e) {
+            throw errore("numero non valido");
+        }
+    }
+
+    private Object parola(String attesa, Object valore) {
+        if (!testo.startsWith(attesa, posizione)) {
+            throw errore("valore non riconosciuto");
+        }
+        posizione += attesa.length();
+        return valore;
+    }
+
+    private void atteso(char c) {
+        if (corrente() != c) {
+            throw errore("atteso '" + c + "'");
+        }
+        posizione++;
+    }
+
+    private char corrente() {
+        if (posizione >= testo.length()) {
+            throw errore("fine inattesa");
+        }
+        return testo.charAt(posizione);
+    }
+
+    private void spazi() {
+        while (posizione < testo.length() && Character.isWhitespace(testo.charAt(posizione))) {
+            posizione++;
+        }
+    }
+
+    private IllegalArgumentException errore(String motivo) {
+        return new IllegalArgumentException("JSON non valido alla colonna " + (posizione + 1) + ": " + motivo);
+    }
+}
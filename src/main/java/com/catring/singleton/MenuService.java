@@ -1,46 +1,868 @@
 package com.catring.singleton;
 
 import com.catring.creator.MenuCreator;
+import com.catring.information_expert.BachecaMenu;
+import com.catring.information_expert.IndiceDosiScalate;
+import com.catring.information_expert.IndiceIngredienti;
+import com.catring.information_expert.IndiceRicercaRicette;
+import com.catring.information_expert.IndiceRicercaRicette.Risultato;
+import com.catring.information_expert.IndiceStatiRicette;
+import com.catring.information_expert.IndiceUtilizziRicette;
+import com.catring.information_expert.IndiceUtilizziRicette.UtilizzoRicetta;
 import com.catring.model.*;
 import com.catring.observer.MenuObserver;
+import com.catring.persistence.Archivio;
+import com.catring.persistence.CatalogoRicette;
+import com.catring.persistence.CodificaModello;
+import com.catring.persistence.ContenutoIstantanea;
+import com.catring.persistence.EsportazioneDati;
+import com.catring.persistence.EsportazioneMenu;
+import com.catring.persistence.FileIstantanea;
+import com.catring.persistence.FileLimitiId;
+import com.catring.persistence.FoglioProduzione;
+import com.catring.persistence.FormatiEsportazione;
+import com.catring.persistence.FormatoEsportazione;
+import com.catring.persistence.FormatoTXT;
+import com.catring.persistence.ImportazioneRicette;
+import com.catring.persistence.JournalModifiche;
+import com.catring.persistence.ModelloEsportazione;
+import com.catring.persistence.RecordJournal;
+import com.catring.persistence.RegistroModifiche;
+import com.catring.persistence.ScritturaAtomica;
+import com.catring.utils.CacheTesti;
+import com.catring.utils.ListaConcatenata;
+import com.catring.utils.ListaPaginata;
+import com.catring.utils.ListaVersionata;
+import com.catring.utils.ValidationUtils;
 
+import java.io.DataInput;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+/**
+ * Tutto lo stato e' protetto da un unico StampedLock: le mutazioni prendono
+ * il lock in scrittura, le interrogazioni quello in lettura. Senza lock si
+ * leggono solo le istantanee immutabili delle liste; la cache dei testi dei
+ * menu si consulta con una lettura ottimistica, perche' e' thread-safe e la
+ * versione del menu e' volatile. Gli observer vengono notificati fuori dal lock.
+ * I Menu e le Ricette restituiti sono gli oggetti vivi: vanno modificati
+ * solo tramite i metodi del servizio.
+ *
+ * Con la persistenza attiva ogni mutazione accoda il suo record al journal
+ * mentre tiene il lock, cosi' l'ordine su disco e' quello di applicazione,
+ * e attende che sia su disco solo dopo averlo rilasciato: le scritture
+ * concorrenti condividono lo stesso fsync. Periodicamente lo stato viene
+ * salvato in un'istantanea e si riparte con un journal vuoto, cosi'
+ * l'avvio legge l'istantanea e riesegue solo le modifiche successive.
+ * Se una scrittura del journal fallisce il servizio resta in sola lettura:
+ * ogni modifica lancia l'errore finche' la persistenza non viene riaperta.
+ *
+ * In alternativa al journal i dati possono stare in un {@link Archivio}
+ * (ad esempio un database): vedi {@link #attivaArchivio(Archivio)}.
+ *
+ * Menu e ricette modificati dall'ultimo salvataggio sono tenuti in un
+ * {@link RegistroModifiche}: con l'archivio si riscrivono solo quelli, una
+ * volta per operazione anche se ricevono piu' modifiche.
+ */
 public class MenuService {
 
-    private static MenuService instance;
+    private final StampedLock lock = new StampedLock();
 
-    private List<Menu> menus;
-    private List<Ricetta> ricette;
-    private List<Evento> eventi;
-    private List<Menu> menuPubblicati;
-    private List<Ingrediente> ingredientiBase;
+    private ListaVersionata<Menu> menus;
+    private ListaVersionata<Ricetta> ricette;
+    private ListaVersionata<Evento> eventi;
+    private BachecaMenu bacheca;
+    private ListaVersionata<Ingrediente> ingredientiBase;
+    private IndiceIngredienti indiceIngredienti;
 
-    private List<MenuObserver> observers;
+    private Map<String, Menu> menuPerId;
+    private Map<String, Ricetta> ricettePerId;
+    private Map<String, Evento> eventiPerId;
+    private Map<String, List<Ricetta>> ricettePerNome;
+    private Map<String, String> chiaveNomePerRicetta;
+    private IndiceUtilizziRicette utilizziRicette;
+    private IndiceStatiRicette statiRicette;
+    private IndiceRicercaRicette ricercaRicette;
+
+    private CopyOnWriteArrayList<MenuObserver> observers;
 
     private MenuCreator menuCreator;
 
-    private MenuService() {
-        this.menus = new ArrayList<>();
-        this.ricette = new ArrayList<>();
-        this.eventi = new ArrayList<>();
-        this.menuPubblicati = new ArrayList<>();
-        this.ingredientiBase = new ArrayList<>();
-        this.observers = new ArrayList<>();
+    private volatile CatalogoRicette catalogo;
+    private volatile Archivio archivio;
+
+    private JournalModifiche journal;
+    private long ultimaSequenzaJournal;
+    private long generazioneJournal;
+    private Path cartellaDati;
+    private ScheduledExecutorService istantaneePeriodiche;
+    private final RegistroModifiche modifiche = new RegistroModifiche();
+    private final FormatoTXT formatoTXT = new FormatoTXT();
+    private final FormatiEsportazione formati = new FormatiEsportazione();
+    // Testi dei menu per (id, versione, tipo): le versioni superate escono per LRU.
+    private final CacheTesti<ChiaveTesto> testiMenu = new CacheTesti<>(CARATTERI_TESTI_MENU);
+    private final IndiceDosiScalate dosiScalate = new IndiceDosiScalate();
+    private final FoglioProduzione foglioProduzione = new FoglioProduzione(dosiScalate);
+    private volatile long byteUltimoSalvataggio;
+    private volatile long byteSalvatiTotali;
+    private final Object istantaneaInCorso = new Object();
+
+    static final String FILE_ISTANTANEA = "menuservice.snapshot";
+    static final String FILE_LIMITI_ID = "menuservice.id";
+    private static final String PREFISSO_JOURNAL = "menuservice-";
+    private static final String ESTENSIONE_JOURNAL = ".journal";
+    private static final long INTERVALLO_ISTANTANEE_MINUTI = 10;
+    private static final long CARATTERI_TESTI_MENU = 4L << 20;
+
+    // Solo per i test che devono ripartire da uno stato pulito.
+    MenuService() {
+        this.menus = new ListaVersionata<>();
+        this.ricette = new ListaVersionata<>();
+        this.eventi = new ListaVersionata<>();
+        this.bacheca = new BachecaMenu();
+        this.ingredientiBase = new ListaVersionata<>();
+        this.indiceIngredienti = new IndiceIngredienti();
+        this.menuPerId = new HashMap<>();
+        this.ricettePerId = new HashMap<>();
+        this.eventiPerId = new HashMap<>();
+        this.ricettePerNome = new HashMap<>();
+        this.chiaveNomePerRicetta = new HashMap<>();
+        this.utilizziRicette = new IndiceUtilizziRicette();
+        this.statiRicette = new IndiceStatiRicette();
+        this.ricercaRicette = new IndiceRicercaRicette();
+        this.observers = new CopyOnWriteArrayList<>();
         this.menuCreator = new MenuCreator();
         initializeTestData();
     }
 
+    // Inizializzazione lazy e pubblicazione sicura garantite dal class loader.
+    private static class Holder {
+        private static final MenuService INSTANCE = new MenuService();
+    }
+
     public static MenuService getInstance() {
-        if (instance == null) {
-            instance = new MenuService();
+        return Holder.INSTANCE;
+    }
+
+    // Le mappe e le liste del servizio non sono thread-safe: si leggono
+    // sempre sotto lock in lettura. Senza lock si leggono solo istantanee
+    // immutabili, campi volatile e strutture thread-safe.
+    private <T> T leggi(Supplier<T> lettura) {
+        long stamp = lock.readLock();
+        try {
+            return lettura.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Le istantanee sono immutabili: se gia' pronte si leggono senza lock,
+    // altrimenti si ricostruiscono sotto lock in lettura per non pubblicarne
+    // una presa a meta' di una scrittura.
+    private <T> List<T> istantanea(ListaVersionata<T> lista) {
+        return istantanea(lista::istantaneaPronta, lista::istantanea);
+    }
+
+    private <T> List<T> istantanea(Supplier<List<T>> pronta, Supplier<List<T>> costruisci) {
+        List<T> corrente = pronta.get();
+        if (corrente != null) {
+            return corrente;
+        }
+        long stamp = lock.readLock();
+        try {
+            return costruisci.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private <T> T scrivi(Supplier<T> scrittura) {
+        long stamp = lock.writeLock();
+        T risultato;
+        JournalModifiche journalCorrente;
+        long sequenza;
+        try {
+            // Dopo un errore del journal le modifiche non si potrebbero piu'
+            // salvare: si rifiutano prima di toccare lo stato in memoria.
+            if (journal != null) {
+                journal.verifica();
+            }
+            try {
+                risultato = scrittura.get();
+            } finally {
+                if (archivio != null && !modifiche.isVuoto()) {
+                    salvaModificheInArchivio();
+                }
+            }
+            journalCorrente = journal;
+            sequenza = ultimaSequenzaJournal;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (journalCorrente != null) {
+            journalCorrente.attendi(sequenza);
+        }
+        return risultato;
+    }
+
+    private void modifica(Runnable scrittura) {
+        scrivi(() -> {
+            scrittura.run();
+            return null;
+        });
+    }
+
+    // Chiamato sotto lock in scrittura. L'aggregato toccato si segna
+    // direttamente; il record si costruisce solo se c'e' un journal.
+    private <K> void registra(K aggregato, BiConsumer<RegistroModifiche, K> segna, Supplier<RecordJournal> record) {
+        if (journal == null && archivio == null) {
+            return;
+        }
+        if (journal != null) {
+            ultimaSequenzaJournal = journal.accoda(record.get());
+        }
+        segna.accept(modifiche, aggregato);
+    }
+
+    /**
+     * Copia degli aggregati modificati dopo l'ultimo salvataggio: con il
+     * journal quelli che la prossima istantanea assorbira', con l'archivio
+     * quelli di un'operazione ancora in corso.
+     */
+    public RegistroModifiche getModificheNonSalvate() {
+        return leggi(() -> {
+            synchronized (modifiche) {
+                return modifiche.copia();
+            }
+        });
+    }
+
+    /** Byte scritti dall'ultimo salvataggio: istantanea o aggregati modificati. */
+    public long getByteUltimoSalvataggio() {
+        return byteUltimoSalvataggio;
+    }
+
+    public long getByteSalvatiTotali() {
+        return byteSalvatiTotali;
+    }
+
+    // Chiamato da un solo thread alla volta: sotto lock in scrittura o dentro istantaneaInCorso.
+    private void registraSalvataggio(long byteScritti) {
+        byteUltimoSalvataggio = byteScritti;
+        byteSalvatiTotali += byteScritti;
+    }
+
+    /**
+     * Affianca al ricettario il catalogo condiviso in sola lettura:
+     * consultaRicettario e getRicettaById vedono anche le sue ricette, con
+     * precedenza a quelle locali dallo stesso id. Ricerca e conteggi per
+     * stato restano sulle ricette locali. Va collegato prima di
+     * attivaPersistenza, perche' i menu salvati possono citare il catalogo.
+     */
+    public void collegaCatalogo(Path file) throws IOException {
+        sostituisciCatalogo(CatalogoRicette.apri(file));
+    }
+
+    public void scollegaCatalogo() throws IOException {
+        sostituisciCatalogo(null);
+    }
+
+    private void sostituisciCatalogo(CatalogoRicette nuovo) throws IOException {
+        CatalogoRicette precedente;
+        long stamp = lock.writeLock();
+        try {
+            precedente = catalogo;
+            catalogo = nuovo;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (precedente != null) {
+            precedente.close();
+        }
+    }
+
+    /**
+     * Usa l'archivio come memoria permanente al posto del journal. Se e'
+     * vuoto vi si copia lo stato attuale; altrimenti se ne caricano menu,
+     * eventi e ingredienti, ma delle ricette solo quelle citate dai menu:
+     * le altre si leggono dall'archivio quando servono. Da quel momento
+     * ogni modifica viene salvata nell'archivio tenendo il lock, quindi
+     * nello stesso ordine in cui e' applicata, bacheca compresa.
+     */
+    public void attivaArchivio(Archivio nuovo) {
+        long stamp = lock.writeLock();
+        try {
+            if (journal != null || archivio != null) {
+                throw new IllegalStateException("Persistenza già attiva");
+            }
+            if (nuovo.getRicette().conta() == 0 && nuovo.getMenus().conta() == 0) {
+                nuovo.getIngredienti().salvaTutti(ingredientiBase.istantanea());
+                nuovo.getRicette().salvaTutti(ricette.istantanea());
+                nuovo.getMenus().salvaTutti(menus.istantanea());
+                nuovo.getEventi().salvaTutti(eventi.istantanea());
+                nuovo.getBacheca().salvaTutti(bacheca.getPubblicazioni());
+            } else {
+                caricaArchivio(nuovo);
+            }
+            menuCreator.usaRiservaId(nuovo.getRiservaId());
+            archivio = nuovo;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void disattivaArchivio() {
+        Archivio daChiudere;
+        long stamp = lock.writeLock();
+        try {
+            daChiudere = archivio;
+            archivio = null;
+            menuCreator.usaRiservaId(null);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (daChiudere != null) {
+            daChiudere.close();
+        }
+    }
+
+    /**
+     * Carica l'ultima istantanea della cartella (se c'e', altrimenti si
+     * parte dai dati iniziali), riesegue il journal successivo e da quel
+     * momento registra ogni modifica. Va chiamato prima di mostrare le viste.
+     */
+    public void attivaPersistenza(Path cartella) throws IOException {
+        Files.createDirectories(cartella);
+        long stamp = lock.writeLock();
+        try {
+            if (journal != null) {
+                throw new IllegalStateException("Persistenza già attiva su " + journal.getFile());
+            }
+            if (archivio != null) {
+                throw new IllegalStateException("Persistenza già attiva su un archivio");
+            }
+            long generazione = 0;
+            Path fileIstantanea = cartella.resolve(FILE_ISTANTANEA);
+            if (Files.exists(fileIstantanea)) {
+                ContenutoIstantanea contenuto = FileIstantanea.leggi(fileIstantanea, this::trovaNelCatalogo);
+                caricaIstantanea(contenuto);
+                generazione = contenuto.getGenerazioneJournal();
+            }
+            Path fileJournal = fileJournal(cartella, generazione);
+            JournalModifiche.leggi(fileJournal, record -> {
+                applica(record);
+                modifiche.segna(record);
+            });
+            eliminaJournalSuperati(cartella, generazione);
+            menuCreator.usaRiservaId(FileLimitiId.apri(cartella.resolve(FILE_LIMITI_ID)));
+            journal = new JournalModifiche(fileJournal);
+            generazioneJournal = generazione;
+            cartellaDati = cartella;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        istantaneePeriodiche = Executors.newSingleThreadScheduledExecutor(attivita -> {
+            Thread thread = new Thread(attivita, "istantanee-menuservice");
+            thread.setDaemon(true);
+            return thread;
+        });
+        istantaneePeriodiche.scheduleWithFixedDelay(this::salvaIstantaneaPeriodica,
+                INTERVALLO_ISTANTANEE_MINUTI, INTERVALLO_ISTANTANEE_MINUTI, TimeUnit.MINUTES);
+    }
+
+    public void disattivaPersistenza() throws IOException {
+        if (istantaneePeriodiche != null) {
+            istantaneePeriodiche.shutdown();
+            istantaneePeriodiche = null;
+        }
+        JournalModifiche daChiudere;
+        long stamp = lock.writeLock();
+        try {
+            daChiudere = journal;
+            journal = null;
+            ultimaSequenzaJournal = 0;
+            cartellaDati = null;
+            modifiche.svuota();
+            menuCreator.usaRiservaId(null);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (daChiudere != null) {
+            daChiudere.close();
+        }
+    }
+
+    /**
+     * Salva tutto lo stato in un'istantanea e riparte con un journal vuoto.
+     * Tiene il lock in lettura: le interrogazioni continuano, le modifiche
+     * aspettano la fine del salvataggio.
+     */
+    public void salvaIstantanea() throws IOException {
+        salvaIstantanea(false);
+    }
+
+    /**
+     * Esporta tutti i dati in JSON lines, compressi se il file finisce con
+     * .gz: vedi {@link EsportazioneDati}. Come salvaIstantanea tiene il lock
+     * in lettura per tutta la scrittura, cosi' il file e' un'istantanea
+     * coerente; va chiamato fuori dal thread dell'interfaccia. Le ricette
+     * del catalogo condiviso non vengono esportate.
+     */
+    public EsportazioneDati.Esito esportaDati(Path file) throws IOException {
+        try (EsportazioneDati esportazione = EsportazioneDati.apri(file)) {
+            long stamp = lock.readLock();
+            try {
+                for (Ingrediente ingrediente : ingredientiBase) {
+                    esportazione.scriviIngrediente(ingrediente);
+                }
+                if (archivio != null) {
+                    int totale = archivio.getRicette().conta();
+                    for (int inizio = 0; inizio < totale; inizio += ListaPaginata.DIMENSIONE_PAGINA) {
+                        for (Ricetta letta : archivio.getRicette().elenca(inizio, ListaPaginata.DIMENSIONE_PAGINA)) {
+                            esportazione.scriviRicetta(ricettePerId.getOrDefault(letta.getId(), letta));
+                        }
+                    }
+                } else {
+                    for (Ricetta ricetta : ricette) {
+                        esportazione.scriviRicetta(ricetta);
+                    }
+                }
+                for (Menu menu : menus) {
+                    esportazione.scriviMenu(menu);
+                }
+                for (Evento evento : eventi) {
+                    esportazione.scriviEvento(evento);
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            return esportazione.completa();
+        }
+    }
+
+    private void salvaIstantaneaPeriodica() {
+        try {
+            salvaIstantanea(true);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Errore nel salvataggio dell'istantanea: " + e.getMessage());
+        }
+    }
+
+    private void salvaIstantanea(boolean soloSeModificato) throws IOException {
+        synchronized (istantaneaInCorso) {
+            long stamp = lock.readLock();
+            try {
+                if (journal == null) {
+                    throw new IllegalStateException("Persistenza non attiva");
+                }
+                long accodati = journal.getNumeroRecord();
+                if (soloSeModificato && accodati == 0) {
+                    return;
+                }
+                // I record gia' accodati sono nello stato che stiamo per salvare:
+                // devono arrivare su disco prima di buttare il loro journal.
+                journal.attendi(accodati);
+
+                long generazione = generazioneJournal + 1;
+                Path fileIstantanea = cartellaDati.resolve(FILE_ISTANTANEA);
+                FileIstantanea.scrivi(fileIstantanea, new ContenutoIstantanea(generazione,
+                        ingredientiBase.istantanea(), ricette.istantanea(), menus.istantanea(),
+                        eventi.istantanea(), bacheca.getPubblicazioni()));
+                registraSalvataggio(Files.size(fileIstantanea));
+                // Le modifiche aspettano il lock in scrittura, le letture no.
+                synchronized (modifiche) {
+                    modifiche.svuota();
+                }
+
+                JournalModifiche precedente = journal;
+                journal = new JournalModifiche(fileJournal(cartellaDati, generazione));
+                generazioneJournal = generazione;
+                ultimaSequenzaJournal = 0;
+                precedente.close();
+                Files.deleteIfExists(precedente.getFile());
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private void caricaIstantanea(ContenutoIstantanea contenuto) {
+        svuota();
+        for (Ingrediente ingrediente : contenuto.getIngredientiBase()) {
+            registraIngredienteBase(ingrediente);
+        }
+        for (Ricetta ricetta : contenuto.getRicette()) {
+            menuCreator.registraIdEsistente(ricetta.getId());
+            ricette.add(ricetta);
+            ricettePerId.put(ricetta.getId(), ricetta);
+            indicizzaNome(ricetta);
+            statiRicette.aggiungi(ricetta);
+        }
+        // L'indice di ricerca si costruisce in blocco: con un milione di
+        // ricette e' la parte piu' costosa dell'avvio.
+        ricercaRicette.aggiungiTutte(contenuto.getRicette());
+        for (Menu menu : contenuto.getMenus()) {
+            registraIdMenu(menu);
+            registraMenu(menu);
+        }
+        for (Evento evento : contenuto.getEventi()) {
+            registraEvento(evento);
+        }
+        for (PubblicazioneBacheca pubblicazione : contenuto.getBacheca()) {
+            bacheca.pubblica(pubblicazione.getMenu(), pubblicazione.getDataPubblicazione());
+        }
+    }
+
+    private void caricaArchivio(Archivio sorgente) {
+        svuota();
+        sorgente.getRicette().scorriId(menuCreator::registraIdEsistente);
+        for (Ingrediente ingrediente : sorgente.getIngredienti().tutti()) {
+            registraIngredienteBase(ingrediente);
+        }
+        for (Menu menu : sorgente.getMenus().tutti()) {
+            // Ogni menu letto porta le sue copie delle ricette: si tiene la
+            // prima e le voci successive puntano a quella.
+            for (SezioniMenu sezione : menu.getSezioni()) {
+                for (VoceMenu voce : sezione.getVoci()) {
+                    Ricetta letta = voce.getRicetta();
+                    if (letta == null) {
+                        voce.setRicetta(trovaNelCatalogo(voce.getRiferimento()));
+                    } else if (ricettePerId.containsKey(letta.getId())) {
+                        voce.setRicetta(ricettePerId.get(letta.getId()));
+                    } else {
+                        registraRicetta(letta);
+                    }
+                }
+            }
+            // Le voci puntano ad altre ricette: gli indici del menu vanno rifatti.
+            menu.nuovaVersione();
+            registraIdMenu(menu);
+            registraMenu(menu);
+        }
+        for (Evento evento : sorgente.getEventi().tutti()) {
+            for (Servizio servizio : evento.getServizi()) {
+                if (servizio.getMenu() != null) {
+                    servizio.setMenu(menuPerId.get(servizio.getMenu().getId()));
+                }
+            }
+            registraEvento(evento);
+        }
+        for (PubblicazioneBacheca pubblicazione : sorgente.getBacheca().tutti()) {
+            Menu menu = pubblicazione.getMenu() != null ? menuPerId.get(pubblicazione.getMenu().getId()) : null;
+            if (menu != null) {
+                bacheca.pubblica(menu, pubblicazione.getDataPubblicazione());
+            }
+        }
+    }
+
+    private void registraEvento(Evento evento) {
+        menuCreator.registraIdEsistente(evento.getId());
+        eventi.add(evento);
+        eventiPerId.put(evento.getId(), evento);
+    }
+
+    private void svuota() {
+        modifiche.svuota();
+        menus.clear();
+        ricette.clear();
+        eventi.clear();
+        ingredientiBase.clear();
+        bacheca.svuota();
+        indiceIngredienti.svuota();
+        menuPerId.clear();
+        ricettePerId.clear();
+        eventiPerId.clear();
+        ricettePerNome.clear();
+        chiaveNomePerRicetta.clear();
+        utilizziRicette.svuota();
+        dosiScalate.svuota();
+        statiRicette.svuota();
+        ricercaRicette.svuota();
+    }
+
+    private void registraIdMenu(Menu menu) {
+        menuCreator.registraIdEsistente(menu.getId());
+        for (SezioniMenu sezione : menu.getSezioni()) {
+            menuCreator.registraIdEsistente(sezione.getId());
+            for (VoceMenu voce : sezione.getVoci()) {
+                menuCreator.registraIdEsistente(voce.getId());
+            }
+        }
+    }
+
+    private static Path fileJournal(Path cartella, long generazione) {
+        return cartella.resolve(PREFISSO_JOURNAL + generazione + ESTENSIONE_JOURNAL);
+    }
+
+    private static void eliminaJournalSuperati(Path cartella, long generazione) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cartella,
+                PREFISSO_JOURNAL + "*" + ESTENSIONE_JOURNAL)) {
+            for (Path file : files) {
+                String nome = file.getFileName().toString();
+                String numero = nome.substring(PREFISSO_JOURNAL.length(), nome.length() - ESTENSIONE_JOURNAL.length());
+                try {
+                    if (Long.parseLong(numero) < generazione) {
+                        Files.delete(file);
+                    }
+                } catch (NumberFormatException e) {
+                    // Non e' un journal di questo servizio.
+                }
+            }
         }
-        return instance;
+    }
+
+    // Alla fine di ogni operazione, sotto lock in scrittura: si riscrivono
+    // in blocco gli aggregati toccati, ciascuno una volta sola. Se l'archivio
+    // da' errore il registro resta com'e' e la prossima operazione riprova.
+    private void salvaModificheInArchivio() {
+        long prima = archivio.getByteScritti();
+        for (String id : modifiche.getMenuEliminati()) {
+            archivio.getMenus().elimina(id);
+            archivio.getBacheca().elimina(id);
+        }
+        for (String id : modifiche.getRicetteEliminate()) {
+            archivio.getRicette().elimina(id);
+        }
+        if (!modifiche.getIngredientiAggiunti().isEmpty()) {
+            archivio.getIngredienti().salvaTutti(modifiche.getIngredientiAggiunti().values());
+        }
+        List<Ricetta> ricetteDaSalvare = new ArrayList<>();
+        for (String id : modifiche.getRicetteModificate()) {
+            Ricetta ricetta = ricettePerId.get(id);
+            if (ricetta != null) {
+                ricetteDaSalvare.add(ricetta);
+            }
+        }
+        if (!ricetteDaSalvare.isEmpty()) {
+            archivio.getRicette().salvaTutti(ricetteDaSalvare);
+        }
+        List<Menu> menuDaSalvare = new ArrayList<>();
+        for (String id : modifiche.getMenuModificati()) {
+            Menu menu = menuPerId.get(id);
+            if (menu != null) {
+                menuDaSalvare.add(menu);
+            }
+        }
+        if (!menuDaSalvare.isEmpty()) {
+            archivio.getMenus().salvaTutti(menuDaSalvare);
+        }
+        for (String id : modifiche.getBachecaRimossi()) {
+            archivio.getBacheca().elimina(id);
+        }
+        // Si elimina anche prima di ripubblicare: la riga torna in fondo
+        // all'ordine, come la pubblicazione nella bacheca.
+        List<PubblicazioneBacheca> pubblicazioniDaSalvare = new ArrayList<>();
+        for (String id : modifiche.getBachecaPubblicati()) {
+            archivio.getBacheca().elimina(id);
+            PubblicazioneBacheca pubblicazione = bacheca.getPubblicazione(id);
+            if (pubblicazione != null) {
+                pubblicazioniDaSalvare.add(pubblicazione);
+            }
+        }
+        if (!pubblicazioniDaSalvare.isEmpty()) {
+            archivio.getBacheca().salvaTutti(pubblicazioniDaSalvare);
+        }
+        modifiche.svuota();
+        registraSalvataggio(archivio.getByteScritti() - prima);
+    }
+
+    // Con l'archivio attivo le ricette mai usate stanno solo li': prima di
+    // modificarle vanno portate in memoria. Va chiamato col lock in scrittura.
+    private Ricetta ricettaInMemoria(String id) {
+        Ricetta ricetta = ricettePerId.get(id);
+        if (ricetta == null && archivio != null) {
+            ricetta = archivio.getRicette().trova(id);
+            if (ricetta != null) {
+                registraRicetta(ricetta);
+            }
+        }
+        return ricetta;
+    }
+
+    // Le pagine lette dall'archivio usano le istanze gia' in memoria, a cui puntano i menu.
+    private List<Ricetta> preferisciInMemoria(List<Ricetta> lette) {
+        return leggi(() -> {
+            List<Ricetta> risultato = new ArrayList<>(lette.size());
+            for (Ricetta letta : lette) {
+                Ricetta inMemoria = ricettePerId.get(letta.getId());
+                risultato.add(inMemoria != null ? inMemoria : letta);
+            }
+            return risultato;
+        });
+    }
+
+    private Ricetta trovaRicetta(String id) {
+        Ricetta ricetta = ricettePerId.get(id);
+        return ricetta != null ? ricetta : trovaNelCatalogo(id);
+    }
+
+    private Ricetta trovaNelCatalogo(String id) {
+        CatalogoRicette catalogoCorrente = catalogo;
+        return catalogoCorrente != null ? catalogoCorrente.trova(id) : null;
+    }
+
+    private void applica(RecordJournal record) throws IOException {
+        DataInput in = record.leggiDati();
+        switch (record.getTipo()) {
+            case RecordJournal.MENU_CREATO: {
+                Menu menu = CodificaModello.DIRETTA.leggiMenu(in, this::trovaRicetta);
+                registraIdMenu(menu);
+                registraMenu(menu);
+                break;
+            }
+            case RecordJournal.MENU_ELIMINATO: {
+                Menu menu = menuPerId.get(CodificaModello.leggiTesto(in));
+                if (menu != null) {
+                    rimuoviMenu(menu);
+                }
+                break;
+            }
+            case RecordJournal.MENU_TITOLO: {
+                Menu menu = menuPerId.get(CodificaModello.leggiTesto(in));
+                String titolo = CodificaModello.leggiTesto(in);
+                if (menu != null) {
+                    menu.setNome(titolo);
+                }
+                break;
+            }
+            case RecordJournal.MENU_NOTE: {
+                Menu menu = menuPerId.get(CodificaModello.leggiTesto(in));
+                String note = CodificaModello.leggiTesto(in);
+                if (menu != null) {
+                    menu.setNote(note);
+                }
+                break;
+            }
+            case RecordJournal.SEZIONE_AGGIUNTA: {
+                Menu menu = menuPerId.get(CodificaModello.leggiTesto(in));
+                SezioniMenu sezione = new SezioniMenu(CodificaModello.leggiTesto(in),
+                        CodificaModello.leggiTesto(in), CodificaModello.leggiVarint(in));
+                menuCreator.registraIdEsistente(sezione.getId());
+                if (menu != null) {
+                    menu.aggiungiSezione(sezione);
+                }
+                break;
+            }
+            case RecordJournal.SEZIONE_RIMOSSA: {
+                Menu menu = menuPerId.get(CodificaModello.leggiTesto(in));
+                SezioniMenu sezione = trovaSezione(menu, CodificaModello.leggiTesto(in));
+                if (sezione != null && menu.rimuoviSezione(sezione)) {
+                    utilizziRicette.rimuoviSezione(sezione);
+                }
+                break;
+            }
+            case RecordJournal.VOCE_AGGIUNTA: {
+                Menu menu = menuPerId.get(CodificaModello.leggiTesto(in));
+                SezioniMenu sezione = trovaSezione(menu, CodificaModello.leggiTesto(in));
+                VoceMenu voce = CodificaModello.DIRETTA.leggiVoce(in, this::trovaRicetta);
+                menuCreator.registraIdEsistente(voce.getId());
+                if (sezione != null) {
+                    menu.aggiungiVoce(sezione, voce);
+                    utilizziRicette.registra(menu, sezione, voce);
+                }
+                break;
+            }
+            case RecordJournal.VOCE_RIMOSSA: {
+                Menu menu = menuPerId.get(CodificaModello.leggiTesto(in));
+                PosizioneVoce posizione = menu != null ? menu.trovaVoce(CodificaModello.leggiTesto(in)) : null;
+                if (posizione != null && menu.rimuoviVoce(posizione.getVoce())) {
+                    utilizziRicette.rimuovi(posizione.getVoce());
+                }
+                break;
+            }
+            case RecordJournal.VOCE_SPOSTATA: {
+                Menu menu = menuPerId.get(CodificaModello.leggiTesto(in));
+                PosizioneVoce posizione = menu != null ? menu.trovaVoce(CodificaModello.leggiTesto(in)) : null;
+                SezioniMenu destinazione = trovaSezione(menu, CodificaModello.leggiTesto(in));
+                if (posizione != null && destinazione != null) {
+                    spostaVoceInterno(menu, posizione.getVoce(), posizione.getSezione(), destinazione);
+                }
+                break;
+            }
+            case RecordJournal.RICETTA_SALVATA: {
+                Ricetta letta = CodificaModello.DIRETTA.leggiRicetta(in);
+                menuCreator.registraIdEsistente(letta.getId());
+                Ricetta attuale = ricettePerId.get(letta.getId());
+                if (attuale == null) {
+                    registraRicetta(letta);
+                } else {
+                    // Le voci dei menu puntano all'istanza esistente: si aggiorna quella.
+                    CodificaModello.copiaRicetta(letta, attuale);
+                    sostituisciRicetta(attuale);
+                }
+                break;
+            }
+            case RecordJournal.RICETTA_ELIMINATA: {
+                Ricetta ricetta = ricettePerId.get(CodificaModello.leggiTesto(in));
+                if (ricetta != null) {
+                    rimuoviRicetta(ricetta);
+                }
+                break;
+            }
+            case RecordJournal.BACHECA_PUBBLICATO: {
+                Menu menu = menuPerId.get(CodificaModello.leggiTesto(in));
+                LocalDateTime data = LocalDateTime.parse(CodificaModello.leggiTesto(in));
+                if (menu != null) {
+                    bacheca.pubblica(menu, data);
+                }
+                break;
+            }
+            case RecordJournal.BACHECA_RIMOSSO: {
+                Menu menu = menuPerId.get(CodificaModello.leggiTesto(in));
+                if (menu != null) {
+                    bacheca.rimuovi(menu);
+                }
+                break;
+            }
+            case RecordJournal.INGREDIENTE_AGGIUNTO:
+                registraIngredienteBase(CodificaModello.DIRETTA.leggiIngrediente(in));
+                break;
+            default:
+                throw new IOException("Tipo di record sconosciuto nel journal: " + record.getTipo());
+        }
+    }
+
+    private static SezioniMenu trovaSezione(Menu menu, String sezioneId) {
+        if (menu == null) {
+            return null;
+        }
+        for (SezioniMenu sezione : menu.getSezioni()) {
+            if (sezione.getId().equals(sezioneId)) {
+                return sezione;
+            }
+        }
+        return null;
     }
 
     @Override
@@ -49,14 +871,11 @@ public class MenuService {
     }
 
     public List<Evento> consultaEventi() {
-        return new ArrayList<>(eventi);
+        return istantanea(eventi);
     }
     
     public String getDettagliEvento(String eventoId) {
-        Evento evento = eventi.stream()
-                .filter(e -> e.getId().equals(eventoId))
-                .findFirst()
-                .orElse(null);
+        Evento evento = leggi(() -> eventiPerId.get(eventoId));
         
         if (evento != null) {
             return "Evento: " + evento.getId() + " - " + evento.getLuogo() + 
@@ -66,20 +885,64 @@ public class MenuService {
     }
     
     public String getDettagliMenu(Menu menu) {
-        return "Menu: " + menu.getNome() + 
-               "\nDescrizione: " + menu.getDescrizione() +
-               "\nSezioni: " + menu.getSezioni().size() +
-               "\nNote: " + (menu.getNote() != null ? menu.getNote() : "Nessuna nota");
+        return testoMenu(menu, "dettagli", m -> "Menu: " + m.getNome() + 
+               "\nDescrizione: " + m.getDescrizione() +
+               "\nSezioni: " + m.getSezioni().size() +
+               "\nNote: " + (m.getNote() != null ? m.getNote() : "Nessuna nota"));
+    }
+
+    /**
+     * Il testo del menu composto da componi, preso dalla cache se il menu
+     * non e' cambiato da quando e' stato composto: la chiave e' (id,
+     * versione, tipo), quindi il tipo deve distinguere ogni modo di comporre.
+     * Il testo si compone tenendo il lock in lettura.
+     */
+    public String testoMenu(Menu menu, String tipo, Function<Menu, String> componi) {
+        // Solo la cache, thread-safe, e la versione, volatile: nessuna struttura del servizio.
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            String testo = testiMenu.get(new ChiaveTesto(menu.getId(), menu.getVersione(), tipo));
+            if (testo != null && lock.validate(stamp)) {
+                return testo;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            String testo = componi.apply(menu);
+            testiMenu.put(new ChiaveTesto(menu.getId(), menu.getVersione(), tipo), testo);
+            return testo;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Richieste di testi dei menu trovate nella cache e composte da capo. */
+    public long[] getStatisticheTestiMenu() {
+        return new long[] {testiMenu.getTrovati(), testiMenu.getMancati()};
     }
     
     public Menu creaMenu(String nome, String descrizione, String note) {
         Menu menu = menuCreator.creaMenu(nome, descrizione, note);
-        menus.add(menu);
+        modifica(() -> {
+            registraMenu(menu);
+            registra(menu.getId(), RegistroModifiche::segnaMenu, () -> RecordJournal.menuCreato(menu));
+        });
         notifyMenuCreated(menu);
         return menu;
     }
     
     public Menu duplicaMenu(Menu menuOriginale) {
+        Menu menuDuplicato = scrivi(() -> {
+            Menu copia = copiaMenu(menuOriginale);
+            registraMenu(copia);
+            registra(copia.getId(), RegistroModifiche::segnaMenu, () -> RecordJournal.menuCreato(copia));
+            return copia;
+        });
+        notifyMenuCreated(menuDuplicato);
+        return menuDuplicato;
+    }
+
+    private Menu copiaMenu(Menu menuOriginale) {
         String nuovoNome = "Copia di " + menuOriginale.getNome();
         Menu menuDuplicato = menuCreator.creaMenu(
             nuovoNome, 
@@ -99,40 +962,76 @@ public class MenuService {
                 sezioneDuplicata.getVoci().add(voceDuplicata);
             }
             
-            menuDuplicato.getSezioni().add(sezioneDuplicata);
+            menuDuplicato.aggiungiSezione(sezioneDuplicata);
         }
-        
-        menus.add(menuDuplicato);
-        notifyMenuCreated(menuDuplicato);
         return menuDuplicato;
     }
+
+    private void registraMenu(Menu menu) {
+        menus.add(menu);
+        menuPerId.put(menu.getId(), menu);
+        utilizziRicette.registraMenu(menu);
+    }
+
+    private boolean rimuoviMenu(Menu menu) {
+        if (!menus.remove(menu)) {
+            return false;
+        }
+        menuPerId.remove(menu.getId(), menu);
+        utilizziRicette.rimuoviMenu(menu);
+        bacheca.rimuovi(menu);
+        return true;
+    }
     
     public Menu selezionaMenu(String id) {
-        return menus.stream()
-                .filter(menu -> menu.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        return leggi(() -> menuPerId.get(id));
     }
     
     public void definisciSezioni(Menu menu, String titolo) {
-        SezioniMenu sezione = menuCreator.creaSezione(titolo, menu.getSezioni().size() + 1);
-        menu.getSezioni().add(sezione);
+        modifica(() -> {
+            SezioniMenu sezione = menuCreator.creaSezione(titolo, menu.getSezioni().size() + 1);
+            menu.aggiungiSezione(sezione);
+            registra(menu.getId(), RegistroModifiche::segnaMenu,
+                    () -> RecordJournal.sezioneAggiunta(menu.getId(), sezione.getId(), titolo, sezione.getOrdine()));
+        });
         notifyMenuUpdated(menu);
     }
     
     public List<Ricetta> consultaRicettario() {
-        return new ArrayList<>(ricette);
+        Archivio archivioCorrente = archivio;
+        List<Ricetta> locali = archivioCorrente == null ? istantanea(ricette)
+                : new ListaPaginata<>(archivioCorrente.getRicette().conta(),
+                        (inizio, quanti) -> preferisciInMemoria(archivioCorrente.getRicette().elenca(inizio, quanti)));
+        CatalogoRicette catalogoCorrente = catalogo;
+        return catalogoCorrente != null ? new ListaConcatenata<>(locali, catalogoCorrente.comeLista()) : locali;
     }
 
     public List<Ricetta> consultaRicettePubblicate() {
-        return ricette.stream()
-                .filter(ricetta -> "pubblicata".equals(ricetta.getStato()))
-                .collect(Collectors.toList());
+        return consultaRicettePerStato(Ricetta.STATO_PUBBLICATA);
+    }
+
+    public List<Ricetta> consultaRicettePerStato(String stato) {
+        Archivio archivioCorrente = archivio;
+        if (archivioCorrente != null) {
+            return preferisciInMemoria(archivioCorrente.getRicette().trovaPerStato(stato));
+        }
+        return istantanea(() -> statiRicette.istantaneaPronta(stato), () -> statiRicette.istantanea(stato));
+    }
+
+    public int contaRicettePerStato(String stato) {
+        Archivio archivioCorrente = archivio;
+        if (archivioCorrente != null) {
+            return archivioCorrente.getRicette().contaPerStato(stato);
+        }
+        return leggi(() -> statiRicette.conta(stato));
     }
     
     public Ricetta inserisciRicetta(String nome, String descrizione, int tempoPreparazione, String stato, String autore) {
         Ricetta ricetta = menuCreator.creaRicetta(nome, descrizione, tempoPreparazione, stato, autore);
-        ricette.add(ricetta);
+        modifica(() -> {
+            registraRicetta(ricetta);
+            registra(ricetta.getId(), RegistroModifiche::segnaRicetta, () -> RecordJournal.ricettaSalvata(ricetta));
+        });
         return ricetta;
     }
 
@@ -141,195 +1040,541 @@ public class MenuService {
             return false;
         }
 
-        boolean esisteGia = ricette.stream()
-                .anyMatch(r -> r.getNome().equalsIgnoreCase(ricettaCompleta.getNome()));
-        
-        if (esisteGia) {
+        return scrivi(() -> {
+            if (ricettaCompleta.getId() == null || ricettaCompleta.getId().isEmpty()) {
+                ricettaCompleta.setId(menuCreator.creaIdRicetta());
+            }
+            if (ricettaGiaPresente(ricettaCompleta)) {
+                return false;
+            }
+            menuCreator.registraIdEsistente(ricettaCompleta.getId());
+
+            registraRicetta(ricettaCompleta);
+            registra(ricettaCompleta.getId(), RegistroModifiche::segnaRicetta,
+                    () -> RecordJournal.ricettaSalvata(ricettaCompleta));
+            return true;
+        });
+    }
+
+    /**
+     * Inserisce un blocco di ricette con un solo passaggio sotto lock, una
+     * sola attesa del journal e una sola notifica agli observer. Le ricette
+     * senza id ne ricevono uno nuovo; quelle con nome o id gia' presenti,
+     * anche nello stesso blocco, vengono saltate. Restituisce le inserite.
+     * Con un archivio attivo le ricette vanno solo nell'archivio, in
+     * un'unica transazione, e non restano in memoria.
+     */
+    public List<Ricetta> inserisciRicette(List<Ricetta> daInserire) {
+        List<Ricetta> inserite = scrivi(() -> {
+            List<Ricetta> accettate = new ArrayList<>(daInserire.size());
+            Set<String> nomiNelBlocco = new HashSet<>();
+            Set<String> idNelBlocco = new HashSet<>();
+            for (Ricetta ricetta : daInserire) {
+                if (ricetta == null || ricetta.getNome() == null || ricetta.getNome().trim().isEmpty()) {
+                    continue;
+                }
+                if (ricetta.getId() == null) {
+                    ricetta.setId(menuCreator.creaIdRicetta());
+                }
+                if (!nomiNelBlocco.add(ValidationUtils.normalizeKey(ricetta.getNome()))
+                        || !idNelBlocco.add(ricetta.getId()) || ricettaGiaPresente(ricetta)) {
+                    continue;
+                }
+                menuCreator.registraIdEsistente(ricetta.getId());
+                accettate.add(ricetta);
+            }
+            if (archivio != null) {
+                archivio.getRicette().salvaTutti(accettate);
+                return accettate;
+            }
+            for (Ricetta ricetta : accettate) {
+                ricette.add(ricetta);
+                ricettePerId.put(ricetta.getId(), ricetta);
+                indicizzaNome(ricetta);
+                statiRicette.aggiungi(ricetta);
+                registra(ricetta.getId(), RegistroModifiche::segnaRicetta, () -> RecordJournal.ricettaSalvata(ricetta));
+            }
+            ricercaRicette.aggiungiTutte(accettate);
+            return accettate;
+        });
+        if (!inserite.isEmpty()) {
+            notifyRicetteAggiunte(inserite);
+        }
+        return inserite;
+    }
+
+    /** Importa un file CSV o JSON-lines (anche .gz): vedi {@link ImportazioneRicette}. */
+    public ImportazioneRicette.Esito importaRicette(Path file) throws IOException {
+        return new ImportazioneRicette(this::inserisciRicette).importa(file);
+    }
+
+    // Chiamato sotto lock in scrittura.
+    private boolean ricettaGiaPresente(Ricetta ricetta) {
+        if (ricettePerNome.containsKey(ValidationUtils.normalizeKey(ricetta.getNome()))
+                || ricettePerId.containsKey(ricetta.getId())) {
+            return true;
+        }
+        return archivio != null && (archivio.getRicette().trovaPerNome(ricetta.getNome()) != null
+                || archivio.getRicette().trova(ricetta.getId()) != null);
+    }
+
+    private void registraRicetta(Ricetta ricetta) {
+        ricette.add(ricetta);
+        ricettePerId.put(ricetta.getId(), ricetta);
+        indicizzaNome(ricetta);
+        statiRicette.aggiungi(ricetta);
+        ricercaRicette.aggiungi(ricetta);
+    }
+
+    private boolean rimuoviRicetta(Ricetta ricetta) {
+        if (!ricette.remove(ricetta)) {
             return false;
         }
-        
-        ricette.add(ricettaCompleta);
+        ricettePerId.remove(ricetta.getId(), ricetta);
+        rimuoviNome(ricetta);
+        statiRicette.rimuovi(ricetta);
+        ricercaRicette.rimuovi(ricetta.getId());
         return true;
     }
 
+    public List<Risultato> cercaRicette(String testo, int massimo) {
+        return leggi(() -> ricercaRicette.cerca(testo, massimo));
+    }
+
+    public boolean esisteRicetta(String nome) {
+        String chiave = ValidationUtils.normalizeKey(nome);
+        if (leggi(() -> ricettePerNome.containsKey(chiave))) {
+            return true;
+        }
+        Archivio archivioCorrente = archivio;
+        return archivioCorrente != null && archivioCorrente.getRicette().trovaPerNome(nome) != null;
+    }
+
     public boolean aggiornaRicetta(Ricetta ricettaAggiornata) {
         if (ricettaAggiornata == null || ricettaAggiornata.getId() == null) {
             return false;
         }
         
-        for (int i = 0; i < ricette.size(); i++) {
-            if (ricette.get(i).getId().equals(ricettaAggiornata.getId())) {
-                ricette.set(i, ricettaAggiornata);
-                return true;
+        return scrivi(() -> {
+            ricettaInMemoria(ricettaAggiornata.getId());
+            if (!sostituisciRicetta(ricettaAggiornata)) {
+                return false;
+            }
+            // I testi dei menu che citano la ricetta vanno ricomposti.
+            for (UtilizzoRicetta utilizzo : utilizziRicette.getUtilizzi(ricettaAggiornata.getId())) {
+                utilizzo.getMenu().nuovaVersione();
             }
+            dosiScalate.invalida(ricettaAggiornata.getId());
+            registra(ricettaAggiornata.getId(), RegistroModifiche::segnaRicetta,
+                    () -> RecordJournal.ricettaSalvata(ricettaAggiornata));
+            return true;
+        });
+    }
+
+    private boolean sostituisciRicetta(Ricetta ricettaAggiornata) {
+        Ricetta ricettaAttuale = ricettePerId.get(ricettaAggiornata.getId());
+        if (ricettaAttuale == null) {
+            return false;
         }
-        
-        return false;
+
+        // La vista modifica di solito l'istanza gia' presente nel ricettario:
+        // la lista va toccata solo quando arriva un oggetto diverso.
+        if (ricettaAttuale != ricettaAggiornata) {
+            ricette.set(ricette.indexOf(ricettaAttuale), ricettaAggiornata);
+            ricettePerId.put(ricettaAggiornata.getId(), ricettaAggiornata);
+        }
+        rimuoviNome(ricettaAttuale);
+        indicizzaNome(ricettaAggiornata);
+        statiRicette.aggiorna(ricettaAttuale, ricettaAggiornata);
+        ricercaRicette.aggiungi(ricettaAggiornata);
+        return true;
     }
     
     public boolean eliminaRicettaDalRicettario(Ricetta ricetta) {
+        return scrivi(() -> {
+            if (utilizziRicette.isUsata(ricetta.getId())) {
+                return false;
+            }
 
-        boolean usataInMenu = false;
-        for (Menu menu : menus) {
-            for (SezioniMenu sezione : menu.getSezioni()) {
-                for (VoceMenu voce : sezione.getVoci()) {
-                    if (voce.getRicetta() != null && voce.getRicetta().getId().equals(ricetta.getId())) {
-                        usataInMenu = true;
-                        break;
-                    }
-                }
-                if (usataInMenu) break;
+            Ricetta daRimuovere = ricettePerId.containsKey(ricetta.getId()) ? ricetta : ricettaInMemoria(ricetta.getId());
+            if (daRimuovere == null || !rimuoviRicetta(daRimuovere)) {
+                return false;
+            }
+            dosiScalate.invalida(ricetta.getId());
+            registra(ricetta.getId(), RegistroModifiche::segnaRicettaEliminata,
+                    () -> RecordJournal.ricettaEliminata(ricetta.getId()));
+            return true;
+        });
+    }
+    
+    private void indicizzaNome(Ricetta ricetta) {
+        String chiave = ValidationUtils.normalizeKey(ricetta.getNome());
+        ricettePerNome.computeIfAbsent(chiave, k -> new ArrayList<>(1)).add(ricetta);
+        chiaveNomePerRicetta.put(ricetta.getId(), chiave);
+    }
+
+    private void rimuoviNome(Ricetta ricetta) {
+        // La chiave registrata all'inserimento resta valida anche se il nome
+        // e' gia' stato cambiato sull'oggetto prima di aggiornaRicetta.
+        String chiave = chiaveNomePerRicetta.remove(ricetta.getId());
+        List<Ricetta> omonime = chiave != null ? ricettePerNome.get(chiave) : null;
+        if (omonime != null) {
+            omonime.remove(ricetta);
+            if (omonime.isEmpty()) {
+                ricettePerNome.remove(chiave);
             }
-            if (usataInMenu) break;
-        }
-        
-        if (usataInMenu) {
-            return false;
         }
-        
-        return ricette.remove(ricetta);
     }
     
     public void aggiungiRicettaASezione(Menu menu, String titoloSezione, Ricetta ricetta) {
 
-        if (!"pubblicata".equals(ricetta.getStato())) {
+        if (!Ricetta.STATO_PUBBLICATA.equals(ricetta.getStato())) {
             throw new IllegalArgumentException("Solo le ricette pubblicate possono essere aggiunte ai menu");
         }
         
-        for (SezioniMenu sezione : menu.getSezioni()) {
-            if (sezione.getTitolo().equals(titoloSezione)) {
-                VoceMenu voce = menuCreator.creaVoceMenu(ricetta);
-                sezione.getVoci().add(voce);
-                notifyMenuUpdated(menu);
-                break;
+        boolean aggiunta = scrivi(() -> {
+            SezioniMenu sezione = menu.getSezione(titoloSezione);
+            if (sezione == null) {
+                return false;
             }
+            VoceMenu voce = menuCreator.creaVoceMenu(ricetta);
+            menu.aggiungiVoce(sezione, voce);
+            utilizziRicette.registra(menu, sezione, voce);
+            registra(menu.getId(), RegistroModifiche::segnaMenu,
+                    () -> RecordJournal.voceAggiunta(menu.getId(), sezione.getId(), voce));
+            return true;
+        });
+        if (aggiunta) {
+            notifyMenuUpdated(menu);
         }
     }
     
     public void eliminaRicetta(Menu menu, Ricetta ricetta) {
-        for (SezioniMenu sezione : menu.getSezioni()) {
-            sezione.getVoci().removeIf(voce -> voce.getRicetta() != null && 
-                                              voce.getRicetta().getId().equals(ricetta.getId()));
-        }
+        modifica(() -> {
+            for (UtilizzoRicetta utilizzo : utilizziRicette.getUtilizzi(ricetta.getId(), menu)) {
+                menu.rimuoviVoce(utilizzo.getVoce());
+                utilizziRicette.rimuovi(utilizzo.getVoce());
+                registra(menu.getId(), RegistroModifiche::segnaMenu,
+                        () -> RecordJournal.voceRimossa(menu.getId(), utilizzo.getVoce().getId()));
+            }
+        });
         notifyMenuUpdated(menu);
     }
+
+    public boolean rimuoviVoce(Menu menu, VoceMenu voce) {
+        boolean rimossa = scrivi(() -> {
+            if (!menu.rimuoviVoce(voce)) {
+                return false;
+            }
+            utilizziRicette.rimuovi(voce);
+            registra(menu.getId(), RegistroModifiche::segnaMenu,
+                    () -> RecordJournal.voceRimossa(menu.getId(), voce.getId()));
+            return true;
+        });
+        if (rimossa) {
+            notifyMenuUpdated(menu);
+        }
+        return rimossa;
+    }
+
+    public boolean rimuoviSezione(Menu menu, SezioniMenu sezione) {
+        boolean rimossa = scrivi(() -> {
+            if (!menu.rimuoviSezione(sezione)) {
+                return false;
+            }
+            utilizziRicette.rimuoviSezione(sezione);
+            registra(menu.getId(), RegistroModifiche::segnaMenu,
+                    () -> RecordJournal.sezioneRimossa(menu.getId(), sezione.getId()));
+            return true;
+        });
+        if (rimossa) {
+            notifyMenuUpdated(menu);
+        }
+        return rimossa;
+    }
     
     public void spostaRicetta(String menuId, String ricettaId, String nuovaSezione) {
-        Menu menu = selezionaMenu(menuId);
+        Menu menu = scrivi(() -> {
+            Menu menuTrovato = menuPerId.get(menuId);
+            if (menuTrovato == null) {
+                return null;
+            }
+            SezioniMenu sezioneDestinazione = menuTrovato.getSezione(nuovaSezione);
+            PosizioneVoce posizione = menuTrovato.trovaVocePerRicetta(ricettaId);
+            if (posizione == null || sezioneDestinazione == null) {
+                return null;
+            }
+            return spostaVoceInterno(menuTrovato, posizione.getVoce(), posizione.getSezione(), sezioneDestinazione) ? menuTrovato : null;
+        });
         if (menu != null) {
-            VoceMenu voceDaSpostare = null;
+            notifyMenuUpdated(menu);
+        }
+    }
 
-            for (SezioniMenu sezione : menu.getSezioni()) {
-                for (VoceMenu voce : sezione.getVoci()) {
-                    if (voce.getRicetta() != null && voce.getRicetta().getId().equals(ricettaId)) {
-                        voceDaSpostare = voce;
-                        sezione.getVoci().remove(voce);
-                        break;
-                    }
-                }
-                if (voceDaSpostare != null) break;
-            }
+    public boolean spostaVoce(Menu menu, VoceMenu voce, SezioniMenu sezioneOrigine, SezioniMenu sezioneDestinazione) {
+        boolean spostata = scrivi(() -> spostaVoceInterno(menu, voce, sezioneOrigine, sezioneDestinazione));
+        if (spostata) {
+            notifyMenuUpdated(menu);
+        }
+        return spostata;
+    }
 
-            if (voceDaSpostare != null) {
-                for (SezioniMenu sezione : menu.getSezioni()) {
-                    if (sezione.getTitolo().equals(nuovaSezione)) {
-                        sezione.getVoci().add(voceDaSpostare);
-                        break;
-                    }
-                }
-                notifyMenuUpdated(menu);
-            }
+    private boolean spostaVoceInterno(Menu menu, VoceMenu voce, SezioniMenu sezioneOrigine, SezioniMenu sezioneDestinazione) {
+        PosizioneVoce posizione = menu.getPosizioneVoce(voce);
+        if (posizione == null || posizione.getSezione() != sezioneOrigine || !menu.spostaVoce(voce, sezioneDestinazione)) {
+            return false;
         }
+        utilizziRicette.sposta(voce, sezioneDestinazione);
+        registra(menu.getId(), RegistroModifiche::segnaMenu,
+                () -> RecordJournal.voceSpostata(menu.getId(), voce.getId(), sezioneDestinazione.getId()));
+        return true;
     }
     
     public void aggiornaTitolo(Menu menu, String nuovoTitolo) {
-        menu.setNome(nuovoTitolo);
+        modifica(() -> {
+            menu.setNome(nuovoTitolo);
+            registra(menu.getId(), RegistroModifiche::segnaMenu,
+                    () -> RecordJournal.menuTitolo(menu.getId(), nuovoTitolo));
+        });
         notifyMenuUpdated(menu);
     }
     
     public void aggiungiAnnotazione(Menu menu, String note) {
-        String noteAttuali = menu.getNote() != null ? menu.getNote() : "";
-        menu.setNote(noteAttuali + "\n" + note);
+        modifica(() -> {
+            String noteAttuali = menu.getNote() != null ? menu.getNote() : "";
+            menu.setNote(noteAttuali + "\n" + note);
+            registra(menu.getId(), RegistroModifiche::segnaMenu,
+                    () -> RecordJournal.menuNote(menu.getId(), menu.getNote()));
+        });
         notifyMenuUpdated(menu);
     }
 
+    /**
+     * Scrive il menu in un file di testo UTF-8 nella cartella indicata, con
+     * {@link ScritturaAtomica}: un'esportazione interrotta non lascia file
+     * troncati. Il file non viene forzato su disco. Il testo passa al file
+     * mentre si percorre il menu, tenendo il lock in lettura.
+     */
     public String generaTXTFile(Menu menu, String percorsoCartella) {
+        return generaFile(menu, formatoTXT.getNome(), percorsoCartella);
+    }
+
+    /** Come generaTXTFile, nel formato di esportazione indicato. */
+    public String generaFile(Menu menu, String formato, String percorsoCartella) {
+        FormatoEsportazione formatoScelto = formati.get(formato);
         try {
-            String nomeFile = menu.getNome().replaceAll("[^a-zA-Z0-9]", "_") + ".txt";
+            String nomeFile = leggi(menu::getNome).replaceAll("[^a-zA-Z0-9]", "_") + "."
+                    + formatoScelto.getEstensione();
             String percorsoCompleto = percorsoCartella + File.separator + nomeFile;
-            
-            StringBuilder contenutoTXT = new StringBuilder();
-            contenutoTXT.append("=== MENU: ").append(menu.getNome()).append(" ===\n\n");
-            contenutoTXT.append("Descrizione: ").append(menu.getDescrizione()).append("\n\n");
-            
-            if (menu.getNote() != null && !menu.getNote().trim().isEmpty()) {
-                contenutoTXT.append("Note: ").append(menu.getNote()).append("\n\n");
+
+            try (ScritturaAtomica scrittura = ScritturaAtomica.apri(Paths.get(percorsoCompleto), false)) {
+                scriviConCache(menu, formatoScelto, scrittura.getScrittore());
+                scrittura.completa();
             }
             
-            contenutoTXT.append("CONTENUTO DEL MENU:\n");
-            contenutoTXT.append("==================\n\n");
+            return percorsoCompleto;
             
-            for (SezioniMenu sezione : menu.getSezioni()) {
-                contenutoTXT.append(sezione.getTitolo().toUpperCase()).append("\n");
-                contenutoTXT.append("-".repeat(sezione.getTitolo().length())).append("\n");
-                
-                for (VoceMenu voce : sezione.getVoci()) {
-                    contenutoTXT.append("• ").append(voce.getNomeVisuale()).append("\n");
-                    
-                    if (voce.getRicetta() != null) {
-                        Ricetta ricetta = voce.getRicetta();
-                        contenutoTXT.append("  Tempo preparazione: ")
-                                   .append(ricetta.getTempoPreparazione())
-                                   .append(" minuti (").append(ricetta.getNumeroPorte()).append(")\n");
-                        
-                        if (ricetta.getDescrizione() != null && !ricetta.getDescrizione().trim().isEmpty()) {
-                            contenutoTXT.append("  ").append(ricetta.getDescrizione()).append("\n");
-                        }
+        } catch (IOException e) {
+            throw new RuntimeException("Errore nella generazione del file " + formatoScelto.getNome() + ": "
+                    + e.getMessage());
+        }
+    }
 
-                        if (!ricetta.getIngredienti().isEmpty()) {
-                            contenutoTXT.append("  Ingredienti:\n");
-                            for (int i = 0; i < ricetta.getIngredienti().size(); i++) {
-                                Ingrediente ingrediente = ricetta.getIngredienti().get(i);
-                                contenutoTXT.append("    - ").append(ingrediente.getNome());
-                                
-                                if (i < ricetta.getDosi().size()) {
-                                    Dose dose = ricetta.getDosi().get(i);
-                                    contenutoTXT.append(": ").append(dose.getQuantitativo())
-                                               .append(" ").append(dose.getUnitaMisura());
-                                }
-                                contenutoTXT.append("\n");
-                            }
-                        }
+    /** Il testo di generaTXTFile, per le anteprime. */
+    public String anteprimaTXT(Menu menu) {
+        return anteprima(menu, formatoTXT.getNome());
+    }
 
-                        if (!ricetta.getTags().isEmpty()) {
-                            contenutoTXT.append("  Tag: ");
-                            for (int i = 0; i < ricetta.getTags().size(); i++) {
-                                if (i > 0) contenutoTXT.append(", ");
-                                contenutoTXT.append(ricetta.getTags().get(i).getNome());
-                            }
-                            contenutoTXT.append("\n");
-                        }
-                    }
-                    
-                    if (voce.getModificheTesto() != null && !voce.getModificheTesto().trim().isEmpty()) {
-                        contenutoTXT.append("  Note: ").append(voce.getModificheTesto()).append("\n");
-                    }
-                    contenutoTXT.append("\n");
-                }
-                contenutoTXT.append("\n");
+    /** Il menu nel formato indicato, in una stringa. */
+    public String anteprima(Menu menu, String formato) {
+        FormatoEsportazione formatoScelto = formati.get(formato);
+        return testoMenu(menu, tipoTesto(formatoScelto), m -> {
+            StringWriter testo = new StringWriter();
+            try {
+                formatoScelto.scrivi(m, testo);
+            } catch (IOException e) {
+                // Si scrive in memoria: non puo' succedere.
+                throw new UncheckedIOException(e);
             }
-            
-            contenutoTXT.append("\n=== Fine Menu ===\n");
-            contenutoTXT.append("Generato dal sistema Cat & Ring\n");
+            return testo.toString();
+        });
+    }
+
+    // I nomi dei file non contengono '/': i tipi dei formati non si confondono con gli altri.
+    private static String tipoTesto(FormatoEsportazione formato) {
+        return "formato/" + formato.getNome();
+    }
+
+    /** I nomi dei formati di esportazione, a partire da txt. */
+    public List<String> getFormatiEsportazione() {
+        return formati.getNomi();
+    }
 
-            try (FileWriter writer = new FileWriter(percorsoCompleto)) {
-                writer.write(contenutoTXT.toString());
+    /**
+     * Aggiunge come formati di esportazione i modelli della cartella (vedi
+     * {@link ModelloEsportazione} per la sintassi), compilandoli subito.
+     * Un modello con lo stesso nome di un formato esistente lo sostituisce.
+     */
+    public List<String> caricaModelliEsportazione(Path cartella) {
+        try {
+            List<String> caricati = formati.caricaCartella(cartella);
+            // Un modello puo' aver sostituito un formato con lo stesso nome.
+            testiMenu.svuota();
+            return caricati;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Errore nella lettura dei modelli: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Scrive il testo del menu in un canale (ad esempio una connessione),
+     * in UTF-8. Le modifiche aspettano la fine della scrittura.
+     */
+    public void scriviTXT(Menu menu, WritableByteChannel destinazione) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            formatoTXT.scrivi(menu, destinazione);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Come {@link #esportaMenu(Collection, Path, String, EsportazioneMenu.Avanzamento, BooleanSupplier)} in TXT. */
+    public EsportazioneMenu.Esito esportaMenu(Collection<Menu> daEsportare, Path destinazione,
+                                              EsportazioneMenu.Avanzamento avanzamento, BooleanSupplier annullata) {
+        return esportaMenu(daEsportare, destinazione, formatoTXT.getNome(), avanzamento, annullata);
+    }
+
+    /**
+     * Esporta i menu nel formato indicato, su piu' thread: in un file ZIP se
+     * la destinazione termina con .zip, altrimenti un file per menu nella
+     * cartella. Ogni menu tiene il lock in lettura solo mentre viene
+     * scritto, cosi' le modifiche si alternano all'esportazione.
+     */
+    public EsportazioneMenu.Esito esportaMenu(Collection<Menu> daEsportare, Path destinazione, String formato,
+                                              EsportazioneMenu.Avanzamento avanzamento, BooleanSupplier annullata) {
+        FormatoEsportazione formatoScelto = formati.get(formato);
+        EsportazioneMenu esportazione = new EsportazioneMenu((menu, scrittore) -> scrivi(menu, formatoScelto, scrittore),
+                formatoScelto.getEstensione(), Runtime.getRuntime().availableProcessors());
+        try {
+            if (destinazione.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip")) {
+                return esportazione.inZip(daEsportare, destinazione, avanzamento, annullata);
             }
-            
-            return percorsoCompleto;
-            
+            return esportazione.inCartella(daEsportare, destinazione, avanzamento, annullata);
         } catch (IOException e) {
-            throw new RuntimeException("Errore nella generazione del TXT: " + e.getMessage());
+            throw new UncheckedIOException("Errore nell'esportazione dei menu: " + e.getMessage(), e);
+        }
+    }
+
+    private void scrivi(Menu menu, FormatoEsportazione formato, Writer destinazione) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            formato.scrivi(menu, destinazione);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Scrive il testo dalla cache, se c'e'; altrimenti lo scrive mentre lo compone
+    // e lo tiene nella cache, se non supera la dimensione massima di un testo.
+    private void scriviConCache(Menu menu, FormatoEsportazione formato, Writer destinazione) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            ChiaveTesto chiave = new ChiaveTesto(menu.getId(), menu.getVersione(), tipoTesto(formato));
+            String testo = testiMenu.get(chiave);
+            if (testo != null) {
+                destinazione.write(testo);
+                destinazione.flush();
+                return;
+            }
+            CopiaTesto copia = new CopiaTesto(destinazione, testiMenu.getMassimoTesto());
+            formato.scrivi(menu, copia);
+            if (copia.isCompleta()) {
+                testiMenu.put(chiave, copia.toString());
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Passa i caratteri alla destinazione e ne tiene una copia finche' non supera il limite. */
+    private static final class CopiaTesto extends Writer {
+        private final Writer destinazione;
+        private final int limite;
+        private StringBuilder copia = new StringBuilder();
+
+        CopiaTesto(Writer destinazione, int limite) {
+            this.destinazione = destinazione;
+            this.limite = limite;
+        }
+
+        @Override
+        public void write(char[] caratteri, int inizio, int lunghezza) throws IOException {
+            destinazione.write(caratteri, inizio, lunghezza);
+            if (copia != null) {
+                if (copia.length() + lunghezza > limite) {
+                    copia = null;
+                } else {
+                    copia.append(caratteri, inizio, lunghezza);
+                }
+            }
+        }
+
+        @Override
+        public void write(String testo, int inizio, int lunghezza) throws IOException {
+            destinazione.write(testo, inizio, lunghezza);
+            if (copia != null) {
+                if (copia.length() + lunghezza > limite) {
+                    copia = null;
+                } else {
+                    copia.append(testo, inizio, inizio + lunghezza);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            destinazione.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        boolean isCompleta() {
+            return copia != null;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(copia);
+        }
+    }
+
+    private static final class ChiaveTesto {
+        private final String menuId;
+        private final long versione;
+        private final String tipo;
+
+        ChiaveTesto(String menuId, long versione, String tipo) {
+            this.menuId = menuId;
+            this.versione = versione;
+            this.tipo = tipo;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ChiaveTesto)) {
+                return false;
+            }
+            ChiaveTesto altra = (ChiaveTesto) o;
+            return versione == altra.versione && Objects.equals(menuId, altra.menuId) && tipo.equals(altra.tipo);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Objects.hashCode(menuId) * 31 + Long.hashCode(versione)) * 31 + tipo.hashCode();
         }
     }
     
@@ -338,8 +1583,16 @@ public class MenuService {
     }
     
     public String pubblicaSuBacheca(Menu menu) {
-        if (!menuPubblicati.contains(menu)) {
-            menuPubblicati.add(menu);
+        LocalDateTime adesso = LocalDateTime.now();
+        boolean pubblicato = scrivi(() -> {
+            if (!bacheca.pubblica(menu, adesso)) {
+                return false;
+            }
+            registra(menu.getId(), RegistroModifiche::segnaPubblicazione,
+                    () -> RecordJournal.bachecaPubblicato(menu.getId(), adesso));
+            return true;
+        });
+        if (pubblicato) {
             notifyMenuUpdated(menu);
             return "http://catring.com/bacheca/" + menu.getId();
         }
@@ -347,42 +1600,51 @@ public class MenuService {
     }
     
     public boolean eliminaMenuSingolo(Menu menu) {
-        boolean rimosso = menus.remove(menu);
+        boolean rimosso = scrivi(() -> {
+            if (!rimuoviMenu(menu)) {
+                return false;
+            }
+            registra(menu.getId(), RegistroModifiche::segnaMenuEliminato,
+                    () -> RecordJournal.menuEliminato(menu.getId()));
+            return true;
+        });
         if (rimosso) {
-            menuPubblicati.remove(menu);
             notifyMenuDeleted(menu);
         }
         return rimosso;
     }
 
     public List<Ingrediente> getIngredientiBase() {
-        return new ArrayList<>(ingredientiBase);
+        return istantanea(ingredientiBase);
     }
 
     public Ingrediente aggiungiIngredienteBase(String nome, String tipo, String unitaMisura) {
-        String id = "IB" + System.currentTimeMillis();
-        Ingrediente ingrediente = new Ingrediente(id, nome, tipo, unitaMisura);
-        ingredientiBase.add(ingrediente);
+        Ingrediente ingrediente = menuCreator.creaIngredienteBase(nome, tipo, unitaMisura);
+        modifica(() -> {
+            registraIngredienteBase(ingrediente);
+            registra(ingrediente, RegistroModifiche::segnaIngrediente,
+                    () -> RecordJournal.ingredienteAggiunto(ingrediente));
+        });
         return ingrediente;
     }
 
     public List<Ingrediente> cercaIngredienti(String nome) {
-        List<Ingrediente> risultati = new ArrayList<>();
-        String nomeMinuscolo = nome.toLowerCase();
-        
-        for (Ingrediente ingrediente : ingredientiBase) {
-            if (ingrediente.getNome().toLowerCase().contains(nomeMinuscolo)) {
-                risultati.add(ingrediente);
-            }
-        }
-        
-        return risultati;
+        return leggi(() -> indiceIngredienti.cerca(nome));
+    }
+
+    /** Ingrediente con un id nuovo, da aggiungere a una ricetta. */
+    public Ingrediente creaIngrediente(String nome, String tipo, String unitaMisura) {
+        return menuCreator.creaIngrediente(nome, tipo, unitaMisura);
+    }
+
+    private void registraIngredienteBase(Ingrediente ingrediente) {
+        menuCreator.registraIdEsistente(ingrediente.getId());
+        ingredientiBase.add(ingrediente);
+        indiceIngredienti.aggiungi(ingrediente);
     }
 
     public void addObserver(MenuObserver observer) {
-        if (!observers.contains(observer)) {
-            observers.add(observer);
-        }
+        observers.addIfAbsent(observer);
     }
     
     public void removeObserver(MenuObserver observer) {
@@ -407,60 +1669,189 @@ public class MenuService {
         }
     }
 
+    private void notifyRicetteAggiunte(List<Ricetta> aggiunte) {
+        List<Ricetta> nonModificabili = Collections.unmodifiableList(aggiunte);
+        for (MenuObserver observer : observers) {
+            observer.onRicetteAggiunte(nonModificabili);
+        }
+    }
+
     public List<Menu> getMenus() {
-        return new ArrayList<>(menus);
+        return istantanea(menus);
     }
     
     public List<Ricetta> getRicette() {
-        return new ArrayList<>(ricette);
+        return istantanea(ricette);
     }
     
     public List<Evento> getEventi() {
-        return new ArrayList<>(eventi);
+        return istantanea(eventi);
     }
     
     public List<Menu> getMenuPubblicati() {
-        return new ArrayList<>(menuPubblicati);
+        return istantanea(bacheca::istantaneaPronta, bacheca::istantanea);
+    }
+
+    /** I menu dei servizi degli eventi che si svolgono almeno in parte fra le due date, senza ripetizioni. */
+    public List<Menu> getMenuEventiTra(LocalDate da, LocalDate a) {
+        return leggi(() -> {
+            Set<Menu> trovati = new LinkedHashSet<>();
+            for (Evento evento : eventiTra(da, a)) {
+                for (Servizio servizio : evento.getServizi()) {
+                    if (servizio.getMenu() != null) {
+                        trovati.add(servizio.getMenu());
+                    }
+                }
+            }
+            return new ArrayList<>(trovati);
+        });
+    }
+
+    /** Gli eventi che si svolgono almeno in parte fra le due date. */
+    public List<Evento> getEventiTra(LocalDate da, LocalDate a) {
+        return leggi(() -> eventiTra(da, a));
+    }
+
+    private List<Evento> eventiTra(LocalDate da, LocalDate a) {
+        List<Evento> trovati = new ArrayList<>();
+        for (Evento evento : eventi) {
+            LocalDate inizio = evento.getDataInizio();
+            LocalDate fine = evento.getDataFine() != null ? evento.getDataFine() : inizio;
+            if (inizio != null && !inizio.isAfter(a) && !fine.isBefore(da)) {
+                trovati.add(evento);
+            }
+        }
+        return trovati;
+    }
+
+    /**
+     * Il foglio di produzione della cucina per l'evento: vedi
+     * {@link FoglioProduzione}. Le dosi riportate al numero di persone si
+     * calcolano una volta per ricetta e numero di persone, finche' la
+     * ricetta non cambia.
+     */
+    public String getFoglioProduzione(Evento evento) {
+        StringWriter testo = new StringWriter();
+        try {
+            scriviFoglioProduzione(evento, testo);
+        } catch (IOException e) {
+            // Si scrive in memoria: non puo' succedere.
+            throw new UncheckedIOException(e);
+        }
+        return testo.toString();
+    }
+
+    /**
+     * Scrive nella cartella un foglio di produzione per ogni evento fra le
+     * due date, ognuno con {@link ScritturaAtomica}; restituisce i file
+     * scritti. Ogni foglio tiene il lock in lettura solo mentre viene scritto.
+     */
+    public List<Path> generaFogliProduzione(LocalDate da, LocalDate a, Path cartella) {
+        List<Path> scritti = new ArrayList<>();
+        try {
+            Files.createDirectories(cartella);
+            for (Evento evento : getEventiTra(da, a)) {
+                Path file = cartella.resolve("produzione_" + evento.getId().replaceAll("[^a-zA-Z0-9]", "_") + ".txt");
+                try (ScritturaAtomica scrittura = ScritturaAtomica.apri(file, false)) {
+                    scriviFoglioProduzione(evento, scrittura.getScrittore());
+                    scrittura.completa();
+                }
+                scritti.add(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Errore nella generazione dei fogli di produzione: " + e.getMessage(), e);
+        }
+        return scritti;
+    }
+
+    // Lock in lettura pessimista: le dosi calcolate restano nella cache.
+    private void scriviFoglioProduzione(Evento evento, Writer destinazione) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            foglioProduzione.scrivi(evento, destinazione);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public BachecaMenu.Pagina getPaginaBacheca(String cursore, int dimensione) {
+        return leggi(() -> bacheca.getPagina(cursore, dimensione));
+    }
+
+    public PubblicazioneBacheca getPubblicazione(String menuId) {
+        return leggi(() -> bacheca.getPubblicazione(menuId));
     }
     
     public boolean rimuoviDaBacheca(Menu menu) {
-        boolean rimosso = menuPubblicati.remove(menu);
+        boolean rimosso = scrivi(() -> {
+            if (!bacheca.rimuovi(menu)) {
+                return false;
+            }
+            registra(menu.getId(), RegistroModifiche::segnaRimozioneDaBacheca,
+                    () -> RecordJournal.bachecaRimosso(menu.getId()));
+            return true;
+        });
         if (rimosso) {
             notifyMenuUpdated(menu);
         }
         return rimosso;
     }
     
+    // Ricerche nel menu per l'interfaccia: sotto lock, perche' leggono gli
+    // indici del menu mentre le modifiche li aggiornano.
+
+    public SezioniMenu getSezione(Menu menu, String titolo) {
+        return leggi(() -> menu.getSezione(titolo));
+    }
+
+    public PosizioneVoce getPosizioneVoce(Menu menu, VoceMenu voce) {
+        return leggi(() -> menu.getPosizioneVoce(voce));
+    }
+
+    /** Copia delle voci della sezione con quel titolo; vuota se la sezione non c'e'. */
+    public List<VoceMenu> getVociSezione(Menu menu, String titolo) {
+        return leggi(() -> {
+            SezioniMenu sezione = menu.getSezione(titolo);
+            return sezione != null ? new ArrayList<>(sezione.getVoci()) : new ArrayList<>();
+        });
+    }
+
     public boolean isMenuPubblicato(Menu menu) {
-        return menuPubblicati.contains(menu);
+        return leggi(() -> bacheca.contiene(menu));
     }
     
     public Menu getMenuById(String id) {
-        return menus.stream()
-                .filter(menu -> menu.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        return leggi(() -> menuPerId.get(id));
     }
     
     public Ricetta getRicettaById(String id) {
-        return ricette.stream()
-                .filter(ricetta -> ricetta.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        Ricetta ricetta = leggi(() -> ricettePerId.get(id));
+        if (ricetta == null && archivio != null) {
+            ricetta = scrivi(() -> ricettaInMemoria(id));
+        }
+        return ricetta != null ? ricetta : trovaNelCatalogo(id);
+    }
+
+    public boolean isRicettaUsata(String ricettaId) {
+        return leggi(() -> utilizziRicette.isUsata(ricettaId));
+    }
+
+    public List<UtilizzoRicetta> getUtilizziRicetta(String ricettaId) {
+        return leggi(() -> utilizziRicette.getUtilizzi(ricettaId));
     }
 
     private void initializeTestData() {
 
-        ingredientiBase.add(new Ingrediente("IB001", "Pomodoro", "verdura", "kg"));
-        ingredientiBase.add(new Ingrediente("IB002", "Mozzarella", "latticino", "kg"));
-        ingredientiBase.add(new Ingrediente("IB003", "Basilico", "erba", "mazzi"));
-        ingredientiBase.add(new Ingrediente("IB004", "Olio extravergine", "condimento", "litri"));
-        ingredientiBase.add(new Ingrediente("IB005", "Pasta", "cereale", "kg"));
-        ingredientiBase.add(new Ingrediente("IB006", "Aglio", "verdura", "spicchi"));
-        ingredientiBase.add(new Ingrediente("IB007", "Parmigiano", "formaggio", "kg"));
-        ingredientiBase.add(new Ingrediente("IB008", "Vitello", "carne", "kg"));
-        ingredientiBase.add(new Ingrediente("IB009", "Tonno", "pesce", "kg"));
-        ingredientiBase.add(new Ingrediente("IB010", "Maionese", "salsa", "kg"));
+        registraIngredienteBase(new Ingrediente("IB001", "Pomodoro", "verdura", "kg"));
+        registraIngredienteBase(new Ingrediente("IB002", "Mozzarella", "latticino", "kg"));
+        registraIngredienteBase(new Ingrediente("IB003", "Basilico", "erba", "mazzi"));
+        registraIngredienteBase(new Ingrediente("IB004", "Olio extravergine", "condimento", "litri"));
+        registraIngredienteBase(new Ingrediente("IB005", "Pasta", "cereale", "kg"));
+        registraIngredienteBase(new Ingrediente("IB006", "Aglio", "verdura", "spicchi"));
+        registraIngredienteBase(new Ingrediente("IB007", "Parmigiano", "formaggio", "kg"));
+        registraIngredienteBase(new Ingrediente("IB008", "Vitello", "carne", "kg"));
+        registraIngredienteBase(new Ingrediente("IB009", "Tonno", "pesce", "kg"));
+        registraIngredienteBase(new Ingrediente("IB010", "Maionese", "salsa", "kg"));
 
         Cliente cliente1 = new Cliente("C001", "Matrimonio Rossi", "privato", "mario.rossi@email.com");
         Cliente cliente2 = new Cliente("C002", "Azienda Tech", "azienda", "info@tech.com");
@@ -490,6 +1881,9 @@ public class MenuService {
         eventi.add(evento1);
         eventi.add(evento2);
         eventi.add(evento3);
+        for (Evento evento : eventi) {
+            eventiPerId.put(evento.getId(), evento);
+        }
 
         Ricetta ricetta1 = new Ricetta("R001", "Pasta al pomodoro", "Pasta semplice con salsa di pomodoro", 20, "pubblicata", "Chef Mario");
         Ricetta ricetta2 = new Ricetta("R002", "Vitello tonnato", "Vitello con salsa tonnata", 60, "pubblicata", "Chef Luigi");
@@ -500,5 +1894,11 @@ public class MenuService {
         ricette.add(ricetta2);
         ricette.add(ricetta3);
         ricette.add(ricetta4);
+        for (Ricetta ricetta : ricette) {
+            ricettePerId.put(ricetta.getId(), ricetta);
+            indicizzaNome(ricetta);
+            statiRicette.aggiungi(ricetta);
+            ricercaRicette.aggiungi(ricetta);
+        }
     }
 }
\ No newline at end of file
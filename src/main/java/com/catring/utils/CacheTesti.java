@@ -0,0 +1,77 @@
+package com.catring.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Cache LRU di testi con un limite sul totale dei caratteri: quando lo si
+ * supera escono i testi usati meno di recente. I testi piu' lunghi di
+ * {@link #getMassimoTesto()} non vengono tenuti. Le chiavi devono includere
+ * tutto cio' da cui dipende il testo (ad esempio id e versione), perche' la
+ * cache non invalida niente da sola. Thread-safe.
+ */
+public class CacheTesti<K> {
+
+    private final LinkedHashMap<K, String> testi = new LinkedHashMap<>(64, 0.75f, true);
+    private final long massimoCaratteri;
+    private final int massimoTesto;
+    private long caratteri;
+    private long trovati;
+    private long mancati;
+
+    public CacheTesti(long massimoCaratteri) {
+        if (massimoCaratteri < 1) {
+            throw new IllegalArgumentException("Il limite deve essere positivo");
+        }
+        this.massimoCaratteri = massimoCaratteri;
+        this.massimoTesto = (int) Math.min(Integer.MAX_VALUE, massimoCaratteri / 4);
+    }
+
+    public synchronized String get(K chiave) {
+        String testo = testi.get(chiave);
+        if (testo != null) {
+            trovati++;
+        } else {
+            mancati++;
+        }
+        return testo;
+    }
+
+    public synchronized void put(K chiave, String testo) {
+        if (testo.length() > massimoTesto) {
+            return;
+        }
+        String precedente = testi.put(chiave, testo);
+        caratteri += testo.length() - (precedente != null ? precedente.length() : 0);
+        Iterator<String> piuVecchi = testi.values().iterator();
+        while (caratteri > massimoCaratteri) {
+            caratteri -= piuVecchi.next().length();
+            piuVecchi.remove();
+        }
+    }
+
+    public synchronized void svuota() {
+        testi.clear();
+        caratteri = 0;
+    }
+
+    public synchronized int dimensione() {
+        return testi.size();
+    }
+
+    public synchronized long getCaratteri() {
+        return caratteri;
+    }
+
+    public int getMassimoTesto() {
+        return massimoTesto;
+    }
+
+    public synchronized long getTrovati() {
+        return trovati;
+    }
+
+    public synchronized long getMancati() {
+        return mancati;
+    }
+}
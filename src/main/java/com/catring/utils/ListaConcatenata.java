@@ -0,0 +1,32 @@
+package com.catring.utils;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Vista non modificabile di due liste una dopo l'altra, senza copiarle.
+ * Riflette le liste sottostanti: va costruita su liste che non cambiano,
+ * come le istantanee di {@link ListaVersionata}.
+ */
+public class ListaConcatenata<T> extends AbstractList<T> implements RandomAccess {
+
+    private final List<? extends T> prima;
+    private final List<? extends T> seconda;
+
+    public ListaConcatenata(List<? extends T> prima, List<? extends T> seconda) {
+        this.prima = prima;
+        this.seconda = seconda;
+    }
+
+    @Override
+    public T get(int indice) {
+        int dimensionePrima = prima.size();
+        return indice < dimensionePrima ? prima.get(indice) : seconda.get(indice - dimensionePrima);
+    }
+
+    @Override
+    public int size() {
+        return prima.size() + seconda.size();
+    }
+}
@@ -0,0 +1,65 @@
+package com.catring.utils;
+
+import java.util.AbstractList;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.BiFunction;
+
+/**
+ * Vista non modificabile di una sequenza letta a pagine (ad esempio da un
+ * database): in memoria restano solo le pagine lette piu' di recente. La
+ * dimensione e' fissata alla creazione; se nel frattempo la sorgente si
+ * accorcia, leggere oltre la fine lancia ConcurrentModificationException.
+ */
+public class ListaPaginata<T> extends AbstractList<T> implements RandomAccess {
+
+    public static final int DIMENSIONE_PAGINA = 256;
+
+    private static final int PAGINE_IN_MEMORIA = 8;
+
+    private final int dimensione;
+    private final BiFunction<Integer, Integer, List<T>> caricaPagina;
+    private final Map<Integer, List<T>> pagine = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> piuVecchia) {
+            return size() > PAGINE_IN_MEMORIA;
+        }
+    };
+
+    /** caricaPagina riceve la posizione iniziale e il numero di elementi. */
+    public ListaPaginata(int dimensione, BiFunction<Integer, Integer, List<T>> caricaPagina) {
+        this.dimensione = dimensione;
+        this.caricaPagina = caricaPagina;
+    }
+
+    @Override
+    public T get(int indice) {
+        if (indice < 0 || indice >= dimensione) {
+            throw new IndexOutOfBoundsException("Indice " + indice + " su " + dimensione);
+        }
+        int numeroPagina = indice / DIMENSIONE_PAGINA;
+        List<T> pagina;
+        synchronized (pagine) {
+            pagina = pagine.get(numeroPagina);
+        }
+        if (pagina == null) {
+            pagina = caricaPagina.apply(numeroPagina * DIMENSIONE_PAGINA, DIMENSIONE_PAGINA);
+            synchronized (pagine) {
+                pagine.put(numeroPagina, pagina);
+            }
+        }
+        int posizione = indice % DIMENSIONE_PAGINA;
+        if (posizione >= pagina.size()) {
+            throw new ConcurrentModificationException("La sorgente si e' accorciata durante la lettura");
+        }
+        return pagina.get(posizione);
+    }
+
+    @Override
+    public int size() {
+        return dimensione;
+    }
+}
@@ -0,0 +1,104 @@
+package com.catring.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Lista con istantanee immutabili pubblicate in modo copy-on-write: ogni
+ * modifica incrementa la versione e invalida l'istantanea, che viene
+ * ricostruita una sola volta alla prima lettura successiva. Le letture
+ * senza modifiche nel frattempo restituiscono sempre la stessa vista.
+ *
+ * Non e' thread-safe da sola: le modifiche e la ricostruzione
+ * dell'istantanea vanno eseguite sotto il lock del proprietario, mentre
+ * {@link #istantaneaPronta()} si puo' leggere senza lock.
+ */
+public class ListaVersionata<T> implements Iterable<T> {
+
+    private final List<T> elementi;
+    private long versione;
+    private volatile List<T> istantanea;
+
+    public ListaVersionata() {
+        this.elementi = new ArrayList<>();
+        this.istantanea = Collections.emptyList();
+    }
+
+    public void add(T elemento) {
+        elementi.add(elemento);
+        modificata();
+    }
+
+    public boolean remove(Object elemento) {
+        boolean rimosso = elementi.remove(elemento);
+        if (rimosso) {
+            modificata();
+        }
+        return rimosso;
+    }
+
+    public T set(int indice, T elemento) {
+        T precedente = elementi.set(indice, elemento);
+        modificata();
+        return precedente;
+    }
+
+    public void clear() {
+        elementi.clear();
+        modificata();
+    }
+
+    public T get(int indice) {
+        return elementi.get(indice);
+    }
+
+    public int indexOf(Object elemento) {
+        return elementi.indexOf(elemento);
+    }
+
+    public boolean contains(Object elemento) {
+        return elementi.contains(elemento);
+    }
+
+    public int size() {
+        return elementi.size();
+    }
+
+    public boolean isEmpty() {
+        return elementi.isEmpty();
+    }
+
+    public Stream<T> stream() {
+        return elementi.stream();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return Collections.unmodifiableList(elementi).iterator();
+    }
+
+    public long getVersione() {
+        return versione;
+    }
+
+    public List<T> istantaneaPronta() {
+        return istantanea;
+    }
+
+    public List<T> istantanea() {
+        List<T> corrente = istantanea;
+        if (corrente == null) {
+            corrente = Collections.unmodifiableList(new ArrayList<>(elementi));
+            istantanea = corrente;
+        }
+        return corrente;
+    }
+
+    private void modificata() {
+        versione++;
+        istantanea = null;
+    }
+}
@@ -1,5 +1,8 @@
 package com.catring.utils;
 
+import java.text.Normalizer;
+import java.util.Locale;
+
 public class ValidationUtils {
     
     public static boolean isValidString(String value) {
@@ -20,4 +23,14 @@ public class ValidationUtils {
     public static String sanitizeString(String value) {
         return value != null ? value.trim() : "";
     }
+
+    public static String normalizeKey(String value) {
+        if (value == null) {
+            return "";
+        }
+        // NFC unifica "e" + accento combinante con "è"; Locale.ROOT evita
+        // dipendenze dal locale di sistema (es. la "i" turca).
+        String composta = Normalizer.normalize(value.trim(), Normalizer.Form.NFC);
+        return composta.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
 }
\ No newline at end of file
@@ -14,6 +14,7 @@ public class EventiView {
     private ListView<Evento> listaEventi;
     private TextArea areaDettagli;
     private Button bottoneCaricaEventi;
+    private Button bottoneFoglioProduzione;
     private Label labelStato;
     
     public EventiView(EventoController controller) {
@@ -55,10 +56,14 @@ public class EventiView {
         bottoneCaricaEventi.setStyle("-fx-background-color: #27ae60; -fx-text-fill: white; -fx-padding: 12px 20px; -fx-font-size: 14px;");
         bottoneCaricaEventi.setPrefWidth(200);
 
+        bottoneFoglioProduzione = new Button("Foglio di Produzione");
+        bottoneFoglioProduzione.setStyle("-fx-background-color: #2980b9; -fx-text-fill: white; -fx-padding: 12px 20px; -fx-font-size: 14px;");
+        bottoneFoglioProduzione.setPrefWidth(200);
+
         Region spazio = new Region();
         HBox.setHgrow(spazio, Priority.ALWAYS);
         
-        pannello.getChildren().addAll(bottoneCaricaEventi, spazio);
+        pannello.getChildren().addAll(bottoneCaricaEventi, bottoneFoglioProduzione, spazio);
         return pannello;
     }
 
@@ -149,6 +154,9 @@ public class EventiView {
             aggiornaStatistiche();
         });
 
+        bottoneFoglioProduzione.setOnAction(e ->
+                controller.handleFoglioProduzione(listaEventi.getSelectionModel().getSelectedItem()));
+
         listaEventi.getSelectionModel().selectedItemProperty().addListener((obs, oldSelection, newSelection) -> {
             if (newSelection != null) {
                 controller.handleSelezionaEvento(newSelection);
@@ -122,7 +122,15 @@ public class MainView {
         Label copyright = new Label("Cat & Ring © 2024");
         copyright.setStyle("-fx-text-fill: #7f8c8d; -fx-font-size: 10px;");
         
-        footer.getChildren().addAll(spazioVuoto, copyright);
+        Button bottoneEsporta = new Button("Esporta dati");
+        bottoneEsporta.setStyle("-fx-font-size: 10px;");
+        bottoneEsporta.setOnAction(e -> menuController.handleEsportaDati());
+
+        Button bottoneEsportaMenu = new Button("Esporta menu");
+        bottoneEsportaMenu.setStyle("-fx-font-size: 10px;");
+        bottoneEsportaMenu.setOnAction(e -> menuController.handleEsportaMenu());
+
+        footer.getChildren().addAll(bottoneEsporta, bottoneEsportaMenu, spazioVuoto, copyright);
         return footer;
     }
 
@@ -756,13 +756,7 @@ public class MenuView {
         
         if (menuSelezionato != null && titoloSezione != null) {
 
-            for (SezioniMenu sezione : menuSelezionato.getSezioni()) {
-                if (sezione.getTitolo().equals(titoloSezione)) {
-                    comboRicetteDaSpostare.getItems().addAll(sezione.getVoci());
-                    System.out.println("DEBUG: Trovate " + sezione.getVoci().size() + " ricette in " + titoloSezione);
-                    break;
-                }
-            }
+            comboRicetteDaSpostare.getItems().addAll(controller.getVociSezioneMenuSelezionato(titoloSezione));
         }
     }
 
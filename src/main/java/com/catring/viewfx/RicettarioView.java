@@ -34,6 +34,7 @@ public class RicettarioView {
     private ListView<String> listaTags;
 
     private ListView<Ricetta> listaRicette;
+    private TextField campoRicercaRicette;
 
     private Ricetta ricettaCorrente;
     
@@ -317,6 +318,10 @@ public class RicettarioView {
         Label etichetta = new Label("Ricette Disponibili");
         etichetta.setStyle("-fx-font-weight: bold; -fx-text-fill: #34495e; -fx-font-size: 16px;");
         
+        campoRicercaRicette = new TextField();
+        campoRicercaRicette.setPromptText("Cerca per nome, autore, tag o ingrediente...");
+        campoRicercaRicette.setStyle("-fx-font-size: 13px; -fx-padding: 8px;");
+        
         listaRicette = new ListView<>();
         listaRicette.setStyle("-fx-border-color: #bdc3c7; -fx-border-radius: 8px; -fx-border-width: 2px;");
         VBox.setVgrow(listaRicette, Priority.ALWAYS);
@@ -361,7 +366,7 @@ public class RicettarioView {
         statsRicette.setId("statsRicette");
         statsRicette.setStyle("-fx-font-size: 12px; -fx-text-fill: #27ae60;");
         
-        pannello.getChildren().addAll(etichetta, listaRicette, pannelloPulsanti, testoInfo, statsRicette);
+        pannello.getChildren().addAll(etichetta, campoRicercaRicette, listaRicette, pannelloPulsanti, testoInfo, statsRicette);
         return pannello;
     }
 
@@ -406,7 +411,7 @@ public class RicettarioView {
         try {
             double quantita = Double.parseDouble(quantitaStr);
             
-            Ingrediente ingrediente = new Ingrediente("I" + System.currentTimeMillis(), nomeIngrediente, "base", unita);
+            Ingrediente ingrediente = controller.creaIngrediente(nomeIngrediente, unita);
             Dose dose = new Dose(quantita, unita);
             
             ricettaCorrente.aggiungiIngrediente(ingrediente, dose);
@@ -538,6 +543,8 @@ public class RicettarioView {
         bottoneEliminaRicetta.setOnAction(e -> controller.handleEliminaRicettaDalRicettario());
         bottoneAggiungiIngrediente.setOnAction(e -> aggiungiIngrediente());
         bottoneAggiungiTag.setOnAction(e -> aggiungiTag());
+        campoRicercaRicette.textProperty().addListener((obs, vecchio, nuovo) ->
+            listaRicette.setItems(controller.cercaRicette(nuovo)));
     }
 
     private void salvaRicettaCorrente() {
@@ -584,6 +591,8 @@ public class RicettarioView {
             
         } catch (NumberFormatException e) {
             mostraErrore("Dati non validi", "Inserisci valori numerici validi per il tempo");
+        } catch (UnsupportedOperationException e) {
+            mostraErrore("Ricetta non modificabile", "Le ricette del catalogo condiviso sono in sola lettura");
         }
     }
 
@@ -0,0 +1,80 @@
+package com.catring.benchmark;
+
+import com.catring.information_expert.IndiceRicercaRicette;
+import com.catring.model.Dose;
+import com.catring.model.Ingrediente;
+import com.catring.model.Ricetta;
+import com.catring.model.Tag;
+import com.catring.persistence.ContenutoIstantanea;
+import com.catring.persistence.FileIstantanea;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Le due fasi che dominano l'avvio con un catalogo grande: lettura
+ * dell'istantanea e costruzione dell'indice di ricerca sulle ricette lette.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class AvvioIstantaneaBenchmark {
+
+    private static final String[] PIATTI = {"risotto", "lasagne", "gnocchi", "polenta", "frittata", "tiramisu"};
+    private static final String[] AUTORI = {"Chef Mario", "Chef Luigi", "Chef Anna", "Chef Marco"};
+
+    @Param({"100000", "1000000"})
+    private int dimensione;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void scriviIstantanea() throws IOException {
+        Random random = new Random(5);
+        List<Ingrediente> ingredienti = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            ingredienti.add(new Ingrediente("I" + i, "ingrediente " + i, "base", "g"));
+        }
+        List<Ricetta> ricette = new ArrayList<>(dimensione);
+        for (int i = 0; i < dimensione; i++) {
+            Ricetta ricetta = new Ricetta("R" + i, PIATTI[random.nextInt(PIATTI.length)] + " " + i,
+                    "Ricetta della casa numero " + i, 10 + random.nextInt(80),
+                    Ricetta.STATO_PUBBLICATA, AUTORI[random.nextInt(AUTORI.length)]);
+            for (int j = 0; j < 5; j++) {
+                ricetta.aggiungiIngrediente(ingredienti.get(random.nextInt(ingredienti.size())), new Dose(100, "g"));
+            }
+            ricetta.getTags().add(new Tag("tag" + random.nextInt(20)));
+            ricette.add(ricetta);
+        }
+        file = Files.createTempFile("avvio", ".snapshot");
+        FileIstantanea.scrivi(file, new ContenutoIstantanea(1, ingredienti, ricette,
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList()));
+    }
+
+    @TearDown(Level.Trial)
+    public void elimina() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public ContenutoIstantanea leggiIstantanea() throws IOException {
+        return FileIstantanea.leggi(file);
+    }
+
+    @Benchmark
+    public IndiceRicercaRicette leggiEIndicizza() throws IOException {
+        IndiceRicercaRicette indice = new IndiceRicercaRicette();
+        indice.aggiungiTutte(FileIstantanea.leggi(file).getRicette());
+        return indice;
+    }
+}
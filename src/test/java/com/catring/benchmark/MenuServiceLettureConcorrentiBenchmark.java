@@ -0,0 +1,85 @@
+package com.catring.benchmark;
+
+import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import com.catring.singleton.MenuService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Letture al secondo di MenuService con 1, 2 e tutti i processori come
+ * lettori, mentre un thread scrittore crea menu e ricette senza sosta. Le
+ * letture prendono il lock in lettura, quindi il throughput dovrebbe
+ * crescere con i lettori finche' lo scrittore non li blocca.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MenuServiceLettureConcorrentiBenchmark {
+
+    private static final int MENU_INIZIALI = 10000;
+
+    private MenuService menuService;
+    private String[] idMenu;
+    private final AtomicBoolean attivo = new AtomicBoolean();
+    private Thread scrittore;
+
+    @Setup(Level.Trial)
+    public void avvia() {
+        menuService = MenuService.getInstance();
+        idMenu = new String[MENU_INIZIALI];
+        for (int i = 0; i < MENU_INIZIALI; i++) {
+            idMenu[i] = menuService.creaMenu("Menu " + i, "Descrizione " + i, null).getId();
+        }
+        attivo.set(true);
+        scrittore = new Thread(() -> {
+            int i = 0;
+            while (attivo.get()) {
+                Menu menu = menuService.creaMenu("Menu scritto " + i, "", null);
+                menuService.definisciSezioni(menu, "Primi");
+                Ricetta ricetta = menuService.inserisciRicetta("Scritta " + i, "Prova", 10, "pubblicata", "Chef");
+                menuService.aggiungiRicettaASezione(menu, "Primi", ricetta);
+                i++;
+            }
+        }, "scrittore-benchmark");
+        scrittore.setDaemon(true);
+        scrittore.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void ferma() throws InterruptedException {
+        attivo.set(false);
+        scrittore.join();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void unLettore(Blackhole bh) {
+        leggi(bh);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void dueLettori(Blackhole bh) {
+        leggi(bh);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void tuttiIProcessori(Blackhole bh) {
+        leggi(bh);
+    }
+
+    private void leggi(Blackhole bh) {
+        bh.consume(menuService.getMenuById(idMenu[ThreadLocalRandom.current().nextInt(MENU_INIZIALI)]));
+        bh.consume(menuService.getRicettaById("R001"));
+        bh.consume(menuService.isRicettaUsata("R002"));
+    }
+}
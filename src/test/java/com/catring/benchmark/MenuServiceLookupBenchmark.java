@@ -0,0 +1,58 @@
+package com.catring.benchmark;
+
+import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import com.catring.singleton.MenuService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latenza delle ricerche per id di MenuService al crescere del catalogo.
+ * Ogni dimensione gira in una JVM separata, quindi il singleton parte vuoto
+ * (a parte i dati di prova) e viene riempito nel setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MenuServiceLookupBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int dimensione;
+
+    private MenuService menuService;
+    private String[] idMenu;
+    private String[] idRicette;
+
+    @Setup(Level.Trial)
+    public void popola() {
+        menuService = MenuService.getInstance();
+        idMenu = new String[dimensione];
+        idRicette = new String[dimensione];
+        for (int i = 0; i < dimensione; i++) {
+            Menu menu = menuService.creaMenu("Menu " + i, "Descrizione " + i, null);
+            Ricetta ricetta = menuService.inserisciRicetta("Ricetta " + i, "Descrizione " + i, 30, "pubblicata", "Chef");
+            idMenu[i] = menu.getId();
+            idRicette[i] = ricetta.getId();
+        }
+    }
+
+    @Benchmark
+    public Menu selezionaMenu() {
+        return menuService.selezionaMenu(idMenu[ThreadLocalRandom.current().nextInt(dimensione)]);
+    }
+
+    @Benchmark
+    public Ricetta getRicettaById() {
+        return menuService.getRicettaById(idRicette[ThreadLocalRandom.current().nextInt(dimensione)]);
+    }
+
+    @Benchmark
+    public String getDettagliEvento() {
+        return menuService.getDettagliEvento("E002");
+    }
+}
@@ -0,0 +1,54 @@
+package com.catring.benchmark;
+
+import com.catring.information_expert.IndiceIngredienti;
+import com.catring.model.Ingrediente;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ricerca per sottostringa sui nomi degli ingredienti base, con nomi
+ * sintetici composti da sillabe italiane.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RicercaIngredientiBenchmark {
+
+    private static final String[] SILLABE = {
+            "po", "mo", "do", "ro", "ba", "si", "li", "co", "ol", "io", "pa", "sta",
+            "ca", "ro", "ta", "ze", "ne", "fu", "gri", "la", "ve", "sca", "mi", "no"
+    };
+
+    @Param({"1000", "100000", "500000"})
+    private int dimensione;
+
+    @Param({"rota", "basili", "pomodoro"})
+    private String query;
+
+    private IndiceIngredienti indice;
+
+    @Setup(Level.Trial)
+    public void popola() {
+        indice = new IndiceIngredienti();
+        Random random = new Random(7);
+        for (int i = 0; i < dimensione; i++) {
+            StringBuilder nome = new StringBuilder();
+            int sillabe = 3 + random.nextInt(5);
+            for (int s = 0; s < sillabe; s++) {
+                nome.append(SILLABE[random.nextInt(SILLABE.length)]);
+            }
+            indice.aggiungi(new Ingrediente("IB" + i, nome.toString(), "test", "kg"));
+        }
+    }
+
+    @Benchmark
+    public List<Ingrediente> cerca() {
+        return indice.cerca(query);
+    }
+}
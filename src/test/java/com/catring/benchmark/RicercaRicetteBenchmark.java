@@ -0,0 +1,73 @@
+package com.catring.benchmark;
+
+import com.catring.information_expert.IndiceRicercaRicette;
+import com.catring.information_expert.IndiceRicercaRicette.Risultato;
+import com.catring.model.Ingrediente;
+import com.catring.model.Ricetta;
+import com.catring.model.Tag;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ricerca top-k nel ricettario su un catalogo sintetico. Il vocabolario e'
+ * generato da sillabe, cosi' alcune parole sono rare e altre molto comuni.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RicercaRicetteBenchmark {
+
+    private static final String[] SILLABE = {
+            "pa", "sta", "ri", "so", "to", "ca", "ro", "ne", "mo", "li", "ve", "ba", "si", "co", "fu", "gri"
+    };
+    private static final String[] AUTORI = {"Chef Mario", "Chef Luigi", "Chef Anna", "Chef Marco"};
+    private static final String[] TAG = {"vegetariana", "estiva", "tradizionale", "veloce", "festa"};
+
+    @Param({"100000", "1000000"})
+    private int dimensione;
+
+    @Param({"pastaro", "risoto chef", "veget"})
+    private String query;
+
+    private IndiceRicercaRicette indice;
+
+    @Setup(Level.Trial)
+    public void popola() {
+        indice = new IndiceRicercaRicette();
+        Random random = new Random(11);
+        for (int i = 0; i < dimensione; i++) {
+            Ricetta ricetta = new Ricetta("R" + i, parole(random, 3), parole(random, 8), 30,
+                    Ricetta.STATO_PUBBLICATA, AUTORI[random.nextInt(AUTORI.length)]);
+            ricetta.getTags().add(new Tag(TAG[random.nextInt(TAG.length)]));
+            for (int j = 0; j < 4; j++) {
+                ricetta.getIngredienti().add(new Ingrediente("I" + j, parole(random, 1), "test", "kg"));
+            }
+            indice.aggiungi(ricetta);
+        }
+    }
+
+    @Benchmark
+    public List<Risultato> cercaTop10() {
+        return indice.cerca(query, 10);
+    }
+
+    private static String parole(Random random, int numero) {
+        StringBuilder testo = new StringBuilder();
+        for (int p = 0; p < numero; p++) {
+            if (p > 0) {
+                testo.append(' ');
+            }
+            int sillabe = 2 + random.nextInt(2);
+            for (int s = 0; s < sillabe; s++) {
+                testo.append(SILLABE[random.nextInt(SILLABE.length)]);
+            }
+        }
+        return testo.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package com.catring.information_expert;
+
+import com.catring.model.Menu;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BachecaMenuTest {
+
+    private BachecaMenu bacheca;
+    private List<Menu> menu;
+
+    @BeforeEach
+    void setUp() {
+        bacheca = new BachecaMenu();
+        menu = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Menu m = new Menu("M00" + i, "Menu " + i, "Descrizione", null);
+            menu.add(m);
+            assertTrue(bacheca.pubblica(m, LocalDateTime.of(2024, 6, 1, 12, i)));
+        }
+    }
+
+    @Test
+    void testPubblicazioneUnicaPerId() {
+        assertFalse(bacheca.pubblica(menu.get(0), LocalDateTime.now()));
+        assertTrue(bacheca.contiene(menu.get(0)));
+        assertEquals(LocalDateTime.of(2024, 6, 1, 12, 0), bacheca.getPubblicazione("M000").getDataPubblicazione());
+        assertEquals(5, bacheca.size());
+    }
+
+    @Test
+    void testPaginazioneConCursore() {
+        BachecaMenu.Pagina prima = bacheca.getPagina(null, 2);
+        assertEquals(2, prima.getElementi().size());
+        assertSame(menu.get(0), prima.getElementi().get(0).getMenu());
+        assertTrue(prima.haAltre());
+
+        bacheca.rimuovi(menu.get(2));
+
+        BachecaMenu.Pagina seconda = bacheca.getPagina(prima.getCursoreSuccessivo(), 2);
+        assertSame(menu.get(3), seconda.getElementi().get(0).getMenu());
+        assertSame(menu.get(4), seconda.getElementi().get(1).getMenu());
+        assertFalse(seconda.haAltre());
+    }
+
+    @Test
+    void testIstantaneaInOrdineDiPubblicazione() {
+        bacheca.rimuovi(menu.get(1));
+        assertEquals(List.of(menu.get(0), menu.get(2), menu.get(3), menu.get(4)), bacheca.istantanea());
+        assertSame(bacheca.istantanea(), bacheca.istantaneaPronta());
+    }
+
+    @Test
+    void testCursoreNonValido() {
+        assertThrows(IllegalArgumentException.class, () -> bacheca.getPagina("abc", 2));
+        assertThrows(IllegalArgumentException.class, () -> bacheca.getPagina(null, 0));
+    }
+}
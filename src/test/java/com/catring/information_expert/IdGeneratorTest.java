@@ -0,0 +1,89 @@
+package com.catring.information_expert;
+
+import com.catring.persistence.FileLimitiId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdGeneratorTest {
+
+    @TempDir
+    Path cartella;
+
+    private final IdGenerator generatore = new IdGenerator();
+
+    @BeforeEach
+    void setUp() {
+        generatore.usaRiserva(null);
+        generatore.resetCounters();
+    }
+
+    @AfterEach
+    void tearDown() {
+        generatore.usaRiserva(null);
+    }
+
+    @Test
+    void testIdUniciTraThread() throws Exception {
+        Set<String> id = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> attivita = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                attivita.add(pool.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        assertTrue(id.add(generatore.generateRicettaId()));
+                    }
+                }));
+            }
+            for (Future<?> futura : attivita) {
+                futura.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(40_000, id.size());
+    }
+
+    @Test
+    void testIdRegistratoScartaIlSottoblocco() {
+        assertEquals("M1001", generatore.generateMenuId());
+        generatore.registraIdEsistente("M1010");
+        assertEquals("M1011", generatore.generateMenuId());
+        generatore.registraIdEsistente("IB005");
+        generatore.registraIdEsistente("IB1700000000000");
+        assertEquals("IB1700000000001", generatore.generateIngredienteBaseId());
+        assertTrue(generatore.generateIngredienteId().startsWith("I1"));
+    }
+
+    @Test
+    void testRipartenzaOltreIlLimiteSalvato() throws IOException {
+        Path file = cartella.resolve("id");
+        generatore.usaRiserva(FileLimitiId.apri(file));
+        String primo = generatore.generateEventoId();
+        for (int i = 1; i < 500; i++) {
+            generatore.generateEventoId();
+        }
+        long limite = FileLimitiId.apri(file).limiti().get("E");
+        assertTrue(limite > Long.parseLong(primo.substring(1)) + 499);
+
+        // Nuovo avvio senza che gli id distribuiti siano stati salvati altrove.
+        generatore.usaRiserva(null);
+        generatore.resetCounters();
+        generatore.usaRiserva(FileLimitiId.apri(file));
+        assertEquals(limite + 1, Long.parseLong(generatore.generateEventoId().substring(1)));
+    }
+}
@@ -0,0 +1,48 @@
+package com.catring.information_expert;
+
+import com.catring.model.Dose;
+import com.catring.model.Ingrediente;
+import com.catring.model.Ricetta;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndiceDosiScalateTest {
+
+    private static Ricetta creaRicetta() {
+        Ricetta ricetta = new Ricetta("R1", "Risotto", "", 30, Ricetta.STATO_PUBBLICATA, "Chef");
+        ricetta.aggiungiIngrediente(new Ingrediente("IB1", "Riso", "cereale", "kg"), new Dose(0.4, "kg"));
+        ricetta.aggiungiIngrediente(new Ingrediente("IB2", "Brodo", "liquido", "l"), new Dose(1, "l"));
+        return ricetta;
+    }
+
+    @Test
+    void testQuantitaRiportateAllePorzioni() {
+        IndiceDosiScalate indice = new IndiceDosiScalate();
+        Ricetta ricetta = creaRicetta();
+
+        double[] quantita = indice.quantita(ricetta, 100);
+
+        assertEquals(4, ricetta.getNumeroPorte());
+        assertArrayEquals(new double[] {10, 25}, quantita, 1e-9);
+        ricetta.setNumeroPorte(0);
+        indice.invalida("R1");
+        assertArrayEquals(new double[] {40, 100}, indice.quantita(ricetta, 100), 1e-9);
+    }
+
+    @Test
+    void testVettoreRiusatoFinoAllInvalidazione() {
+        IndiceDosiScalate indice = new IndiceDosiScalate();
+        Ricetta ricetta = creaRicetta();
+
+        double[] primo = indice.quantita(ricetta, 80);
+        assertSame(primo, indice.quantita(ricetta, 80));
+        assertNotSame(primo, indice.quantita(ricetta, 50));
+        assertEquals(2, indice.getCalcolati());
+
+        ricetta.getDosi().get(0).setQuantitativo(0.8);
+        indice.invalida("R1");
+        assertEquals(16, indice.quantita(ricetta, 80)[0], 1e-9);
+        assertEquals(3, indice.getCalcolati());
+    }
+}
@@ -0,0 +1,81 @@
+package com.catring.information_expert;
+
+import com.catring.model.Ingrediente;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndiceIngredientiTest {
+
+    private IndiceIngredienti indice;
+    private Ingrediente pomodoro;
+    private Ingrediente pomodorino;
+    private Ingrediente olio;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceIngredienti();
+        pomodoro = new Ingrediente("IB001", "Pomodoro", "verdura", "kg");
+        pomodorino = new Ingrediente("IB002", "Pomodorini ciliegia", "verdura", "kg");
+        olio = new Ingrediente("IB003", "Olio extravergine", "condimento", "litri");
+        indice.aggiungi(pomodoro);
+        indice.aggiungi(pomodorino);
+        indice.aggiungi(olio);
+    }
+
+    @Test
+    void testSottostringa() {
+        assertEquals(List.of(pomodoro, pomodorino), indice.cerca("MODOR"));
+        assertEquals(List.of(olio), indice.cerca("extra"));
+        assertEquals(List.of(pomodorino), indice.cerca("ini cil"));
+        assertTrue(indice.cerca("doropom").isEmpty());
+        assertTrue(indice.cerca("zucchina").isEmpty());
+    }
+
+    @Test
+    void testQueryCorte() {
+        assertEquals(List.of(pomodoro, pomodorino, olio), indice.cerca("o"));
+        assertEquals(List.of(olio), indice.cerca("Ol"));
+        assertEquals(3, indice.cerca("").size());
+    }
+
+    @Test
+    void testAggiornamentoIncrementale() {
+        Ingrediente passata = new Ingrediente("IB004", "Passata di pomodoro", "conserva", "litri");
+        indice.aggiungi(passata);
+
+        assertEquals(List.of(pomodoro, pomodorino, passata), indice.cerca("pomodor"));
+        assertEquals(4, indice.size());
+    }
+
+    @Test
+    void testCoincideConRicercaLineare() {
+        String[] parti = {"pomo", "doro", "olio", "sale", "basi", "lico", "aglio", "ro", "ma"};
+        Random random = new Random(42);
+        List<Ingrediente> tutti = new ArrayList<>();
+        IndiceIngredienti grande = new IndiceIngredienti();
+        for (int i = 0; i < 2000; i++) {
+            String nome = parti[random.nextInt(parti.length)] + parti[random.nextInt(parti.length)]
+                    + " " + parti[random.nextInt(parti.length)];
+            Ingrediente ingrediente = new Ingrediente("IB" + i, nome, "test", "kg");
+            tutti.add(ingrediente);
+            grande.aggiungi(ingrediente);
+        }
+
+        for (String query : new String[] {"odor", "oli", "roma", "sale ba", "o d", "glio", "xyz"}) {
+            List<Ingrediente> attesi = new ArrayList<>();
+            for (Ingrediente ingrediente : tutti) {
+                if (ingrediente.getNome().toLowerCase(Locale.ROOT).contains(query)) {
+                    attesi.add(ingrediente);
+                }
+            }
+            assertEquals(attesi, grande.cerca(query), query);
+        }
+    }
+}
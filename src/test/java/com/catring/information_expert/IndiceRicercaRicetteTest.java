@@ -0,0 +1,154 @@
+package com.catring.information_expert;
+
+import com.catring.information_expert.IndiceRicercaRicette.Risultato;
+import com.catring.model.Dose;
+import com.catring.model.Ingrediente;
+import com.catring.model.Ricetta;
+import com.catring.model.Tag;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndiceRicercaRicetteTest {
+
+    private IndiceRicercaRicette indice;
+    private Ricetta carbonara;
+    private Ricetta amatriciana;
+    private Ricetta tiramisu;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceRicercaRicette();
+        carbonara = new Ricetta("R001", "Spaghetti alla carbonara", "Pasta con uova e guanciale", 20, Ricetta.STATO_PUBBLICATA, "Chef Mario");
+        carbonara.aggiungiIngrediente(new Ingrediente("I001", "Guanciale", "carne", "g"), new Dose(100, "g"));
+        amatriciana = new Ricetta("R002", "Bucatini all'amatriciana", "Pasta con pomodoro e guanciale", 25, Ricetta.STATO_PUBBLICATA, "Chef Luigi");
+        amatriciana.getTags().add(new Tag("Romana"));
+        tiramisu = new Ricetta("R003", "Tiramisù", "Dolce al caffè con mascarpone", 30, Ricetta.STATO_PUBBLICATA, "Chef Mario");
+        indice.aggiungi(carbonara);
+        indice.aggiungi(amatriciana);
+        indice.aggiungi(tiramisu);
+    }
+
+    @Test
+    void testRicercaPerCampo() {
+        assertEquals(List.of(carbonara), ricette(indice.cerca("carbonara", 10)));
+        assertEquals(List.of(amatriciana), ricette(indice.cerca("romana", 10)));
+        assertEquals(List.of(tiramisu), ricette(indice.cerca("TIRAMISÙ", 10)));
+        assertEquals(2, indice.cerca("mario", 10).size());
+        assertTrue(indice.cerca("risotto", 10).isEmpty());
+        assertTrue(indice.cerca("  ", 10).isEmpty());
+    }
+
+    @Test
+    void testOrdinamentoBM25() {
+        // Il guanciale e' sia in descrizione che tra gli ingredienti della carbonara.
+        List<Risultato> risultati = indice.cerca("guanciale", 10);
+        assertEquals(List.of(carbonara, amatriciana), ricette(risultati));
+        assertTrue(risultati.get(0).getPunteggio() > risultati.get(1).getPunteggio());
+
+        assertEquals(List.of(carbonara), ricette(indice.cerca("guanciale", 1)));
+    }
+
+    @Test
+    void testPrefisso() {
+        assertEquals(List.of(carbonara), ricette(indice.cerca("carbo", 10)));
+        assertEquals(List.of(tiramisu), ricette(indice.cerca("masc", 10)));
+        assertTrue(indice.cerca("c", 10).isEmpty());
+    }
+
+    @Test
+    void testCorrispondenzaEsattaPrimaDelPrefisso() {
+        Ricetta pasta = new Ricetta("R004", "Pasta", "", 10, Ricetta.STATO_PUBBLICATA, "");
+        Ricetta pastasciutta = new Ricetta("R005", "Pastasciutta", "", 90, Ricetta.STATO_PUBBLICATA, "");
+        indice.aggiungi(pastasciutta);
+        indice.aggiungi(pasta);
+
+        List<Ricetta> trovate = ricette(indice.cerca("pasta", 10));
+        assertEquals(pasta, trovate.get(0));
+        assertTrue(trovate.contains(pastasciutta));
+    }
+
+    @Test
+    void testEstensioniPiuFrequentiOltreIlLimite() {
+        // 70 estensioni rare di "zu" che precedono in ordine alfabetico
+        // quella presente in piu' ricette.
+        List<Ricetta> rare = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            String termine = "zu" + (char) ('a' + i / 26) + (char) ('a' + i % 26);
+            Ricetta ricetta = new Ricetta("R1" + i, termine, "", 10, Ricetta.STATO_PUBBLICATA, "");
+            rare.add(ricetta);
+            indice.aggiungi(ricetta);
+        }
+        List<Ricetta> zuppe = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Ricetta zuppa = new Ricetta("R2" + i, "Zuppa " + i, "", 40, Ricetta.STATO_PUBBLICATA, "");
+            zuppe.add(zuppa);
+            indice.aggiungi(zuppa);
+        }
+
+        List<Ricetta> trovate = ricette(indice.cerca("zu", 100));
+        assertTrue(trovate.containsAll(zuppe));
+        // Delle 71 estensioni restano 64: la zuppa e le prime 63 rare.
+        assertEquals(3 + 63, trovate.size());
+        assertTrue(trovate.containsAll(rare.subList(0, 63)));
+        assertFalse(trovate.contains(rare.get(69)));
+    }
+
+    @Test
+    void testAggiornamentoERimozione() {
+        carbonara.setNome("Spaghetti cacio e pepe");
+        carbonara.setDescrizione("Pasta con pecorino");
+        carbonara.getIngredienti().clear();
+        indice.aggiungi(carbonara);
+
+        assertTrue(indice.cerca("carbonara", 10).isEmpty());
+        assertEquals(List.of(carbonara), ricette(indice.cerca("pecorino", 10)));
+        assertEquals(3, indice.size());
+
+        indice.rimuovi("R002");
+        assertTrue(indice.cerca("amatriciana", 10).isEmpty());
+        assertFalse(indice.contiene("R002"));
+        assertEquals(2, indice.size());
+    }
+
+    @Test
+    void testCompattazione() {
+        for (int i = 0; i < 3000; i++) {
+            indice.aggiungi(new Ricetta("T" + i, "Temporanea " + i, "Da rimuovere", 5, Ricetta.STATO_BOZZA, "Test"));
+        }
+        for (int i = 0; i < 3000; i++) {
+            indice.rimuovi("T" + i);
+        }
+
+        assertEquals(3, indice.size());
+        assertTrue(indice.cerca("temporanea", 10).isEmpty());
+        assertEquals(List.of(carbonara, amatriciana), ricette(indice.cerca("guanciale", 10)));
+    }
+
+    @Test
+    void testPotaturaNonCambiaIMigliori() {
+        String[] piatti = {"risotto", "lasagna", "gnocchi", "polenta", "frittata"};
+        for (int i = 0; i < 5000; i++) {
+            Ricetta ricetta = new Ricetta("P" + i, piatti[i % piatti.length] + " " + (i % 7 == 0 ? "funghi" : "classica"),
+                    "Ricetta della casa " + i, 10, Ricetta.STATO_PUBBLICATA, "Chef " + (i % 3));
+            indice.aggiungi(ricetta);
+        }
+
+        for (String query : new String[] {"risotto chef", "funghi chef casa", "gnoc fun", "chef"}) {
+            List<Ricetta> completi = ricette(indice.cerca(query, 100000));
+            assertEquals(completi.subList(0, 10), ricette(indice.cerca(query, 10)), query);
+        }
+    }
+
+    private static List<Ricetta> ricette(List<Risultato> risultati) {
+        List<Ricetta> ricette = new ArrayList<>();
+        for (Risultato risultato : risultati) {
+            ricette.add(risultato.getRicetta());
+        }
+        return ricette;
+    }
+}
@@ -0,0 +1,54 @@
+package com.catring.information_expert;
+
+import com.catring.model.Ricetta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndiceStatiRicetteTest {
+
+    private IndiceStatiRicette indice;
+    private Ricetta pubblicata;
+    private Ricetta bozza;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceStatiRicette();
+        pubblicata = new Ricetta("R001", "Tiramisu", "Dolce", 30, Ricetta.STATO_PUBBLICATA, "Chef");
+        bozza = new Ricetta("R002", "Risotto", "Primo", 25, Ricetta.STATO_BOZZA, "Chef");
+        indice.aggiungi(pubblicata);
+        indice.aggiungi(bozza);
+    }
+
+    @Test
+    void testBucketPerStato() {
+        assertEquals(List.of(pubblicata), indice.istantanea(Ricetta.STATO_PUBBLICATA));
+        assertEquals(List.of(bozza), indice.istantanea(Ricetta.STATO_BOZZA));
+        assertEquals(1, indice.conta(Ricetta.STATO_BOZZA));
+        assertTrue(indice.istantanea("archiviata").isEmpty());
+    }
+
+    @Test
+    void testCambioStatoSullaStessaIstanza() {
+        List<Ricetta> pubblicatePrima = indice.istantanea(Ricetta.STATO_PUBBLICATA);
+        assertSame(pubblicatePrima, indice.istantaneaPronta(Ricetta.STATO_PUBBLICATA));
+
+        bozza.setStato(Ricetta.STATO_PUBBLICATA);
+        indice.aggiorna(bozza, bozza);
+
+        assertNull(indice.istantaneaPronta(Ricetta.STATO_PUBBLICATA));
+        assertEquals(List.of(pubblicata, bozza), indice.istantanea(Ricetta.STATO_PUBBLICATA));
+        assertEquals(0, indice.conta(Ricetta.STATO_BOZZA));
+        assertEquals(Ricetta.STATO_PUBBLICATA, indice.getStatoIndicizzato("R002"));
+    }
+
+    @Test
+    void testRimozione() {
+        indice.rimuovi(pubblicata);
+        assertTrue(indice.istantanea(Ricetta.STATO_PUBBLICATA).isEmpty());
+        assertNull(indice.getStatoIndicizzato("R001"));
+    }
+}
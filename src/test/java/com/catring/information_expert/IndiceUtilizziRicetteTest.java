@@ -0,0 +1,77 @@
+package com.catring.information_expert;
+
+import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import com.catring.model.SezioniMenu;
+import com.catring.model.VoceMenu;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndiceUtilizziRicetteTest {
+
+    private IndiceUtilizziRicette indice;
+    private Menu menu;
+    private SezioniMenu antipasti;
+    private SezioniMenu primi;
+    private Ricetta ricetta;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceUtilizziRicette();
+        menu = new Menu("M001", "Menu Test", "Descrizione", null);
+        antipasti = new SezioniMenu("S001", "Antipasti", 1);
+        primi = new SezioniMenu("S002", "Primi", 2);
+        menu.getSezioni().add(antipasti);
+        menu.getSezioni().add(primi);
+        ricetta = new Ricetta("R001", "Bruschetta", "Pane e pomodoro", 10, "pubblicata", "Chef");
+    }
+
+    private VoceMenu creaVoce(String id) {
+        VoceMenu voce = new VoceMenu(id, ricetta.getNome(), ricetta.getId(), "");
+        voce.setRicetta(ricetta);
+        return voce;
+    }
+
+    @Test
+    void testRegistraERimuovi() {
+        VoceMenu voce = creaVoce("V001");
+        antipasti.getVoci().add(voce);
+
+        assertFalse(indice.isUsata("R001"));
+        indice.registra(menu, antipasti, voce);
+        assertTrue(indice.isUsata("R001"));
+        assertEquals(1, indice.contaUtilizzi("R001"));
+        assertSame(antipasti, indice.getUtilizzi("R001").get(0).getSezione());
+
+        indice.rimuovi(voce);
+        assertFalse(indice.isUsata("R001"));
+        assertTrue(indice.getUtilizzi("R001").isEmpty());
+    }
+
+    @Test
+    void testSpostaAggiornaSezione() {
+        VoceMenu voce = creaVoce("V001");
+        antipasti.getVoci().add(voce);
+        indice.registra(menu, antipasti, voce);
+
+        indice.sposta(voce, primi);
+
+        assertEquals(1, indice.contaUtilizzi("R001"));
+        assertSame(primi, indice.getUtilizzi("R001", menu).get(0).getSezione());
+    }
+
+    @Test
+    void testRegistraERimuoviMenu() {
+        antipasti.getVoci().add(creaVoce("V001"));
+        primi.getVoci().add(creaVoce("V002"));
+        Menu altroMenu = new Menu("M002", "Altro", "Descrizione", null);
+
+        indice.registraMenu(menu);
+        assertEquals(2, indice.contaUtilizzi("R001"));
+        assertTrue(indice.getUtilizzi("R001", altroMenu).isEmpty());
+
+        indice.rimuoviMenu(menu);
+        assertFalse(indice.isUsata("R001"));
+    }
+}
@@ -40,4 +40,118 @@ class MenuTest {
         assertEquals("Nuovo Nome", menu.getNome());
         assertEquals("Nuova Descrizione", menu.getDescrizione());
     }
+
+    @Test
+    void testIndiceSezioniPerTitolo() {
+        SezioniMenu antipasti = new SezioniMenu("S001", "Antipasti", 1);
+        SezioniMenu primi = new SezioniMenu("S002", "Primi", 2);
+        menu.aggiungiSezione(antipasti);
+        menu.aggiungiSezione(primi);
+
+        assertSame(primi, menu.getSezione("Primi"));
+        assertNull(menu.getSezione("Dolci"));
+
+        assertTrue(menu.rimuoviSezione(antipasti));
+        assertNull(menu.getSezione("Antipasti"));
+        assertSame(primi, menu.getSezione("Primi"));
+        assertFalse(menu.rimuoviSezione(antipasti));
+    }
+
+    @Test
+    void testIndiceVociAggiungiSpostaRimuovi() {
+        SezioniMenu antipasti = new SezioniMenu("S001", "Antipasti", 1);
+        SezioniMenu primi = new SezioniMenu("S002", "Primi", 2);
+        menu.aggiungiSezione(antipasti);
+        menu.aggiungiSezione(primi);
+        VoceMenu bruschetta = creaVoce("V001", "R001");
+        VoceMenu caprese = creaVoce("V002", "R002");
+        VoceMenu carbonara = creaVoce("V003", "R003");
+        menu.aggiungiVoce(antipasti, bruschetta);
+        menu.aggiungiVoce(antipasti, caprese);
+        menu.aggiungiVoce(primi, carbonara);
+
+        PosizioneVoce posizione = menu.trovaVoce("V002");
+        assertSame(antipasti, posizione.getSezione());
+        assertEquals(1, posizione.getIndice());
+
+        assertTrue(menu.spostaVoce(bruschetta, primi));
+        assertEquals(2, primi.getVoci().size());
+        assertSame(primi, menu.trovaVocePerRicetta("R001").getSezione());
+        assertEquals(1, menu.trovaVocePerRicetta("R001").getIndice());
+        assertEquals(0, menu.getPosizioneVoce(caprese).getIndice());
+
+        assertTrue(menu.rimuoviVoce(carbonara));
+        assertNull(menu.trovaVoce("V003"));
+        assertEquals(0, menu.getPosizioneVoce(bruschetta).getIndice());
+        assertFalse(menu.rimuoviVoce(carbonara));
+    }
+
+    @Test
+    void testIndiciConChiaviRipetute() {
+        SezioniMenu primi = new SezioniMenu("S001", "Primi", 1);
+        SezioniMenu altriPrimi = new SezioniMenu("S002", "Primi", 2);
+        menu.aggiungiSezione(primi);
+        menu.aggiungiSezione(altriPrimi);
+        VoceMenu carbonara = creaVoce("V001", "R001");
+        VoceMenu carbonaraBis = creaVoce("V002", "R001");
+        menu.aggiungiVoce(primi, carbonara);
+        menu.aggiungiVoce(altriPrimi, carbonaraBis);
+
+        assertSame(primi, menu.getSezione("Primi"));
+        assertSame(carbonara, menu.trovaVocePerRicetta("R001").getVoce());
+
+        assertTrue(menu.rimuoviVoce(carbonara));
+        assertSame(carbonaraBis, menu.trovaVocePerRicetta("R001").getVoce());
+        assertTrue(menu.rimuoviSezione(primi));
+        assertSame(altriPrimi, menu.getSezione("Primi"));
+        assertEquals(0, menu.trovaVocePerRicetta("R001").getIndice());
+    }
+
+    @Test
+    void testIndiceSegueModificheDirette() {
+        SezioniMenu antipasti = new SezioniMenu("S001", "Antipasti", 1);
+        menu.aggiungiSezione(antipasti);
+        VoceMenu bruschetta = creaVoce("V001", "R001");
+        menu.aggiungiVoce(antipasti, bruschetta);
+        assertNotNull(menu.trovaVoce("V001"));
+
+        VoceMenu caprese = creaVoce("V002", "R002");
+        antipasti.getVoci().add(0, caprese);
+        antipasti.setTitolo("Stuzzichini");
+        SezioniMenu dolci = new SezioniMenu("S002", "Dolci", 2);
+        menu.getSezioni().add(dolci);
+
+        // Una voce dell'indice non piu' valida si riconosce, un'assenza no.
+        assertNull(menu.getSezione("Antipasti"));
+        assertEquals(1, menu.trovaVoce("V001").getIndice());
+        assertNull(menu.getSezione("Dolci"));
+
+        menu.nuovaVersione();
+        assertEquals(1, menu.trovaVoce("V001").getIndice());
+        assertEquals(0, menu.trovaVocePerRicetta("R002").getIndice());
+        assertNull(menu.getSezione("Antipasti"));
+        assertSame(antipasti, menu.getSezione("Stuzzichini"));
+        assertSame(dolci, menu.getSezione("Dolci"));
+    }
+
+    @Test
+    void testVersioneCambiaAdOgniModifica() {
+        long iniziale = menu.getVersione();
+        SezioniMenu sezione = new SezioniMenu("S001", "Antipasti", 1);
+        menu.aggiungiSezione(sezione);
+        long dopoSezione = menu.getVersione();
+        menu.aggiungiVoce(sezione, new VoceMenu("V1", "Bruschetta", null, ""));
+        long dopoVoce = menu.getVersione();
+        menu.setNote("Altre note");
+
+        assertTrue(iniziale < dopoSezione && dopoSezione < dopoVoce && dopoVoce < menu.getVersione());
+        // Le versioni vengono da un contatore unico: un altro menu non le riusa.
+        assertTrue(new Menu("M001", "Menu Test", "", null).getVersione() > menu.getVersione());
+    }
+
+    private VoceMenu creaVoce(String id, String ricettaId) {
+        VoceMenu voce = new VoceMenu(id, "Voce " + id, ricettaId, "");
+        voce.setRicetta(new Ricetta(ricettaId, "Ricetta " + ricettaId, "", 10, "pubblicata", "Chef"));
+        return voce;
+    }
 }
\ No newline at end of file
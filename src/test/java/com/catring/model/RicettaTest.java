@@ -2,6 +2,9 @@ package com.catring.model;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class RicettaTest {
@@ -34,6 +37,22 @@ class RicettaTest {
         assertEquals(4, ricetta.getNumeroPorte());
     }
     
+    @Test
+    void testListeCreateAlPrimoAccesso() {
+        assertTrue(ricetta.isSenzaDettagli());
+        assertFalse(ricetta.isDettagliCaricati());
+
+        ricetta.getTags().add(new Tag("estate"));
+        assertTrue(ricetta.isDettagliCaricati());
+        assertFalse(ricetta.isSenzaDettagli());
+        assertTrue(ricetta.getIngredienti().isEmpty());
+
+        Ricetta altra = new Ricetta();
+        altra.setDettagli(null, null, null, List.of(new Tag("inverno")));
+        assertEquals("inverno", altra.getTags().get(0).getNome());
+        assertTrue(altra.getDosi().isEmpty());
+    }
+
     @Test
     void testListeVuote() {
         assertNotNull(ricetta.getIngredienti());
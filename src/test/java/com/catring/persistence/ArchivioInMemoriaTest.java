@@ -0,0 +1,30 @@
+package com.catring.persistence;
+
+import com.catring.model.Ricetta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchivioInMemoriaTest {
+
+    @Test
+    void testRicette() {
+        ArchivioInMemoria archivio = new ArchivioInMemoria();
+        Ricetta frittata = new Ricetta("R1", "Frittata", "", 15, Ricetta.STATO_BOZZA, "Chef");
+        archivio.getRicette().salvaTutti(List.of(frittata,
+                new Ricetta("R2", "Torta", "", 60, Ricetta.STATO_PUBBLICATA, "Chef")));
+
+        assertSame(frittata, archivio.getRicette().trovaPerNome("FRITTATA"));
+        assertEquals(1, archivio.getRicette().contaPerStato(Ricetta.STATO_PUBBLICATA));
+        assertEquals("R2", archivio.getRicette().elenca(1, 5).get(0).getId());
+        List<String> id = new ArrayList<>();
+        archivio.getRicette().scorriId(id::add);
+        assertEquals(List.of("R1", "R2"), id);
+
+        assertTrue(archivio.getRicette().elimina("R1"));
+        assertEquals(1, archivio.getRicette().conta());
+    }
+}
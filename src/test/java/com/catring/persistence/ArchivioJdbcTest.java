@@ -0,0 +1,90 @@
+package com.catring.persistence;
+
+import com.catring.model.Dose;
+import com.catring.model.Evento;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import com.catring.model.Servizio;
+import com.catring.model.SezioniMenu;
+import com.catring.model.VoceMenu;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchivioJdbcTest {
+
+    @TempDir
+    Path cartella;
+
+    @Test
+    void testRicetteSalvateInBlocco() {
+        List<Ricetta> ricette = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            ricette.add(new Ricetta("R" + i, "Ricetta " + i, "", 10,
+                    i % 5 == 0 ? Ricetta.STATO_PUBBLICATA : Ricetta.STATO_BOZZA, "Chef"));
+        }
+        try (ArchivioJdbc archivio = ArchivioJdbc.apriH2(cartella.resolve("catring"))) {
+            RepositoryRicette repository = archivio.getRicette();
+            repository.salvaTutti(ricette);
+
+            assertEquals(2500, repository.conta());
+            assertEquals(500, repository.contaPerStato(Ricetta.STATO_PUBBLICATA));
+            assertEquals("R5", repository.trovaPerStato(Ricetta.STATO_PUBBLICATA).get(1).getId());
+            assertEquals("R1234", repository.trovaPerNome("  RICETTA 1234 ").getId());
+            List<Ricetta> pagina = repository.elenca(100, 3);
+            assertEquals(List.of("R100", "R101", "R102"), List.of(pagina.get(0).getId(), pagina.get(1).getId(), pagina.get(2).getId()));
+
+            Ricetta modificata = repository.trova("R0");
+            modificata.setStato(Ricetta.STATO_BOZZA);
+            repository.salva(modificata);
+            assertEquals(499, repository.contaPerStato(Ricetta.STATO_PUBBLICATA));
+            assertEquals("R0", repository.elenca(0, 1).get(0).getId());
+
+            assertTrue(repository.elimina("R1"));
+            assertFalse(repository.elimina("R1"));
+            assertNull(repository.trova("R1"));
+            assertEquals(2499, repository.conta());
+        }
+    }
+
+    @Test
+    void testRiferimentiRisoltiDopoLaRiapertura() {
+        Ricetta risotto = new Ricetta("R1", "Risotto", "Alla milanese", 30, Ricetta.STATO_PUBBLICATA, "Chef Marco");
+        risotto.aggiungiIngrediente(new Ingrediente("IB1", "Riso", "cereale", "kg"), new Dose(0.5, "kg"));
+        Menu menu = new Menu("M1", "Menu Pranzo", "", null);
+        SezioniMenu primi = new SezioniMenu("S1", "Primi", 1);
+        VoceMenu voce = new VoceMenu("V1", "Risotto", "R1", "");
+        voce.setRicetta(risotto);
+        primi.getVoci().add(voce);
+        menu.aggiungiSezione(primi);
+        Evento evento = new Evento("E1", LocalDate.of(2024, 9, 1), LocalDate.of(2024, 9, 1), "Villa", "matrimonio", null);
+        Servizio servizio = new Servizio("SV1", "pranzo", "buffet", "");
+        servizio.setMenu(menu);
+        evento.getServizi().add(servizio);
+
+        Path file = cartella.resolve("catring");
+        try (ArchivioJdbc archivio = ArchivioJdbc.apriH2(file)) {
+            archivio.getRicette().salva(risotto);
+            archivio.getMenus().salva(menu);
+            archivio.getEventi().salva(evento);
+            archivio.getIngredienti().salva(risotto.getIngredienti().get(0));
+        }
+
+        try (ArchivioJdbc archivio = ArchivioJdbc.apriH2(file)) {
+            Evento letto = archivio.getEventi().trova("E1");
+            VoceMenu voceLetta = letto.getServizi().get(0).getMenu().getSezione("Primi").getVoci().get(0);
+            assertEquals("Risotto", voceLetta.getRicetta().getNome());
+            assertFalse(voceLetta.getRicetta().isDettagliCaricati());
+            assertEquals(0.5, voceLetta.getRicetta().getDosi().get(0).getQuantitativo());
+            assertEquals("Riso", archivio.getIngredienti().tutti().get(0).getNome());
+            assertEquals(1, archivio.getMenus().conta());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.catring.persistence;
+
+import com.catring.model.Dose;
+import com.catring.model.Ingrediente;
+import com.catring.model.Preparazione;
+import com.catring.model.Ricetta;
+import com.catring.model.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogoRicetteTest {
+
+    @TempDir
+    Path cartella;
+
+    @Test
+    void testLetturaPerPosizioneEPerId() throws IOException {
+        List<Ricetta> ricette = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            ricette.add(new Ricetta("C" + (499 - i), "Ricetta " + i, "Descrizione " + i, i,
+                    i % 2 == 0 ? Ricetta.STATO_PUBBLICATA : Ricetta.STATO_BOZZA, "Chef " + (i % 5)));
+        }
+        Path file = cartella.resolve("catalogo.bin");
+        CatalogoRicette.scrivi(file, ricette);
+
+        try (CatalogoRicette catalogo = CatalogoRicette.apri(file)) {
+            assertEquals(500, catalogo.size());
+            assertEquals("Ricetta 0", catalogo.get(0).getNome());
+            assertEquals("C0", catalogo.get(499).getId());
+            assertEquals(Ricetta.STATO_BOZZA, catalogo.get(1).getStato());
+
+            Ricetta trovata = catalogo.trova("C250");
+            assertEquals("Ricetta 249", trovata.getNome());
+            assertEquals(249, trovata.getTempoPreparazione());
+            assertSame(trovata, catalogo.get(249));
+            assertNull(catalogo.trova("C999"));
+            assertNull(catalogo.trova(null));
+
+            List<Ricetta> lista = catalogo.comeLista();
+            assertEquals(500, lista.size());
+            assertEquals("Ricetta 10", lista.get(10).getNome());
+        }
+    }
+
+    @Test
+    void testDettagliCaricatiSoloSuRichiesta() throws IOException {
+        Ricetta risotto = new Ricetta("C1", "Risotto", "Alla milanese", 30, Ricetta.STATO_PUBBLICATA, "Chef Marco");
+        Ingrediente riso = new Ingrediente("IB1", "Riso", "cereale", "kg");
+        risotto.aggiungiIngrediente(riso, new Dose(0.5, "kg"));
+        risotto.getTags().add(new Tag("Lombarda"));
+        risotto.getPreparazioni().add(new Preparazione("P1", "Tostatura", "Tostare il riso", 5, "", "pronta", "Chef Marco"));
+        risotto.setNumeroPorte(6);
+        Path file = cartella.resolve("catalogo.bin");
+        CatalogoRicette.scrivi(file, List.of(risotto));
+
+        try (CatalogoRicette catalogo = CatalogoRicette.apri(file)) {
+            RicettaMappata letta = (RicettaMappata) catalogo.trova("C1");
+            assertEquals(6, letta.getNumeroPorte());
+            assertFalse(letta.isDettagliCaricati());
+
+            assertEquals("Riso", letta.getIngredienti().get(0).getNome());
+            assertTrue(letta.isDettagliCaricati());
+            assertEquals(0.5, letta.getDosePerIngrediente(letta.getIngredienti().get(0)).getQuantitativo());
+            assertEquals("Lombarda", letta.getTags().get(0).getNome());
+            assertEquals("Tostatura", letta.getPreparazioni().get(0).getNome());
+
+            assertThrows(UnsupportedOperationException.class, () -> letta.setNome("Altro"));
+            assertThrows(UnsupportedOperationException.class, () -> letta.getTags().add(new Tag("Nuovo")));
+            assertThrows(UnsupportedOperationException.class, () -> letta.aggiungiIngrediente(riso, new Dose(1, "kg")));
+        }
+    }
+
+    @Test
+    void testCacheLimitata() throws IOException {
+        List<Ricetta> ricette = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ricette.add(new Ricetta("C" + i, "Ricetta " + i, "", 10, Ricetta.STATO_PUBBLICATA, "Chef"));
+        }
+        Path file = cartella.resolve("catalogo.bin");
+        CatalogoRicette.scrivi(file, ricette);
+
+        try (CatalogoRicette catalogo = CatalogoRicette.apri(file, 10)) {
+            Ricetta calda = catalogo.get(0);
+            for (int i = 1; i < 50; i++) {
+                catalogo.get(i);
+                assertSame(calda, catalogo.get(0));
+            }
+            assertEquals(10, catalogo.getRicetteInCache());
+        }
+    }
+
+    @Test
+    void testIdDuplicatiEFileNonValido() throws IOException {
+        Path file = cartella.resolve("catalogo.bin");
+        Ricetta prima = new Ricetta("C1", "Prima", "", 10, Ricetta.STATO_PUBBLICATA, "Chef");
+        Ricetta seconda = new Ricetta("C1", "Seconda", "", 10, Ricetta.STATO_PUBBLICATA, "Chef");
+        assertThrows(IllegalArgumentException.class, () -> CatalogoRicette.scrivi(file, List.of(prima, seconda)));
+        assertFalse(Files.exists(cartella.resolve("catalogo.bin.tmp")));
+
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28});
+        assertThrows(IOException.class, () -> CatalogoRicette.apri(file));
+    }
+}
@@ -0,0 +1,109 @@
+package com.catring.persistence;
+
+import com.catring.model.Cliente;
+import com.catring.model.Dose;
+import com.catring.model.Evento;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.Preparazione;
+import com.catring.model.Ricetta;
+import com.catring.model.Servizio;
+import com.catring.model.SezioniMenu;
+import com.catring.model.Tag;
+import com.catring.model.VoceMenu;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EsportazioneDatiTest {
+
+    @TempDir
+    Path cartella;
+
+    @Test
+    void testAlberoCompletoCompresso() throws IOException {
+        Ingrediente porcini = new Ingrediente("IB100", "Porcini", "fungo", "kg");
+        Ricetta risotto = new Ricetta("R100", "Risotto \"ai\" funghi", "Riga uno\nriga due\t\\", 35,
+                Ricetta.STATO_PUBBLICATA, "Chef Marco");
+        risotto.aggiungiIngrediente(porcini, new Dose(0.25, "kg"));
+        risotto.getPreparazioni().add(new Preparazione("P1", "Brodo", "Vegetale", 60, null, "bozza", "Chef Marco"));
+        risotto.getTags().add(new Tag("autunno"));
+        Menu menu = new Menu("M100", "Menu Autunno", "Di stagione", null);
+        SezioniMenu primi = new SezioniMenu("S100", "Primi", 1);
+        VoceMenu voce = new VoceMenu("V100", "Risotto", "R100", "");
+        voce.setRicetta(risotto);
+        primi.getVoci().add(voce);
+        menu.aggiungiSezione(primi);
+        Evento evento = new Evento("E100", LocalDate.of(2024, 10, 5), LocalDate.of(2024, 10, 5), "Villa", "matrimonio", "");
+        evento.setCliente(new Cliente("C100", "Rossi", "privato", "rossi@email.com"));
+        Servizio pranzo = new Servizio("SV100", "12:00-15:00", "pranzo", "");
+        pranzo.setMenu(menu);
+        evento.getServizi().add(pranzo);
+
+        Path file = cartella.resolve("dati.jsonl.gz");
+        EsportazioneDati.Esito esito;
+        try (EsportazioneDati esportazione = EsportazioneDati.apri(file)) {
+            esportazione.scriviIngrediente(porcini);
+            esportazione.scriviRicetta(risotto);
+            esportazione.scriviMenu(menu);
+            esportazione.scriviEvento(evento);
+            esito = esportazione.completa();
+        }
+
+        assertEquals(4, esito.getRighe());
+        assertEquals(Files.size(file), esito.getByteScritti());
+        assertFalse(Files.exists(cartella.resolve("dati.jsonl.gz.tmp")));
+
+        List<Map<String, Object>> righe = new ArrayList<>();
+        try (BufferedReader lettore = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String riga;
+            while ((riga = lettore.readLine()) != null) {
+                righe.add(TestoJson.leggiOggetto(riga));
+            }
+        }
+        assertEquals(4, righe.size());
+        assertEquals("fungo", righe.get(0).get("tipo"));
+
+        Map<String, Object> ricetta = righe.get(1);
+        assertEquals("ricetta", ricetta.get("record"));
+        assertEquals(risotto.getNome(), ricetta.get("nome"));
+        assertEquals(risotto.getDescrizione(), ricetta.get("descrizione"));
+        Map<?, ?> ingrediente = (Map<?, ?>) ((List<?>) ricetta.get("ingredienti")).get(0);
+        assertEquals(0.25, ingrediente.get("quantitativo"));
+        assertEquals("Brodo", ((Map<?, ?>) ((List<?>) ricetta.get("preparazioni")).get(0)).get("nome"));
+        assertEquals(List.of("autunno"), ricetta.get("tag"));
+
+        Map<?, ?> sezione = (Map<?, ?>) ((List<?>) righe.get(2).get("sezioni")).get(0);
+        assertEquals("R100", ((Map<?, ?>) ((List<?>) sezione.get("voci")).get(0)).get("ricetta"));
+
+        Map<String, Object> eventoLetto = righe.get(3);
+        assertEquals("2024-10-05", eventoLetto.get("dataInizio"));
+        assertEquals("Rossi", ((Map<?, ?>) eventoLetto.get("cliente")).get("nome"));
+        assertEquals("M100", ((Map<?, ?>) ((List<?>) eventoLetto.get("servizi")).get(0)).get("menu"));
+    }
+
+    @Test
+    void testEsportazioneNonCompletataNonLasciaFile() throws IOException {
+        Path file = cartella.resolve("dati.jsonl");
+        try (EsportazioneDati esportazione = EsportazioneDati.apri(file)) {
+            esportazione.scriviIngrediente(new Ingrediente("IB1", "Sale", "condimento", "g"));
+        }
+        try (var elenco = Files.list(cartella)) {
+            assertEquals(0, elenco.count());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.catring.persistence;
+
+import com.catring.model.Menu;
+import com.catring.model.SezioniMenu;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EsportazioneMenuTest {
+
+    private final FormatoTXT formato = new FormatoTXT();
+    private final EsportazioneMenu esportazione = new EsportazioneMenu(formato::scrivi, 3);
+
+    @TempDir
+    Path cartella;
+
+    private static List<Menu> creaMenu(int quanti) {
+        List<Menu> menu = new ArrayList<>();
+        for (int i = 0; i < quanti; i++) {
+            Menu m = new Menu("M" + i, "Menu " + i, "Descrizione " + i, null);
+            m.aggiungiSezione(new SezioniMenu("S" + i, "Sezione", 1));
+            menu.add(m);
+        }
+        return menu;
+    }
+
+    @Test
+    void testCartellaEZip() throws IOException {
+        List<Menu> menu = creaMenu(20);
+        List<Integer> avanzamento = new ArrayList<>();
+
+        EsportazioneMenu.Esito esito = esportazione.inCartella(menu, cartella.resolve("txt"),
+                (completati, totale) -> avanzamento.add(completati), () -> false);
+        assertEquals(20, esito.getEsportati());
+        assertFalse(esito.isAnnullata());
+        assertEquals(20, avanzamento.size());
+        assertEquals(20, avanzamento.get(19));
+        for (Menu m : menu) {
+            assertEquals(formato.componi(m), Files.readString(cartella.resolve("txt").resolve(EsportazioneMenu.nomeFile(m))));
+        }
+
+        Path zip = cartella.resolve("menu.zip");
+        esito = esportazione.inZip(menu, zip, (completati, totale) -> { }, () -> false);
+        assertEquals(Files.size(zip), esito.getByteScritti());
+        int voci = 0;
+        try (ZipInputStream lettura = new ZipInputStream(Files.newInputStream(zip), StandardCharsets.UTF_8)) {
+            for (ZipEntry voce; (voce = lettura.getNextEntry()) != null; voci++) {
+                Menu m = menu.get(voci);
+                assertEquals(EsportazioneMenu.nomeFile(m), voce.getName());
+                assertEquals(formato.componi(m), new String(lettura.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(20, voci);
+    }
+
+    @Test
+    void testAnnullamento() throws IOException {
+        List<Menu> menu = creaMenu(50);
+        AtomicInteger completati = new AtomicInteger();
+        Path zip = cartella.resolve("menu.zip");
+
+        EsportazioneMenu.Esito esito = esportazione.inZip(menu, zip, (fatti, totale) -> completati.set(fatti),
+                () -> completati.get() >= 5);
+
+        assertTrue(esito.isAnnullata());
+        assertTrue(esito.getEsportati() < 50);
+        assertFalse(Files.exists(zip));
+        try (var rimasti = Files.list(cartella)) {
+            assertEquals(0, rimasti.count());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.catring.persistence;
+
+import com.catring.model.Dose;
+import com.catring.model.Evento;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.PubblicazioneBacheca;
+import com.catring.model.Ricetta;
+import com.catring.model.Servizio;
+import com.catring.model.SezioniMenu;
+import com.catring.model.VoceMenu;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileIstantaneaTest {
+
+    @TempDir
+    Path cartella;
+
+    @Test
+    void testScritturaELettura() throws IOException {
+        Ingrediente riso = new Ingrediente("IB1", "Riso", "cereale", "kg");
+        Ricetta risotto = new Ricetta("R1", "Risotto", "Alla milanese", 30, Ricetta.STATO_PUBBLICATA, new String("Chef Marco"));
+        risotto.aggiungiIngrediente(riso, new Dose(0.5, "kg"));
+        Ricetta frittata = new Ricetta("R2", "Frittata", null, 15, Ricetta.STATO_BOZZA, new String("Chef Marco"));
+
+        Menu menu = new Menu("M1", "Menu Pranzo", "Veloce", null);
+        SezioniMenu primi = new SezioniMenu("S1", "Primi", 1);
+        VoceMenu voce = new VoceMenu("V1", "Risotto", "R1", "Porzione piccola");
+        voce.setRicetta(risotto);
+        primi.getVoci().add(voce);
+        menu.aggiungiSezione(primi);
+
+        Evento evento = new Evento("E1", LocalDate.of(2024, 9, 1), LocalDate.of(2024, 9, 2), "Villa", "matrimonio", null);
+        Servizio servizio = new Servizio("SV1", "pranzo", "buffet", "");
+        servizio.setMenu(menu);
+        evento.getServizi().add(servizio);
+        LocalDateTime pubblicato = LocalDateTime.of(2024, 8, 1, 12, 30, 15, 123_000_000);
+
+        Path file = cartella.resolve("stato.snapshot");
+        FileIstantanea.scrivi(file, new ContenutoIstantanea(7, List.of(riso), List.of(risotto, frittata),
+                List.of(menu), List.of(evento), List.of(new PubblicazioneBacheca(menu, pubblicato, 1))));
+        assertFalse(Files.exists(cartella.resolve("stato.snapshot.tmp")));
+
+        ContenutoIstantanea letto = FileIstantanea.leggi(file);
+
+        assertEquals(7, letto.getGenerazioneJournal());
+        assertEquals("Riso", letto.getIngredientiBase().get(0).getNome());
+        Ricetta risottoLetto = letto.getRicette().get(0);
+        assertEquals("Alla milanese", risottoLetto.getDescrizione());
+        assertEquals(0.5, risottoLetto.getDosi().get(0).getQuantitativo());
+        assertNull(letto.getRicette().get(1).getDescrizione());
+        // Le etichette ripetute vengono lette una volta sola dalla tabella.
+        assertSame(risottoLetto.getAutore(), letto.getRicette().get(1).getAutore());
+
+        Menu menuLetto = letto.getMenus().get(0);
+        VoceMenu voceLetta = menuLetto.getSezione("Primi").getVoci().get(0);
+        assertSame(risottoLetto, voceLetta.getRicetta());
+        assertEquals("Porzione piccola", voceLetta.getModificheTesto());
+
+        Evento eventoLetto = letto.getEventi().get(0);
+        assertEquals(LocalDate.of(2024, 9, 2), eventoLetto.getDataFine());
+        assertSame(menuLetto, eventoLetto.getServizi().get(0).getMenu());
+        assertEquals(pubblicato, letto.getBacheca().get(0).getDataPubblicazione());
+        assertSame(menuLetto, letto.getBacheca().get(0).getMenu());
+    }
+
+    @Test
+    void testFileNonValido() throws IOException {
+        Path file = cartella.resolve("rotto.snapshot");
+        Files.write(file, new byte[] {1, 2, 3});
+        assertThrows(IOException.class, () -> FileIstantanea.leggi(file));
+    }
+}
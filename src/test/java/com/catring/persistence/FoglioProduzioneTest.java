@@ -0,0 +1,74 @@
+package com.catring.persistence;
+
+import com.catring.information_expert.IndiceDosiScalate;
+import com.catring.model.Dose;
+import com.catring.model.Evento;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import com.catring.model.Servizio;
+import com.catring.model.SezioniMenu;
+import com.catring.model.VoceMenu;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FoglioProduzioneTest {
+
+    private static Menu creaMenu(String id, String sezione, String voce, Ricetta ricetta) {
+        Menu menu = new Menu(id, "Menu " + id, "", null);
+        SezioniMenu sezioneMenu = new SezioniMenu("S" + id, sezione, 1);
+        VoceMenu voceMenu = new VoceMenu("V" + id, voce, ricetta != null ? ricetta.getId() : null, "");
+        voceMenu.setRicetta(ricetta);
+        sezioneMenu.getVoci().add(voceMenu);
+        menu.aggiungiSezione(sezioneMenu);
+        return menu;
+    }
+
+    @Test
+    void testPostazioniConDosiETotali() {
+        Ricetta risotto = new Ricetta("R1", "Risotto", "", 30, Ricetta.STATO_PUBBLICATA, "Chef");
+        risotto.aggiungiIngrediente(new Ingrediente("IB1", "Riso", "cereale", "kg"), new Dose(0.4, "kg"));
+        Ricetta pasta = new Ricetta("R2", "Pasta", "", 15, Ricetta.STATO_PUBBLICATA, "Chef");
+        pasta.setNumeroPorte(6);
+        pasta.aggiungiIngrediente(new Ingrediente("IB1", "Riso", "cereale", "kg"), new Dose(0.5, "kg"));
+
+        Evento evento = new Evento("E1", LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 1), "Villa", "matrimonio", "");
+        evento.setNumeroPersone(30);
+        Servizio pranzo = new Servizio("SV1", "12:00-15:00", "pranzo", "");
+        pranzo.setMenu(creaMenu("M1", "Primi", "Risotto allo zafferano", risotto));
+        Servizio cena = new Servizio("SV2", "20:00-23:00", "cena", "");
+        cena.setMenu(creaMenu("M2", "primi", "Pasta corta", pasta));
+        Servizio aperitivo = new Servizio("SV3", "18:00-19:00", "aperitivo", "");
+        aperitivo.setMenu(creaMenu("M3", "Aperitivo", "Olive", null));
+        evento.getServizi().add(pranzo);
+        evento.getServizi().add(cena);
+        evento.getServizi().add(aperitivo);
+        evento.getServizi().add(new Servizio("SV4", "", "senza menu", ""));
+
+        IndiceDosiScalate dosi = new IndiceDosiScalate();
+        String foglio = new FoglioProduzione(dosi).componi(evento);
+
+        assertTrue(foglio.startsWith("=== FOGLIO DI PRODUZIONE: matrimonio - Villa ===\n"));
+        assertTrue(foglio.contains("Persone: 30\n"));
+        // Le sezioni "Primi" e "primi" sono la stessa postazione.
+        assertEquals(foglio.indexOf("POSTAZIONE: PRIMI"), foglio.lastIndexOf("POSTAZIONE: PRIMI"));
+        assertTrue(foglio.contains("  Risotto: 30 porzioni (ricetta per 4)\n    - Riso: 3 kg\n"));
+        assertTrue(foglio.contains("  Pasta: 30 porzioni (ricetta per 6)\n    - Riso: 2.5 kg\n"));
+        assertTrue(foglio.contains("  Totale postazione:\n    - Riso: 5.5 kg\n"));
+        assertTrue(foglio.contains("POSTAZIONE: APERITIVO"));
+        assertTrue(foglio.contains("  Nessuna ricetta collegata\n"));
+
+        new FoglioProduzione(dosi).componi(evento);
+        assertEquals(2, dosi.getCalcolati());
+    }
+
+    @Test
+    void testFormattaQuantita() {
+        assertEquals("3", FoglioProduzione.formatta(3.0));
+        assertEquals("0.33", FoglioProduzione.formatta(1.0 / 3));
+        assertEquals("2.5", FoglioProduzione.formatta(2.5000001));
+    }
+}
@@ -0,0 +1,114 @@
+package com.catring.persistence;
+
+import com.catring.model.Dose;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import com.catring.model.SezioniMenu;
+import com.catring.model.Tag;
+import com.catring.model.VoceMenu;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FormatiEsportazioneTest {
+
+    private final FormatiEsportazione formati = new FormatiEsportazione();
+
+    @TempDir
+    Path cartella;
+
+    private static Menu creaMenu() {
+        Ricetta risotto = new Ricetta("R1", "Risotto \"al\" <tartufo>", "Cremoso", 35, Ricetta.STATO_PUBBLICATA,
+                "Chef Marco");
+        risotto.aggiungiIngrediente(new Ingrediente("IB1", "Riso", "cereale", "kg"), new Dose(0.5, "kg"));
+        risotto.aggiungiIngrediente(new Ingrediente("IB2", "Tartufo", "fungo", "g"), new Dose(20, "g"));
+        risotto.getTags().add(new Tag("primo"));
+        Menu menu = new Menu("M1", "Pranzo, di stagione", "Descrizione", null);
+        SezioniMenu primi = new SezioniMenu("S1", "Primi", 1);
+        VoceMenu voce = new VoceMenu("V1", "Risotto", "R1", "senza burro");
+        voce.setRicetta(risotto);
+        primi.getVoci().add(voce);
+        primi.getVoci().add(new VoceMenu("V2", "Pane", null, ""));
+        menu.aggiungiSezione(primi);
+        menu.aggiungiSezione(new SezioniMenu("S2", "Dolci", 2));
+        return menu;
+    }
+
+    private static String scrivi(FormatoEsportazione formato, Menu menu) throws IOException {
+        StringWriter testo = new StringWriter();
+        formato.scrivi(menu, testo);
+        return testo.toString();
+    }
+
+    @Test
+    void testModelloConListeCondizioniEdEscape() throws IOException {
+        ModelloEsportazione modello = ModelloEsportazione.compila("prova", "html",
+                "{{! intestazione}}<h1>{{menu.nome}}</h1>{{^menu.note}}-{{/menu.note}}"
+                        + "{{#sezioni}}[{{numero}} {{sezione.titolo}}:{{#voci}}{{voce.nome}}"
+                        + "{{#ingredienti}} {{ingrediente.nome}}={{ingrediente.quantita}}{{/ingredienti}}"
+                        + "{{^ultimo}};{{/ultimo}}{{/voci}}]{{/sezioni}}");
+
+        assertEquals("<h1>Pranzo, di stagione</h1>-[1 Primi:Risotto Riso=0.5 Tartufo=20.0;Pane][2 Dolci:]",
+                scrivi(modello, creaMenu()));
+        assertEquals("<b>Risotto &quot;al&quot; &lt;tartufo&gt;</b>",
+                scrivi(ModelloEsportazione.compila("r", "html",
+                        "{{#sezioni}}{{#voci}}{{#primo}}<b>{{ricetta.nome}}</b>{{/primo}}{{/voci}}{{/sezioni}}"),
+                        creaMenu()));
+    }
+
+    @Test
+    void testErroriDelModello() {
+        assertThrows(IllegalArgumentException.class, () -> ModelloEsportazione.compila("x", "txt", "{{menu.prezzo}}"));
+        assertThrows(IllegalArgumentException.class, () -> ModelloEsportazione.compila("x", "txt", "{{voce.nome}}"));
+        assertThrows(IllegalArgumentException.class, () -> ModelloEsportazione.compila("x", "txt", "{{#voci}}{{/voci}}"));
+        assertThrows(IllegalArgumentException.class, () -> ModelloEsportazione.compila("x", "txt", "{{#sezioni}}"));
+        assertThrows(IllegalArgumentException.class, () -> ModelloEsportazione.compila("x", "txt", "{{/sezioni}}"));
+        IllegalArgumentException errore = assertThrows(IllegalArgumentException.class,
+                () -> ModelloEsportazione.compila("x", "txt", "riga\n{{menu.nome"));
+        assertTrue(errore.getMessage().contains("riga 2"));
+    }
+
+    @Test
+    void testFormatiPredefiniti() throws IOException {
+        assertEquals(List.of("txt", "html", "md", "csv", "json"), formati.getNomi());
+        Menu menu = creaMenu();
+
+        assertEquals(new FormatoTXT().componi(menu), scrivi(formati.get("TXT"), menu));
+        assertTrue(scrivi(formati.get("html"), menu).contains("<h2>Primi</h2>"));
+        assertTrue(scrivi(formati.get("md"), menu).contains("Ingredienti: Riso 0.5 kg, Tartufo 20.0 g"));
+        assertEquals("menu,sezione,voce,ricetta,tempo,porzioni,note\n"
+                + "\"Pranzo, di stagione\",Primi,Risotto,\"Risotto \"\"al\"\" <tartufo>\",35,4,senza burro\n"
+                + "\"Pranzo, di stagione\",Primi,Pane,,,,\n", scrivi(formati.get("csv"), menu));
+
+        Map<String, Object> json = TestoJson.leggiOggetto(scrivi(formati.get("json"), menu).trim());
+        assertEquals("Pranzo, di stagione", json.get("nome"));
+        assertEquals(2, ((List<?>) json.get("sezioni")).size());
+        assertThrows(IllegalArgumentException.class, () -> formati.get("pdf"));
+    }
+
+    @Test
+    void testModelliDaCartella() throws IOException {
+        Files.write(cartella.resolve("etichette.txt"), "{{#sezioni}}{{#voci}}{{voce.nome}}\n{{/voci}}{{/sezioni}}"
+                .getBytes(StandardCharsets.UTF_8));
+        Files.write(cartella.resolve(".nascosto.txt"), "{{errore".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(List.of("etichette"), formati.caricaCartella(cartella));
+        assertEquals("Risotto\nPane\n", scrivi(formati.get("etichette"), creaMenu()));
+
+        Files.write(cartella.resolve("rotto.html"), "{{#voci}}".getBytes(StandardCharsets.UTF_8));
+        IllegalArgumentException errore = assertThrows(IllegalArgumentException.class,
+                () -> formati.caricaCartella(cartella));
+        assertTrue(errore.getMessage().startsWith("rotto.html"));
+        assertFalse(formati.getNomi().contains("rotto"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.catring.persistence;
+
+import com.catring.model.Dose;
+import com.catring.model.Ingrediente;
+import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import com.catring.model.SezioniMenu;
+import com.catring.model.Tag;
+import com.catring.model.VoceMenu;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FormatoTXTTest {
+
+    private final FormatoTXT formato = new FormatoTXT();
+
+    @Test
+    void testDocumento() {
+        Ricetta risotto = new Ricetta("R1", "Risotto", "Cremoso", 35, Ricetta.STATO_PUBBLICATA, "Chef Marco");
+        risotto.aggiungiIngrediente(new Ingrediente("IB1", "Riso", "cereale", "kg"), new Dose(0.5, "kg"));
+        risotto.getTags().add(new Tag("primo"));
+        risotto.getTags().add(new Tag("autunno"));
+        Menu menu = new Menu("M1", "Pranzo", "Di stagione", null);
+        SezioniMenu primi = new SezioniMenu("S1", "Primi", 1);
+        VoceMenu voce = new VoceMenu("V1", "Risotto", "R1", "senza burro");
+        voce.setRicetta(risotto);
+        primi.getVoci().add(voce);
+        menu.aggiungiSezione(primi);
+
+        assertEquals("=== MENU: Pranzo ===\n\n"
+                + "Descrizione: Di stagione\n\n"
+                + "CONTENUTO DEL MENU:\n==================\n\n"
+                + "PRIMI\n-----\n"
+                + "• Risotto\n"
+                + "  Tempo preparazione: 35 minuti (4)\n"
+                + "  Cremoso\n"
+                + "  Ingredienti:\n    - Riso: 0.5 kg\n"
+                + "  Tag: primo, autunno\n"
+                + "  Note: senza burro\n\n\n"
+                + "\n=== Fine Menu ===\nGenerato dal sistema Cat & Ring\n", formato.componi(menu));
+    }
+
+    @Test
+    void testCanaleUgualeAlTestoOltreIlBuffer() throws IOException {
+        Menu menu = new Menu("M1", "Banchetto 🍝", "", "Note");
+        for (int s = 0; s < 40; s++) {
+            SezioniMenu sezione = new SezioniMenu("S" + s, "Sezione è " + s, s);
+            for (int v = 0; v < 50; v++) {
+                // Le coppie di surrogati cadono prima o poi a cavallo del buffer.
+                sezione.getVoci().add(new VoceMenu("V" + v, "Voce 🍰 " + v, null, ""));
+            }
+            menu.aggiungiSezione(sezione);
+        }
+
+        ByteArrayOutputStream byteScritti = new ByteArrayOutputStream();
+        formato.scrivi(menu, Channels.newChannel(byteScritti));
+
+        String atteso = formato.componi(menu);
+        assertTrue(atteso.length() > 3 * 8192);
+        assertEquals(atteso, byteScritti.toString(StandardCharsets.UTF_8));
+    }
+}
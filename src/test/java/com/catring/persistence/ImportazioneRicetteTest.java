@@ -0,0 +1,113 @@
+package com.catring.persistence;
+
+import com.catring.model.Ricetta;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportazioneRicetteTest {
+
+    @TempDir
+    Path cartella;
+
+    private final List<List<Ricetta>> blocchi = new ArrayList<>();
+    private final Set<String> nomi = new HashSet<>();
+
+    // Come MenuService::inserisciRicette: salta i nomi gia' visti.
+    private List<Ricetta> inserisci(List<Ricetta> blocco) {
+        blocchi.add(blocco);
+        return blocco.stream().filter(r -> nomi.add(r.getNome())).collect(Collectors.toList());
+    }
+
+    @Test
+    void testCsvConVirgoletteERigheScartate() throws IOException {
+        String csv = "nome,descrizione,tempoPreparazione,stato,autore,tag\n"
+                + "Risotto,\"Cremoso, con \"\"porcini\"\"\",35,pubblicata,Chef Marco,primo|autunno\n"
+                + "Lasagne,\"Su due\nrighe\",60,,Chef Anna,\n"
+                + "\n"
+                + "X,Troppo corto,10,bozza,Chef,\n"
+                + "Gnocchi,Di patate,dieci,bozza,Chef,\n"
+                + "Risotto,Doppio,20,bozza,Chef,\n";
+
+        ImportazioneRicette.Esito esito = new ImportazioneRicette(this::inserisci, 2, 2)
+                .importa(new StringReader(csv), ImportazioneRicette.Formato.CSV);
+
+        assertEquals(5, esito.getRighe());
+        assertEquals(2, esito.getImportate());
+        assertEquals(3, esito.getScartate());
+        assertEquals(2, blocchi.size(), "il blocco senza righe valide non arriva alla destinazione");
+        List<Long> righe = esito.getRigheScartate().stream()
+                .map(ImportazioneRicette.RigaScartata::getRiga).collect(Collectors.toList());
+        assertEquals(List.of(6L, 7L, 8L), righe);
+        assertTrue(esito.getRigheScartate().get(1).getMotivo().contains("dieci"));
+
+        Ricetta risotto = blocchi.get(0).get(0);
+        assertEquals("Cremoso, con \"porcini\"", risotto.getDescrizione());
+        assertEquals(2, risotto.getTags().size());
+        Ricetta lasagne = blocchi.get(0).get(1);
+        assertEquals("Su due\nrighe", lasagne.getDescrizione());
+        assertEquals(Ricetta.STATO_BOZZA, lasagne.getStato());
+        assertTrue(esito.getRigheAlSecondo() > 0);
+    }
+
+    @Test
+    void testVirgoletteNonChiuseScartanoSoloLaRiga() throws IOException {
+        StringBuilder csv = new StringBuilder("nome,descrizione,tempoPreparazione\n")
+                .append("Risotto,\"Senza fine,35\n");
+        for (int i = 0; i < 2 * ImportazioneRicette.MASSIMO_RIGHE_RECORD; i++) {
+            csv.append("Ricetta ").append(i).append(",Prova,10\n");
+        }
+
+        ImportazioneRicette.Esito esito = new ImportazioneRicette(this::inserisci, 2, 50)
+                .importa(new StringReader(csv.toString()), ImportazioneRicette.Formato.CSV);
+
+        assertEquals(2 * ImportazioneRicette.MASSIMO_RIGHE_RECORD, esito.getImportate());
+        assertEquals(1, esito.getScartate());
+        assertEquals(2, esito.getRigheScartate().get(0).getRiga());
+        assertTrue(esito.getRigheScartate().get(0).getMotivo().contains("Virgolette"));
+    }
+
+    @Test
+    void testJsonLinesCompresso() throws IOException {
+        Path file = cartella.resolve("ricette.jsonl.gz");
+        try (Writer scrittore = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file)),
+                StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 2500; i++) {
+                scrittore.write("{\"id\": \"R9" + i + "\", \"nome\": \"Ricetta \\u00e8 " + i
+                        + "\", \"descrizione\": \"Prova\", \"tempoPreparazione\": " + (i % 50 + 1)
+                        + ", \"stato\": \"pubblicata\", \"tag\": [\"prova\"], \"extra\": {\"a\": [1, 2.5, null]}}\n");
+            }
+            scrittore.write("{\"nome\": \"Senza fine\"\n");
+        }
+
+        ImportazioneRicette.Esito esito = new ImportazioneRicette(this::inserisci, 3, 1000).importa(file);
+
+        assertEquals(2501, esito.getRighe());
+        assertEquals(2500, esito.getImportate());
+        assertEquals(1, esito.getScartate());
+        assertEquals(2501, esito.getRigheScartate().get(0).getRiga());
+        assertEquals("Ricetta è 7", blocchi.get(0).get(7).getNome());
+        assertEquals("R97", blocchi.get(0).get(7).getId());
+    }
+
+    @Test
+    void testIntestazioneSenzaNome() {
+        assertThrows(IOException.class, () -> new ImportazioneRicette(this::inserisci)
+                .importa(new StringReader("titolo;descrizione\nA;B\n"), ImportazioneRicette.Formato.CSV));
+    }
+}
@@ -0,0 +1,139 @@
+package com.catring.persistence;
+
+import com.catring.model.Dose;
+import com.catring.model.Ingrediente;
+import com.catring.model.Ricetta;
+import com.catring.model.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class JournalModificheTest {
+
+    @TempDir
+    Path cartella;
+
+    @Test
+    void testScrittureConcorrentiCondividonoIlCommit() throws Exception {
+        Path file = cartella.resolve("test.journal");
+        int thread = 8;
+        int perThread = 200;
+        JournalModifiche journal = new JournalModifiche(file);
+        ExecutorService esecutore = Executors.newFixedThreadPool(thread);
+        List<Future<?>> attese = new ArrayList<>();
+        for (int t = 0; t < thread; t++) {
+            int numeroThread = t;
+            attese.add(esecutore.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    long sequenza = journal.accoda(RecordJournal.menuEliminato("M" + numeroThread + "-" + i));
+                    journal.attendi(sequenza);
+                }
+            }));
+        }
+        for (Future<?> attesa : attese) {
+            attesa.get();
+        }
+        esecutore.shutdown();
+        journal.close();
+
+        assertEquals(thread * perThread, journal.getNumeroRecord());
+        assertTrue(journal.getNumeroCommit() <= journal.getNumeroRecord());
+
+        Set<String> letti = new HashSet<>();
+        for (RecordJournal record : JournalModifiche.leggi(file)) {
+            assertEquals(RecordJournal.MENU_ELIMINATO, record.getTipo());
+            letti.add(CodificaModello.leggiTesto(record.leggiDati()));
+        }
+        assertEquals(thread * perThread, letti.size());
+    }
+
+    @Test
+    void testCodaTroncataVieneScartata() throws IOException {
+        Path file = cartella.resolve("troncato.journal");
+        try (JournalModifiche journal = new JournalModifiche(file)) {
+            journal.attendi(journal.accoda(RecordJournal.menuTitolo("M1", "Primo")));
+            journal.attendi(journal.accoda(RecordJournal.menuTitolo("M1", "Secondo")));
+        }
+        long dimensioneValida = Files.size(file);
+        // Record scritto a meta': solo intestazione e un byte di dati.
+        Files.write(file, new byte[] {0, 0, 0, 20, 1, 2, 3, 4, RecordJournal.MENU_NOTE, 7}, StandardOpenOption.APPEND);
+
+        List<RecordJournal> records = JournalModifiche.leggi(file);
+
+        assertEquals(2, records.size());
+        assertEquals(dimensioneValida, Files.size(file));
+        DataInput in = records.get(1).leggiDati();
+        assertEquals("M1", CodificaModello.leggiTesto(in));
+        assertEquals("Secondo", CodificaModello.leggiTesto(in));
+    }
+
+    @Test
+    void testRecordPiuGrandiDelBuffer() throws IOException {
+        Path file = cartella.resolve("grande.journal");
+        byte[] grande = new byte[200_000];
+        Arrays.fill(grande, (byte) 7);
+        try (JournalModifiche journal = new JournalModifiche(file)) {
+            journal.accoda(RecordJournal.menuTitolo("M1", "Primo"));
+            journal.accoda(new RecordJournal(RecordJournal.MENU_NOTE, grande));
+            journal.attendi(journal.accoda(RecordJournal.menuTitolo("M1", "Ultimo")));
+        }
+
+        List<RecordJournal> records = new ArrayList<>();
+        assertEquals(3, JournalModifiche.leggi(file, records::add));
+
+        assertArrayEquals(grande, records.get(1).getDati());
+        DataInput in = records.get(2).leggiDati();
+        assertEquals("M1", CodificaModello.leggiTesto(in));
+        assertEquals("Ultimo", CodificaModello.leggiTesto(in));
+    }
+
+    @Test
+    void testErroreDiScritturaBloccaIlJournal() throws IOException {
+        // /dev/full rifiuta ogni scrittura con "spazio esaurito".
+        Path pieno = Path.of("/dev/full");
+        assumeTrue(Files.isWritable(pieno));
+        JournalModifiche journal = new JournalModifiche(pieno);
+
+        long sequenza = journal.accoda(RecordJournal.menuTitolo("M1", "Primo"));
+        assertThrows(UncheckedIOException.class, () -> journal.attendi(sequenza));
+
+        assertThrows(UncheckedIOException.class, journal::verifica);
+        assertThrows(UncheckedIOException.class, () -> journal.accoda(RecordJournal.menuTitolo("M1", "Secondo")));
+        assertThrows(IOException.class, journal::close);
+    }
+
+    @Test
+    void testCodificaRicetta() throws IOException {
+        Ricetta ricetta = new Ricetta("R10", "Lasagne", "Al forno", 90, Ricetta.STATO_PUBBLICATA, "Chef Anna");
+        ricetta.setNumeroPorte(6);
+        ricetta.aggiungiIngrediente(new Ingrediente("I1", "Ragù", "salsa", "g"), new Dose(300, "g"));
+        ricetta.getTags().add(new Tag("Emiliana"));
+
+        Ricetta letta = CodificaModello.DIRETTA.leggiRicetta(RecordJournal.ricettaSalvata(ricetta).leggiDati());
+
+        assertEquals("R10", letta.getId());
+        assertEquals("Lasagne", letta.getNome());
+        assertEquals(90, letta.getTempoPreparazione());
+        assertEquals(6, letta.getNumeroPorte());
+        assertEquals("Ragù", letta.getIngredienti().get(0).getNome());
+        assertEquals(300, letta.getDosi().get(0).getQuantitativo());
+        assertEquals("Emiliana", letta.getTags().get(0).getNome());
+    }
+}
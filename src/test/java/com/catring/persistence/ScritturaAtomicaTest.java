@@ -0,0 +1,86 @@
+package com.catring.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ScritturaAtomicaTest {
+
+    @TempDir
+    Path cartella;
+
+    @Test
+    void testScrittureConcorrentiSulloStessoFile() throws Exception {
+        Path file = cartella.resolve("menu.txt");
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> attivita = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                String riga = "• esportazione " + t + "\n";
+                attivita.add(pool.submit(() -> {
+                    try (ScritturaAtomica scrittura = ScritturaAtomica.apri(file, false)) {
+                        // Chiudere il writer non deve impedire di completare.
+                        try (Writer scrittore = scrittura.getScrittore()) {
+                            for (int i = 0; i < 2000; i++) {
+                                scrittore.write(riga);
+                            }
+                        }
+                        scrittura.completa();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> futura : attivita) {
+                futura.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        List<String> righe = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(2000, righe.size());
+        assertTrue(righe.stream().allMatch(righe.get(0)::equals));
+        try (var elenco = Files.list(cartella)) {
+            assertEquals(1, elenco.count(), "nessun temporaneo rimasto");
+        }
+    }
+
+    @Test
+    void testPermessiComeUnFileNormale() throws IOException {
+        assumeTrue(cartella.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Path normale = Files.createFile(cartella.resolve("normale.txt"));
+        Path file = cartella.resolve("menu.txt");
+        try (ScritturaAtomica scrittura = ScritturaAtomica.apri(file, false)) {
+            scrittura.getScrittore().write("menu");
+            scrittura.completa();
+        }
+        assertEquals(Files.getPosixFilePermissions(normale), Files.getPosixFilePermissions(file));
+    }
+
+    @Test
+    void testChiusuraSenzaCompletareLasciaIlFilePrecedente() throws IOException {
+        Path file = cartella.resolve("menu.txt");
+        Files.writeString(file, "versione completa");
+        try (ScritturaAtomica scrittura = ScritturaAtomica.apri(file)) {
+            scrittura.getScrittore().write("versione interrotta");
+            scrittura.getScrittore().flush();
+        }
+        assertEquals("versione completa", Files.readString(file));
+        try (var elenco = Files.list(cartella)) {
+            assertEquals(1, elenco.count());
+        }
+    }
+}
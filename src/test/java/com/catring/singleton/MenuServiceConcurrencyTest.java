@@ -0,0 +1,147 @@
+package com.catring.singleton;
+
+import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MenuServiceConcurrencyTest {
+
+    private static final long DURATA_FASE_MS = 300;
+
+    @Test
+    void testSingletonConcorrente() throws Exception {
+        int numeroThread = 8;
+        CountDownLatch partenza = new CountDownLatch(1);
+        ConcurrentLinkedQueue<MenuService> istanze = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numeroThread; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    partenza.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                istanze.add(MenuService.getInstance());
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        partenza.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(numeroThread, istanze.size());
+        for (MenuService istanza : istanze) {
+            assertSame(MenuService.getInstance(), istanza);
+        }
+    }
+
+    // Qui si verifica la correttezza con 1, 2 e tutti i processori come
+    // lettori; le letture al secondo nelle stesse fasi le misura
+    // MenuServiceLettureConcorrentiBenchmark (profilo benchmark).
+    @Test
+    void testLettureConcorrentiDuranteScritture() throws Exception {
+        MenuService menuService = new MenuService();
+        int processori = Runtime.getRuntime().availableProcessors();
+
+        for (int lettori : new TreeSet<>(List.of(1, 2, Math.max(2, processori)))) {
+            RisultatoFase risultato = eseguiFase(menuService, lettori);
+
+            assertTrue(risultato.errori.isEmpty(), "Errori durante la fase: " + risultato.errori);
+            for (Menu menu : risultato.menuCreati) {
+                assertSame(menu, menuService.getMenuById(menu.getId()));
+            }
+            assertTrue(risultato.letture > 0);
+            assertTrue(risultato.scritture > 0);
+        }
+    }
+
+    private RisultatoFase eseguiFase(MenuService menuService, int lettori) throws InterruptedException {
+        RisultatoFase risultato = new RisultatoFase();
+        AtomicBoolean attivo = new AtomicBoolean(true);
+        AtomicLong letture = new AtomicLong();
+        AtomicLong scritture = new AtomicLong();
+        List<String> idNoti = new ArrayList<>();
+        for (Menu menu : menuService.getMenus()) {
+            idNoti.add(menu.getId());
+        }
+        Menu primo = menuService.creaMenu("Menu stress iniziale", "Stress test", null);
+        idNoti.add(primo.getId());
+        String[] idLettura = idNoti.toArray(new String[0]);
+
+        Thread scrittore = new Thread(() -> {
+            try {
+                int i = 0;
+                while (attivo.get()) {
+                    Menu menu = menuService.creaMenu("Menu stress " + i, "Stress test", null);
+                    menuService.definisciSezioni(menu, "Primi");
+                    Ricetta ricetta = menuService.inserisciRicetta("Stress " + System.nanoTime(), "Stress", 10, "pubblicata", "Chef");
+                    menuService.aggiungiRicettaASezione(menu, "Primi", ricetta);
+                    menuService.eliminaRicetta(menu, ricetta);
+                    menuService.eliminaRicettaDalRicettario(ricetta);
+                    risultato.menuCreati.add(menu);
+                    scritture.incrementAndGet();
+                    i++;
+                }
+            } catch (RuntimeException e) {
+                risultato.errori.add(e);
+            }
+        });
+
+        List<Thread> threadLettori = new ArrayList<>();
+        for (int t = 0; t < lettori; t++) {
+            Thread lettore = new Thread(() -> {
+                try {
+                    long conteggio = 0;
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (attivo.get()) {
+                        String id = idLettura[random.nextInt(idLettura.length)];
+                        if (menuService.getMenuById(id) == null) {
+                            throw new IllegalStateException("Menu " + id + " non trovato");
+                        }
+                        menuService.getRicettaById("R001");
+                        menuService.isRicettaUsata("R002");
+                        menuService.cercaRicette("stress", 5);
+                        conteggio++;
+                    }
+                    letture.addAndGet(conteggio);
+                } catch (RuntimeException e) {
+                    risultato.errori.add(e);
+                }
+            });
+            threadLettori.add(lettore);
+        }
+
+        scrittore.start();
+        threadLettori.forEach(Thread::start);
+        Thread.sleep(DURATA_FASE_MS);
+        attivo.set(false);
+        scrittore.join();
+        for (Thread lettore : threadLettori) {
+            lettore.join();
+        }
+
+        risultato.letture = letture.get();
+        risultato.scritture = scritture.get();
+        return risultato;
+    }
+
+    private static class RisultatoFase {
+        final ConcurrentLinkedQueue<Menu> menuCreati = new ConcurrentLinkedQueue<>();
+        final ConcurrentLinkedQueue<Throwable> errori = new ConcurrentLinkedQueue<>();
+        long letture;
+        long scritture;
+    }
+}
@@ -0,0 +1,401 @@
+package com.catring.singleton;
+
+import com.catring.information_expert.IndiceRicercaRicette.Risultato;
+import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import com.catring.model.SezioniMenu;
+import com.catring.model.VoceMenu;
+import com.catring.persistence.ArchivioInMemoria;
+import com.catring.persistence.ArchivioJdbc;
+import com.catring.persistence.CatalogoRicette;
+import com.catring.persistence.ErroreArchivio;
+import com.catring.persistence.EsportazioneDati;
+import com.catring.persistence.RegistroModifiche;
+import com.catring.persistence.Repository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class MenuServicePersistenzaTest {
+
+    @TempDir
+    Path cartella;
+
+    @Test
+    void testRiesecuzioneDelJournal() throws IOException {
+        MenuService prima = new MenuService();
+        prima.attivaPersistenza(cartella);
+
+        Ricetta risotto = prima.inserisciRicetta("Risotto ai funghi", "Cremoso", 35, Ricetta.STATO_PUBBLICATA, "Chef Marco");
+        Ricetta bozza = prima.inserisciRicetta("Bozza da eliminare", "", 5, Ricetta.STATO_BOZZA, "Chef Marco");
+        Menu menu = prima.creaMenu("Menu Autunno", "Piatti di stagione", null);
+        prima.definisciSezioni(menu, "Primi");
+        prima.definisciSezioni(menu, "Secondi");
+        prima.aggiungiRicettaASezione(menu, "Primi", risotto);
+        prima.aggiungiRicettaASezione(menu, "Primi", prima.getRicettaById("R001"));
+        prima.spostaRicetta(menu.getId(), risotto.getId(), "Secondi");
+        prima.aggiornaTitolo(menu, "Menu Autunno 2024");
+        prima.aggiungiAnnotazione(menu, "Senza glutine su richiesta");
+        prima.pubblicaSuBacheca(menu);
+        risotto.setDescrizione("Cremoso, con porcini");
+        prima.aggiornaRicetta(risotto);
+        prima.eliminaRicettaDalRicettario(bozza);
+        Menu temporaneo = prima.creaMenu("Temporaneo", "", null);
+        prima.eliminaMenuSingolo(temporaneo);
+        prima.aggiungiIngredienteBase("Porcini", "fungo", "kg");
+        prima.disattivaPersistenza();
+
+        MenuService dopo = new MenuService();
+        dopo.attivaPersistenza(cartella);
+        try {
+            Menu ripristinato = dopo.getMenuById(menu.getId());
+            assertNotNull(ripristinato);
+            assertEquals("Menu Autunno 2024", ripristinato.getNome());
+            assertEquals(menu.getNote(), ripristinato.getNote());
+            assertNull(dopo.getMenuById(temporaneo.getId()));
+            assertTrue(dopo.isMenuPubblicato(ripristinato));
+
+            SezioniMenu primi = ripristinato.getSezione("Primi");
+            SezioniMenu secondi = ripristinato.getSezione("Secondi");
+            assertEquals(1, primi.getVoci().size());
+            assertEquals(1, secondi.getVoci().size());
+            VoceMenu voceRisotto = secondi.getVoci().get(0);
+            assertSame(dopo.getRicettaById(risotto.getId()), voceRisotto.getRicetta());
+            assertTrue(dopo.isRicettaUsata(risotto.getId()));
+
+            assertEquals("Cremoso, con porcini", dopo.getRicettaById(risotto.getId()).getDescrizione());
+            assertNull(dopo.getRicettaById(bozza.getId()));
+            assertFalse(dopo.cercaIngredienti("porcini").isEmpty());
+
+            // I nuovi id non devono collidere con quelli ripristinati.
+            Menu nuovo = dopo.creaMenu("Nuovo", "", null);
+            assertNotEquals(menu.getId(), nuovo.getId());
+        } finally {
+            dopo.disattivaPersistenza();
+        }
+    }
+
+    @Test
+    void testJournalGuastoRifiutaLeModifiche() throws IOException {
+        Path pieno = Path.of("/dev/full");
+        assumeTrue(Files.isWritable(pieno));
+        Files.createSymbolicLink(cartella.resolve("menuservice-0.journal"), pieno);
+        MenuService servizio = new MenuService();
+        servizio.attivaPersistenza(cartella);
+
+        // La prima modifica e' gia' applicata quando la scrittura fallisce.
+        assertThrows(UncheckedIOException.class, () -> servizio.creaMenu("Menu Autunno", "", null));
+        int menu = servizio.getMenus().size();
+        int ricette = servizio.getRicette().size();
+
+        assertThrows(UncheckedIOException.class, () -> servizio.creaMenu("Menu Inverno", "", null));
+        assertThrows(UncheckedIOException.class,
+                () -> servizio.inserisciRicetta("Brodo", "", 60, Ricetta.STATO_BOZZA, "Chef Marco"));
+        assertEquals(menu, servizio.getMenus().size());
+        assertEquals(ricette, servizio.getRicette().size());
+
+        assertThrows(IOException.class, servizio::disattivaPersistenza);
+        assertEquals("Menu Estate", servizio.creaMenu("Menu Estate", "", null).getNome());
+    }
+
+    @Test
+    void testIstantaneaPiuCodaDelJournal() throws IOException {
+        MenuService prima = new MenuService();
+        prima.attivaPersistenza(cartella);
+        Ricetta lasagne = prima.inserisciRicetta("Lasagne", "Al ragù", 90, Ricetta.STATO_PUBBLICATA, "Chef Anna");
+        Menu menu = prima.creaMenu("Menu Domenica", "", null);
+        prima.definisciSezioni(menu, "Primi");
+        prima.aggiungiRicettaASezione(menu, "Primi", lasagne);
+        prima.pubblicaSuBacheca(menu);
+        prima.salvaIstantanea();
+
+        assertTrue(Files.exists(cartella.resolve(MenuService.FILE_ISTANTANEA)));
+        assertFalse(Files.exists(cartella.resolve("menuservice-0.journal")));
+
+        prima.aggiornaTitolo(menu, "Menu Domenica Lunga");
+        prima.definisciSezioni(menu, "Dolci");
+        prima.aggiungiRicettaASezione(menu, "Dolci", prima.getRicettaById("R003"));
+        prima.disattivaPersistenza();
+
+        MenuService dopo = new MenuService();
+        dopo.attivaPersistenza(cartella);
+        try {
+            Menu ripristinato = dopo.getMenuById(menu.getId());
+            assertEquals("Menu Domenica Lunga", ripristinato.getNome());
+            assertEquals(2, ripristinato.getSezioni().size());
+            assertSame(dopo.getRicettaById(lasagne.getId()), ripristinato.getSezione("Primi").getVoci().get(0).getRicetta());
+            assertEquals("Tiramisu", ripristinato.getSezione("Dolci").getVoci().get(0).getNomeVisuale());
+            assertTrue(dopo.isMenuPubblicato(ripristinato));
+            assertTrue(dopo.isRicettaUsata(lasagne.getId()));
+            assertEquals(prima.getRicette().size(), dopo.getRicette().size());
+            assertEquals(prima.getEventi().size(), dopo.getEventi().size());
+            assertEquals(120, dopo.getEventi().get(0).getNumeroPersone());
+            assertEquals(List.of(lasagne.getId()), idRicette(dopo.cercaRicette("lasagne", 5)));
+        } finally {
+            dopo.disattivaPersistenza();
+        }
+    }
+
+    @Test
+    void testCatalogoCondiviso() throws IOException {
+        Path fileCatalogo = cartella.resolve("catalogo.bin");
+        CatalogoRicette.scrivi(fileCatalogo, List.of(
+                new Ricetta("K1", "Vitello tonnato", "Classico piemontese", 60, Ricetta.STATO_PUBBLICATA, "Catalogo"),
+                new Ricetta("R001", "Duplicato locale", "", 10, Ricetta.STATO_PUBBLICATA, "Catalogo")));
+        Path dati = cartella.resolve("dati");
+
+        MenuService prima = new MenuService();
+        int locali = prima.consultaRicettario().size();
+        prima.collegaCatalogo(fileCatalogo);
+        prima.attivaPersistenza(dati);
+        Ricetta vitello = prima.getRicettaById("K1");
+        assertEquals("Vitello tonnato", vitello.getNome());
+        assertNotEquals("Duplicato locale", prima.getRicettaById("R001").getNome());
+        assertEquals(locali + 2, prima.consultaRicettario().size());
+        assertFalse(prima.aggiornaRicetta(vitello));
+
+        Menu menu = prima.creaMenu("Menu Piemonte", "", null);
+        prima.definisciSezioni(menu, "Antipasti");
+        prima.aggiungiRicettaASezione(menu, "Antipasti", vitello);
+        prima.salvaIstantanea();
+        Menu secondo = prima.creaMenu("Menu Sera", "", null);
+        prima.definisciSezioni(secondo, "Antipasti");
+        prima.aggiungiRicettaASezione(secondo, "Antipasti", vitello);
+        prima.disattivaPersistenza();
+        prima.scollegaCatalogo();
+
+        MenuService dopo = new MenuService();
+        dopo.collegaCatalogo(fileCatalogo);
+        dopo.attivaPersistenza(dati);
+        try {
+            // Uno dall'istantanea, uno dal journal.
+            assertEquals("K1", dopo.getMenuById(menu.getId()).getSezione("Antipasti").getVoci().get(0).getRicetta().getId());
+            assertEquals("K1", dopo.getMenuById(secondo.getId()).getSezione("Antipasti").getVoci().get(0).getRicetta().getId());
+            assertTrue(dopo.isRicettaUsata("K1"));
+        } finally {
+            dopo.disattivaPersistenza();
+            dopo.scollegaCatalogo();
+        }
+    }
+
+    @Test
+    void testArchivioSuDatabase() {
+        Path database = cartella.resolve("catring");
+        MenuService prima = new MenuService();
+        prima.attivaArchivio(ArchivioJdbc.apriH2(database));
+        Ricetta risotto = prima.inserisciRicetta("Risotto ai funghi", "Cremoso", 35, Ricetta.STATO_PUBBLICATA, "Chef Marco");
+        Ricetta brodo = prima.inserisciRicetta("Brodo vegetale", "", 60, Ricetta.STATO_BOZZA, "Chef Marco");
+        Ricetta daEliminare = prima.inserisciRicetta("Da eliminare", "", 5, Ricetta.STATO_BOZZA, "Chef Marco");
+        Menu menu = prima.creaMenu("Menu Autunno", "", null);
+        prima.definisciSezioni(menu, "Primi");
+        prima.aggiungiRicettaASezione(menu, "Primi", risotto);
+        prima.aggiornaTitolo(menu, "Menu Autunno 2024");
+        prima.aggiungiIngredienteBase("Porcini", "fungo", "kg");
+        int ricettario = prima.consultaRicettario().size();
+        prima.disattivaArchivio();
+
+        MenuService dopo = new MenuService();
+        dopo.attivaArchivio(ArchivioJdbc.apriH2(database));
+        try {
+            Menu ripristinato = dopo.getMenuById(menu.getId());
+            assertEquals("Menu Autunno 2024", ripristinato.getNome());
+            assertSame(dopo.getRicettaById(risotto.getId()),
+                    ripristinato.getSezione("Primi").getVoci().get(0).getRicetta());
+            assertTrue(dopo.isRicettaUsata(risotto.getId()));
+            assertFalse(dopo.cercaIngredienti("porcini").isEmpty());
+
+            // Le ricette non usate restano nel database finche' non servono.
+            assertFalse(dopo.getRicette().stream().anyMatch(r -> r.getId().equals(brodo.getId())));
+            assertEquals(ricettario, dopo.consultaRicettario().size());
+            assertTrue(dopo.esisteRicetta("brodo vegetale"));
+            assertEquals(Ricetta.STATO_BOZZA, dopo.getRicettaById(brodo.getId()).getStato());
+
+            Ricetta letta = dopo.consultaRicettario().stream()
+                    .filter(r -> r.getId().equals(daEliminare.getId())).findFirst().orElseThrow();
+            assertTrue(dopo.eliminaRicettaDalRicettario(letta));
+            assertNull(dopo.getRicettaById(daEliminare.getId()));
+            assertEquals(ricettario - 1, dopo.consultaRicettario().size());
+
+            Ricetta nuova = dopo.inserisciRicetta("Nuova", "", 10, Ricetta.STATO_BOZZA, "Chef Marco");
+            assertNotEquals(brodo.getId(), nuova.getId());
+            assertNotEquals(daEliminare.getId(), nuova.getId());
+        } finally {
+            dopo.disattivaArchivio();
+        }
+    }
+
+    @Test
+    void testBachecaSuDatabase() {
+        Path database = cartella.resolve("catring");
+        MenuService prima = new MenuService();
+        prima.attivaArchivio(ArchivioJdbc.apriH2(database));
+        Menu autunno = prima.creaMenu("Menu Autunno", "", null);
+        Menu inverno = prima.creaMenu("Menu Inverno", "", null);
+        Menu estate = prima.creaMenu("Menu Estate", "", null);
+        prima.pubblicaSuBacheca(autunno);
+        prima.pubblicaSuBacheca(inverno);
+        prima.pubblicaSuBacheca(estate);
+        prima.rimuoviDaBacheca(inverno);
+        prima.pubblicaSuBacheca(inverno);
+        prima.eliminaMenuSingolo(estate);
+        List<String> pubblicati = idMenu(prima.getMenuPubblicati());
+        LocalDateTime dataAutunno = prima.getPubblicazione(autunno.getId()).getDataPubblicazione();
+        prima.disattivaArchivio();
+
+        MenuService dopo = new MenuService();
+        dopo.attivaArchivio(ArchivioJdbc.apriH2(database));
+        try {
+            assertEquals(pubblicati, idMenu(dopo.getMenuPubblicati()));
+            assertTrue(pubblicati.indexOf(autunno.getId()) < pubblicati.indexOf(inverno.getId()));
+            assertFalse(pubblicati.contains(estate.getId()));
+            assertSame(dopo.getMenuById(autunno.getId()), dopo.getPubblicazione(autunno.getId()).getMenu());
+            assertEquals(dataAutunno, dopo.getPubblicazione(autunno.getId()).getDataPubblicazione());
+        } finally {
+            dopo.disattivaArchivio();
+        }
+    }
+
+    private static List<String> idMenu(List<Menu> menus) {
+        List<String> id = new ArrayList<>();
+        for (Menu menu : menus) {
+            id.add(menu.getId());
+        }
+        return id;
+    }
+
+    @Test
+    void testSoloAggregatiModificati() throws IOException {
+        MenuService servizio = new MenuService();
+        servizio.attivaPersistenza(cartella);
+        try {
+            Menu menu = servizio.creaMenu("Menu Estate", "", null);
+            servizio.definisciSezioni(menu, "Primi");
+            servizio.aggiornaTitolo(menu, "Menu Estate 2025");
+            Ricetta insalata = servizio.inserisciRicetta("Insalata di riso", "", 15, Ricetta.STATO_BOZZA, "Chef Anna");
+
+            RegistroModifiche modifiche = servizio.getModificheNonSalvate();
+            assertEquals(Set.of(menu.getId()), modifiche.getMenuModificati());
+            assertEquals(Set.of(insalata.getId()), modifiche.getRicetteModificate());
+            assertEquals(2, modifiche.dimensione());
+
+            servizio.salvaIstantanea();
+            assertTrue(servizio.getModificheNonSalvate().isVuoto());
+            assertEquals(Files.size(cartella.resolve(MenuService.FILE_ISTANTANEA)),
+                    servizio.getByteUltimoSalvataggio());
+        } finally {
+            servizio.disattivaPersistenza();
+        }
+
+        MenuService conArchivio = new MenuService();
+        conArchivio.attivaArchivio(ArchivioJdbc.apriH2(cartella.resolve("catring")));
+        try {
+            Menu menu = conArchivio.creaMenu("Menu Inverno", "", null);
+            long totale = conArchivio.getByteSalvatiTotali();
+            conArchivio.aggiornaTitolo(menu, "Titolo nuovo");
+            long unMenu = conArchivio.getByteUltimoSalvataggio();
+            assertTrue(unMenu > 0);
+            assertEquals(totale + unMenu, conArchivio.getByteSalvatiTotali());
+            assertTrue(conArchivio.getModificheNonSalvate().isVuoto());
+        } finally {
+            conArchivio.disattivaArchivio();
+        }
+    }
+
+    @Test
+    void testErroreArchivioConservaLeModifiche() {
+        AtomicBoolean guasto = new AtomicBoolean();
+        Repository<Menu> menus = new ArchivioInMemoria().getMenus();
+        Repository<Menu> guastabile = new Repository<Menu>() {
+            @Override
+            public Menu trova(String id) { return menus.trova(id); }
+            @Override
+            public List<Menu> tutti() { return menus.tutti(); }
+            @Override
+            public List<Menu> elenca(int inizio, int quanti) { return menus.elenca(inizio, quanti); }
+            @Override
+            public int conta() { return menus.conta(); }
+            @Override
+            public void scorriId(Consumer<String> azione) { menus.scorriId(azione); }
+            @Override
+            public void salva(Menu menu) { menus.salva(menu); }
+            @Override
+            public boolean elimina(String id) { return menus.elimina(id); }
+
+            @Override
+            public void salvaTutti(Collection<? extends Menu> daSalvare) {
+                if (guasto.get()) {
+                    throw new ErroreArchivio("Disco pieno", null);
+                }
+                menus.salvaTutti(daSalvare);
+            }
+        };
+        MenuService servizio = new MenuService();
+        servizio.attivaArchivio(new ArchivioInMemoria() {
+            @Override
+            public Repository<Menu> getMenus() {
+                return guastabile;
+            }
+        });
+        try {
+            Menu menu = servizio.creaMenu("Menu Autunno", "", null);
+            guasto.set(true);
+            assertThrows(ErroreArchivio.class, () -> servizio.aggiornaTitolo(menu, "Menu Autunno 2025"));
+            assertEquals(Set.of(menu.getId()), servizio.getModificheNonSalvate().getMenuModificati());
+
+            guasto.set(false);
+            servizio.aggiungiAnnotazione(menu, "Senza glutine");
+            assertTrue(servizio.getModificheNonSalvate().isVuoto());
+        } finally {
+            servizio.disattivaArchivio();
+        }
+    }
+
+    @Test
+    void testEsportazioneCompleta() throws IOException {
+        MenuService servizio = new MenuService();
+        Path file = cartella.resolve("export.jsonl");
+
+        EsportazioneDati.Esito esito = servizio.esportaDati(file);
+
+        List<String> righe = Files.readAllLines(file);
+        assertEquals(esito.getRighe(), righe.size());
+        assertEquals(servizio.getIngredientiBase().size() + servizio.getRicette().size()
+                + servizio.getMenus().size() + servizio.getEventi().size(), righe.size());
+        assertTrue(righe.get(0).startsWith("{\"record\":\"ingrediente\""));
+        assertTrue(righe.get(righe.size() - 1).startsWith("{\"record\":\"evento\""));
+    }
+
+    @Test
+    void testAttivazioneDoppia() throws IOException {
+        MenuService servizio = new MenuService();
+        servizio.attivaPersistenza(cartella);
+        try {
+            assertThrows(IllegalStateException.class, () -> servizio.attivaPersistenza(cartella));
+            assertThrows(IllegalStateException.class, () -> servizio.attivaArchivio(new ArchivioInMemoria()));
+        } finally {
+            servizio.disattivaPersistenza();
+        }
+    }
+
+    private static List<String> idRicette(List<Risultato> risultati) {
+        List<String> id = new ArrayList<>();
+        for (Risultato risultato : risultati) {
+            id.add(risultato.getRicetta().getId());
+        }
+        return id;
+    }
+}
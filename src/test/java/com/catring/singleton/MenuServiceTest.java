@@ -1,9 +1,17 @@
 package com.catring.singleton;
 
 import com.catring.model.Menu;
+import com.catring.model.Ricetta;
+import com.catring.observer.MenuObserver;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class MenuServiceTest {
@@ -52,4 +60,189 @@ class MenuServiceTest {
         assertNotNull(ricette);
         assertFalse(ricette.isEmpty(), "Dovrebbero esserci ricette di test");
     }
+
+    @Test
+    void testRicercaPerIdDopoCreazioneEdEliminazione() {
+        Menu menu = menuService.creaMenu("Menu Indice", "Test indice per id", null);
+        assertSame(menu, menuService.getMenuById(menu.getId()));
+        assertSame(menu, menuService.selezionaMenu(menu.getId()));
+
+        Menu copia = menuService.duplicaMenu(menu);
+        assertSame(copia, menuService.getMenuById(copia.getId()));
+
+        assertTrue(menuService.eliminaMenuSingolo(menu));
+        assertNull(menuService.getMenuById(menu.getId()));
+        assertSame(copia, menuService.getMenuById(copia.getId()));
+    }
+
+    @Test
+    void testRicercaRicettaPerIdDopoAggiornamento() {
+        Ricetta ricetta = menuService.inserisciRicetta("Ricetta Indice", "Test indice", 15, "bozza", "Chef Test");
+        assertSame(ricetta, menuService.getRicettaById(ricetta.getId()));
+
+        Ricetta sostituta = new Ricetta(ricetta.getId(), "Ricetta Indice", "Sostituta", 15, "bozza", "Chef Test");
+        assertTrue(menuService.aggiornaRicetta(sostituta));
+        assertSame(sostituta, menuService.getRicettaById(ricetta.getId()));
+        assertTrue(menuService.consultaRicettario().contains(sostituta));
+        assertFalse(menuService.consultaRicettario().contains(ricetta));
+
+        assertTrue(menuService.eliminaRicettaDalRicettario(sostituta));
+        assertNull(menuService.getRicettaById(ricetta.getId()));
+    }
+
+    @Test
+    void testDettagliEventoPerId() {
+        assertTrue(menuService.getDettagliEvento("E001").contains("Villa Reale"));
+        assertEquals("Evento non trovato", menuService.getDettagliEvento("E999"));
+    }
+
+    @Test
+    void testRicettaUsataNonEliminabile() {
+        Ricetta ricetta = menuService.inserisciRicetta("Ricetta Usata", "Test utilizzi", 10, "pubblicata", "Chef Test");
+        Menu menu = menuService.creaMenu("Menu Utilizzi", "Test utilizzi", null);
+        menuService.definisciSezioni(menu, "Primi");
+        menuService.definisciSezioni(menu, "Secondi");
+        menuService.aggiungiRicettaASezione(menu, "Primi", ricetta);
+
+        assertTrue(menuService.isRicettaUsata(ricetta.getId()));
+        assertFalse(menuService.eliminaRicettaDalRicettario(ricetta));
+
+        menuService.spostaRicetta(menu.getId(), ricetta.getId(), "Secondi");
+        assertSame(menu.getSezioni().get(1), menuService.getUtilizziRicetta(ricetta.getId()).get(0).getSezione());
+        assertTrue(menu.getSezioni().get(0).getVoci().isEmpty());
+
+        menuService.eliminaRicetta(menu, ricetta);
+        assertTrue(menu.getSezioni().get(1).getVoci().isEmpty());
+        assertFalse(menuService.isRicettaUsata(ricetta.getId()));
+        assertTrue(menuService.eliminaRicettaDalRicettario(ricetta));
+    }
+
+    @Test
+    void testIndiceNomiRicette() {
+        Ricetta ricetta = new Ricetta("R-NOME-1", "Crème brûlée", "Dolce francese", 40, "bozza", "Chef Test");
+        assertTrue(menuService.inserisciRicettaCompleta(ricetta));
+        assertTrue(menuService.esisteRicetta("CRÈME BRÛLÉE"));
+
+        Ricetta doppione = new Ricetta("R-NOME-2", " crème brûlée ", "Doppione", 40, "bozza", "Chef Test");
+        assertFalse(menuService.inserisciRicettaCompleta(doppione));
+
+        ricetta.setNome("Crema catalana");
+        assertTrue(menuService.aggiornaRicetta(ricetta));
+        assertFalse(menuService.esisteRicetta("Crème brûlée"));
+        assertTrue(menuService.esisteRicetta("crema catalana"));
+
+        assertTrue(menuService.eliminaRicettaDalRicettario(ricetta));
+        assertFalse(menuService.esisteRicetta("Crema catalana"));
+    }
+
+    @Test
+    void testIstantaneeMenuCondiviseFinoAllaModifica() {
+        var primaLettura = menuService.getMenus();
+        assertSame(primaLettura, menuService.getMenus());
+        assertThrows(UnsupportedOperationException.class, () -> primaLettura.add(new Menu()));
+
+        Menu menu = menuService.creaMenu("Menu Istantanea", "Test istantanee", null);
+
+        var secondaLettura = menuService.getMenus();
+        assertNotSame(primaLettura, secondaLettura);
+        assertFalse(primaLettura.contains(menu));
+        assertTrue(secondaLettura.contains(menu));
+    }
+
+    @Test
+    void testRicettePubblicateSeguonoCambioStato() {
+        Ricetta ricetta = menuService.inserisciRicetta("Ricetta Stato", "Test stato", 10, Ricetta.STATO_BOZZA, "Chef Test");
+        assertFalse(menuService.consultaRicettePubblicate().contains(ricetta));
+        assertTrue(menuService.consultaRicettePerStato(Ricetta.STATO_BOZZA).contains(ricetta));
+
+        ricetta.setStato(Ricetta.STATO_PUBBLICATA);
+        assertTrue(menuService.aggiornaRicetta(ricetta));
+
+        assertTrue(menuService.consultaRicettePubblicate().contains(ricetta));
+        assertFalse(menuService.consultaRicettePerStato(Ricetta.STATO_BOZZA).contains(ricetta));
+
+        assertTrue(menuService.eliminaRicettaDalRicettario(ricetta));
+        assertFalse(menuService.consultaRicettePubblicate().contains(ricetta));
+    }
+
+    @Test
+    void testBachecaPubblicazioneERimozione() {
+        Menu menu = menuService.creaMenu("Menu Bacheca", "Test bacheca", null);
+        assertFalse(menuService.isMenuPubblicato(menu));
+
+        assertTrue(menuService.pubblicaSuBacheca(menu).endsWith(menu.getId()));
+        assertEquals("Menu già pubblicato sulla bacheca", menuService.pubblicaSuBacheca(menu));
+        assertTrue(menuService.isMenuPubblicato(menu));
+        assertNotNull(menuService.getPubblicazione(menu.getId()).getDataPubblicazione());
+        assertTrue(menuService.getMenuPubblicati().contains(menu));
+
+        assertTrue(menuService.eliminaMenuSingolo(menu));
+        assertFalse(menuService.isMenuPubblicato(menu));
+        assertFalse(menuService.getMenuPubblicati().contains(menu));
+    }
+
+    @Test
+    void testCercaRicetteSegueRicettario() {
+        Ricetta ricetta = menuService.inserisciRicetta("Zuppa di farro", "Zuppa invernale", 40, Ricetta.STATO_BOZZA, "Chef Test");
+        assertEquals(ricetta, menuService.cercaRicette("farro", 5).get(0).getRicetta());
+
+        ricetta.setNome("Zuppa di orzo");
+        assertTrue(menuService.aggiornaRicetta(ricetta));
+        assertTrue(menuService.cercaRicette("farro", 5).isEmpty());
+        assertEquals(ricetta, menuService.cercaRicette("orz", 5).get(0).getRicetta());
+
+        assertTrue(menuService.eliminaRicettaDalRicettario(ricetta));
+        assertTrue(menuService.cercaRicette("orzo", 5).isEmpty());
+    }
+
+    @Test
+    void testInserisciRicetteInBloccoNotificaUnaVolta() {
+        List<List<Ricetta>> notifiche = new ArrayList<>();
+        MenuObserver observer = new MenuObserver() {
+            @Override public void onMenuCreated(Menu menu) { }
+            @Override public void onMenuUpdated(Menu menu) { }
+            @Override public void onMenuDeleted(Menu menu) { }
+            @Override public void onRicetteAggiunte(List<Ricetta> ricette) { notifiche.add(ricette); }
+        };
+        menuService.addObserver(observer);
+        try {
+            Ricetta nuova = new Ricetta(null, "Crema di zucca in blocco", "Vellutata", 30, Ricetta.STATO_BOZZA, "Chef Test");
+            Ricetta doppia = new Ricetta(null, "crema di zucca IN BLOCCO", "Stesso nome", 30, Ricetta.STATO_BOZZA, "Chef Test");
+            Ricetta esistente = new Ricetta(null, "Vitello tonnato", "Gia' presente", 20, Ricetta.STATO_BOZZA, "Chef Test");
+
+            List<Ricetta> inserite = menuService.inserisciRicette(Arrays.asList(nuova, doppia, esistente));
+
+            assertEquals(Collections.singletonList(nuova), inserite);
+            assertNotNull(nuova.getId());
+            assertSame(nuova, menuService.getRicettaById(nuova.getId()));
+            assertEquals(1, notifiche.size());
+            assertEquals(inserite, notifiche.get(0));
+            assertTrue(menuService.eliminaRicettaDalRicettario(nuova));
+        } finally {
+            menuService.removeObserver(observer);
+        }
+    }
+
+    @Test
+    void testTestiMenuInCacheFinoAllaModifica() {
+        MenuService servizio = new MenuService();
+        Menu menu = servizio.creaMenu("Pranzo", "Di prova", null);
+        Ricetta ricetta = servizio.getRicettaById("R001");
+        servizio.definisciSezioni(menu, "Primi");
+        servizio.aggiungiRicettaASezione(menu, "Primi", ricetta);
+
+        String testo = servizio.anteprimaTXT(menu);
+        assertSame(testo, servizio.anteprimaTXT(menu));
+        assertEquals(1, servizio.getStatisticheTestiMenu()[0]);
+
+        ricetta.setTempoPreparazione(45);
+        servizio.aggiornaRicetta(ricetta);
+        String aggiornato = servizio.anteprimaTXT(menu);
+        assertNotSame(testo, aggiornato);
+        assertTrue(aggiornato.contains("Tempo preparazione: 45 minuti"));
+
+        servizio.aggiornaTitolo(menu, "Nuovo titolo");
+        assertTrue(servizio.anteprimaTXT(menu).startsWith("=== MENU: Nuovo titolo ==="));
+        assertNotEquals(servizio.anteprimaTXT(menu), servizio.anteprima(menu, "md"));
+    }
 }
\ No newline at end of file
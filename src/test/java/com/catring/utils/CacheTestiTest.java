@@ -0,0 +1,41 @@
+package com.catring.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheTestiTest {
+
+    @Test
+    void testEscononoIMenoUsatiDiRecente() {
+        CacheTesti<String> cache = new CacheTesti<>(40);
+        cache.put("a", "0123456789");
+        cache.put("b", "0123456789");
+        cache.put("c", "0123456789");
+        cache.put("d", "0123456789");
+        assertEquals("0123456789", cache.get("a"));
+
+        cache.put("e", "0123456789");
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("e"));
+        assertEquals(40, cache.getCaratteri());
+        assertEquals(3, cache.getTrovati());
+        assertEquals(1, cache.getMancati());
+    }
+
+    @Test
+    void testTestiTroppoLunghiNonEntrano() {
+        CacheTesti<String> cache = new CacheTesti<>(40);
+        cache.put("a", "01234567890");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.dimensione());
+
+        cache.put("b", "0123456789");
+        cache.put("b", "01234");
+        assertEquals(5, cache.getCaratteri());
+        cache.svuota();
+        assertEquals(0, cache.getCaratteri());
+    }
+}
@@ -0,0 +1,63 @@
+package com.catring.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListaVersionataTest {
+
+    private ListaVersionata<String> lista;
+
+    @BeforeEach
+    void setUp() {
+        lista = new ListaVersionata<>();
+    }
+
+    @Test
+    void testIstantaneaRiutilizzataSenzaModifiche() {
+        lista.add("a");
+        lista.add("b");
+
+        List<String> prima = lista.istantanea();
+        assertSame(prima, lista.istantanea());
+        assertSame(prima, lista.istantaneaPronta());
+        assertEquals(List.of("a", "b"), prima);
+    }
+
+    @Test
+    void testModificaInvalidaIstantanea() {
+        lista.add("a");
+        List<String> vecchia = lista.istantanea();
+        long versione = lista.getVersione();
+
+        lista.add("b");
+
+        assertNull(lista.istantaneaPronta());
+        assertTrue(lista.getVersione() > versione);
+        assertEquals(List.of("a"), vecchia, "L'istantanea precedente non deve cambiare");
+        assertEquals(List.of("a", "b"), lista.istantanea());
+    }
+
+    @Test
+    void testIstantaneaImmutabile() {
+        lista.add("a");
+        assertThrows(UnsupportedOperationException.class, () -> lista.istantanea().add("b"));
+        assertThrows(UnsupportedOperationException.class, () -> {
+            lista.iterator().next();
+            lista.iterator().remove();
+        });
+    }
+
+    @Test
+    void testRimozioneNonPresenteNonCambiaVersione() {
+        lista.add("a");
+        long versione = lista.getVersione();
+        assertFalse(lista.remove("z"));
+        assertEquals(versione, lista.getVersione());
+        assertTrue(lista.remove("a"));
+        assertTrue(lista.isEmpty());
+    }
+}
@@ -31,4 +31,13 @@ class ValidationUtilsTest {
         assertEquals("", ValidationUtils.sanitizeString("   "));
         assertEquals("", ValidationUtils.sanitizeString(null));
     }
+
+    @Test
+    void testNormalizeKey() {
+        assertEquals("tiramisu", ValidationUtils.normalizeKey("  TiraMisu "));
+        assertEquals(ValidationUtils.normalizeKey("caffè"), ValidationUtils.normalizeKey("CAFFÈ"));
+        assertEquals(ValidationUtils.normalizeKey("perch\u00e9"), ValidationUtils.normalizeKey("perche\u0301"));
+        assertNotEquals(ValidationUtils.normalizeKey("caffè"), ValidationUtils.normalizeKey("caffe"));
+        assertEquals("", ValidationUtils.normalizeKey(null));
+    }
 }
\ No newline at end of file